@@ -0,0 +1,93 @@
+package com.dbcleanup.batch;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.service.CleanupService;
+import com.dbcleanup.service.ForeignKeyGraphService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Run-once cleanup for cron jobs: cleans up the entities in batch.entities, or all entities, and
+ * exits with a {@link BatchExitCode}. The batch profile starts without the web server, JPA and
+ * the schedulers, and initializes beans lazily, so only what the cleanup needs is created.
+ */
+@Component
+@Profile("batch")
+public class BatchCleanupRunner implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchCleanupRunner.class);
+
+    private final BatchProperties batchProperties;
+    private final CleanupProperties cleanupProperties;
+    private final CleanupService cleanupService;
+    private final ForeignKeyGraphService foreignKeyGraphService;
+    private final ConfigurableApplicationContext context;
+
+    public BatchCleanupRunner(
+            BatchProperties batchProperties,
+            CleanupProperties cleanupProperties,
+            CleanupService cleanupService,
+            ForeignKeyGraphService foreignKeyGraphService,
+            ConfigurableApplicationContext context) {
+        super();
+        this.batchProperties = batchProperties;
+        this.cleanupProperties = cleanupProperties;
+        this.cleanupService = cleanupService;
+        this.foreignKeyGraphService = foreignKeyGraphService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        BatchExitCode exitCode = runCleanup();
+        LOGGER.info("Batch cleanup finished: {} (exit code {})", exitCode, exitCode.getValue());
+
+        if (batchProperties.isExitOnCompletion()) {
+            System.exit(SpringApplication.exit(context, exitCode::getValue));
+        }
+    }
+
+    private BatchExitCode runCleanup() {
+        List<String> entities = batchProperties.getEntities();
+        Set<String> configured = cleanupProperties.getEntities().stream()
+                .map(EntityConfig::getName)
+                .collect(Collectors.toSet());
+        List<String> unknown = entities.stream()
+                .filter(entity -> !configured.contains(entity))
+                .collect(Collectors.toList());
+        if (!unknown.isEmpty()) {
+            LOGGER.error("Unknown entities requested: {}, configured are {}", unknown, configured);
+            return BatchExitCode.USAGE_ERROR;
+        }
+
+        try {
+            // Runners go before the ready event, which discovers the cascades otherwise
+            foreignKeyGraphService.refresh(false);
+
+            CleanupResult result = cleanupService.executeCleanup(
+                    batchProperties.getInitiator(), batchProperties.isDryRun(), entities);
+            if (result.hasErrors()) {
+                LOGGER.error("Batch cleanup task {} failed for entities {}", result.getTaskId(), result.getErrors());
+                return BatchExitCode.PARTIALLY_FAILED;
+            }
+
+            LOGGER.info("Batch cleanup task {} found {} candidates and deleted {} records",
+                    result.getTaskId(), result.getTotalCandidateCount(), result.getTotalDeletedCount());
+            return BatchExitCode.COMPLETED;
+        } catch (Exception e) {
+            LOGGER.error("Batch cleanup failed", e);
+            return BatchExitCode.FAILED;
+        }
+    }
+}
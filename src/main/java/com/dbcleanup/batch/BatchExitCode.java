@@ -0,0 +1,23 @@
+package com.dbcleanup.batch;
+
+/**
+ * Exit status of a run-once batch cleanup
+ */
+public enum BatchExitCode {
+    COMPLETED(0),
+    FAILED(1),
+    // The cleanup ran, but failed for some of the entities
+    PARTIALLY_FAILED(2),
+    // Unknown entities requested, nothing was run
+    USAGE_ERROR(64);
+
+    private final int value;
+
+    BatchExitCode(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
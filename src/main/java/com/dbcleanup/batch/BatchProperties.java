@@ -0,0 +1,54 @@
+package com.dbcleanup.batch;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "batch")
+public class BatchProperties {
+    private List<String> entities = new ArrayList<>();
+    private boolean dryRun = false;
+    private String initiator = "batch";
+    private boolean exitOnCompletion = true;
+
+    public BatchProperties() {
+        super();
+    }
+
+    // Getters and setters
+    /**
+     * Entities to clean up; all configured entities when empty
+     */
+    public List<String> getEntities() {
+        return entities;
+    }
+
+    public void setEntities(List<String> entities) {
+        this.entities = entities;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public String getInitiator() {
+        return initiator;
+    }
+
+    public void setInitiator(String initiator) {
+        this.initiator = initiator;
+    }
+
+    public boolean isExitOnCompletion() {
+        return exitOnCompletion;
+    }
+
+    public void setExitOnCompletion(boolean exitOnCompletion) {
+        this.exitOnCompletion = exitOnCompletion;
+    }
+}
@@ -0,0 +1,53 @@
+package com.dbcleanup.benchmark;
+
+import com.dbcleanup.config.CleanupProperties;
+
+/**
+ * Execution modes compared by the benchmark. Each mode fully sets the knobs it depends on,
+ * so modes can run back to back against the same properties instance.
+ */
+public enum BenchmarkMode {
+    LOCAL("LOCAL"),
+    DISTRIBUTED("DISTRIBUTED"),
+    LOCK_AWARE("LOCK_AWARE"),
+    PIPELINE("PIPELINE"),
+    REBUILD("REBUILD");
+
+    private final String value;
+
+    BenchmarkMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Reconfigure the cleanup properties for this mode
+     */
+    public void apply(CleanupProperties properties, int distributedWorkers) {
+        if (properties.getDistribution() == null) {
+            properties.setDistribution(new CleanupProperties.DistributionConfig());
+        }
+
+        if (this == DISTRIBUTED) {
+            properties.getDistribution().setWorkerCount(Math.max(2, distributedWorkers));
+        } else {
+            properties.getDistribution().setWorkerCount(1);
+        }
+
+        // Row deletion in short chunks, either lock-aware or as overlapping pipeline stages
+        properties.getLocking().setEnabled(this == LOCK_AWARE);
+        properties.getPipeline().setEnabled(this == PIPELINE);
+
+        for (CleanupProperties.EntityConfig entityConfig : properties.getEntities()) {
+            if (entityConfig.getRebuild() == null) {
+                entityConfig.setRebuild(new CleanupProperties.RebuildConfig());
+            }
+            // Rebuild regardless of the expiry ratio, so both strategies are measured on the same data
+            entityConfig.getRebuild().setEnabled(this == REBUILD);
+            entityConfig.getRebuild().setThresholdFraction(0.0);
+        }
+    }
+}
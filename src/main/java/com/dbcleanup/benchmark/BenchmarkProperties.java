@@ -0,0 +1,186 @@
+package com.dbcleanup.benchmark;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "benchmark")
+public class BenchmarkProperties {
+    private long rows = 1_000_000L;
+    private double expiryRatio = 0.3;
+    private int itemsPerOrder = 3;
+    private int ordersPerCustomer = 10;
+    private int loadBatchSize = 1_000_000;
+    private List<BenchmarkMode> modes = new ArrayList<>(Arrays.asList(BenchmarkMode.values()));
+    private String reportFile = "build/benchmark/throughput.csv";
+    private boolean allowRemote = false;
+    private boolean exitOnCompletion = true;
+    private InterferenceConfig interference = new InterferenceConfig();
+
+    public BenchmarkProperties() {
+        super();
+    }
+
+    // Getters and setters
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public double getExpiryRatio() {
+        return expiryRatio;
+    }
+
+    public void setExpiryRatio(double expiryRatio) {
+        this.expiryRatio = expiryRatio;
+    }
+
+    public int getItemsPerOrder() {
+        return itemsPerOrder;
+    }
+
+    public void setItemsPerOrder(int itemsPerOrder) {
+        this.itemsPerOrder = itemsPerOrder;
+    }
+
+    public int getOrdersPerCustomer() {
+        return ordersPerCustomer;
+    }
+
+    public void setOrdersPerCustomer(int ordersPerCustomer) {
+        this.ordersPerCustomer = ordersPerCustomer;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public List<BenchmarkMode> getModes() {
+        return modes;
+    }
+
+    public void setModes(List<BenchmarkMode> modes) {
+        this.modes = modes;
+    }
+
+    public String getReportFile() {
+        return reportFile;
+    }
+
+    public void setReportFile(String reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public boolean isAllowRemote() {
+        return allowRemote;
+    }
+
+    public void setAllowRemote(boolean allowRemote) {
+        this.allowRemote = allowRemote;
+    }
+
+    public boolean isExitOnCompletion() {
+        return exitOnCompletion;
+    }
+
+    public void setExitOnCompletion(boolean exitOnCompletion) {
+        this.exitOnCompletion = exitOnCompletion;
+    }
+
+    public InterferenceConfig getInterference() {
+        return interference;
+    }
+
+    public void setInterference(InterferenceConfig interference) {
+        this.interference = interference;
+    }
+
+    public static class InterferenceConfig {
+        private boolean enabled = false;
+        private int threads = 8;
+        private int targetOpsPerSecond = 500;
+        private double readRatio = 0.7;
+        private double insertRatio = 0.15;
+        private int warmupSeconds = 30;
+        private int cooldownSeconds = 30;
+        private String reportFile = "build/benchmark/interference.csv";
+
+        public InterferenceConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getTargetOpsPerSecond() {
+            return targetOpsPerSecond;
+        }
+
+        public void setTargetOpsPerSecond(int targetOpsPerSecond) {
+            this.targetOpsPerSecond = targetOpsPerSecond;
+        }
+
+        public double getReadRatio() {
+            return readRatio;
+        }
+
+        public void setReadRatio(double readRatio) {
+            this.readRatio = readRatio;
+        }
+
+        public double getInsertRatio() {
+            return insertRatio;
+        }
+
+        public void setInsertRatio(double insertRatio) {
+            this.insertRatio = insertRatio;
+        }
+
+        public int getWarmupSeconds() {
+            return warmupSeconds;
+        }
+
+        public void setWarmupSeconds(int warmupSeconds) {
+            this.warmupSeconds = warmupSeconds;
+        }
+
+        public int getCooldownSeconds() {
+            return cooldownSeconds;
+        }
+
+        public void setCooldownSeconds(int cooldownSeconds) {
+            this.cooldownSeconds = cooldownSeconds;
+        }
+
+        public String getReportFile() {
+            return reportFile;
+        }
+
+        public void setReportFile(String reportFile) {
+            this.reportFile = reportFile;
+        }
+    }
+}
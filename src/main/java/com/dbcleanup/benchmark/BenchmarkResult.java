@@ -0,0 +1,109 @@
+package com.dbcleanup.benchmark;
+
+/**
+ * Measurements for one entity cleaned up under one execution mode
+ */
+public class BenchmarkResult {
+    private final BenchmarkMode mode;
+    private final String entityName;
+    private int candidates;
+    private int deleted;
+    private int backedUp;
+    private long wallMillis;
+    private long walBytes;
+    private long peakHeapBytes;
+    private String error;
+
+    public BenchmarkResult(BenchmarkMode mode, String entityName) {
+        super();
+        this.mode = mode;
+        this.entityName = entityName;
+    }
+
+    public static String csvHeader() {
+        return "mode,entity,candidates,deleted,backed_up,wall_ms,rows_per_sec,wal_bytes,peak_heap_bytes,error";
+    }
+
+    public String toCsv() {
+        return String.join(",",
+                mode.getValue(),
+                entityName,
+                String.valueOf(candidates),
+                String.valueOf(deleted),
+                String.valueOf(backedUp),
+                String.valueOf(wallMillis),
+                String.format("%.1f", getRowsPerSecond()),
+                String.valueOf(walBytes),
+                String.valueOf(peakHeapBytes),
+                error == null ? "" : "\"" + error.replace("\"", "'") + "\"");
+    }
+
+    public double getRowsPerSecond() {
+        return wallMillis > 0 ? deleted * 1000.0 / wallMillis : 0.0;
+    }
+
+    // Getters and setters
+    public BenchmarkMode getMode() {
+        return mode;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+
+    public int getBackedUp() {
+        return backedUp;
+    }
+
+    public void setBackedUp(int backedUp) {
+        this.backedUp = backedUp;
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    public void setWallMillis(long wallMillis) {
+        this.wallMillis = wallMillis;
+    }
+
+    public long getWalBytes() {
+        return walBytes;
+    }
+
+    public void setWalBytes(long walBytes) {
+        this.walBytes = walBytes;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public void setPeakHeapBytes(long peakHeapBytes) {
+        this.peakHeapBytes = peakHeapBytes;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
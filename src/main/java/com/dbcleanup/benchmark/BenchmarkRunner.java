@@ -0,0 +1,249 @@
+package com.dbcleanup.benchmark;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.service.CleanupService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput benchmark. For every configured mode the synthetic data set is
+ * regenerated and each entity is cleaned up in its own task, recording rows/sec, WAL
+ * generated, peak heap and wall time. With benchmark.interference.enabled a synthetic OLTP
+ * workload runs alongside and its latency is recorded before, during and after the cleanup.
+ */
+@Component
+@Profile("benchmark")
+public class BenchmarkRunner implements ApplicationRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchmarkRunner.class);
+
+    private final BenchmarkProperties benchmarkProperties;
+    private final CleanupProperties cleanupProperties;
+    private final CleanupService cleanupService;
+    private final SyntheticDataGenerator dataGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ConfigurableApplicationContext context;
+
+    public BenchmarkRunner(
+            BenchmarkProperties benchmarkProperties,
+            CleanupProperties cleanupProperties,
+            CleanupService cleanupService,
+            SyntheticDataGenerator dataGenerator,
+            JdbcTemplate jdbcTemplate,
+            DataSourceProperties dataSourceProperties,
+            ConfigurableApplicationContext context) {
+        super();
+        this.benchmarkProperties = benchmarkProperties;
+        this.cleanupProperties = cleanupProperties;
+        this.cleanupService = cleanupService;
+        this.dataGenerator = dataGenerator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int distributedWorkers = cleanupProperties.getDistribution() != null ?
+                cleanupProperties.getDistribution().getWorkerCount() : 4;
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        List<String> interferenceLines = new ArrayList<>();
+        for (BenchmarkMode mode : benchmarkProperties.getModes()) {
+            LOGGER.info("Benchmarking mode {}", mode);
+            dataGenerator.generate();
+            mode.apply(cleanupProperties, distributedWorkers);
+
+            if (benchmarkProperties.getInterference().isEnabled()) {
+                interferenceLines.addAll(runWithForegroundWorkload(mode, results));
+            } else {
+                runEntities(mode, results);
+            }
+        }
+
+        report(results);
+        if (!interferenceLines.isEmpty()) {
+            reportInterference(interferenceLines);
+        }
+
+        if (benchmarkProperties.isExitOnCompletion()) {
+            boolean failed = results.stream().anyMatch(result -> result.getError() != null);
+            System.exit(SpringApplication.exit(context, () -> failed ? 1 : 0));
+        }
+    }
+
+    private void runEntities(BenchmarkMode mode, List<BenchmarkResult> results) {
+        for (EntityConfig entityConfig : cleanupProperties.getEntities()) {
+            results.add(measure(mode, entityConfig));
+        }
+    }
+
+    /**
+     * Run the cleanup for all entities while a foreground workload records latency in the
+     * phases before, during and after the run
+     */
+    private List<String> runWithForegroundWorkload(BenchmarkMode mode, List<BenchmarkResult> results) {
+        BenchmarkProperties.InterferenceConfig config = benchmarkProperties.getInterference();
+
+        try (HikariDataSource workloadDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build()) {
+            // Separate pool, so foreground latency is not inflated by waiting for cleanup connections
+            workloadDataSource.setPoolName("benchmark-oltp");
+            workloadDataSource.setMaximumPoolSize(Math.max(1, config.getThreads()));
+
+            OltpWorkload workload = new OltpWorkload(workloadDataSource, config, benchmarkProperties.getRows());
+            workload.start();
+            try {
+                pause(config.getWarmupSeconds());
+                workload.switchPhase(OltpWorkload.Phase.DURING);
+                runEntities(mode, results);
+                workload.switchPhase(OltpWorkload.Phase.AFTER);
+                pause(config.getCooldownSeconds());
+            } finally {
+                workload.stop();
+            }
+
+            for (OltpWorkload.Phase phase : OltpWorkload.Phase.values()) {
+                LatencyHistogram histogram = workload.getHistogram(phase, OltpWorkload.Operation.ALL);
+                LOGGER.info("{} foreground latency {}: {} ops, p50={}us p99={}us p999={}us max={}us, {} errors",
+                        mode, phase, histogram.getCount(), histogram.percentile(0.50),
+                        histogram.percentile(0.99), histogram.percentile(0.999), histogram.getMax(),
+                        workload.getErrors(phase));
+            }
+            return workload.toCsv(mode);
+        }
+    }
+
+    private void pause(int seconds) {
+        try {
+            TimeUnit.SECONDS.sleep(Math.max(0, seconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BenchmarkResult measure(BenchmarkMode mode, EntityConfig entityConfig) {
+        BenchmarkResult measurement = new BenchmarkResult(mode, entityConfig.getName());
+
+        String walStart = currentWalLsn();
+        resetHeapPeaks();
+        long started = System.nanoTime();
+
+        try {
+            CleanupResult result = cleanupService.executeCleanup(
+                    "benchmark", false, List.of(entityConfig.getName()));
+
+            measurement.setCandidates(result.getTotalCandidateCount());
+            measurement.setDeleted(result.getDeletedCount(entityConfig.getName()));
+            measurement.setBackedUp(result.getBackedUpCount(entityConfig.getName()));
+            if (result.hasErrors()) {
+                measurement.setError(String.join("; ", result.getErrors().values()));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Benchmark run failed for entity {} in mode {}", entityConfig.getName(), mode, e);
+            measurement.setError(e.getMessage());
+        }
+
+        measurement.setWallMillis((System.nanoTime() - started) / 1_000_000);
+        measurement.setWalBytes(walBytesSince(walStart));
+        measurement.setPeakHeapBytes(peakHeapUsed());
+
+        LOGGER.info("{} {}: {} rows deleted in {} ms ({} rows/s), WAL {} bytes, peak heap {} bytes",
+                mode, entityConfig.getName(), measurement.getDeleted(), measurement.getWallMillis(),
+                String.format("%.1f", measurement.getRowsPerSecond()),
+                measurement.getWalBytes(), measurement.getPeakHeapBytes());
+        return measurement;
+    }
+
+    private String currentWalLsn() {
+        return jdbcTemplate.queryForObject("SELECT pg_current_wal_insert_lsn()::text", String.class);
+    }
+
+    private long walBytesSince(String lsn) {
+        Long bytes = jdbcTemplate.queryForObject(
+                "SELECT pg_wal_lsn_diff(pg_current_wal_insert_lsn(), ?::pg_lsn)::bigint", Long.class, lsn);
+        return bytes != null ? bytes : 0L;
+    }
+
+    private void resetHeapPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private long peakHeapUsed() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private void report(List<BenchmarkResult> results) {
+        List<String> lines = new ArrayList<>();
+        lines.add(BenchmarkResult.csvHeader());
+        for (BenchmarkResult result : results) {
+            lines.add(result.toCsv());
+        }
+
+        LOGGER.info("Benchmark results ({} rows, expiry ratio {}):\n{}",
+                benchmarkProperties.getRows(), benchmarkProperties.getExpiryRatio(), String.join("\n", lines));
+
+        writeReport(benchmarkProperties.getReportFile(), lines);
+    }
+
+    private void reportInterference(List<String> interferenceLines) {
+        List<String> lines = new ArrayList<>();
+        lines.add(OltpWorkload.csvHeader());
+        lines.addAll(interferenceLines);
+
+        LOGGER.info("Foreground latency results:\n{}", String.join("\n", lines));
+        writeReport(benchmarkProperties.getInterference().getReportFile(), lines);
+    }
+
+    private void writeReport(String reportFile, List<String> lines) {
+        if (reportFile == null || reportFile.isEmpty()) {
+            return;
+        }
+
+        try {
+            Path path = Paths.get(reportFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(path, lines, StandardCharsets.UTF_8);
+            LOGGER.info("Benchmark report written to {}", path.toAbsolutePath());
+        } catch (IOException e) {
+            LOGGER.error("Could not write benchmark report to {}: {}", reportFile, e.getMessage(), e);
+        }
+    }
+}
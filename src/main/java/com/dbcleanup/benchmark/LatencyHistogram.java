@@ -0,0 +1,86 @@
+package com.dbcleanup.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram in microseconds.
+ * Values below 128 are recorded exactly, larger values with 64 sub-buckets per power of two,
+ * which keeps the relative error of reported percentiles below 2%.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int EXACT_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BUCKETS = EXACT_BUCKETS / 2;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = EXACT_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * HALF_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        super();
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1_000);
+    }
+
+    public void record(long micros) {
+        long value = Math.min(Math.max(0, micros), MAX_VALUE);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Value in microseconds at or below which the given fraction (0..1) of recordings fall
+     */
+    public long percentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < EXACT_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        int mantissa = (int) (value >>> shift);
+        return EXACT_BUCKETS + (exponent - SUB_BUCKET_BITS) * HALF_BUCKETS + (mantissa - HALF_BUCKETS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < EXACT_BUCKETS) {
+            return index;
+        }
+        int offset = index - EXACT_BUCKETS;
+        int exponent = offset / HALF_BUCKETS + SUB_BUCKET_BITS;
+        int mantissa = offset % HALF_BUCKETS + HALF_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return ((long) (mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package com.dbcleanup.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic foreground OLTP workload (point reads, inserts and updates on the benchmark tables)
+ * whose latency is recorded per phase, so that cleanup runs can be compared by their impact on
+ * application traffic. When throttled, latency is measured from the intended start time of each
+ * operation so that stalls caused by cleanup are not hidden by coordinated omission.
+ */
+public class OltpWorkload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OltpWorkload.class);
+
+    public enum Phase {
+        BEFORE,
+        DURING,
+        AFTER
+    }
+
+    public enum Operation {
+        ALL,
+        READ,
+        INSERT,
+        UPDATE
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BenchmarkProperties.InterferenceConfig config;
+    private final long existingOrders;
+    private final AtomicLong nextOrderId;
+    private final Map<Phase, Map<Operation, LatencyHistogram>> histograms = new EnumMap<>(Phase.class);
+    private final Map<Phase, AtomicLong> errors = new EnumMap<>(Phase.class);
+    private final ExecutorService executor;
+    private volatile Phase phase = Phase.BEFORE;
+    private volatile boolean running;
+
+    public OltpWorkload(DataSource dataSource, BenchmarkProperties.InterferenceConfig config, long existingOrders) {
+        super();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.config = config;
+        this.existingOrders = Math.max(1, existingOrders);
+        this.nextOrderId = new AtomicLong(existingOrders + 1);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()));
+
+        for (Phase p : Phase.values()) {
+            Map<Operation, LatencyHistogram> byOperation = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                byOperation.put(operation, new LatencyHistogram());
+            }
+            histograms.put(p, byOperation);
+            errors.put(p, new AtomicLong());
+        }
+    }
+
+    public void start() {
+        running = true;
+        int threads = Math.max(1, config.getThreads());
+        long intervalNanos = config.getTargetOpsPerSecond() > 0 ?
+                TimeUnit.SECONDS.toNanos(threads) / config.getTargetOpsPerSecond() : 0;
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> runWorker(intervalNanos));
+        }
+        LOGGER.info("Started foreground workload with {} threads, target {} ops/s",
+                threads, config.getTargetOpsPerSecond());
+    }
+
+    public void switchPhase(Phase newPhase) {
+        LOGGER.info("Foreground workload entering phase {}", newPhase);
+        this.phase = newPhase;
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase p, Operation operation) {
+        return histograms.get(p).get(operation);
+    }
+
+    public long getErrors(Phase p) {
+        return errors.get(p).get();
+    }
+
+    /**
+     * CSV lines (without header) with the latency percentiles per phase and operation
+     */
+    public List<String> toCsv(BenchmarkMode mode) {
+        List<String> lines = new ArrayList<>();
+        for (Phase p : Phase.values()) {
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = getHistogram(p, operation);
+                lines.add(String.join(",",
+                        mode.getValue(),
+                        p.name(),
+                        operation.name(),
+                        String.valueOf(histogram.getCount()),
+                        operation == Operation.ALL ? String.valueOf(getErrors(p)) : "",
+                        String.valueOf(histogram.percentile(0.50)),
+                        String.valueOf(histogram.percentile(0.99)),
+                        String.valueOf(histogram.percentile(0.999)),
+                        String.valueOf(histogram.getMax())));
+            }
+        }
+        return lines;
+    }
+
+    public static String csvHeader() {
+        return "mode,phase,operation,count,errors,p50_us,p99_us,p999_us,max_us";
+    }
+
+    private void runWorker(long intervalNanos) {
+        long intendedStart = System.nanoTime();
+
+        while (running) {
+            if (intervalNanos > 0) {
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intendedStart = System.nanoTime();
+            }
+
+            Phase current = phase;
+            Operation operation = pickOperation();
+            try {
+                execute(operation);
+            } catch (DataAccessException e) {
+                errors.get(current).incrementAndGet();
+                LOGGER.debug("Foreground {} failed: {}", operation, e.getMessage());
+            }
+
+            long latency = System.nanoTime() - intendedStart;
+            histograms.get(current).get(Operation.ALL).recordNanos(latency);
+            histograms.get(current).get(operation).recordNanos(latency);
+
+            intendedStart += intervalNanos;
+        }
+    }
+
+    private Operation pickOperation() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < config.getReadRatio()) {
+            return Operation.READ;
+        }
+        if (roll < config.getReadRatio() + config.getInsertRatio()) {
+            return Operation.INSERT;
+        }
+        return Operation.UPDATE;
+    }
+
+    private void execute(Operation operation) {
+        long orderId = 1 + ThreadLocalRandom.current().nextLong(existingOrders);
+
+        switch (operation) {
+            case READ:
+                jdbcTemplate.queryForList(
+                        "SELECT o.id, o.status, o.created_at, i.product_id, i.quantity " +
+                                "FROM orders o LEFT JOIN order_items i ON i.order_id = o.id WHERE o.id = ?",
+                        orderId);
+                break;
+            case INSERT:
+                jdbcTemplate.update(
+                        "INSERT INTO orders (id, created_at, status, customer_id) " +
+                                "VALUES (?, CURRENT_TIMESTAMP, 'PENDING', 1)",
+                        nextOrderId.getAndIncrement());
+                break;
+            case UPDATE:
+                jdbcTemplate.update(
+                        "UPDATE orders SET customer_id = customer_id WHERE id = ?", orderId);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operation " + operation);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.dbcleanup.benchmark;
+
+import com.dbcleanup.exception.CleanupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates the orders/order_items/payments/customers schema used by the default entity
+ * configuration, at a configurable scale and expiry ratio.
+ * Rows are produced server side with generate_series so that 100M rows load without
+ * streaming data through the JVM. The data is deterministic for a given configuration.
+ */
+@Component
+@Profile("benchmark")
+public class SyntheticDataGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BenchmarkProperties properties;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate, BenchmarkProperties properties) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * Drop and recreate all benchmark tables and load them with fresh synthetic data
+     */
+    public void generate() {
+        verifyTargetDatabase();
+
+        long orders = properties.getRows();
+        long customers = Math.max(1, orders / Math.max(1, properties.getOrdersPerCustomer()));
+        int expiredPerMille = (int) Math.round(properties.getExpiryRatio() * 1000);
+
+        LOGGER.info("Generating benchmark data: {} orders, {} customers, expiry ratio {}",
+                orders, customers, properties.getExpiryRatio());
+
+        recreateSchema();
+
+        long started = System.nanoTime();
+        loadInBatches("customers", customers, (lo, hi) -> jdbcTemplate.update(
+                "INSERT INTO customers (id, name, email, last_active_date, account_status) " +
+                        "SELECT g, 'Customer ' || g, 'customer' || g || '@example.com', " +
+                        "CASE WHEN g % 1000 < ? THEN CURRENT_TIMESTAMP - INTERVAL '3 years' - (g % 365) * INTERVAL '1 day' " +
+                        "ELSE CURRENT_TIMESTAMP - (g % 500) * INTERVAL '1 day' END, " +
+                        "CASE WHEN g % 1000 < ? THEN 'CLOSED' ELSE 'ACTIVE' END " +
+                        "FROM generate_series(?::bigint, ?::bigint) g",
+                expiredPerMille, expiredPerMille, lo, hi));
+
+        loadInBatches("customer_addresses", customers, (lo, hi) -> jdbcTemplate.update(
+                "INSERT INTO customer_addresses (id, customer_id, address_line1, city, state, zip_code, country) " +
+                        "SELECT g, g, g || ' Main St', 'City ' || (g % 100), 'ST', lpad((g % 100000)::text, 5, '0'), 'USA' " +
+                        "FROM generate_series(?::bigint, ?::bigint) g",
+                lo, hi));
+
+        loadInBatches("orders", orders, (lo, hi) -> jdbcTemplate.update(
+                "INSERT INTO orders (id, created_at, status, customer_id) " +
+                        "SELECT g, " +
+                        "CASE WHEN g % 1000 < ? THEN CURRENT_TIMESTAMP - INTERVAL '2 years' - (g % 365) * INTERVAL '1 day' " +
+                        "WHEN g % 2 = 0 THEN CURRENT_TIMESTAMP - (g % 300) * INTERVAL '1 day' " +
+                        "ELSE CURRENT_TIMESTAMP - INTERVAL '2 years' END, " +
+                        "CASE WHEN g % 1000 < ? THEN (CASE WHEN g % 4 = 0 THEN 'CANCELLED' ELSE 'COMPLETED' END) " +
+                        "WHEN g % 2 = 0 THEN 'COMPLETED' ELSE 'PENDING' END, " +
+                        "1 + (g % ?) " +
+                        "FROM generate_series(?::bigint, ?::bigint) g",
+                expiredPerMille, expiredPerMille, customers, lo, hi));
+
+        int itemsPerOrder = Math.max(1, properties.getItemsPerOrder());
+        loadInBatches("order_items", orders, (lo, hi) -> jdbcTemplate.update(
+                "INSERT INTO order_items (id, order_id, product_id, quantity) " +
+                        "SELECT (o - 1) * ? + i, o, 100 + (o % 500), 1 + (o % 5) " +
+                        "FROM generate_series(?::bigint, ?::bigint) o, generate_series(1, ?) i",
+                itemsPerOrder, lo, hi, itemsPerOrder));
+
+        loadInBatches("payments", orders, (lo, hi) -> jdbcTemplate.update(
+                "INSERT INTO payments (id, order_id, amount, payment_date) " +
+                        "SELECT o, o, 10 + (o % 990), CURRENT_TIMESTAMP - (o % 700) * INTERVAL '1 day' " +
+                        "FROM generate_series(?::bigint, ?::bigint) o",
+                lo, hi));
+
+        jdbcTemplate.execute("ANALYZE");
+        checkpoint();
+
+        LOGGER.info("Benchmark data generated in {} ms", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void recreateSchema() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS order_items, payments, orders, customer_addresses, customers CASCADE");
+
+        jdbcTemplate.execute("CREATE TABLE customers (" +
+                "id BIGINT PRIMARY KEY, " +
+                "name VARCHAR(100) NOT NULL, " +
+                "email VARCHAR(100) NOT NULL, " +
+                "last_active_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "account_status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE')");
+        jdbcTemplate.execute("CREATE TABLE customer_addresses (" +
+                "id BIGINT PRIMARY KEY, " +
+                "customer_id BIGINT NOT NULL REFERENCES customers(id), " +
+                "address_line1 VARCHAR(100) NOT NULL, " +
+                "address_line2 VARCHAR(100), " +
+                "city VARCHAR(50) NOT NULL, " +
+                "state VARCHAR(50) NOT NULL, " +
+                "zip_code VARCHAR(20) NOT NULL, " +
+                "country VARCHAR(50) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE orders (" +
+                "id BIGINT PRIMARY KEY, " +
+                "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "status VARCHAR(20) NOT NULL, " +
+                "customer_id BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE order_items (" +
+                "id BIGINT PRIMARY KEY, " +
+                "order_id BIGINT NOT NULL REFERENCES orders(id), " +
+                "product_id INTEGER NOT NULL, " +
+                "quantity INTEGER NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE payments (" +
+                "id BIGINT PRIMARY KEY, " +
+                "order_id BIGINT NOT NULL REFERENCES orders(id), " +
+                "amount DECIMAL(10,2) NOT NULL, " +
+                "payment_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+
+        // Indexes a production schema would normally carry
+        jdbcTemplate.execute("CREATE INDEX idx_orders_created_at ON orders (created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_customers_last_active_date ON customers (last_active_date)");
+        jdbcTemplate.execute("CREATE INDEX idx_order_items_order_id ON order_items (order_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_payments_order_id ON payments (order_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_customer_addresses_customer_id ON customer_addresses (customer_id)");
+
+        // Task log and backup tables come from the application schema
+        new ResourceDatabasePopulator(new ClassPathResource("schema.xml"))
+                .execute(jdbcTemplate.getDataSource());
+        jdbcTemplate.execute("TRUNCATE orders_backup, customers_backup, cleanup_task_log, cleanup_work_chunk");
+    }
+
+    private void loadInBatches(String table, long totalRows, BatchLoader loader) {
+        long batchSize = Math.max(1, properties.getLoadBatchSize());
+        long loaded = 0;
+
+        for (long lo = 1; lo <= totalRows; lo += batchSize) {
+            long hi = Math.min(totalRows, lo + batchSize - 1);
+            loaded += loader.load(lo, hi);
+            LOGGER.debug("Loaded {} rows into {}", loaded, table);
+        }
+
+        LOGGER.info("Loaded {} rows into {}", loaded, table);
+    }
+
+    private void checkpoint() {
+        // Start every mode from a fresh checkpoint so full-page writes are comparable
+        try {
+            jdbcTemplate.execute("CHECKPOINT");
+        } catch (DataAccessException e) {
+            LOGGER.warn("Could not issue CHECKPOINT, WAL figures include full-page write noise: {}",
+                    e.getMessage());
+        }
+    }
+
+    private void verifyTargetDatabase() {
+        String url = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getURL());
+
+        boolean local = url != null && (url.contains("//localhost") || url.contains("//127.0.0.1"));
+        if (!local && !properties.isAllowRemote()) {
+            throw new CleanupException("Refusing to generate benchmark data on non-local database " + url +
+                    ", set benchmark.allowRemote=true to override");
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchLoader {
+        int load(long lo, long hi);
+    }
+}
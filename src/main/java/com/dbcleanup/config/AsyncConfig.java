@@ -26,4 +26,19 @@ public class AsyncConfig {
         executor.initialize();
         return executor;    
     }
+
+    /**
+     * Runs VACUUM and ANALYZE after a cleanup; its size bounds the concurrent maintenance steps
+     */
+    @Bean(name = "maintenanceExecutor")
+    public Executor maintenanceExecutor(CleanupProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int maxConcurrent = Math.max(1, properties.getMaintenance().getMaxConcurrent());
+
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("cleanup-maintenance-");
+        executor.initialize();
+        return executor;
+    }
 }
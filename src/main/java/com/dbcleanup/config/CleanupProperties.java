@@ -11,6 +11,20 @@ public class CleanupProperties {
     private DistributionConfig distribution;
     private TaskLoggingConfig taskLogging = new TaskLoggingConfig();
     private SchedulerConfig scheduler = new SchedulerConfig();
+    private ClusterConfig cluster = new ClusterConfig();
+    private TrickleConfig trickle = new TrickleConfig();
+    private IndexAdvisorConfig indexAdvisor = new IndexAdvisorConfig();
+    private LockingConfig locking = new LockingConfig();
+    private MaintenanceConfig maintenance = new MaintenanceConfig();
+    private ReinstatementConfig reinstatement = new ReinstatementConfig();
+    private SchemaCacheConfig schemaCache = new SchemaCacheConfig();
+    private BackupRetentionConfig backupRetention = new BackupRetentionConfig();
+    private CascadeConfig cascade = new CascadeConfig();
+    private PipelineConfig pipeline = new PipelineConfig();
+    private CostEstimateConfig costEstimate = new CostEstimateConfig();
+    private WalConfig wal = new WalConfig();
+    private ResultConfig results = new ResultConfig();
+    private RunPlanConfig runPlan = new RunPlanConfig();
 
     public CleanupProperties() {
         super();
@@ -49,6 +63,118 @@ public class CleanupProperties {
         this.scheduler = scheduler;
     }
 
+    public ClusterConfig getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(ClusterConfig cluster) {
+        this.cluster = cluster;
+    }
+
+    public TrickleConfig getTrickle() {
+        return trickle;
+    }
+
+    public void setTrickle(TrickleConfig trickle) {
+        this.trickle = trickle;
+    }
+
+    public IndexAdvisorConfig getIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    public void setIndexAdvisor(IndexAdvisorConfig indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+    }
+
+    public LockingConfig getLocking() {
+        return locking;
+    }
+
+    public void setLocking(LockingConfig locking) {
+        this.locking = locking;
+    }
+
+    public MaintenanceConfig getMaintenance() {
+        return maintenance;
+    }
+
+    public void setMaintenance(MaintenanceConfig maintenance) {
+        this.maintenance = maintenance;
+    }
+
+    public ReinstatementConfig getReinstatement() {
+        return reinstatement;
+    }
+
+    public void setReinstatement(ReinstatementConfig reinstatement) {
+        this.reinstatement = reinstatement;
+    }
+
+    public SchemaCacheConfig getSchemaCache() {
+        return schemaCache;
+    }
+
+    public void setSchemaCache(SchemaCacheConfig schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    public BackupRetentionConfig getBackupRetention() {
+        return backupRetention;
+    }
+
+    public void setBackupRetention(BackupRetentionConfig backupRetention) {
+        this.backupRetention = backupRetention;
+    }
+
+    public CascadeConfig getCascade() {
+        return cascade;
+    }
+
+    public void setCascade(CascadeConfig cascade) {
+        this.cascade = cascade;
+    }
+
+    public PipelineConfig getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(PipelineConfig pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public CostEstimateConfig getCostEstimate() {
+        return costEstimate;
+    }
+
+    public void setCostEstimate(CostEstimateConfig costEstimate) {
+        this.costEstimate = costEstimate;
+    }
+
+    public WalConfig getWal() {
+        return wal;
+    }
+
+    public void setWal(WalConfig wal) {
+        this.wal = wal;
+    }
+
+    public ResultConfig getResults() {
+        return results;
+    }
+
+    public void setResults(ResultConfig results) {
+        this.results = results;
+    }
+
+    public RunPlanConfig getRunPlan() {
+        return runPlan;
+    }
+
+    public void setRunPlan(RunPlanConfig runPlan) {
+        this.runPlan = runPlan;
+    }
+
     public enum JoinType {
         INNER("INNER"),
         LEFT("LEFT"),
@@ -65,13 +191,78 @@ public class CleanupProperties {
         }
     }
 
+    public enum DetachedTableAction {
+        DROP("DROP"),
+        ARCHIVE("ARCHIVE");
+
+        private final String value;
+
+        DetachedTableAction(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum RetainedTableAction {
+        KEEP("KEEP"),
+        ARCHIVE("ARCHIVE");
+
+        private final String value;
+
+        RetainedTableAction(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum PartitionInterval {
+        DAY("DAY"),
+        WEEK("WEEK"),
+        MONTH("MONTH");
+
+        private final String value;
+
+        PartitionInterval(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum BackupFormat {
+        JSONB("JSONB"),
+        BINARY("BINARY");
+
+        private final String value;
+
+        BackupFormat(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
     public static class EntityConfig {
         private String name;
         private String table;
         private List<CriteriaConfig> criteria;
         private List<RelatedEntityConfig> related;
         private boolean transactionBoundary;
+        private boolean discoverRelated = false;
         private BackupConfig backup = new BackupConfig();
+        private PartitioningConfig partitioning = new PartitioningConfig();
+        private RebuildConfig rebuild = new RebuildConfig();
+        private IncrementalConfig incremental = new IncrementalConfig();
         private Map<String, Object> additionalProperties;
 
         public EntityConfig() {
@@ -119,6 +310,14 @@ public class CleanupProperties {
             this.transactionBoundary = transactionBoundary;
         }
 
+        public boolean isDiscoverRelated() {
+            return discoverRelated;
+        }
+
+        public void setDiscoverRelated(boolean discoverRelated) {
+            this.discoverRelated = discoverRelated;
+        }
+
         public BackupConfig getBackup() {
             return backup;
         }
@@ -127,6 +326,30 @@ public class CleanupProperties {
             this.backup = backup;
         }
 
+        public PartitioningConfig getPartitioning() {
+            return partitioning;
+        }
+
+        public void setPartitioning(PartitioningConfig partitioning) {
+            this.partitioning = partitioning;
+        }
+
+        public RebuildConfig getRebuild() {
+            return rebuild;
+        }
+
+        public void setRebuild(RebuildConfig rebuild) {
+            this.rebuild = rebuild;
+        }
+
+        public IncrementalConfig getIncremental() {
+            return incremental;
+        }
+
+        public void setIncremental(IncrementalConfig incremental) {
+            this.incremental = incremental;
+        }
+
         public Map<String, Object> getAdditionalProperties() {
             return additionalProperties;
         }
@@ -196,6 +419,9 @@ public class CleanupProperties {
         private String foreignKey;
         private JoinType joinType = JoinType.INNER;
         private boolean cascadeDelete = false;
+        private boolean databaseCascade = false;
+        private String keyColumn = "id";
+        private List<RelatedEntityConfig> related;
 
         public RelatedEntityConfig() {
             super();
@@ -249,12 +475,45 @@ public class CleanupProperties {
         public void setCascadeDelete(boolean cascadeDelete) {
             this.cascadeDelete = cascadeDelete;
         }
+
+        /**
+         * Rows are removed by the database through ON DELETE CASCADE when their parents are
+         * deleted, so they are backed up and locked but not deleted explicitly
+         */
+        public boolean isDatabaseCascade() {
+            return databaseCascade;
+        }
+
+        public void setDatabaseCascade(boolean databaseCascade) {
+            this.databaseCascade = databaseCascade;
+        }
+
+        public String getKeyColumn() {
+            return keyColumn;
+        }
+
+        public void setKeyColumn(String keyColumn) {
+            this.keyColumn = keyColumn;
+        }
+
+        public List<RelatedEntityConfig> getRelated() {
+            return related;
+        }
+
+        public void setRelated(List<RelatedEntityConfig> related) {
+            this.related = related;
+        }
     }
 
     public static class BackupConfig {
         private boolean enabled = true;
         private String table;
         private String schema;
+        private BackupFormat format = BackupFormat.JSONB;
+        private int blockRows = 1000;
+        private boolean partitioned = false;
+        private PartitionInterval partitionInterval = PartitionInterval.MONTH;
+        private int retentionDays = 0;
 
         public BackupConfig() {
             super();
@@ -284,6 +543,178 @@ public class CleanupProperties {
         public void setSchema(String schema) {
             this.schema = schema;
         }
+
+        public BackupFormat getFormat() {
+            return format;
+        }
+
+        public void setFormat(BackupFormat format) {
+            this.format = format;
+        }
+
+        public int getBlockRows() {
+            return blockRows;
+        }
+
+        public void setBlockRows(int blockRows) {
+            this.blockRows = blockRows;
+        }
+
+        public boolean isPartitioned() {
+            return partitioned;
+        }
+
+        public void setPartitioned(boolean partitioned) {
+            this.partitioned = partitioned;
+        }
+
+        public PartitionInterval getPartitionInterval() {
+            return partitionInterval;
+        }
+
+        public void setPartitionInterval(PartitionInterval partitionInterval) {
+            this.partitionInterval = partitionInterval;
+        }
+
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        public void setRetentionDays(int retentionDays) {
+            this.retentionDays = retentionDays;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public long getCacheMaxAgeMillis() {
+            return cacheMaxAgeMillis;
+        }
+
+        public void setCacheMaxAgeMillis(long cacheMaxAgeMillis) {
+            this.cacheMaxAgeMillis = cacheMaxAgeMillis;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+
+        /**
+         * Duration and row counts of every entity in every task
+         */
+        public String getEntityRunTable() {
+            return entityRunTable;
+        }
+
+        public void setEntityRunTable(String entityRunTable) {
+            this.entityRunTable = entityRunTable;
+        }
+    }
+
+    public static class PartitioningConfig {
+        private boolean enabled = true;
+        private DetachedTableAction detachedAction = DetachedTableAction.DROP;
+        private String archiveSchema = "cleanup_archive";
+
+        public PartitioningConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DetachedTableAction getDetachedAction() {
+            return detachedAction;
+        }
+
+        public void setDetachedAction(DetachedTableAction detachedAction) {
+            this.detachedAction = detachedAction;
+        }
+
+        public String getArchiveSchema() {
+            return archiveSchema;
+        }
+
+        public void setArchiveSchema(String archiveSchema) {
+            this.archiveSchema = archiveSchema;
+        }
+    }
+
+    public static class RebuildConfig {
+        private boolean enabled = false;
+        private double thresholdFraction = 0.8;
+        private RetainedTableAction retainedAction = RetainedTableAction.KEEP;
+        private String archiveSchema = "cleanup_archive";
+        private long lockTimeoutMillis = 2000;
+        private int lockAttempts = 5;
+
+        public RebuildConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getThresholdFraction() {
+            return thresholdFraction;
+        }
+
+        public void setThresholdFraction(double thresholdFraction) {
+            this.thresholdFraction = thresholdFraction;
+        }
+
+        public RetainedTableAction getRetainedAction() {
+            return retainedAction;
+        }
+
+        public void setRetainedAction(RetainedTableAction retainedAction) {
+            this.retainedAction = retainedAction;
+        }
+
+        public String getArchiveSchema() {
+            return archiveSchema;
+        }
+
+        public void setArchiveSchema(String archiveSchema) {
+            this.archiveSchema = archiveSchema;
+        }
+
+        public long getLockTimeoutMillis() {
+            return lockTimeoutMillis;
+        }
+
+        public void setLockTimeoutMillis(long lockTimeoutMillis) {
+            this.lockTimeoutMillis = lockTimeoutMillis;
+        }
+
+        public int getLockAttempts() {
+            return lockAttempts;
+        }
+
+        public void setLockAttempts(int lockAttempts) {
+            this.lockAttempts = lockAttempts;
+        }
     }
 
     public static class TaskLoggingConfig {
@@ -291,6 +722,10 @@ public class CleanupProperties {
         private String table = "cleanup_task_log";
         private String schema;
         private int retentionDays = 90;
+        private int cacheSize = 200;
+        private long cacheMaxAgeMillis = 2000;
+        private int maxPageSize = 500;
+        private String entityRunTable = "cleanup_entity_run";
 
         public TaskLoggingConfig() {
             super();
@@ -378,6 +813,11 @@ public class CleanupProperties {
         private boolean enabled = false;
         private String cron = "0 0 2 * * *"; // Default: 2 AM daily
         private boolean dryRun = false;
+        private long leaderLockKey = 4_207_310_571L;
+        private long leaderCheckMillis = 15000;
+        private int dedupWindowSeconds = 600;
+        private long heartbeatMillis = 10000;
+        private long takeOverAfterMillis = 60000;
 
         public SchedulerConfig() {
             super();
@@ -407,5 +847,789 @@ public class CleanupProperties {
         public void setDryRun(boolean dryRun) {
             this.dryRun = dryRun;
         }
+
+        public long getLeaderLockKey() {
+            return leaderLockKey;
+        }
+
+        public void setLeaderLockKey(long leaderLockKey) {
+            this.leaderLockKey = leaderLockKey;
+        }
+
+        public long getLeaderCheckMillis() {
+            return leaderCheckMillis;
+        }
+
+        public void setLeaderCheckMillis(long leaderCheckMillis) {
+            this.leaderCheckMillis = leaderCheckMillis;
+        }
+
+        public int getDedupWindowSeconds() {
+            return dedupWindowSeconds;
+        }
+
+        public void setDedupWindowSeconds(int dedupWindowSeconds) {
+            this.dedupWindowSeconds = dedupWindowSeconds;
+        }
+
+        public long getHeartbeatMillis() {
+            return heartbeatMillis;
+        }
+
+        public void setHeartbeatMillis(long heartbeatMillis) {
+            this.heartbeatMillis = heartbeatMillis;
+        }
+
+        /**
+         * Scheduled tasks without a heartbeat for this long are taken over by the leader
+         */
+        public long getTakeOverAfterMillis() {
+            return takeOverAfterMillis;
+        }
+
+        public void setTakeOverAfterMillis(long takeOverAfterMillis) {
+            this.takeOverAfterMillis = takeOverAfterMillis;
+        }
+    }
+
+    public static class ClusterConfig {
+        private boolean enabled = false;
+        private String nodeId;
+        private int chunkSize = 10000;
+        private int leaseSeconds = 300;
+        private long pollIntervalMillis = 2000;
+        private int maxAttempts = 3;
+        private String workTable = "cleanup_work_chunk";
+
+        public ClusterConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        public void setLeaseSeconds(int leaseSeconds) {
+            this.leaseSeconds = leaseSeconds;
+        }
+
+        public long getPollIntervalMillis() {
+            return pollIntervalMillis;
+        }
+
+        public void setPollIntervalMillis(long pollIntervalMillis) {
+            this.pollIntervalMillis = pollIntervalMillis;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public String getWorkTable() {
+            return workTable;
+        }
+
+        public void setWorkTable(String workTable) {
+            this.workTable = workTable;
+        }
+    }
+
+    public static class TrickleConfig {
+        private boolean enabled = false;
+        private long intervalMillis = 5000;
+        private int minBatchSize = 100;
+        private int maxBatchSize = 5000;
+        private int maxRowsPerSecond = 200;
+        private int drainMinutes = 60;
+        private int backlogRefreshSeconds = 300;
+        private int maxReplicationLagSeconds = 30;
+        private int maxActiveSessions = 0;
+        private int maxLockWaits = 5;
+        private int taskPeriodMinutes = 60;
+
+        public TrickleConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public void setIntervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        public int getMinBatchSize() {
+            return minBatchSize;
+        }
+
+        public void setMinBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getMaxRowsPerSecond() {
+            return maxRowsPerSecond;
+        }
+
+        public void setMaxRowsPerSecond(int maxRowsPerSecond) {
+            this.maxRowsPerSecond = maxRowsPerSecond;
+        }
+
+        public int getDrainMinutes() {
+            return drainMinutes;
+        }
+
+        public void setDrainMinutes(int drainMinutes) {
+            this.drainMinutes = drainMinutes;
+        }
+
+        public int getBacklogRefreshSeconds() {
+            return backlogRefreshSeconds;
+        }
+
+        public void setBacklogRefreshSeconds(int backlogRefreshSeconds) {
+            this.backlogRefreshSeconds = backlogRefreshSeconds;
+        }
+
+        public int getMaxReplicationLagSeconds() {
+            return maxReplicationLagSeconds;
+        }
+
+        public void setMaxReplicationLagSeconds(int maxReplicationLagSeconds) {
+            this.maxReplicationLagSeconds = maxReplicationLagSeconds;
+        }
+
+        public int getMaxActiveSessions() {
+            return maxActiveSessions;
+        }
+
+        public void setMaxActiveSessions(int maxActiveSessions) {
+            this.maxActiveSessions = maxActiveSessions;
+        }
+
+        public int getMaxLockWaits() {
+            return maxLockWaits;
+        }
+
+        public void setMaxLockWaits(int maxLockWaits) {
+            this.maxLockWaits = maxLockWaits;
+        }
+
+        /**
+         * Length of the period whose batches are logged as one task
+         */
+        public int getTaskPeriodMinutes() {
+            return taskPeriodMinutes;
+        }
+
+        public void setTaskPeriodMinutes(int taskPeriodMinutes) {
+            this.taskPeriodMinutes = taskPeriodMinutes;
+        }
+    }
+
+    public static class IncrementalConfig {
+        private boolean enabled = false;
+        private String field;
+        private String cutoff;
+        private int fullSweepIntervalHours = 168;
+
+        public IncrementalConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public void setField(String field) {
+            this.field = field;
+        }
+
+        public String getCutoff() {
+            return cutoff;
+        }
+
+        public void setCutoff(String cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        public int getFullSweepIntervalHours() {
+            return fullSweepIntervalHours;
+        }
+
+        public void setFullSweepIntervalHours(int fullSweepIntervalHours) {
+            this.fullSweepIntervalHours = fullSweepIntervalHours;
+        }
+    }
+
+    public static class IndexAdvisorConfig {
+        private boolean validateOnStartup = false;
+        private boolean createIndexes = false;
+        private long largeTableRows = 100000;
+
+        public IndexAdvisorConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isValidateOnStartup() {
+            return validateOnStartup;
+        }
+
+        public void setValidateOnStartup(boolean validateOnStartup) {
+            this.validateOnStartup = validateOnStartup;
+        }
+
+        public boolean isCreateIndexes() {
+            return createIndexes;
+        }
+
+        public void setCreateIndexes(boolean createIndexes) {
+            this.createIndexes = createIndexes;
+        }
+
+        public long getLargeTableRows() {
+            return largeTableRows;
+        }
+
+        public void setLargeTableRows(long largeTableRows) {
+            this.largeTableRows = largeTableRows;
+        }
+    }
+
+    public static class LockingConfig {
+        private boolean enabled = false;
+        private int chunkSize = 1000;
+        private long lockTimeoutMillis = 2000;
+        private long statementTimeoutMillis = 60000;
+        private boolean skipLocked = true;
+        private int maxRetries = 5;
+        private long backoffMillis = 200;
+        private long maxBackoffMillis = 10000;
+
+        public LockingConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getLockTimeoutMillis() {
+            return lockTimeoutMillis;
+        }
+
+        public void setLockTimeoutMillis(long lockTimeoutMillis) {
+            this.lockTimeoutMillis = lockTimeoutMillis;
+        }
+
+        public long getStatementTimeoutMillis() {
+            return statementTimeoutMillis;
+        }
+
+        public void setStatementTimeoutMillis(long statementTimeoutMillis) {
+            this.statementTimeoutMillis = statementTimeoutMillis;
+        }
+
+        public boolean isSkipLocked() {
+            return skipLocked;
+        }
+
+        public void setSkipLocked(boolean skipLocked) {
+            this.skipLocked = skipLocked;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public long getBackoffMillis() {
+            return backoffMillis;
+        }
+
+        public void setBackoffMillis(long backoffMillis) {
+            this.backoffMillis = backoffMillis;
+        }
+
+        public long getMaxBackoffMillis() {
+            return maxBackoffMillis;
+        }
+
+        public void setMaxBackoffMillis(long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+        }
+    }
+
+    public static class MaintenanceConfig {
+        private boolean enabled = false;
+        private long minDeadTuples = 10000;
+        private double vacuumDeadFraction = 0.1;
+        private double analyzeChangeFraction = 0.02;
+        private int maxConcurrent = 2;
+
+        public MaintenanceConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMinDeadTuples() {
+            return minDeadTuples;
+        }
+
+        public void setMinDeadTuples(long minDeadTuples) {
+            this.minDeadTuples = minDeadTuples;
+        }
+
+        public double getVacuumDeadFraction() {
+            return vacuumDeadFraction;
+        }
+
+        public void setVacuumDeadFraction(double vacuumDeadFraction) {
+            this.vacuumDeadFraction = vacuumDeadFraction;
+        }
+
+        public double getAnalyzeChangeFraction() {
+            return analyzeChangeFraction;
+        }
+
+        public void setAnalyzeChangeFraction(double analyzeChangeFraction) {
+            this.analyzeChangeFraction = analyzeChangeFraction;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+
+    public static class ReinstatementConfig {
+        private int chunkSize = 5000;
+        private boolean includeRelated = true;
+
+        public ReinstatementConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public boolean isIncludeRelated() {
+            return includeRelated;
+        }
+
+        public void setIncludeRelated(boolean includeRelated) {
+            this.includeRelated = includeRelated;
+        }
+    }
+
+    public static class SchemaCacheConfig {
+        private boolean detectChanges = true;
+        private long checkIntervalMillis = 60000;
+
+        public SchemaCacheConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isDetectChanges() {
+            return detectChanges;
+        }
+
+        public void setDetectChanges(boolean detectChanges) {
+            this.detectChanges = detectChanges;
+        }
+
+        public long getCheckIntervalMillis() {
+            return checkIntervalMillis;
+        }
+
+        public void setCheckIntervalMillis(long checkIntervalMillis) {
+            this.checkIntervalMillis = checkIntervalMillis;
+        }
+    }
+
+    public static class BackupRetentionConfig {
+        private boolean enabled = false;
+        private String cron = "0 30 1 * * *";
+        private int partitionsAhead = 3;
+        private int purgeChunkSize = 10000;
+
+        public BackupRetentionConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getPartitionsAhead() {
+            return partitionsAhead;
+        }
+
+        public void setPartitionsAhead(int partitionsAhead) {
+            this.partitionsAhead = partitionsAhead;
+        }
+
+        public int getPurgeChunkSize() {
+            return purgeChunkSize;
+        }
+
+        public void setPurgeChunkSize(int purgeChunkSize) {
+            this.purgeChunkSize = purgeChunkSize;
+        }
+    }
+
+    public static class CascadeConfig {
+        private int chunkSize = 1000;
+        private int maxDepth = 8;
+
+        public CascadeConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public void setMaxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+    }
+
+    public static class PipelineConfig {
+        private boolean enabled = false;
+        private int chunkSize = 1000;
+        private int queueCapacity = 4;
+        private int backupConcurrency = 2;
+        private int deleteConcurrency = 2;
+
+        public PipelineConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBackupConcurrency() {
+            return backupConcurrency;
+        }
+
+        public void setBackupConcurrency(int backupConcurrency) {
+            this.backupConcurrency = backupConcurrency;
+        }
+
+        public int getDeleteConcurrency() {
+            return deleteConcurrency;
+        }
+
+        public void setDeleteConcurrency(int deleteConcurrency) {
+            this.deleteConcurrency = deleteConcurrency;
+        }
+    }
+
+    public static class CostEstimateConfig {
+        private boolean enabled = true;
+        private int sampleRows = 100;
+        private int historyTasks = 20;
+        private double defaultRowsPerSecond = 2000;
+
+        public CostEstimateConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSampleRows() {
+            return sampleRows;
+        }
+
+        public void setSampleRows(int sampleRows) {
+            this.sampleRows = sampleRows;
+        }
+
+        public int getHistoryTasks() {
+            return historyTasks;
+        }
+
+        public void setHistoryTasks(int historyTasks) {
+            this.historyTasks = historyTasks;
+        }
+
+        public double getDefaultRowsPerSecond() {
+            return defaultRowsPerSecond;
+        }
+
+        public void setDefaultRowsPerSecond(double defaultRowsPerSecond) {
+            this.defaultRowsPerSecond = defaultRowsPerSecond;
+        }
+    }
+
+    public static class WalConfig {
+        private boolean measure = true;
+        private long maxBytesPerSecond = 0;
+        private long maxPauseMillis = 60000;
+
+        public WalConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isMeasure() {
+            return measure;
+        }
+
+        public void setMeasure(boolean measure) {
+            this.measure = measure;
+        }
+
+        public long getMaxBytesPerSecond() {
+            return maxBytesPerSecond;
+        }
+
+        public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+
+        public long getMaxPauseMillis() {
+            return maxPauseMillis;
+        }
+
+        public void setMaxPauseMillis(long maxPauseMillis) {
+            this.maxPauseMillis = maxPauseMillis;
+        }
+    }
+
+    public static class ResultConfig {
+        private int sampleSize = 100;
+        private boolean keepAllIds = false;
+        private String spillDirectory = System.getProperty("java.io.tmpdir");
+        private int spillRetentionHours = 24;
+        private long spillCleanupMillis = 3600000;
+
+        public ResultConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        public boolean isKeepAllIds() {
+            return keepAllIds;
+        }
+
+        public void setKeepAllIds(boolean keepAllIds) {
+            this.keepAllIds = keepAllIds;
+        }
+
+        public String getSpillDirectory() {
+            return spillDirectory;
+        }
+
+        public void setSpillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+        }
+
+        /**
+         * How long candidate id files are kept after they were last written
+         */
+        public int getSpillRetentionHours() {
+            return spillRetentionHours;
+        }
+
+        public void setSpillRetentionHours(int spillRetentionHours) {
+            this.spillRetentionHours = spillRetentionHours;
+        }
+
+        public long getSpillCleanupMillis() {
+            return spillCleanupMillis;
+        }
+
+        public void setSpillCleanupMillis(long spillCleanupMillis) {
+            this.spillCleanupMillis = spillCleanupMillis;
+        }
+    }
+
+    /**
+     * Start order of entities run in parallel, from the durations of their past runs
+     */
+    public static class RunPlanConfig {
+        private boolean enabled = true;
+        private int historyRuns = 5;
+        private long defaultEntityMillis = 60000;
+
+        public RunPlanConfig() {
+            super();
+        }
+
+        // Getters and setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getHistoryRuns() {
+            return historyRuns;
+        }
+
+        public void setHistoryRuns(int historyRuns) {
+            this.historyRuns = historyRuns;
+        }
+
+        public long getDefaultEntityMillis() {
+            return defaultEntityMillis;
+        }
+
+        public void setDefaultEntityMillis(long defaultEntityMillis) {
+            this.defaultEntityMillis = defaultEntityMillis;
+        }
     }
 }
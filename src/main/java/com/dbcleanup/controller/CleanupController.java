@@ -1,10 +1,24 @@
 package com.dbcleanup.controller;
 
+import com.dbcleanup.model.CascadeEdge;
 import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.ContentionStats;
+import com.dbcleanup.model.IndexAdvice;
+import com.dbcleanup.model.RunPlan;
+import com.dbcleanup.model.SchemaCacheStats;
+import com.dbcleanup.model.TableMetadata;
+import com.dbcleanup.model.TrickleStatus;
 import com.dbcleanup.service.CleanupService;
+import com.dbcleanup.service.ForeignKeyGraphService;
+import com.dbcleanup.service.IndexAdvisorService;
+import com.dbcleanup.service.LockAwareDeleteService;
+import com.dbcleanup.service.ReinstatementService;
+import com.dbcleanup.service.SchemaMetadataService;
+import com.dbcleanup.service.TrickleCleanupService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -15,6 +29,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/cleanup")
@@ -22,10 +37,29 @@ public class CleanupController {
     private static final Logger LOGGER = LoggerFactory.getLogger(CleanupController.class);
 
     private final CleanupService cleanupService;
+    private final TrickleCleanupService trickleCleanupService;
+    private final IndexAdvisorService indexAdvisorService;
+    private final LockAwareDeleteService lockAwareDeleteService;
+    private final ReinstatementService reinstatementService;
+    private final SchemaMetadataService schemaMetadataService;
+    private final ForeignKeyGraphService foreignKeyGraphService;
 
-    public CleanupController(CleanupService cleanupService) {
+    public CleanupController(
+            CleanupService cleanupService,
+            TrickleCleanupService trickleCleanupService,
+            IndexAdvisorService indexAdvisorService,
+            LockAwareDeleteService lockAwareDeleteService,
+            ReinstatementService reinstatementService,
+            SchemaMetadataService schemaMetadataService,
+            ForeignKeyGraphService foreignKeyGraphService) {
         super();
         this.cleanupService = cleanupService;
+        this.trickleCleanupService = trickleCleanupService;
+        this.indexAdvisorService = indexAdvisorService;
+        this.lockAwareDeleteService = lockAwareDeleteService;
+        this.reinstatementService = reinstatementService;
+        this.schemaMetadataService = schemaMetadataService;
+        this.foreignKeyGraphService = foreignKeyGraphService;
     }
 
     @GetMapping("/analyze")
@@ -48,6 +82,61 @@ public class CleanupController {
         return ResponseEntity.ok(cleanupService.executeCleanup("api", dryRun));
     }
 
+    @GetMapping("/run-plan")
+    public ResponseEntity<RunPlan> getRunPlan() {
+        return ResponseEntity.ok(cleanupService.getRunPlan());
+    }
+
+    @GetMapping("/trickle")
+    public ResponseEntity<TrickleStatus> getTrickleStatus() {
+        return ResponseEntity.ok(trickleCleanupService.getStatus());
+    }
+
+    @GetMapping("/contention")
+    public ResponseEntity<Map<String, ContentionStats>> getContentionStats() {
+        return ResponseEntity.ok(lockAwareDeleteService.getContentionStats());
+    }
+
+    @GetMapping("/indexes")
+    public ResponseEntity<List<IndexAdvice>> adviseIndexes() {
+        return ResponseEntity.ok(indexAdvisorService.advise(false));
+    }
+
+    @PostMapping("/indexes")
+    public ResponseEntity<List<IndexAdvice>> createRecommendedIndexes() {
+        LOGGER.info("Creating recommended indexes for cleanup queries");
+        return ResponseEntity.ok(indexAdvisorService.advise(true));
+    }
+
+    @GetMapping("/schema-cache")
+    public ResponseEntity<SchemaCacheStats> getSchemaCacheStats() {
+        return ResponseEntity.ok(schemaMetadataService.getStats());
+    }
+
+    @GetMapping("/schema-cache/{table}")
+    public ResponseEntity<TableMetadata> getTableMetadata(@PathVariable String table) {
+        return ResponseEntity.ok(schemaMetadataService.getTable(table));
+    }
+
+    @DeleteMapping("/schema-cache")
+    public ResponseEntity<SchemaCacheStats> invalidateSchemaCache(
+            @RequestParam(required = false) String table) {
+        LOGGER.info("Invalidating schema metadata cache{}", table != null ? " of " + table : "");
+        schemaMetadataService.invalidate(table);
+        return ResponseEntity.ok(schemaMetadataService.getStats());
+    }
+
+    @GetMapping("/cascade-plan")
+    public ResponseEntity<Map<String, List<CascadeEdge>>> getCascadePlans() {
+        return ResponseEntity.ok(foreignKeyGraphService.getPlans());
+    }
+
+    @PostMapping("/cascade-plan/refresh")
+    public ResponseEntity<Map<String, List<CascadeEdge>>> refreshCascadePlans() {
+        LOGGER.info("Refreshing the discovered cascade plans");
+        return ResponseEntity.ok(foreignKeyGraphService.refresh(true));
+    }
+
     @PostMapping("/reinstate/{entityName}")
     public ResponseEntity<Integer> reinstateBackups(
             Principal principal,
@@ -62,7 +151,24 @@ public class CleanupController {
 
         LOGGER.info("Reinstating {} backups for entity {}, initiator: {}",
                 backupIds.size(), entityName, initiator);
-        int count = cleanupService.reinstateBackups(entityName, backupIds, initiator);
+        int count = reinstatementService.reinstateBackups(entityName, backupIds, initiator);
+        return ResponseEntity.ok(count);
+    }
+
+    @PostMapping("/reinstate/{entityName}/task/{taskId}")
+    public ResponseEntity<Integer> reinstateTask(
+            Principal principal,
+            @PathVariable String entityName,
+            @PathVariable String taskId,
+            @RequestParam(required = false, defaultValue = "api") String initiator) {
+
+        // If we have authenticated user, use that as initiator
+        if (principal != null) {
+            initiator = principal.getName();
+        }
+
+        LOGGER.info("Reinstating backups of task {} for entity {}, initiator: {}", taskId, entityName, initiator);
+        int count = reinstatementService.reinstateTask(entityName, taskId, initiator);
         return ResponseEntity.ok(count);
     }
 }
@@ -1,11 +1,14 @@
 package com.dbcleanup.controller;
 
 import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.model.TaskHistoryQuery;
+import com.dbcleanup.model.TaskPage;
 import com.dbcleanup.service.CleanupService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -31,6 +34,17 @@ public class TaskLogController {
         return ResponseEntity.ok(cleanupService.getRecentTasks(limit));
     }
 
+    /**
+     * Page through the task history, newest first. Filters are the query parameters status,
+     * taskType, initiator, entity, startedFrom and startedBefore; pass the returned nextCursor as
+     * cursor to get the next page.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<TaskPage> findTasks(@ModelAttribute TaskHistoryQuery query) {
+        LOGGER.debug("Getting task history page of {} tasks", query.getLimit());
+        return ResponseEntity.ok(cleanupService.findTasks(query));
+    }
+
     @GetMapping("/{taskId}")
     public ResponseEntity<CleanupTask> getTask(@PathVariable String taskId) {
         LOGGER.info("Getting task with ID: {}", taskId);
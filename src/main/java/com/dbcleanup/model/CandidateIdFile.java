@@ -0,0 +1,310 @@
+package com.dbcleanup.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Candidate ids in a memory-mapped file instead of the heap. Each id takes one tag byte and
+ * its shortest form: a zigzag varint for decimal numbers, 16 bytes for UUIDs in canonical form
+ * and length-prefixed UTF-8 for anything else. The file is written through mapped regions of
+ * REGION_BYTES and truncated to its content when closed. Files outlive the task that wrote
+ * them and are removed by {@link #deleteExpired} once their retention has passed.
+ */
+public class CandidateIdFile {
+    private static final int REGION_BYTES = 8 << 20;
+    private static final byte NUMBER = 0;
+    private static final byte UUID_BYTES = 1;
+    private static final byte TEXT = 2;
+    private static final String PREFIX = "candidates-";
+    private static final String SUFFIX = ".ids";
+
+    // Files still written by this process, never expired
+    private static final Set<Path> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long size;
+    private long count;
+
+    private CandidateIdFile(Path path, FileChannel channel) {
+        super();
+        this.path = path;
+        this.channel = channel;
+        OPEN_FILES.add(path);
+    }
+
+    /**
+     * Create an empty file in a directory
+     */
+    public static CandidateIdFile create(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Path path = Files.createTempFile(directory, PREFIX, SUFFIX);
+            return new CandidateIdFile(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error creating a candidate id file in " + directory, e);
+        }
+    }
+
+    /**
+     * Delete the candidate id files in a directory last modified before a cutoff, except those
+     * this process is still writing
+     *
+     * @return the number of files deleted
+     */
+    public static int deleteExpired(Path directory, Instant cutoff) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX) || OPEN_FILES.contains(file)) {
+                    continue;
+                }
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error deleting expired candidate id files in " + directory, e);
+        }
+        return deleted;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized void append(String id) {
+        write(encode(id));
+    }
+
+    /**
+     * Append a key of a key list in its native form, without going through text
+     */
+    public synchronized void append(KeyList keys, int index) {
+        switch (keys.getKeyType()) {
+            case BIGINT:
+                write(encodeNumber(keys.getLong(index)));
+                break;
+            case UUID:
+                write(encodeUuid((UUID) keys.get(index)));
+                break;
+            default:
+                write(encode(keys.getText(index)));
+        }
+    }
+
+    private void write(byte[] entry) {
+        try {
+            if (region == null || region.remaining() < entry.length) {
+                region = openChannel().map(FileChannel.MapMode.READ_WRITE, size, Math.max(REGION_BYTES, entry.length));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error extending candidate id file " + path, e);
+        }
+        region.put(entry);
+        size += entry.length;
+        count++;
+    }
+
+    /**
+     * Pass every id to an action, in the order they were appended
+     */
+    public synchronized void forEach(Consumer<String> action) {
+        long position = 0;
+        // A closed file is read through a channel of its own, released again afterwards
+        try (FileChannel reader = channel == null ? FileChannel.open(path, StandardOpenOption.READ) : null) {
+            FileChannel source = reader != null ? reader : channel;
+            while (position < size) {
+                ByteBuffer window = source.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(REGION_BYTES, size - position));
+                int entryStart = 0;
+                try {
+                    while (window.hasRemaining()) {
+                        entryStart = window.position();
+                        action.accept(decode(window));
+                    }
+                    position += window.limit();
+                } catch (BufferUnderflowException e) {
+                    if (entryStart == 0) {
+                        throw new IllegalStateException("Truncated entry at " + position + " in " + path, e);
+                    }
+                    // The entry continues past the window; map the next window from its start
+                    position += entryStart;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading candidate id file " + path, e);
+        }
+    }
+
+    /**
+     * Truncate the file to its content and release its channel; further appends reopen it and
+     * start a new region
+     */
+    public synchronized void close() {
+        region = null;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(size);
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing candidate id file " + path, e);
+        } finally {
+            channel = null;
+            OPEN_FILES.remove(path);
+        }
+    }
+
+    public synchronized void delete() {
+        try {
+            region = null;
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error deleting candidate id file " + path, e);
+        } finally {
+            channel = null;
+            OPEN_FILES.remove(path);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            OPEN_FILES.add(path);
+        }
+        return channel;
+    }
+
+    static byte[] encode(String id) {
+        if (isNumber(id)) {
+            return encodeNumber(Long.parseLong(id));
+        }
+        if (isUuid(id)) {
+            return encodeUuid(UUID.fromString(id));
+        }
+
+        byte[] text = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 5 + text.length);
+        buffer.put(TEXT);
+        putVarint(buffer, text.length);
+        buffer.put(text);
+        return copy(buffer);
+    }
+
+    private static byte[] encodeNumber(long value) {
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+        buffer.put(NUMBER);
+        putVarint(buffer, (value << 1) ^ (value >> 63));
+        return copy(buffer);
+    }
+
+    private static byte[] encodeUuid(UUID uuid) {
+        return ByteBuffer.allocate(17).put(UUID_BYTES)
+                .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    static String decode(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        if (tag == NUMBER) {
+            long zigzag = getVarint(buffer);
+            return Long.toString((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+        if (tag == UUID_BYTES) {
+            return new UUID(buffer.getLong(), buffer.getLong()).toString();
+        }
+
+        byte[] text = new byte[(int) getVarint(buffer)];
+        buffer.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decimal numbers in the form Long.toString gives them, so that they read back unchanged
+     */
+    private static boolean isNumber(String id) {
+        int start = id.startsWith("-") ? 1 : 0;
+        if (id.length() <= start || id.length() > 20 || (id.charAt(start) == '0' && id.length() > start + 1)) {
+            return false;
+        }
+        for (int i = start; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return false;
+            }
+        }
+        try {
+            return Long.toString(Long.parseLong(id)).equals(id);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+}
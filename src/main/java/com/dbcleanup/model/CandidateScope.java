@@ -0,0 +1,78 @@
+package com.dbcleanup.model;
+
+/**
+ * Restriction of the candidate query to a part of the table, given as an SQL predicate on the
+ * main table alias "e". Used to split one entity into key ranges that can be processed
+ * independently.
+ */
+public class CandidateScope {
+    private static final CandidateScope ALL = new CandidateScope(null);
+
+    private final String condition;
+    private final KeyList keys;
+
+    public CandidateScope(String condition) {
+        this(condition, null);
+    }
+
+    private CandidateScope(String condition, KeyList keys) {
+        super();
+        this.condition = condition;
+        this.keys = keys;
+    }
+
+    public static CandidateScope all() {
+        return ALL;
+    }
+
+    /**
+     * Ids from lowerBound (inclusive) to upperBound (exclusive); a null bound is unbounded. The
+     * bounds are text literals cast to the key type, so ranges follow the key's own ordering.
+     */
+    public static CandidateScope keyRange(String lowerBound, String upperBound, String keyType) {
+        return valueRange("id", lowerBound, upperBound, keyType);
+    }
+
+    /**
+     * Rows whose column lies between lowerBound (inclusive) and upperBound (exclusive); a null
+     * bound is unbounded
+     */
+    public static CandidateScope valueRange(String column, String lowerBound, String upperBound, String type) {
+        String lower = lowerBound != null ? "e." + column + " >= " + literal(lowerBound, type) : null;
+        String upper = upperBound != null ? "e." + column + " < " + literal(upperBound, type) : null;
+
+        if (lower != null && upper != null) {
+            return new CandidateScope(lower + " AND " + upper);
+        }
+        if (lower != null) {
+            return new CandidateScope(lower);
+        }
+        return upper != null ? new CandidateScope(upper) : ALL;
+    }
+
+    /**
+     * Exactly the given keys, bound to the condition's parameter as one array of the key type
+     */
+    public static CandidateScope keyIn(KeyList keys) {
+        return new CandidateScope("e.id = ANY (" + keys.castArrayParameter("?") + ")", keys);
+    }
+
+    public String getCondition() {
+        return condition;
+    }
+
+    /**
+     * The keys bound to the condition's parameter, or null when the condition has none
+     */
+    public KeyList getKeys() {
+        return keys;
+    }
+
+    public boolean isAll() {
+        return condition == null || condition.isEmpty();
+    }
+
+    private static String literal(String value, String keyType) {
+        return "CAST('" + value.replace("'", "''") + "' AS " + keyType + ")";
+    }
+}
@@ -0,0 +1,158 @@
+package com.dbcleanup.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * The candidates of one entity as a count and a uniform reservoir sample of at most sampleSize
+ * ids for auditing. Every id is kept only when the set has a {@link CandidateIdFile}, which
+ * holds them off the heap.
+ */
+public class CandidateSet {
+    private final int sampleSize;
+    private final List<String> sample = new ArrayList<>();
+    private CandidateIdFile idFile;
+    private long count;
+
+    public CandidateSet(int sampleSize, CandidateIdFile idFile) {
+        super();
+        this.sampleSize = Math.max(0, sampleSize);
+        this.idFile = idFile;
+    }
+
+    public synchronized void add(String id) {
+        int slot = nextSlot();
+        if (slot >= 0) {
+            place(slot, id);
+        }
+        if (idFile != null) {
+            idFile.append(id);
+        }
+    }
+
+    public synchronized void addAll(Collection<String> ids) {
+        ids.forEach(this::add);
+    }
+
+    /**
+     * Add typed keys; only the sampled ones are converted to text
+     */
+    public synchronized void addAll(KeyList keys) {
+        for (int i = 0; i < keys.size(); i++) {
+            int slot = nextSlot();
+            if (slot >= 0) {
+                place(slot, keys.getText(i));
+            }
+            if (idFile != null) {
+                idFile.append(keys, i);
+            }
+        }
+    }
+
+    /**
+     * Count one more id and pick its place in the sample
+     *
+     * @return the index of the sample the id goes to, or -1 if it is not sampled
+     */
+    private int nextSlot() {
+        count++;
+        if (sample.size() < sampleSize) {
+            return sample.size();
+        }
+        if (sampleSize == 0) {
+            return -1;
+        }
+        // Algorithm R: the n-th id replaces a sampled one with probability sampleSize / n
+        long slot = ThreadLocalRandom.current().nextLong(count);
+        return slot < sampleSize ? (int) slot : -1;
+    }
+
+    private void place(int slot, String id) {
+        if (slot == sample.size()) {
+            sample.add(id);
+        } else {
+            sample.set(slot, id);
+        }
+    }
+
+    /**
+     * Add the candidates of another set. The sample stays uniform over both sets: each sampled
+     * id is drawn from one set or the other in proportion to the candidates not yet drawn. The
+     * other set's id file is taken over if this set has none, otherwise copied and deleted.
+     */
+    public synchronized void merge(CandidateSet other) {
+        List<String> otherSample;
+        long otherCount;
+        CandidateIdFile otherFile;
+        synchronized (other) {
+            otherSample = new ArrayList<>(other.sample);
+            otherCount = other.count;
+            otherFile = other.idFile;
+            other.idFile = null;
+        }
+
+        List<String> ownSample = new ArrayList<>(sample);
+        long ownRemaining = count;
+        long otherRemaining = otherCount;
+        sample.clear();
+        while (sample.size() < sampleSize && (!ownSample.isEmpty() || !otherSample.isEmpty())) {
+            boolean fromOwn = otherSample.isEmpty() || (!ownSample.isEmpty() &&
+                    ThreadLocalRandom.current().nextLong(ownRemaining + otherRemaining) < ownRemaining);
+            List<String> source = fromOwn ? ownSample : otherSample;
+            sample.add(source.remove(ThreadLocalRandom.current().nextInt(source.size())));
+            if (fromOwn) {
+                ownRemaining--;
+            } else {
+                otherRemaining--;
+            }
+        }
+        count += otherCount;
+
+        if (otherFile == null) {
+            return;
+        }
+        if (idFile == null) {
+            idFile = otherFile;
+        } else {
+            otherFile.forEach(idFile::append);
+            otherFile.delete();
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized List<String> getSample() {
+        return new ArrayList<>(sample);
+    }
+
+    public synchronized CandidateIdFile getIdFile() {
+        return idFile;
+    }
+
+    /**
+     * Whether every id is available, from the id file or because the sample holds them all
+     */
+    public synchronized boolean isComplete() {
+        return idFile != null || count <= sample.size();
+    }
+
+    /**
+     * Pass every id to an action
+     *
+     * @throws IllegalStateException if only a sample of the ids was kept
+     */
+    public synchronized void forEachId(Consumer<String> action) {
+        if (idFile != null) {
+            idFile.forEach(action);
+        } else if (count <= sample.size()) {
+            sample.forEach(action);
+        } else {
+            throw new IllegalStateException("Only " + sample.size() + " of " + count + " candidate ids were kept");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.dbcleanup.model;
+
+/**
+ * A foreign key from a child table to its parent in the discovered cascade plan of an entity,
+ * with the way its rows are deleted and the estimated cost of both ways
+ */
+public class CascadeEdge {
+    private String entityName;
+    private String parentTable;
+    private String table;
+    private String foreignKey;
+    private String referencedColumn;
+    private int depth;
+    private String deleteAction;
+    private boolean indexed;
+    private Strategy strategy;
+    private double databaseCost;
+    private double explicitCost;
+
+    public enum Strategy {
+        DATABASE("DATABASE"),
+        EXPLICIT("EXPLICIT");
+
+        private final String value;
+
+        Strategy(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public CascadeEdge() {
+        super();
+    }
+
+    // Getters and setters
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public String getParentTable() {
+        return parentTable;
+    }
+
+    public void setParentTable(String parentTable) {
+        this.parentTable = parentTable;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getForeignKey() {
+        return foreignKey;
+    }
+
+    public void setForeignKey(String foreignKey) {
+        this.foreignKey = foreignKey;
+    }
+
+    public String getReferencedColumn() {
+        return referencedColumn;
+    }
+
+    public void setReferencedColumn(String referencedColumn) {
+        this.referencedColumn = referencedColumn;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public String getDeleteAction() {
+        return deleteAction;
+    }
+
+    public void setDeleteAction(String deleteAction) {
+        this.deleteAction = deleteAction;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public double getDatabaseCost() {
+        return databaseCost;
+    }
+
+    public void setDatabaseCost(double databaseCost) {
+        this.databaseCost = databaseCost;
+    }
+
+    public double getExplicitCost() {
+        return explicitCost;
+    }
+
+    public void setExplicitCost(double explicitCost) {
+        this.explicitCost = explicitCost;
+    }
+}
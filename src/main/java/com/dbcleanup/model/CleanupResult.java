@@ -1,22 +1,43 @@
 package com.dbcleanup.model;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+/**
+ * Outcome of a task as counts per entity. Candidate ids are reported as a sample; every id is
+ * kept, in files off the heap, only when the result has a spill directory.
+ */
 public class CleanupResult {
     private String taskId;
     private LocalDateTime startTime = LocalDateTime.now();
     private LocalDateTime endTime;
-    private final Map<String, List<String>> candidateIds = new HashMap<>();
+    private final int sampleSize;
+    private final Path spillDirectory;
+    private final Map<String, CandidateSet> candidates = new HashMap<>();
+    private final Map<String, Integer> candidateCounts = new HashMap<>();
     private final Map<String, Integer> deletedCounts = new HashMap<>();
     private final Map<String, Integer> backedUpCounts = new HashMap<>();
+    private final Map<String, Long> walBytes = new HashMap<>();
     private final Map<String, String> errors = new HashMap<>();
+    private final List<MaintenanceAction> maintenance = new ArrayList<>();
+    private final Map<String, CostEstimate> costEstimates = new HashMap<>();
 
     public CleanupResult() {
+        this(PartialCleanupResult.DEFAULT_SAMPLE_SIZE, null);
+    }
+
+    /**
+     * @param spillDirectory directory for files keeping every candidate id, or null to keep a sample only
+     */
+    public CleanupResult(int sampleSize, Path spillDirectory) {
         super();
+        this.sampleSize = sampleSize;
+        this.spillDirectory = spillDirectory;
     }
 
     public String getTaskId() {
@@ -43,16 +64,60 @@ public class CleanupResult {
         this.endTime = endTime;
     }
 
-    public void addCandidates(String entityName, List<String> entityCandidateIds) {
-        candidateIds.put(entityName, new ArrayList<>(entityCandidateIds));
+    public void addCandidates(String entityName, KeyList entityCandidateKeys) {
+        CandidateSet set = getCandidateSet(entityName);
+        set.addAll(entityCandidateKeys);
+        candidateCounts.put(entityName, (int) set.getCount());
     }
 
+    /**
+     * Record only the number of candidates, when the ids were collected on other nodes
+     */
+    public void setCandidateCount(String entityName, int count) {
+        candidateCounts.put(entityName, count);
+    }
+
+    public int getCandidateCount(String entityName) {
+        return candidateCounts.getOrDefault(entityName, 0);
+    }
+
+    /**
+     * The sampled candidate ids, all of them when there are no more than the sample size
+     */
     public List<String> getCandidateIds(String entityName) {
-        return candidateIds.getOrDefault(entityName, new ArrayList<>());
+        CandidateSet set = candidates.get(entityName);
+        return set != null ? set.getSample() : new ArrayList<>();
+    }
+
+    public Map<String, List<String>> getCandidateSamples() {
+        Map<String, List<String>> samples = new HashMap<>();
+        candidates.forEach((entityName, set) -> samples.put(entityName, set.getSample()));
+        return samples;
     }
 
-    public Map<String, List<String>> getAllCandidateIds() {
-        return candidateIds;
+    /**
+     * Files holding every candidate id, by entity
+     */
+    public Map<String, String> getCandidateIdFiles() {
+        Map<String, String> files = new HashMap<>();
+        candidates.forEach((entityName, set) -> {
+            if (set.getIdFile() != null) {
+                files.put(entityName, set.getIdFile().getPath().toString());
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Pass every candidate id of an entity to an action
+     *
+     * @throws IllegalStateException if only a sample of the ids was kept
+     */
+    public void forEachCandidateId(String entityName, Consumer<String> action) {
+        CandidateSet set = candidates.get(entityName);
+        if (set != null) {
+            set.forEachId(action);
+        }
     }
 
     public void setDeletedCount(String entityName, int count) {
@@ -71,6 +136,21 @@ public class CleanupResult {
         return backedUpCounts.getOrDefault(entityName, 0);
     }
 
+    /**
+     * WAL measured for the chunks of an entity; paths without chunks are not measured
+     */
+    public void setWalBytes(String entityName, long bytes) {
+        walBytes.put(entityName, bytes);
+    }
+
+    public long getWalBytes(String entityName) {
+        return walBytes.getOrDefault(entityName, 0L);
+    }
+
+    public Map<String, Long> getWalBytesByEntity() {
+        return walBytes;
+    }
+
     public void setError(String entityName, String error) {
         errors.put(entityName, error);
     }
@@ -95,20 +175,70 @@ public class CleanupResult {
         return backedUpCounts.values().stream().mapToInt(Integer::intValue).sum();
     }
 
+    public long getTotalWalBytes() {
+        return walBytes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
     public int getTotalCandidateCount() {
-        return candidateIds.values().stream().mapToInt(List::size).sum();
+        return candidateCounts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Maintenance run on the cleaned tables, with durations
+     */
+    public List<MaintenanceAction> getMaintenance() {
+        return maintenance;
+    }
+
+    public void addMaintenance(List<MaintenanceAction> actions) {
+        maintenance.addAll(actions);
+    }
+
+    /**
+     * Predicted cost of cleaning up each entity, filled in by analysis
+     */
+    public Map<String, CostEstimate> getCostEstimates() {
+        return costEstimates;
+    }
+
+    public void addCostEstimate(CostEstimate estimate) {
+        costEstimates.put(estimate.getEntityName(), estimate);
+    }
+
+    private CandidateSet getCandidateSet(String entityName) {
+        return candidates.computeIfAbsent(entityName, name -> new CandidateSet(sampleSize,
+                spillDirectory != null ? CandidateIdFile.create(spillDirectory) : null));
     }
 
     public void complete() {
         this.endTime = LocalDateTime.now();
+        // Cut the id files to their content, so that other processes can read them
+        candidates.values().stream()
+                .map(CandidateSet::getIdFile)
+                .filter(idFile -> idFile != null)
+                .forEach(CandidateIdFile::close);
+    }
+
+    /**
+     * Delete the id files of a result that is not handed out, e.g. after a failure
+     */
+    public void discard() {
+        candidates.values().stream()
+                .map(CandidateSet::getIdFile)
+                .filter(idFile -> idFile != null)
+                .forEach(CandidateIdFile::delete);
     }
 
     public void merge(PartialCleanupResult partialResult) {
         // Merge partial result into this result
         for (String entity : partialResult.getCandidateEntities()) {
-            List<String> existingCandidates = candidateIds.getOrDefault(entity, new ArrayList<>());
-            existingCandidates.addAll(partialResult.getCandidateIds(entity));
-            candidateIds.put(entity, existingCandidates);
+            // The first partial result's candidates are taken over as they are, without copying
+            CandidateSet partialCandidates = partialResult.getCandidateSet(entity);
+            CandidateSet existing = candidates.putIfAbsent(entity, partialCandidates);
+            if (existing != null) {
+                existing.merge(partialCandidates);
+            }
+            candidateCounts.put(entity, (int) candidates.get(entity).getCount());
         }
 
         for (String entity : partialResult.getDeletedEntities()) {
@@ -121,6 +251,10 @@ public class CleanupResult {
             backedUpCounts.put(entity, existingCount + partialResult.getBackedUpCount(entity));
         }
 
+        for (String entity : partialResult.getWalEntities()) {
+            walBytes.merge(entity, partialResult.getWalBytes(entity), Long::sum);
+        }
+
         for (String entity : partialResult.getErrorEntities()) {
             errors.put(entity, partialResult.getError(entity));
         }
@@ -20,10 +20,12 @@ public class CleanupTask {
     private boolean dryRun;
     private Integer candidatesCount;
     private Integer deletedCount;
+    private Long walBytes;
     private String errorMessage;
 
     public enum Status {
         PENDING("PENDING"),
+        STARTED("STARTED"),
         IN_PROGRESS("IN_PROGRESS"),
         COMPLETED("COMPLETED"),
         FAILED("FAILED");
@@ -31,7 +33,6 @@ public class CleanupTask {
         private final String value;
 
         Status(String value) {
-            super(value, ordinal());
             this.value = value;
         }
 
@@ -134,6 +135,17 @@ public class CleanupTask {
         this.deletedCount = deletedCount;
     }
 
+    /**
+     * WAL written by the database while the task ran, including other sessions' WAL
+     */
+    public Long getWalBytes() {
+        return walBytes;
+    }
+
+    public void setWalBytes(Long walBytes) {
+        this.walBytes = walBytes;
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -0,0 +1,55 @@
+package com.dbcleanup.model;
+
+/**
+ * A column of a table as read from pg_catalog
+ */
+public class ColumnMetadata {
+    private String name;
+    private String type;
+    private boolean nullable;
+    private boolean generated;
+
+    public ColumnMetadata() {
+        super();
+    }
+
+    /**
+     * The name quoted for use as an identifier in generated SQL
+     */
+    public String getQuotedName() {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    // Getters and setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public void setNullable(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    public void setGenerated(boolean generated) {
+        this.generated = generated;
+    }
+}
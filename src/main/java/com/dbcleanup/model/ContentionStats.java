@@ -0,0 +1,86 @@
+package com.dbcleanup.model;
+
+/**
+ * Lock contention met by the chunk deletes of one entity since startup
+ */
+public class ContentionStats {
+    private long chunks;
+    private long lockTimeouts;
+    private long statementTimeouts;
+    private long deadlocks;
+    private long retries;
+    private long revisitedRows;
+    private long abandonedChunks;
+
+    public ContentionStats() {
+        super();
+    }
+
+    public ContentionStats(ContentionStats other) {
+        super();
+        this.chunks = other.chunks;
+        this.lockTimeouts = other.lockTimeouts;
+        this.statementTimeouts = other.statementTimeouts;
+        this.deadlocks = other.deadlocks;
+        this.retries = other.retries;
+        this.revisitedRows = other.revisitedRows;
+        this.abandonedChunks = other.abandonedChunks;
+    }
+
+    public void addChunk() {
+        chunks++;
+    }
+
+    public void addLockTimeout() {
+        lockTimeouts++;
+    }
+
+    public void addStatementTimeout() {
+        statementTimeouts++;
+    }
+
+    public void addDeadlock() {
+        deadlocks++;
+    }
+
+    public void addRetry() {
+        retries++;
+    }
+
+    public void addRevisitedRows(int rows) {
+        revisitedRows += rows;
+    }
+
+    public void addAbandonedChunk() {
+        abandonedChunks++;
+    }
+
+    // Getters
+    public long getChunks() {
+        return chunks;
+    }
+
+    public long getLockTimeouts() {
+        return lockTimeouts;
+    }
+
+    public long getStatementTimeouts() {
+        return statementTimeouts;
+    }
+
+    public long getDeadlocks() {
+        return deadlocks;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getRevisitedRows() {
+        return revisitedRows;
+    }
+
+    public long getAbandonedChunks() {
+        return abandonedChunks;
+    }
+}
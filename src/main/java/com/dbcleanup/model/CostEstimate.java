@@ -0,0 +1,131 @@
+package com.dbcleanup.model;
+
+/**
+ * Predicted cost of cleaning up the candidates of an entity, including its cascading related
+ * records. Sizes are in bytes; pages and bytes touched assume no page is read twice, WAL
+ * assumes a full-page image for every page modified first after a checkpoint.
+ */
+public class CostEstimate {
+    private String entityName;
+    private long candidateCount;
+    private long relatedCount;
+    private double planCost;
+    private boolean sequentialScan;
+    private long pagesRead;
+    private long heapBytes;
+    private long indexBytes;
+    private long walBytes;
+    private long backupBytes;
+    private double rowsPerSecond;
+    private String throughputSource;
+    private double estimatedSeconds;
+
+    public CostEstimate() {
+        super();
+    }
+
+    // Getters and setters
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public long getCandidateCount() {
+        return candidateCount;
+    }
+
+    public void setCandidateCount(long candidateCount) {
+        this.candidateCount = candidateCount;
+    }
+
+    public long getRelatedCount() {
+        return relatedCount;
+    }
+
+    public void setRelatedCount(long relatedCount) {
+        this.relatedCount = relatedCount;
+    }
+
+    public double getPlanCost() {
+        return planCost;
+    }
+
+    public void setPlanCost(double planCost) {
+        this.planCost = planCost;
+    }
+
+    public boolean isSequentialScan() {
+        return sequentialScan;
+    }
+
+    public void setSequentialScan(boolean sequentialScan) {
+        this.sequentialScan = sequentialScan;
+    }
+
+    public long getPagesRead() {
+        return pagesRead;
+    }
+
+    public void setPagesRead(long pagesRead) {
+        this.pagesRead = pagesRead;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public void setHeapBytes(long heapBytes) {
+        this.heapBytes = heapBytes;
+    }
+
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    public void setIndexBytes(long indexBytes) {
+        this.indexBytes = indexBytes;
+    }
+
+    public long getWalBytes() {
+        return walBytes;
+    }
+
+    public void setWalBytes(long walBytes) {
+        this.walBytes = walBytes;
+    }
+
+    public long getBackupBytes() {
+        return backupBytes;
+    }
+
+    public void setBackupBytes(long backupBytes) {
+        this.backupBytes = backupBytes;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public String getThroughputSource() {
+        return throughputSource;
+    }
+
+    public void setThroughputSource(String throughputSource) {
+        this.throughputSource = throughputSource;
+    }
+
+    public double getEstimatedSeconds() {
+        return estimatedSeconds;
+    }
+
+    public void setEstimatedSeconds(double estimatedSeconds) {
+        this.estimatedSeconds = estimatedSeconds;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dbcleanup.model;
+
+/**
+ * Averages over the last completed runs of an entity, from the entity run log
+ */
+public class EntityRunStats {
+    private String entityName;
+    private int runs;
+    private long averageMillis;
+    private long averageCandidates;
+    private long averageDeleted;
+
+    public EntityRunStats() {
+        super();
+    }
+
+    public EntityRunStats(String entityName, int runs, long averageMillis, long averageCandidates,
+                          long averageDeleted) {
+        super();
+        this.entityName = entityName;
+        this.runs = runs;
+        this.averageMillis = averageMillis;
+        this.averageCandidates = averageCandidates;
+        this.averageDeleted = averageDeleted;
+    }
+
+    // Getters and setters
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public void setRuns(int runs) {
+        this.runs = runs;
+    }
+
+    public long getAverageMillis() {
+        return averageMillis;
+    }
+
+    public void setAverageMillis(long averageMillis) {
+        this.averageMillis = averageMillis;
+    }
+
+    public long getAverageCandidates() {
+        return averageCandidates;
+    }
+
+    public void setAverageCandidates(long averageCandidates) {
+        this.averageCandidates = averageCandidates;
+    }
+
+    public long getAverageDeleted() {
+        return averageDeleted;
+    }
+
+    public void setAverageDeleted(long averageDeleted) {
+        this.averageDeleted = averageDeleted;
+    }
+}
@@ -0,0 +1,84 @@
+package com.dbcleanup.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A foreign key constraint from the columns of one table to the columns of another
+ */
+public class ForeignKeyMetadata {
+    private String name;
+    private String table;
+    private List<String> columns = new ArrayList<>();
+    private String referencedTable;
+    private List<String> referencedColumns = new ArrayList<>();
+    private String deleteAction;
+    private boolean indexed;
+
+    public ForeignKeyMetadata() {
+        super();
+    }
+
+    // Getters and setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public String getReferencedTable() {
+        return referencedTable;
+    }
+
+    public void setReferencedTable(String referencedTable) {
+        this.referencedTable = referencedTable;
+    }
+
+    public List<String> getReferencedColumns() {
+        return referencedColumns;
+    }
+
+    public void setReferencedColumns(List<String> referencedColumns) {
+        this.referencedColumns = referencedColumns;
+    }
+
+    /**
+     * ON DELETE action: NO ACTION, RESTRICT, CASCADE, SET NULL or SET DEFAULT
+     */
+    public String getDeleteAction() {
+        return deleteAction;
+    }
+
+    public void setDeleteAction(String deleteAction) {
+        this.deleteAction = deleteAction;
+    }
+
+    /**
+     * Whether an index on the referencing table leads with the foreign key columns
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+}
@@ -0,0 +1,46 @@
+package com.dbcleanup.model;
+
+/**
+ * The part of an entity's table scanned by one run: rows whose cutoff field lies between the
+ * stored watermark and the current cutoff, or the whole table on a full sweep
+ */
+public class IncrementalWindow {
+    private final String entityName;
+    private final CandidateScope scope;
+    private final String cutoff;
+    private final boolean fullSweep;
+
+    public IncrementalWindow(String entityName, CandidateScope scope, String cutoff, boolean fullSweep) {
+        super();
+        this.entityName = entityName;
+        this.scope = scope;
+        this.cutoff = cutoff;
+        this.fullSweep = fullSweep;
+    }
+
+    /**
+     * Window of an entity without incremental discovery
+     */
+    public static IncrementalWindow whole(String entityName) {
+        return new IncrementalWindow(entityName, CandidateScope.all(), null, false);
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public CandidateScope getScope() {
+        return scope;
+    }
+
+    /**
+     * The cutoff this run scans up to, stored as the new watermark once the run succeeded
+     */
+    public String getCutoff() {
+        return cutoff;
+    }
+
+    public boolean isFullSweep() {
+        return fullSweep;
+    }
+}
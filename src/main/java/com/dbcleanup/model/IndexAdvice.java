@@ -0,0 +1,103 @@
+package com.dbcleanup.model;
+
+/**
+ * Plan check of one cleanup query: how the table is scanned and, where a large table is read
+ * sequentially, the index that would let the query use an index scan instead
+ */
+public class IndexAdvice {
+    private String entityName;
+    private String table;
+    private String purpose;
+    private String scanType;
+    private long tableRows;
+    private long estimatedRows;
+    private boolean sequentialScan;
+    private String recommendedIndex;
+    private boolean indexCreated;
+    private String message;
+
+    public IndexAdvice() {
+        super();
+    }
+
+    // Getters and setters
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getPurpose() {
+        return purpose;
+    }
+
+    public void setPurpose(String purpose) {
+        this.purpose = purpose;
+    }
+
+    public String getScanType() {
+        return scanType;
+    }
+
+    public void setScanType(String scanType) {
+        this.scanType = scanType;
+    }
+
+    public long getTableRows() {
+        return tableRows;
+    }
+
+    public void setTableRows(long tableRows) {
+        this.tableRows = tableRows;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public boolean isSequentialScan() {
+        return sequentialScan;
+    }
+
+    public void setSequentialScan(boolean sequentialScan) {
+        this.sequentialScan = sequentialScan;
+    }
+
+    public String getRecommendedIndex() {
+        return recommendedIndex;
+    }
+
+    public void setRecommendedIndex(String recommendedIndex) {
+        this.recommendedIndex = recommendedIndex;
+    }
+
+    public boolean isIndexCreated() {
+        return indexCreated;
+    }
+
+    public void setIndexCreated(boolean indexCreated) {
+        this.indexCreated = indexCreated;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
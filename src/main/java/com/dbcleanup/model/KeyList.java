@@ -0,0 +1,265 @@
+package com.dbcleanup.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Keys of one table in their native type. Integer keys are packed into a long[], UUIDs into
+ * two longs each, and only keys of other types are kept as strings. Statements take a key list
+ * as one array of the key's SQL type, so keys are neither converted to text nor compared
+ * through implicit casts.
+ */
+public class KeyList {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * How keys are stored and bound, with the element type of the JDBC array they are bound as
+     */
+    public enum KeyType {
+        BIGINT("int8"),
+        UUID("uuid"),
+        TEXT("text");
+
+        private final String value;
+
+        KeyType(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * The key type of a column type, as named by format_type
+         */
+        public static KeyType of(String columnType) {
+            switch (columnType.toLowerCase(Locale.ROOT)) {
+                case "int2":
+                case "int4":
+                case "int8":
+                case "smallint":
+                case "integer":
+                case "bigint":
+                case "smallserial":
+                case "serial":
+                case "bigserial":
+                    return BIGINT;
+                case "uuid":
+                    return UUID;
+                default:
+                    return TEXT;
+            }
+        }
+    }
+
+    private final KeyType keyType;
+    private final String columnType;
+    private long[] longs;
+    private String[] texts;
+    private int size;
+
+    /**
+     * @param columnType the SQL type of the key column, which the keys are cast to in statements
+     */
+    public KeyList(KeyType keyType, String columnType) {
+        super();
+        this.keyType = keyType;
+        this.columnType = columnType;
+        if (keyType == KeyType.TEXT) {
+            this.texts = new String[INITIAL_CAPACITY];
+        } else {
+            this.longs = new long[keyType == KeyType.UUID ? 2 * INITIAL_CAPACITY : INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * An empty key list of a column type as given by format_type. The serial pseudo-types,
+     * which are not types of their own, stand for the integer type underneath.
+     */
+    public static KeyList of(String columnType) {
+        String type = columnType;
+        switch (columnType.toLowerCase(Locale.ROOT)) {
+            case "smallserial":
+                type = "smallint";
+                break;
+            case "serial":
+                type = "integer";
+                break;
+            case "bigserial":
+                type = "bigint";
+                break;
+            default:
+                break;
+        }
+        return new KeyList(KeyType.of(type), type);
+    }
+
+    /**
+     * The first column of every row, as keys of the column's type in the catalog. The type
+     * names of the JDBC metadata are not used, as they name serial columns "serial".
+     */
+    public static KeyList read(ResultSet rs, String columnType) throws SQLException {
+        KeyList keys = of(columnType);
+        while (rs.next()) {
+            keys.addRow(rs, 1);
+        }
+        return keys;
+    }
+
+    /**
+     * Add the key in a column of the current row without converting it to text
+     */
+    public void addRow(ResultSet rs, int column) throws SQLException {
+        switch (keyType) {
+            case BIGINT:
+                addLong(rs.getLong(column));
+                break;
+            case UUID:
+                addUuid(rs.getObject(column, UUID.class));
+                break;
+            default:
+                addText(rs.getString(column));
+        }
+    }
+
+    /**
+     * Add a key given as its Java value or as text
+     */
+    public void add(Object key) {
+        switch (keyType) {
+            case BIGINT:
+                addLong(key instanceof Number ? ((Number) key).longValue() : Long.parseLong(key.toString()));
+                break;
+            case UUID:
+                addUuid(key instanceof UUID ? (UUID) key : UUID.fromString(key.toString()));
+                break;
+            default:
+                addText(key.toString());
+        }
+    }
+
+    public void addAll(KeyList keys) {
+        for (int i = 0; i < keys.size(); i++) {
+            add(keys.get(i));
+        }
+    }
+
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+    public String getColumnType() {
+        return columnType;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The key at an index as Long, UUID or String
+     */
+    public Object get(int index) {
+        checkIndex(index);
+        switch (keyType) {
+            case BIGINT:
+                return longs[index];
+            case UUID:
+                return new UUID(longs[2 * index], longs[2 * index + 1]);
+            default:
+                return texts[index];
+        }
+    }
+
+    public String getText(int index) {
+        return get(index).toString();
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        if (keyType != KeyType.BIGINT) {
+            throw new IllegalStateException("Keys of type " + columnType + " are not integers");
+        }
+        return longs[index];
+    }
+
+    public Object last() {
+        return get(size - 1);
+    }
+
+    /**
+     * A copy of the keys from fromIndex (inclusive) to toIndex (exclusive)
+     */
+    public KeyList subList(int fromIndex, int toIndex) {
+        KeyList copy = new KeyList(keyType, columnType);
+        copy.size = toIndex - fromIndex;
+        if (texts != null) {
+            copy.texts = Arrays.copyOfRange(texts, fromIndex, toIndex);
+        } else {
+            int width = keyType == KeyType.UUID ? 2 : 1;
+            copy.longs = Arrays.copyOfRange(longs, width * fromIndex, width * toIndex);
+        }
+        return copy;
+    }
+
+    /**
+     * The keys as Long[], UUID[] or String[], to create a JDBC array of {@link KeyType#getValue()}
+     */
+    public Object[] toArray() {
+        Object[] array = keyType == KeyType.BIGINT ? new Long[size] :
+                keyType == KeyType.UUID ? new UUID[size] : new String[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = get(i);
+        }
+        return array;
+    }
+
+    /**
+     * A bound array parameter cast to the column type, e.g. CAST(? AS bigint[]), for keys
+     * bound as {@link #toArray()}
+     */
+    public String castArrayParameter(String placeholder) {
+        return "CAST(" + placeholder + " AS " + columnType + "[])";
+    }
+
+    private void addLong(long key) {
+        ensureCapacity(size + 1);
+        longs[size++] = key;
+    }
+
+    private void addUuid(UUID key) {
+        ensureCapacity(size + 1);
+        longs[2 * size] = key.getMostSignificantBits();
+        longs[2 * size + 1] = key.getLeastSignificantBits();
+        size++;
+    }
+
+    private void addText(String key) {
+        ensureCapacity(size + 1);
+        texts[size++] = key;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (texts != null && capacity > texts.length) {
+            texts = Arrays.copyOf(texts, Math.max(capacity, 2 * texts.length));
+        }
+        int slots = keyType == KeyType.UUID ? 2 * capacity : capacity;
+        if (longs != null && slots > longs.length) {
+            longs = Arrays.copyOf(longs, Math.max(slots, 2 * longs.length));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " keys");
+        }
+    }
+}
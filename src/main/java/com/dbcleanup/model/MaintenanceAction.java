@@ -0,0 +1,100 @@
+package com.dbcleanup.model;
+
+/**
+ * Maintenance step run on one table after a cleanup, with the statistics it was chosen on
+ */
+public class MaintenanceAction {
+    private String entityName;
+    private String table;
+    private Type type;
+    private long liveTuples;
+    private long deadTuples;
+    private long deletedRows;
+    private long durationMillis;
+    private String error;
+
+    public enum Type {
+        NONE("NONE"),
+        ANALYZE("ANALYZE"),
+        VACUUM_ANALYZE("VACUUM_ANALYZE");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public MaintenanceAction() {
+        super();
+    }
+
+    // Getters and setters
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public long getLiveTuples() {
+        return liveTuples;
+    }
+
+    public void setLiveTuples(long liveTuples) {
+        this.liveTuples = liveTuples;
+    }
+
+    public long getDeadTuples() {
+        return deadTuples;
+    }
+
+    public void setDeadTuples(long deadTuples) {
+        this.deadTuples = deadTuples;
+    }
+
+    public long getDeletedRows() {
+        return deletedRows;
+    }
+
+    public void setDeletedRows(long deletedRows) {
+        this.deletedRows = deletedRows;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -1,27 +1,47 @@
 package com.dbcleanup.model;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
-import java.util.ArrayList;
 
+/**
+ * Counts of one execution of an entity. Candidates are kept as a count and a sample of their
+ * ids; every id is kept, in a file off the heap, only when a spill directory is given.
+ */
 public class PartialCleanupResult {
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+
+    private final int sampleSize;
+    private final Path spillDirectory;
+
     public PartialCleanupResult() {
+        this(DEFAULT_SAMPLE_SIZE, null);
+    }
+
+    /**
+     * @param spillDirectory directory for files keeping every candidate id, or null to keep a sample only
+     */
+    public PartialCleanupResult(int sampleSize, Path spillDirectory) {
         super();
+        this.sampleSize = sampleSize;
+        this.spillDirectory = spillDirectory;
     }
-    
-    private final Map<String, List<String>> candidateIds = new HashMap<>();
+
+    private final Map<String, CandidateSet> candidates = new HashMap<>();
     private final Map<String, Integer> deletedCounts = new HashMap<>();
     private final Map<String, Integer> backedUpCounts = new HashMap<>();
+    private final Map<String, Long> walBytes = new HashMap<>();
     private final Map<String, String> errors = new HashMap<>();
 
-    public void addCandidates(String entityName, List<String> entityCandidateIds) {
-        candidateIds.put(entityName, new ArrayList<>(entityCandidateIds));
+    public void addCandidates(String entityName, KeyList entityCandidateKeys) {
+        getCandidateSet(entityName).addAll(entityCandidateKeys);
     }
 
     public Set<String> getCandidateEntities() {
-        return candidateIds.keySet();
+        return candidates.keySet();
     }
 
     public Set<String> getDeletedEntities() {
@@ -32,12 +52,30 @@ public class PartialCleanupResult {
         return backedUpCounts.keySet();
     }
 
+    public Set<String> getWalEntities() {
+        return walBytes.keySet();
+    }
+
     public Set<String> getErrorEntities() {
         return errors.keySet();
     }
 
+    /**
+     * The sampled candidate ids, all of them when there are no more than the sample size
+     */
     public List<String> getCandidateIds(String entityName) {
-        return candidateIds.getOrDefault(entityName, new ArrayList<>());
+        CandidateSet set = candidates.get(entityName);
+        return set != null ? set.getSample() : new ArrayList<>();
+    }
+
+    public int getCandidateCount(String entityName) {
+        CandidateSet set = candidates.get(entityName);
+        return set != null ? (int) set.getCount() : 0;
+    }
+
+    public synchronized CandidateSet getCandidateSet(String entityName) {
+        return candidates.computeIfAbsent(entityName, name -> new CandidateSet(sampleSize,
+                spillDirectory != null ? CandidateIdFile.create(spillDirectory) : null));
     }
 
     public void setDeletedCount(String entityName, int count) {
@@ -52,10 +90,26 @@ public class PartialCleanupResult {
         backedUpCounts.put(entityName, count);
     }
 
+    public void addDeletedCount(String entityName, int count) {
+        deletedCounts.merge(entityName, count, Integer::sum);
+    }
+
+    public void addBackedUpCount(String entityName, int count) {
+        backedUpCounts.merge(entityName, count, Integer::sum);
+    }
+
     public int getBackedUpCount(String entityName) {
         return backedUpCounts.getOrDefault(entityName, 0);
     }
 
+    public void addWalBytes(String entityName, long bytes) {
+        walBytes.merge(entityName, bytes, Long::sum);
+    }
+
+    public long getWalBytes(String entityName) {
+        return walBytes.getOrDefault(entityName, 0L);
+    }
+
     public void setError(String entityName, String error) {
         errors.put(entityName, error);
     }
@@ -0,0 +1,57 @@
+package com.dbcleanup.model;
+
+/**
+ * Size of a table from pg_class: estimated rows, heap pages and bytes of the heap and its indexes
+ */
+public class RelationSize {
+    private String table;
+    private long rows;
+    private long pages;
+    private long heapBytes;
+    private long indexBytes;
+
+    public RelationSize() {
+        super();
+    }
+
+    // Getters and setters
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public void setPages(long pages) {
+        this.pages = pages;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public void setHeapBytes(long heapBytes) {
+        this.heapBytes = heapBytes;
+    }
+
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    public void setIndexBytes(long indexBytes) {
+        this.indexBytes = indexBytes;
+    }
+}
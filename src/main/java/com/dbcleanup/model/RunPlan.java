@@ -0,0 +1,100 @@
+package com.dbcleanup.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Start order of the entities of a run and the worker each is expected to run on, longest
+ * first, with the expected duration of the whole run
+ */
+public class RunPlan {
+    private final int workerCount;
+    private final List<PlannedEntity> entities = new ArrayList<>();
+    private long expectedMillis;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime estimatedCompletion;
+
+    public RunPlan(int workerCount) {
+        super();
+        this.workerCount = workerCount;
+    }
+
+    public void add(PlannedEntity entity) {
+        entities.add(entity);
+        expectedMillis = Math.max(expectedMillis, entity.getExpectedStartMillis() + entity.getExpectedMillis());
+    }
+
+    /**
+     * Entity names in the order they are to be started
+     */
+    public List<String> getEntityOrder() {
+        return entities.stream().map(PlannedEntity::getEntityName).collect(Collectors.toList());
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public List<PlannedEntity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Expected wall time of the run, from the start of the first entity to the end of the last
+     */
+    public long getExpectedMillis() {
+        return expectedMillis;
+    }
+
+    public LocalDateTime getEstimatedCompletion() {
+        return estimatedCompletion;
+    }
+
+    public void setEstimatedCompletion(LocalDateTime estimatedCompletion) {
+        this.estimatedCompletion = estimatedCompletion;
+    }
+
+    public static class PlannedEntity {
+        private final String entityName;
+        private final int worker;
+        private final long expectedStartMillis;
+        private final long expectedMillis;
+        // Expected duration comes from past runs rather than the default
+        private final boolean fromHistory;
+
+        public PlannedEntity(String entityName, int worker, long expectedStartMillis, long expectedMillis,
+                             boolean fromHistory) {
+            super();
+            this.entityName = entityName;
+            this.worker = worker;
+            this.expectedStartMillis = expectedStartMillis;
+            this.expectedMillis = expectedMillis;
+            this.fromHistory = fromHistory;
+        }
+
+        public String getEntityName() {
+            return entityName;
+        }
+
+        public int getWorker() {
+            return worker;
+        }
+
+        public long getExpectedStartMillis() {
+            return expectedStartMillis;
+        }
+
+        public long getExpectedMillis() {
+            return expectedMillis;
+        }
+
+        public boolean isFromHistory() {
+            return fromHistory;
+        }
+    }
+}
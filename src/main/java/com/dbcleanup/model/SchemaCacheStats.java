@@ -0,0 +1,51 @@
+package com.dbcleanup.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Effectiveness of the schema metadata cache since startup
+ */
+public class SchemaCacheStats {
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private List<String> cachedTables = new ArrayList<>();
+
+    public SchemaCacheStats() {
+        super();
+    }
+
+    // Getters and setters
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void setInvalidations(long invalidations) {
+        this.invalidations = invalidations;
+    }
+
+    public List<String> getCachedTables() {
+        return cachedTables;
+    }
+
+    public void setCachedTables(List<String> cachedTables) {
+        this.cachedTables = cachedTables;
+    }
+}
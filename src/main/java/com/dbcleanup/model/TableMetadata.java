@@ -0,0 +1,136 @@
+package com.dbcleanup.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Columns, primary key and foreign keys of a table, as cached by the schema metadata cache.
+ * The fingerprint changes with every DDL statement that alters the columns or constraints.
+ */
+public class TableMetadata {
+    private String table;
+    private long oid;
+    private String fingerprint;
+    private long estimatedRows;
+    private long pages;
+    private List<ColumnMetadata> columns = new ArrayList<>();
+    private List<String> primaryKey = new ArrayList<>();
+    private List<ForeignKeyMetadata> foreignKeys = new ArrayList<>();
+    private List<ForeignKeyMetadata> referencingKeys = new ArrayList<>();
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime loadedAt;
+
+    public TableMetadata() {
+        super();
+    }
+
+    /**
+     * The column with the given name, or null
+     */
+    public ColumnMetadata getColumn(String columnName) {
+        return columns.stream()
+                .filter(column -> column.getName().equals(columnName))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Columns an INSERT can set, in table order
+     */
+    @JsonIgnore
+    public List<ColumnMetadata> getInsertableColumns() {
+        return columns.stream()
+                .filter(column -> !column.isGenerated())
+                .collect(Collectors.toList());
+    }
+
+    // Getters and setters
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public long getOid() {
+        return oid;
+    }
+
+    public void setOid(long oid) {
+        this.oid = oid;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<ColumnMetadata> columns) {
+        this.columns = columns;
+    }
+
+    public List<String> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public void setPrimaryKey(List<String> primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    public List<ForeignKeyMetadata> getForeignKeys() {
+        return foreignKeys;
+    }
+
+    public void setForeignKeys(List<ForeignKeyMetadata> foreignKeys) {
+        this.foreignKeys = foreignKeys;
+    }
+
+    public List<ForeignKeyMetadata> getReferencingKeys() {
+        return referencingKeys;
+    }
+
+    public void setReferencingKeys(List<ForeignKeyMetadata> referencingKeys) {
+        this.referencingKeys = referencingKeys;
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    public void setLoadedAt(LocalDateTime loadedAt) {
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Row count estimate of the statistics at load time
+     */
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public void setPages(long pages) {
+        this.pages = pages;
+    }
+}
@@ -0,0 +1,102 @@
+package com.dbcleanup.model;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TablePartition {
+    private static final Pattern RANGE_BOUND = Pattern.compile(
+            "FOR VALUES FROM \\((.+)\\) TO \\((.+)\\)", Pattern.CASE_INSENSITIVE);
+
+    private String schemaName;
+    private String name;
+    private String bound;
+
+    public TablePartition() {
+        super();
+    }
+
+    public TablePartition(String schemaName, String name, String bound) {
+        super();
+        this.schemaName = schemaName;
+        this.name = name;
+        this.bound = bound;
+    }
+
+    // Getters and setters
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getBound() {
+        return bound;
+    }
+
+    public void setBound(String bound) {
+        this.bound = bound;
+    }
+
+    public String getQualifiedName() {
+        return schemaName != null && !schemaName.isEmpty() ? schemaName + "." + name : name;
+    }
+
+    public boolean isDefault() {
+        return bound != null && bound.trim().equalsIgnoreCase("DEFAULT");
+    }
+
+    /**
+     * Lower bound SQL literal of a single-column range partition, or null for MINVALUE,
+     * default and multi-column partitions
+     */
+    public String getLowerBound() {
+        return boundValue(1);
+    }
+
+    /**
+     * Exclusive upper bound SQL literal of a single-column range partition, or null for
+     * MAXVALUE, default and multi-column partitions
+     */
+    public String getUpperBound() {
+        return boundValue(2);
+    }
+
+    private String boundValue(int group) {
+        if (bound == null || isDefault()) {
+            return null;
+        }
+
+        Matcher matcher = RANGE_BOUND.matcher(bound.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        String value = matcher.group(group).trim();
+        if (value.equalsIgnoreCase("MINVALUE") || value.equalsIgnoreCase("MAXVALUE") || isMultiColumn(value)) {
+            return null;
+        }
+        return value;
+    }
+
+    private static boolean isMultiColumn(String value) {
+        boolean quoted = false;
+        for (char c : value.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,179 @@
+package com.dbcleanup.model;
+
+import com.dbcleanup.exception.CleanupException;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Filters and position of one page of the task history. Pages are ordered newest first by
+ * (startedAt, taskId) and continue after the last task of the previous page, given as a cursor,
+ * so that a page costs the same however deep it is.
+ */
+public class TaskHistoryQuery {
+    /**
+     * Order of the task history: newest first, ties broken by task id
+     */
+    public static final Comparator<CleanupTask> NEWEST_FIRST = Comparator
+            .comparing(CleanupTask::getStartedAt)
+            .thenComparing(CleanupTask::getTaskId)
+            .reversed();
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private CleanupTask.Status status;
+    private String taskType;
+    private String initiator;
+    private String entity;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime startedFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime startedBefore;
+
+    private LocalDateTime afterStartedAt;
+    private String afterTaskId;
+    private int limit = 20;
+
+    public TaskHistoryQuery() {
+        super();
+    }
+
+    /**
+     * The cursor continuing after a task
+     */
+    public static String cursorOf(CleanupTask task) {
+        String position = task.getStartedAt() + CURSOR_SEPARATOR + task.getTaskId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Continue after the task a cursor was made of; a null or empty cursor starts at the newest task
+     */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            afterStartedAt = null;
+            afterTaskId = null;
+            return;
+        }
+
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(CURSOR_SEPARATOR);
+            afterStartedAt = LocalDateTime.parse(position.substring(0, separator));
+            afterTaskId = position.substring(separator + 1);
+        } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new CleanupException("Invalid task history cursor: " + cursor, e);
+        }
+    }
+
+    public boolean hasCursor() {
+        return afterStartedAt != null;
+    }
+
+    /**
+     * Whether a task passes the filters and comes after the cursor
+     */
+    public boolean matches(CleanupTask task) {
+        if (status != null && status != task.getStatus()) {
+            return false;
+        }
+        if (taskType != null && !taskType.equals(task.getTaskType())) {
+            return false;
+        }
+        if (initiator != null && !initiator.equals(task.getInitiator())) {
+            return false;
+        }
+        if (entity != null && (task.getEntities() == null || !Arrays.asList(task.getEntities()).contains(entity))) {
+            return false;
+        }
+        if (startedFrom != null && task.getStartedAt().isBefore(startedFrom)) {
+            return false;
+        }
+        if (startedBefore != null && !task.getStartedAt().isBefore(startedBefore)) {
+            return false;
+        }
+        if (!hasCursor()) {
+            return true;
+        }
+        int byStart = task.getStartedAt().compareTo(afterStartedAt);
+        return byStart < 0 || (byStart == 0 && task.getTaskId().compareTo(afterTaskId) < 0);
+    }
+
+    // Getters and setters
+    public CleanupTask.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(CleanupTask.Status status) {
+        this.status = status;
+    }
+
+    public String getTaskType() {
+        return taskType;
+    }
+
+    public void setTaskType(String taskType) {
+        this.taskType = taskType;
+    }
+
+    public String getInitiator() {
+        return initiator;
+    }
+
+    public void setInitiator(String initiator) {
+        this.initiator = initiator;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * Earliest start time, inclusive
+     */
+    public LocalDateTime getStartedFrom() {
+        return startedFrom;
+    }
+
+    public void setStartedFrom(LocalDateTime startedFrom) {
+        this.startedFrom = startedFrom;
+    }
+
+    /**
+     * Latest start time, exclusive
+     */
+    public LocalDateTime getStartedBefore() {
+        return startedBefore;
+    }
+
+    public void setStartedBefore(LocalDateTime startedBefore) {
+        this.startedBefore = startedBefore;
+    }
+
+    public LocalDateTime getAfterStartedAt() {
+        return afterStartedAt;
+    }
+
+    public String getAfterTaskId() {
+        return afterTaskId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
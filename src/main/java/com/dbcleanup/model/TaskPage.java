@@ -0,0 +1,38 @@
+package com.dbcleanup.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the task history, with the cursor of the next page or null on the last page
+ */
+public class TaskPage {
+    private final List<CleanupTask> tasks;
+    private final String nextCursor;
+
+    public TaskPage(List<CleanupTask> tasks, String nextCursor) {
+        super();
+        this.tasks = tasks;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * The page of up to limit tasks from tasks fetched with one extra row, which tells whether
+     * a next page exists
+     */
+    public static TaskPage of(List<CleanupTask> tasks, int limit) {
+        if (tasks.size() <= limit) {
+            return new TaskPage(tasks, null);
+        }
+        List<CleanupTask> page = new ArrayList<>(tasks.subList(0, limit));
+        return new TaskPage(page, TaskHistoryQuery.cursorOf(page.get(limit - 1)));
+    }
+
+    public List<CleanupTask> getTasks() {
+        return tasks;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,111 @@
+package com.dbcleanup.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State of continuous trickle cleanup: the remaining backlog per entity and whether
+ * deletion is currently held back
+ */
+public class TrickleStatus {
+    private boolean enabled;
+    private boolean paused;
+    private String pauseReason;
+    private boolean rateLimited;
+    private Map<String, Integer> backlog = new LinkedHashMap<>();
+    private long deletedTotal;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime backlogRefreshedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastRunAt;
+
+    public TrickleStatus() {
+        super();
+    }
+
+    public TrickleStatus(TrickleStatus other) {
+        super();
+        this.enabled = other.enabled;
+        this.paused = other.paused;
+        this.pauseReason = other.pauseReason;
+        this.rateLimited = other.rateLimited;
+        this.backlog = new LinkedHashMap<>(other.backlog);
+        this.deletedTotal = other.deletedTotal;
+        this.backlogRefreshedAt = other.backlogRefreshedAt;
+        this.lastRunAt = other.lastRunAt;
+    }
+
+    public int getTotalBacklog() {
+        return backlog.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public String getPauseReason() {
+        return pauseReason;
+    }
+
+    public void setPauseReason(String pauseReason) {
+        this.pauseReason = pauseReason;
+    }
+
+    public boolean isRateLimited() {
+        return rateLimited;
+    }
+
+    public void setRateLimited(boolean rateLimited) {
+        this.rateLimited = rateLimited;
+    }
+
+    public Map<String, Integer> getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(Map<String, Integer> backlog) {
+        this.backlog = backlog;
+    }
+
+    public long getDeletedTotal() {
+        return deletedTotal;
+    }
+
+    public void setDeletedTotal(long deletedTotal) {
+        this.deletedTotal = deletedTotal;
+    }
+
+    public LocalDateTime getBacklogRefreshedAt() {
+        return backlogRefreshedAt;
+    }
+
+    public void setBacklogRefreshedAt(LocalDateTime backlogRefreshedAt) {
+        this.backlogRefreshedAt = backlogRefreshedAt;
+    }
+
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+
+    public void setLastRunAt(LocalDateTime lastRunAt) {
+        this.lastRunAt = lastRunAt;
+    }
+}
@@ -0,0 +1,130 @@
+package com.dbcleanup.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One key range of an entity within a cluster task, claimed and processed by a single node
+ */
+public class WorkChunk {
+    private long chunkId;
+    private String taskId;
+    private String entityName;
+    private int chunkNo;
+    private String lowerBound;
+    private String upperBound;
+    private boolean dryRun;
+    private Status status;
+    private String ownerNode;
+    private LocalDateTime leaseExpiresAt;
+    private int attempts;
+
+    public enum Status {
+        PENDING("PENDING"),
+        CLAIMED("CLAIMED"),
+        DONE("DONE"),
+        FAILED("FAILED");
+
+        private final String value;
+
+        Status(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public WorkChunk() {
+        super();
+    }
+
+    // Getters and setters
+    public long getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(long chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public void setEntityName(String entityName) {
+        this.entityName = entityName;
+    }
+
+    public int getChunkNo() {
+        return chunkNo;
+    }
+
+    public void setChunkNo(int chunkNo) {
+        this.chunkNo = chunkNo;
+    }
+
+    public String getLowerBound() {
+        return lowerBound;
+    }
+
+    public void setLowerBound(String lowerBound) {
+        this.lowerBound = lowerBound;
+    }
+
+    public String getUpperBound() {
+        return upperBound;
+    }
+
+    public void setUpperBound(String upperBound) {
+        this.upperBound = upperBound;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getOwnerNode() {
+        return ownerNode;
+    }
+
+    public void setOwnerNode(String ownerNode) {
+        this.ownerNode = ownerNode;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
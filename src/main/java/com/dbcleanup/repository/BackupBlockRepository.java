@@ -0,0 +1,266 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.ColumnMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Backups in the BINARY format. Instead of one JSONB document per row, the rows of a task are
+ * stored as blocks of positional records whose column layout is kept once per task in a
+ * dictionary, so column names are not repeated in every row and each block is compressed as a
+ * whole. Blocks are decoded inside the database through a temporary row type built from the
+ * dictionary; callers run in a transaction so that the type and the queries using it share a
+ * session.
+ */
+@Repository
+public class BackupBlockRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupBlockRepository.class);
+
+    private static final String BLOCK_TABLE = "cleanup_backup_block";
+    private static final String DICTIONARY_TABLE = "cleanup_backup_dictionary";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+
+    public BackupBlockRepository(JdbcTemplate jdbcTemplate, SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.schemaMetadataRepository = schemaMetadataRepository;
+    }
+
+    /**
+     * Back up the rows selected by a "FROM ... e [WHERE ...]" clause in blocks of blockRows rows
+     *
+     * @param fromArguments the arguments bound to the clause
+     * @return the number of rows backed up
+     */
+    public int backupBlocks(EntityConfig entityConfig, String taskId, String fromClause, Object... fromArguments) {
+        try {
+            long dictionaryId = saveDictionary(taskId, entityConfig.getTable());
+            String row = loadDictionary(dictionaryId).stream()
+                    .map(column -> "e." + quote(column[0]))
+                    .collect(Collectors.joining(", ", "ROW(", ")"));
+
+            String sql = "INSERT INTO " + BLOCK_TABLE +
+                    " (task_id, entity_name, dictionary_id, entity_ids, row_count, payload) " +
+                    "SELECT ?, ?, ?, array_agg(c.entity_id ORDER BY c.entity_id), COUNT(*), " +
+                    "convert_to(array_agg(c.r ORDER BY c.entity_id)::text, 'UTF8') " +
+                    "FROM (SELECT e.id::text AS entity_id, " + row + " AS r, " +
+                    "(row_number() OVER (ORDER BY e.id) - 1) / ? AS block_no " + fromClause + ") c " +
+                    "GROUP BY c.block_no " +
+                    "RETURNING row_count";
+
+            List<Object> arguments = new ArrayList<>(List.of(taskId, entityConfig.getName(), dictionaryId,
+                    Math.max(1, entityConfig.getBackup().getBlockRows())));
+            arguments.addAll(Arrays.asList(fromArguments));
+            List<Integer> rowCounts = jdbcTemplate.queryForList(sql, Integer.class, arguments.toArray());
+            int backedUp = rowCounts.stream().mapToInt(Integer::intValue).sum();
+            LOGGER.info("Backed up {} records for entity {} in {} blocks", backedUp, entityConfig.getName(),
+                    rowCounts.size());
+            return backedUp;
+        } catch (Exception e) {
+            String errorMsg = "Error writing backup blocks for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Backed up rows of a task, newest first; backup ids have the form "blockId:entityId"
+     */
+    public List<Map<String, Object>> findBackupMetadata(String entityName, String taskId, int limit) {
+        String sql = "SELECT b.block_id || ':' || k.entity_id AS backup_id, k.entity_id, b.backup_time, " +
+                "k.entity_id = ANY (b.reinstated_ids) AS reinstated, b.reinstated_time, b.reinstated_by " +
+                "FROM " + BLOCK_TABLE + " b CROSS JOIN LATERAL unnest(b.entity_ids) AS k(entity_id) " +
+                "WHERE b.entity_name = ? AND b.task_id = ? " +
+                "ORDER BY b.backup_time DESC, b.block_id " +
+                "LIMIT ?";
+
+        return jdbcTemplate.queryForList(sql, entityName, taskId, limit);
+    }
+
+    /**
+     * The backed up row as a JSON document under "backup_data", the same shape the JSONB
+     * format returns
+     */
+    public Map<String, Object> findBackupData(String entityName, String backupId) {
+        String[] key = parseBackupId(backupId);
+        long blockId = Long.parseLong(key[0]);
+        String rowType = ensureRowType(findDictionaryId(blockId));
+
+        String sql = "SELECT to_jsonb(r) AS backup_data " +
+                "FROM " + BLOCK_TABLE + " b " +
+                "CROSS JOIN LATERAL unnest(convert_from(b.payload, 'UTF8')::" + rowType + "[]) AS r " +
+                "WHERE b.block_id = ? AND b.entity_name = ? AND r.id::text = ?";
+
+        return jdbcTemplate.queryForMap(sql, blockId, entityName, key[1]);
+    }
+
+    /**
+     * Insert the backed up rows into the entity table again, skipping rows already reinstated.
+     * Only columns that still exist in the table are restored, so backups survive added and
+     * dropped columns.
+     *
+     * @return the number of rows inserted
+     */
+    public int reinstate(EntityConfig entityConfig, List<String> backupIds, String reinstatedBy) {
+        Map<Long, List<String>> idsByBlock = new LinkedHashMap<>();
+        for (String backupId : backupIds) {
+            String[] key = parseBackupId(backupId);
+            idsByBlock.computeIfAbsent(Long.parseLong(key[0]), blockId -> new ArrayList<>()).add(key[1]);
+        }
+
+        List<String> tableColumns = schemaMetadataRepository.getTable(entityConfig.getTable())
+                .getInsertableColumns().stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.toList());
+
+        int reinstated = 0;
+        for (Map.Entry<Long, List<String>> block : idsByBlock.entrySet()) {
+            long dictionaryId = findDictionaryId(block.getKey());
+            String rowType = ensureRowType(dictionaryId);
+            List<String> columns = loadDictionary(dictionaryId).stream()
+                    .map(column -> column[0])
+                    .filter(tableColumns::contains)
+                    .map(BackupBlockRepository::quote)
+                    .collect(Collectors.toList());
+
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            params.addValue("blockId", block.getKey());
+            params.addValue("ids", block.getValue());
+            params.addValue("reinstatedBy", reinstatedBy);
+
+            reinstated += namedParameterJdbcTemplate.update(
+                    "INSERT INTO " + entityConfig.getTable() + " (" + String.join(", ", columns) + ") " +
+                            "SELECT " + columns.stream().map(column -> "r." + column).collect(Collectors.joining(", ")) +
+                            " FROM " + BLOCK_TABLE + " b " +
+                            "CROSS JOIN LATERAL unnest(convert_from(b.payload, 'UTF8')::" + rowType + "[]) AS r " +
+                            "WHERE b.block_id = :blockId AND r.id::text IN (:ids) " +
+                            "AND NOT (r.id::text = ANY (b.reinstated_ids))",
+                    params);
+
+            namedParameterJdbcTemplate.update(
+                    "UPDATE " + BLOCK_TABLE + " b SET " +
+                            "reinstated_ids = ARRAY(SELECT DISTINCT unnest(b.reinstated_ids || ARRAY[:ids]::text[])), " +
+                            "reinstated = (SELECT COUNT(DISTINCT id) FROM unnest(b.reinstated_ids || ARRAY[:ids]::text[]) AS id) >= b.row_count, " +
+                            "reinstated_time = CURRENT_TIMESTAMP, " +
+                            "reinstated_by = :reinstatedBy " +
+                            "WHERE b.block_id = :blockId",
+                    params);
+        }
+
+        LOGGER.info("Reinstated {} records for entity {} from {} blocks", reinstated, entityConfig.getName(),
+                idsByBlock.size());
+        return reinstated;
+    }
+
+    /**
+     * Delete blocks older than the retention period, and dictionaries no block refers to anymore
+     *
+     * @return the number of rows purged
+     */
+    public int purgeBlocks(String entityName, int retentionDays) {
+        List<Integer> rowCounts = jdbcTemplate.queryForList(
+                "DELETE FROM " + BLOCK_TABLE + " " +
+                        "WHERE entity_name = ? AND backup_time < CURRENT_DATE - make_interval(days => ?) " +
+                        "RETURNING row_count",
+                Integer.class, entityName, retentionDays);
+
+        jdbcTemplate.update("DELETE FROM " + DICTIONARY_TABLE + " d " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + BLOCK_TABLE + " b WHERE b.dictionary_id = d.dictionary_id)");
+
+        return rowCounts.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Record the current column layout of a table for a task, once; later calls of the task
+     * return the layout recorded first
+     */
+    private long saveDictionary(String taskId, String table) {
+        Long dictionaryId = jdbcTemplate.queryForObject(
+                "INSERT INTO " + DICTIONARY_TABLE + " AS d (task_id, original_table, column_names, column_types) " +
+                        "SELECT ?, ?, array_agg(a.attname::text ORDER BY a.attnum), " +
+                        "array_agg(format_type(a.atttypid, a.atttypmod) ORDER BY a.attnum) " +
+                        "FROM pg_attribute a " +
+                        "WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 AND NOT a.attisdropped " +
+                        "ON CONFLICT (task_id, original_table) DO UPDATE SET task_id = d.task_id " +
+                        "RETURNING d.dictionary_id",
+                Long.class, taskId, table, table);
+        if (dictionaryId == null) {
+            throw new CleanupException("Could not record the column layout of " + table);
+        }
+        return dictionaryId;
+    }
+
+    /**
+     * Column name and type pairs of a dictionary in record order
+     */
+    private List<String[]> loadDictionary(long dictionaryId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT column_names, column_types FROM " + DICTIONARY_TABLE + " WHERE dictionary_id = ?",
+                (rs, rowNum) -> {
+                    String[] names = (String[]) rs.getArray("column_names").getArray();
+                    String[] types = (String[]) rs.getArray("column_types").getArray();
+                    List<String[]> columns = new ArrayList<>();
+                    for (int i = 0; i < names.length; i++) {
+                        columns.add(new String[] {names[i], types[i]});
+                    }
+                    return columns;
+                },
+                dictionaryId);
+    }
+
+    private long findDictionaryId(long blockId) {
+        Long dictionaryId = jdbcTemplate.queryForObject(
+                "SELECT dictionary_id FROM " + BLOCK_TABLE + " WHERE block_id = ?", Long.class, blockId);
+        if (dictionaryId == null) {
+            throw new CleanupException("Backup block " + blockId + " not found");
+        }
+        return dictionaryId;
+    }
+
+    /**
+     * Create the temporary row type of a dictionary in the current session unless it exists
+     *
+     * @return the qualified type name
+     */
+    private String ensureRowType(long dictionaryId) {
+        String typeName = "pg_temp.cleanup_backup_row_" + dictionaryId;
+        String attributes = loadDictionary(dictionaryId).stream()
+                .map(column -> quote(column[0]) + " " + column[1])
+                .collect(Collectors.joining(", "));
+
+        jdbcTemplate.execute("DO $$ BEGIN " +
+                "CREATE TYPE " + typeName + " AS (" + attributes + "); " +
+                "EXCEPTION WHEN duplicate_object THEN NULL; " +
+                "END $$");
+        return typeName;
+    }
+
+    private static String[] parseBackupId(String backupId) {
+        String[] key = backupId.split(":", 2);
+        if (key.length != 2 || !key[0].chars().allMatch(Character::isDigit) || key[0].isEmpty()) {
+            throw new CleanupException("Invalid backup id " + backupId + ", expected blockId:entityId");
+        }
+        return key;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,229 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.KeyList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.support.SqlArrayValue;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cascading deletes through related entities of any depth. The root keys are selected once
+ * and processed in chunks of cascade.chunkSize; within a chunk the keys of every level are
+ * staged once and fed to the level below, and the tables are deleted from bottom-up, so a deep
+ * graph costs one pass per table and chunk instead of re-running the parent criteria for
+ * every path. Related records marked databaseCascade are left to ON DELETE CASCADE whenever
+ * their parents are deleted as well. Keys are kept and bound in their own type, as one array
+ * per batch.
+ */
+@Repository
+public class CascadeDeleteRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CascadeDeleteRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CleanupProperties properties;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+
+    public CascadeDeleteRepository(JdbcTemplate jdbcTemplate, CleanupProperties properties,
+                                   SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+    }
+
+    /**
+     * Whether any of the related entities is deleted along with its parent
+     */
+    public static boolean hasCascade(List<RelatedEntityConfig> related) {
+        return related != null && related.stream().anyMatch(RelatedEntityConfig::isCascadeDelete);
+    }
+
+    /**
+     * Whether deleting the parents of the related entities requires explicit deletes first, or
+     * the database cascades all of them
+     */
+    public static boolean needsExplicitDelete(List<RelatedEntityConfig> related) {
+        return related != null && related.stream().anyMatch(relatedConfig -> relatedConfig.isCascadeDelete() &&
+                (!relatedConfig.isDatabaseCascade() || needsExplicitDelete(relatedConfig.getRelated())));
+    }
+
+    /**
+     * Delete the related records of the roots selected by a key query on the ids of a table, at
+     * every level. The roots stay, so the first level is deleted explicitly even where the
+     * database would cascade.
+     *
+     * @param rootKeyArguments the arguments bound to the key query
+     * @return the number of related records deleted
+     */
+    public int deleteRelated(String rootTable, String rootKeyQuery, List<RelatedEntityConfig> related,
+                             Object... rootKeyArguments) {
+        return run(rootTable, rootKeyQuery, rootKeyArguments, related, false)[1];
+    }
+
+    /**
+     * Delete the rows of a table selected by a key query on its id, after their related records
+     * at every level
+     *
+     * @param rootKeyArguments the arguments bound to the key query
+     * @return the number of rows deleted from the table itself
+     */
+    public int deleteWithRelated(String table, String rootKeyQuery, List<RelatedEntityConfig> related,
+                                 Object... rootKeyArguments) {
+        return run(table, rootKeyQuery, rootKeyArguments, related, true)[0];
+    }
+
+    /**
+     * Delete the related records of a chunk of parent keys at every level, bottom-up, ahead of
+     * deleting the parents themselves
+     *
+     * @return the number of related records deleted
+     */
+    public int deleteRelatedOfKeys(List<RelatedEntityConfig> related, KeyList parentKeys) {
+        return deleteLevel(related, parentKeys, 1, true);
+    }
+
+    /**
+     * The statement deleting the rows of a table whose column matches a batch of keys, bound as
+     * {@link #toSqlArray(KeyList)}
+     */
+    public String buildDeleteByKeysQuery(String table, String column, KeyList keys) {
+        return "DELETE FROM " + table + " WHERE " + column + " = ANY (" + keys.castArrayParameter("?") + ")";
+    }
+
+    public String getForeignKeyField(RelatedEntityConfig relatedConfig) {
+        // If a foreign key is specified, use that, otherwise use the join field
+        String foreignKeyField = relatedConfig.getForeignKey();
+        if (foreignKeyField == null || foreignKeyField.isEmpty()) {
+            foreignKeyField = relatedConfig.getJoin();
+        }
+        return foreignKeyField;
+    }
+
+    /**
+     * @param parentsDeleted the roots are deleted after their related records
+     * @return the rows deleted from the root table and the related records deleted
+     */
+    private int[] run(String rootTable, String rootKeyQuery, Object[] rootKeyArguments,
+                      List<RelatedEntityConfig> related, boolean parentsDeleted) {
+        int chunkSize = Math.max(1, properties.getCascade().getChunkSize());
+        int[] deleted = new int[2];
+
+        KeyList rootKeys = jdbcTemplate.query("SELECT k.id FROM (" + rootKeyQuery + ") k ORDER BY k.id",
+                keys(rootTable, "id"), rootKeyArguments);
+        for (int i = 0; i < rootKeys.size(); i += chunkSize) {
+            KeyList chunk = rootKeys.subList(i, Math.min(i + chunkSize, rootKeys.size()));
+            deleted[1] += deleteLevel(related, chunk, 1, parentsDeleted);
+            if (parentsDeleted) {
+                deleted[0] += deleteByKeys(rootTable, "id", chunk);
+            }
+        }
+
+        LOGGER.debug("Cascade over {} root keys deleted {} rows and {} related records",
+                rootKeys.size(), deleted[0], deleted[1]);
+        return deleted;
+    }
+
+    /**
+     * @param parentsDeleted the parent rows are deleted next, which cascades in the database
+     */
+    private int deleteLevel(List<RelatedEntityConfig> related, KeyList parentKeys, int depth,
+                            boolean parentsDeleted) {
+        if (related == null || parentKeys.isEmpty()) {
+            return 0;
+        }
+        int maxDepth = properties.getCascade().getMaxDepth();
+        if (depth > maxDepth) {
+            throw new CleanupException("Cascade deeper than " + maxDepth +
+                    " levels, check the related entities for cycles or raise cascade.maxDepth");
+        }
+
+        int deleted = 0;
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (!relatedConfig.isCascadeDelete()) {
+                continue;
+            }
+
+            boolean databaseDeletes = parentsDeleted && relatedConfig.isDatabaseCascade();
+            String foreignKey = getForeignKeyField(relatedConfig);
+            if (databaseDeletes ? needsExplicitDelete(relatedConfig.getRelated()) :
+                    hasCascade(relatedConfig.getRelated())) {
+                // Stage this level's keys once for the level below, which goes first; the rows of
+                // this level are deleted one way or the other, so the level below may cascade
+                KeyList keys = findKeys(relatedConfig.getTable(), relatedConfig.getKeyColumn(),
+                        foreignKey, parentKeys);
+                deleted += deleteLevel(relatedConfig.getRelated(), keys, depth + 1, true);
+            }
+            if (databaseDeletes) {
+                continue;
+            }
+
+            int count = deleteByKeys(relatedConfig.getTable(), foreignKey, parentKeys);
+            deleted += count;
+            LOGGER.debug("Deleted {} related records from {} at level {}", count, relatedConfig.getEntity(), depth);
+        }
+        return deleted;
+    }
+
+    private KeyList findKeys(String table, String keyColumn, String foreignKey, KeyList parentKeys) {
+        KeyList keys = null;
+        for (KeyList batch : batches(parentKeys)) {
+            KeyList batchKeys = jdbcTemplate.query(
+                    "SELECT DISTINCT " + keyColumn + " FROM " + table + " WHERE " + foreignKey +
+                            " = ANY (" + batch.castArrayParameter("?") + ")",
+                    keys(table, keyColumn), toSqlArray(batch));
+            if (keys == null) {
+                keys = batchKeys;
+            } else {
+                keys.addAll(batchKeys);
+            }
+        }
+        return keys;
+    }
+
+    private int deleteByKeys(String table, String column, KeyList keys) {
+        int deleted = 0;
+        for (KeyList batch : batches(keys)) {
+            deleted += jdbcTemplate.update(buildDeleteByKeysQuery(table, column, batch), toSqlArray(batch));
+        }
+        return deleted;
+    }
+
+    /**
+     * Split a key list into batches of at most cascade.chunkSize keys, so that fan-out below a
+     * chunk stays bounded
+     */
+    private List<KeyList> batches(KeyList keys) {
+        int chunkSize = Math.max(1, properties.getCascade().getChunkSize());
+        if (keys.size() <= chunkSize) {
+            return List.of(keys);
+        }
+        List<KeyList> batches = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += chunkSize) {
+            batches.add(keys.subList(i, Math.min(i + chunkSize, keys.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * Reads keys typed after the column's type in the catalog
+     */
+    private ResultSetExtractor<KeyList> keys(String table, String column) {
+        String columnType = schemaMetadataRepository.findColumnType(table, column);
+        return rs -> KeyList.read(rs, columnType);
+    }
+
+    /**
+     * Keys bound as a single array of their own type
+     */
+    public static SqlArrayValue toSqlArray(KeyList keys) {
+        return new SqlArrayValue(keys.getKeyType().getValue(), keys.toArray());
+    }
+}
@@ -1,22 +1,29 @@
 package com.dbcleanup.repository;
 
 import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.BackupFormat;
 import com.dbcleanup.config.CleanupProperties.CriteriaConfig;
 import com.dbcleanup.config.CleanupProperties.EntityConfig;
 import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
 import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.ColumnMetadata;
+import com.dbcleanup.model.KeyList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.SqlArrayValue;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Repository
 public class CleanupRepository {
@@ -25,16 +32,26 @@ public class CleanupRepository {
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final Map<String, CleanupProperties.EntityConfig> entityConfigMap;
-
-    public CleanupRepository(JdbcTemplate jdbcTemplate, List<EntityConfig> entityConfigs) {
+    private final BackupBlockRepository backupBlockRepository;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+    private final CascadeDeleteRepository cascadeDeleteRepository;
+
+    public CleanupRepository(JdbcTemplate jdbcTemplate, List<EntityConfig> entityConfigs,
+                             BackupBlockRepository backupBlockRepository,
+                             SchemaMetadataRepository schemaMetadataRepository,
+                             CascadeDeleteRepository cascadeDeleteRepository) {
         super();
         this.jdbcTemplate = jdbcTemplate;
+        this.backupBlockRepository = backupBlockRepository;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+        this.cascadeDeleteRepository = cascadeDeleteRepository;
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
 
         // Create a map for quick lookups of entity configs by name
         this.entityConfigMap = new HashMap<>();
         if (entityConfigs != null) {
             for (EntityConfig config : entityConfigs) {
+                rejectBinaryCascade(config);
                 entityConfigMap.put(config.getName(), config);
             }
         }
@@ -42,15 +59,22 @@ public class CleanupRepository {
 
     /**
      * Find candidates by executing a query with all criteria conditions
-     * For performance, this returns only IDs
+     * For performance, this returns only their keys, in the key's own type
+     */
+    public KeyList findCandidateKeys(EntityConfig entityConfig) {
+        return findCandidateKeys(entityConfig, CandidateScope.all());
+    }
+
+    /**
+     * Find the keys of the candidates within a scope
      */
-    public List<String> findCandidateIds(EntityConfig entityConfig) {
-        String query = buildFindCandidatesQuery(entityConfig);
+    public KeyList findCandidateKeys(EntityConfig entityConfig, CandidateScope scope) {
+        String query = buildFindCandidatesQuery(entityConfig, scope);
 
         try {
-            List<String> ids = jdbcTemplate.queryForList(query, String.class);
-            LOGGER.info("Found {} candidates for entity {}", ids.size(), entityConfig.getName());
-            return ids;
+            KeyList keys = jdbcTemplate.query(query, keys(entityConfig), arguments(scope));
+            LOGGER.info("Found {} candidates for entity {}", keys.size(), entityConfig.getName());
+            return keys;
         } catch (Exception e) {
             String errorMsg = "Error finding cleanup candidates for " + entityConfig.getName() + ": " + e.getMessage();
             LOGGER.error(errorMsg, e);
@@ -58,25 +82,84 @@ public class CleanupRepository {
         }
     }
 
+    /**
+     * Count the candidates without fetching their ids
+     */
+    public int countCandidates(EntityConfig entityConfig) {
+        String query = "SELECT COUNT(*) FROM (" + buildFindCandidatesQuery(entityConfig) + ") c";
+
+        try {
+            Integer count = jdbcTemplate.queryForObject(query, Integer.class);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            String errorMsg = "Error counting cleanup candidates for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * The id of the candidate following the first batchSize candidates in key order, as text,
+     * or null when there are no more than batchSize candidates
+     */
+    public String findCandidateBoundary(EntityConfig entityConfig, int batchSize) {
+        String query = "SELECT c.id::text FROM (" + buildFindCandidatesQuery(entityConfig) + ") c " +
+                "ORDER BY c.id OFFSET ? LIMIT 1";
+
+        try {
+            List<String> boundary = jdbcTemplate.queryForList(query, String.class, batchSize);
+            return boundary.isEmpty() ? null : boundary.get(0);
+        } catch (Exception e) {
+            String errorMsg = "Error finding candidate batch for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Take a transaction scoped advisory lock for the entity, without waiting
+     *
+     * @return false when another session holds the lock
+     */
+    public boolean tryLockEntity(EntityConfig entityConfig, String purpose) {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))",
+                Boolean.class, purpose + ":" + entityConfig.getName());
+        return Boolean.TRUE.equals(locked);
+    }
+
     /**
      * Backup candidates directly using an INSERT..SELECT statement
      */
     public int backupCandidatesDirect(EntityConfig entityConfig, String taskId) {
+        return backupCandidatesDirect(entityConfig, taskId, CandidateScope.all());
+    }
+
+    /**
+     * Backup the candidates within a scope using an INSERT..SELECT statement
+     */
+    public int backupCandidatesDirect(EntityConfig entityConfig, String taskId, CandidateScope scope) {
         if (!entityConfig.getBackup().isEnabled()) {
             return 0;
         }
 
+        if (entityConfig.getBackup().getFormat() == BackupFormat.BINARY) {
+            rejectBinaryCascade(entityConfig);
+            return backupBlockRepository.backupBlocks(entityConfig, taskId, "FROM " + entityConfig.getTable() +
+                    " e WHERE e.id IN (" + buildFindCandidatesQuery(entityConfig, scope) + ")", arguments(scope));
+        }
+
         String backupTable = entityConfig.getBackup().getTable();
         if (backupTable == null || backupTable.isEmpty()) {
             LOGGER.warn("No backup table specified for entity {}", entityConfig.getName());
             return 0;
         }
 
-        String query = buildBackupQuery(entityConfig, taskId);
+        String query = buildBackupQuery(entityConfig, taskId, scope);
 
         try {
-            int backedUp = jdbcTemplate.update(query);
+            int backedUp = jdbcTemplate.update(query, arguments(scope));
             LOGGER.info("Backed up {} records for entity {}", backedUp, entityConfig.getName());
+            backupRelatedRows(entityConfig, taskId, buildFindCandidatesQuery(entityConfig, scope), arguments(scope));
             return backedUp;
         } catch (Exception e) {
             String errorMsg = "Error backing up candidates for " + entityConfig.getName() + ": " + e.getMessage();
@@ -89,25 +172,20 @@ public class CleanupRepository {
      * Delete candidates directly using a DELETE statement that includes the criteria
      */
     public int deleteCandidatesDirect(EntityConfig entityConfig) {
-        String deleteQuery = buildDirectDeleteQuery(entityConfig);
+        return deleteCandidatesDirect(entityConfig, CandidateScope.all());
+    }
 
+    /**
+     * Delete the candidates within a scope using a DELETE statement that includes the criteria.
+     * Entities with cascading related records the database does not delete by itself have their
+     * candidate keys staged once and are deleted in chunks, related records bottom-up first.
+     */
+    public int deleteCandidatesDirect(EntityConfig entityConfig, CandidateScope scope) {
         try {
-            // First delete from related entities if cascade delete is enabled
-            int relatedDeleted = 0;
-            if (entityConfig.getRelated() != null) {
-                for (RelatedEntityConfig relatedConfig : entityConfig.getRelated()) {
-                    if (relatedConfig.isCascadeDelete()) {
-                        String relatedQuery = buildRelatedDeleteQuery(entityConfig, relatedConfig);
-                        int count = jdbcTemplate.update(relatedQuery);
-                        relatedDeleted += count;
-                        LOGGER.info("Deleted {} related records from {}",
-                                count, relatedConfig.getEntity());
-                    }
-                }
-            }
-
-            // Then delete from the main entity
-            int deleted = jdbcTemplate.update(deleteQuery);
+            int deleted = CascadeDeleteRepository.needsExplicitDelete(entityConfig.getRelated()) ?
+                    cascadeDeleteRepository.deleteWithRelated(entityConfig.getTable(),
+                            buildFindCandidatesQuery(entityConfig, scope), entityConfig.getRelated(), arguments(scope)) :
+                    jdbcTemplate.update(buildDirectDeleteQuery(entityConfig, scope), arguments(scope));
             LOGGER.info("Deleted {} records from {}", deleted, entityConfig.getTable());
 
             return deleted;
@@ -119,50 +197,266 @@ public class CleanupRepository {
     }
 
     /**
-     * Reinstate previously backed up records
+     * Delete cascading related records of all current candidates
      */
-    public int reinstateBackups(String entityName, List<String> backupIds) {
-        EntityConfig entityConfig = entityConfigMap.get(entityName);
-        if (entityConfig == null) {
-            throw new CleanupException("Entity config not found for " + entityName);
+    public int deleteRelatedCandidates(EntityConfig entityConfig) {
+        return deleteRelatedCandidates(entityConfig, CandidateScope.all());
+    }
+
+    /**
+     * Delete cascading related records of the candidates within a scope
+     */
+    public int deleteRelatedCandidates(EntityConfig entityConfig, CandidateScope scope) {
+        if (!CascadeDeleteRepository.hasCascade(entityConfig.getRelated())) {
+            return 0;
         }
 
-        if (!entityConfig.getBackup().isEnabled()) {
-            throw new CleanupException("Backup not enabled for entity " + entityName);
+        try {
+            int relatedDeleted = cascadeDeleteRepository.deleteRelated(entityConfig.getTable(),
+                    buildFindCandidatesQuery(entityConfig, scope), entityConfig.getRelated(), arguments(scope));
+            LOGGER.info("Deleted {} related records of {}", relatedDeleted, entityConfig.getName());
+            return relatedDeleted;
+        } catch (Exception e) {
+            String errorMsg = "Error deleting related records for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
         }
+    }
 
-        String backupTable = entityConfig.getBackup().getTable();
-        if (backupTable == null || backupTable.isEmpty()) {
-            throw new CleanupException("No backup table specified for entity " + entityName);
+    /**
+     * Back up the cascading related records of the candidates, for strategies that delete them
+     * ahead of the candidates themselves
+     */
+    public void backupRelatedCandidates(EntityConfig entityConfig, String taskId) {
+        if (entityConfig.getBackup() == null || !entityConfig.getBackup().isEnabled()
+                || entityConfig.getBackup().getTable() == null || entityConfig.getBackup().getTable().isEmpty()) {
+            return;
         }
 
-        // First, insert records back to the original table
-        String reinstateQuery = buildReinstateQuery(entityConfig);
+        try {
+            backupRelatedRows(entityConfig, taskId, buildFindCandidatesQuery(entityConfig, CandidateScope.all()),
+                    new Object[0]);
+        } catch (Exception e) {
+            String errorMsg = "Error backing up related records for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
 
-        // Then, mark the backup records as reinstated
-        String markReinstatedQuery = buildMarkReinstatedQuery(entityConfig);
+    /**
+     * Back up every row of a source table (e.g. a detached partition) with a single bulk copy
+     */
+    public int backupTableDirect(EntityConfig entityConfig, String sourceTable, String taskId) {
+        if (entityConfig.getBackup().getFormat() == BackupFormat.BINARY) {
+            rejectBinaryCascade(entityConfig);
+            return backupBlockRepository.backupBlocks(entityConfig, taskId, "FROM " + sourceTable + " e");
+        }
+
+        String query = buildBackupSelectPrefix(entityConfig, taskId) + sourceTable + " e";
 
         try {
-            MapSqlParameterSource params = new MapSqlParameterSource();
-            params.addValue("backupIds", backupIds);
+            int backedUp = jdbcTemplate.update(query);
+            LOGGER.info("Backed up {} records of {} for entity {}", backedUp, sourceTable, entityConfig.getName());
+            backupRelatedRows(entityConfig, taskId, "SELECT e.id FROM " + sourceTable + " e", new Object[0]);
+            return backedUp;
+        } catch (Exception e) {
+            String errorMsg = "Error backing up " + sourceTable + " for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
 
-            // First insert back to the original table
-            int reinstated = namedParameterJdbcTemplate.update(reinstateQuery, params);
+    /**
+     * Delete cascading related records that reference any row of a source table
+     */
+    public int deleteRelatedOfTable(EntityConfig entityConfig, String sourceTable) {
+        if (!CascadeDeleteRepository.hasCascade(entityConfig.getRelated())) {
+            return 0;
+        }
 
-            // Then mark backups as reinstated
-            params.addValue("username", "system"); // Set system as the default username for reinstatement
-            namedParameterJdbcTemplate.update(markReinstatedQuery, params);
+        try {
+            // The partition's ids have the type of the partitioned table's
+            int relatedDeleted = cascadeDeleteRepository.deleteRelated(entityConfig.getTable(),
+                    "SELECT e.id FROM " + sourceTable + " e", entityConfig.getRelated());
+            LOGGER.info("Deleted {} related records referencing {}", relatedDeleted, sourceTable);
+            return relatedDeleted;
+        } catch (Exception e) {
+            String errorMsg = "Error deleting records related to " + sourceTable + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
 
-            LOGGER.info("Reinstated {} records for entity {}", reinstated, entityName);
+    /**
+     * Delete candidates in chunks of at most chunkSize rows, related records first
+     */
+    public int deleteCandidatesInChunks(EntityConfig entityConfig, int chunkSize) {
+        return deleteCandidatesInChunks(entityConfig, chunkSize, CandidateScope.all());
+    }
+
+    /**
+     * Delete the candidates within a scope in chunks of at most chunkSize rows, related records first
+     */
+    public int deleteCandidatesInChunks(EntityConfig entityConfig, int chunkSize, CandidateScope scope) {
+        String chunkQuery = buildFindCandidatesQuery(entityConfig, scope) + " LIMIT " + chunkSize;
+        Object[] chunkArguments = arguments(scope);
+        int totalDeleted = 0;
+
+        try {
+            while (true) {
+                KeyList keys = jdbcTemplate.query(chunkQuery, keys(entityConfig), chunkArguments);
+                if (keys.isEmpty()) {
+                    break;
+                }
+
+                cascadeDeleteRepository.deleteRelatedOfKeys(entityConfig.getRelated(), keys);
+
+                int deleted = jdbcTemplate.update(
+                        "DELETE FROM " + entityConfig.getTable() + " WHERE id = ANY (" +
+                                keys.castArrayParameter("?") + ")",
+                        new SqlArrayValue(keys.getKeyType().getValue(), keys.toArray()));
+                totalDeleted += deleted;
+                LOGGER.debug("Deleted chunk of {} records from {}", deleted, entityConfig.getTable());
+
+                if (deleted == 0) {
+                    // Candidates that cannot be deleted would otherwise be selected forever
+                    break;
+                }
+            }
+
+            LOGGER.info("Deleted {} records from {} in chunks of {}", totalDeleted, entityConfig.getTable(), chunkSize);
+            return totalDeleted;
+        } catch (Exception e) {
+            String errorMsg = "Error deleting candidates in chunks for " + entityConfig.getName() + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Limit lock and statement waits for the rest of the current transaction. A lock timeout
+     * surfaces as a PessimisticLockingFailureException, a statement timeout as a
+     * QueryTimeoutException.
+     */
+    public void setLocalTimeouts(long lockTimeoutMillis, long statementTimeoutMillis) {
+        jdbcTemplate.queryForList("SELECT set_config('lock_timeout', ?, true), set_config('statement_timeout', ?, true)",
+                lockTimeoutMillis + "ms", statementTimeoutMillis + "ms");
+    }
+
+    /**
+     * Lock up to limit candidates within a scope in key order, so that concurrent deleters
+     * always lock rows in the same order, and return their keys
+     *
+     * @param skipLocked pass over rows locked by other sessions instead of waiting for them
+     */
+    public KeyList lockCandidates(EntityConfig entityConfig, CandidateScope scope, int limit, boolean skipLocked) {
+        String query = buildFindCandidatesQuery(entityConfig, scope) +
+                " ORDER BY e.id LIMIT " + limit + " FOR UPDATE OF e" + (skipLocked ? " SKIP LOCKED" : "");
+        return jdbcTemplate.query(query, keys(entityConfig), arguments(scope));
+    }
+
+    /**
+     * Lock the cascading related records of the candidates within a scope at every level, top
+     * down and ordered by foreign key
+     */
+    public void lockRelatedRecords(EntityConfig entityConfig, CandidateScope scope) {
+        lockRelatedRecords(entityConfig.getRelated(), buildFindCandidatesQuery(entityConfig, scope), arguments(scope));
+    }
+
+    private void lockRelatedRecords(List<RelatedEntityConfig> related, String parentKeyQuery,
+                                    Object[] parentKeyArguments) {
+        if (related == null) {
+            return;
+        }
+
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (relatedConfig.isCascadeDelete()) {
+                String foreignKey = getForeignKeyField(relatedConfig);
+                jdbcTemplate.queryForList("SELECT 1 FROM " + relatedConfig.getTable() + " WHERE " + foreignKey +
+                        " IN (" + parentKeyQuery + ") ORDER BY " + foreignKey + " FOR UPDATE", parentKeyArguments);
+                lockRelatedRecords(relatedConfig.getRelated(), buildRelatedKeyQuery(relatedConfig, parentKeyQuery),
+                        parentKeyArguments);
+            }
+        }
+    }
+
+    /**
+     * Keys of the next chunk of candidates within a scope in key order after the last key of
+     * the previous chunk, from the first candidate on when there is no previous chunk
+     */
+    public KeyList findCandidateKeyChunk(EntityConfig entityConfig, CandidateScope scope, KeyList previous,
+                                         int limit) {
+        boolean after = previous != null && !previous.isEmpty();
+        String query = "SELECT c.id FROM (" + buildFindCandidatesQuery(entityConfig, scope) + ") c" +
+                (after ? " WHERE c.id > CAST(? AS " + previous.getColumnType() + ")" : "") +
+                " ORDER BY c.id LIMIT " + limit;
+        return jdbcTemplate.query(query, keys(entityConfig),
+                after ? arguments(scope, previous.last()) : arguments(scope));
+    }
+
+    /**
+     * Ids of the next chunk of backups of a cleanup task that are not reinstated yet, in key
+     * order after afterBackupId
+     */
+    public List<String> findBackupIdChunk(EntityConfig entityConfig, String taskId, String afterBackupId, int limit) {
+        return jdbcTemplate.queryForList("SELECT backup_id FROM " + getFullBackupTable(entityConfig) +
+                        " WHERE task_id = ? AND original_table = ? AND reinstated = FALSE AND backup_id > ?" +
+                        " ORDER BY backup_id LIMIT ?",
+                String.class, taskId, entityConfig.getTable(), afterBackupId, limit);
+    }
+
+    /**
+     * Reinstate one chunk of JSONB backups: the entity's rows first, then the backed up
+     * cascading related rows that reference them, and mark all of them reinstated
+     *
+     * @return the number of entity rows reinstated
+     */
+    public int reinstateBackupChunk(EntityConfig entityConfig, List<String> backupIds, boolean includeRelated,
+                                    String reinstatedBy) {
+        String backupTable = getFullBackupTable(entityConfig);
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        params.addValue("backupIds", backupIds);
+        params.addValue("table", entityConfig.getTable());
+        params.addValue("reinstatedBy", reinstatedBy);
+
+        try {
+            int reinstated = namedParameterJdbcTemplate.update(
+                    buildReinstateQuery(entityConfig.getTable(), backupTable) +
+                            " WHERE b.backup_id IN (:backupIds) AND b.original_table = :table AND b.reinstated = FALSE",
+                    params);
+
+            if (includeRelated) {
+                reinstateRelatedChunk(entityConfig.getRelated(), backupTable,
+                        "SELECT p.task_id, p.entity_id FROM " + backupTable + " p " +
+                                "WHERE p.backup_id IN (:backupIds) AND p.original_table = :table",
+                        params);
+            }
+
+            namedParameterJdbcTemplate.update(buildMarkReinstatedQuery(backupTable) +
+                    " AND b.backup_id IN (:backupIds) AND b.original_table = :table", params);
+
+            LOGGER.debug("Reinstated {} records for entity {}", reinstated, entityConfig.getName());
             return reinstated;
         } catch (Exception e) {
-            String errorMsg = "Error reinstating backups for " + entityName + ": " + e.getMessage();
+            String errorMsg = "Error reinstating backups for " + entityConfig.getName() + ": " + e.getMessage();
             LOGGER.error(errorMsg, e);
             throw new CleanupException(errorMsg, e);
         }
     }
 
-    private String buildFindCandidatesQuery(EntityConfig entityConfig) {
+    /**
+     * Query selecting the ids of all candidates as "SELECT e.id FROM ... WHERE ...", also
+     * usable as a sub-select
+     */
+    public String buildFindCandidatesQuery(EntityConfig entityConfig) {
+        return buildFindCandidatesQuery(entityConfig, CandidateScope.all());
+    }
+
+    /**
+     * Query selecting the ids of the candidates within a scope
+     */
+    public String buildFindCandidatesQuery(EntityConfig entityConfig, CandidateScope scope) {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT e.id FROM ").append(entityConfig.getTable()).append(" e");
 
@@ -219,6 +513,9 @@ public class CleanupRepository {
 
         // Add WHERE clause
         sb.append(" WHERE ");
+        if (!scope.isAll()) {
+            sb.append(scope.getCondition()).append(" AND (");
+        }
         boolean firstCriteria = true;
 
         if (entityConfig.getCriteria() != null) {
@@ -251,10 +548,33 @@ public class CleanupRepository {
             sb.append("1=1");
         }
 
+        if (!scope.isAll()) {
+            sb.append(")");
+        }
+
+        return sb.toString();
+    }
+
+    private String buildBackupQuery(EntityConfig entityConfig, String taskId, CandidateScope scope) {
+        StringBuilder sb = new StringBuilder(buildBackupSelectPrefix(entityConfig, taskId));
+        sb.append(entityConfig.getTable()).append(" e ");
+
+        // Add the same WHERE clause as the find query
+        String findQuery = buildFindCandidatesQuery(entityConfig, scope);
+        int whereIndex = findQuery.indexOf("WHERE");
+        if (whereIndex > 0) {
+            sb.append(findQuery.substring(whereIndex));
+        } else {
+            sb.append("WHERE 1=1");
+        }
+
         return sb.toString();
     }
 
-    private String buildBackupQuery(EntityConfig entityConfig, String taskId) {
+    /**
+     * INSERT..SELECT into the backup table up to and including "FROM "
+     */
+    private String buildBackupSelectPrefix(EntityConfig entityConfig, String taskId) {
         String backupTable = entityConfig.getBackup().getTable();
         String schema = entityConfig.getBackup().getSchema();
         String fullTableName = schema != null && !schema.isEmpty() ?
@@ -270,7 +590,7 @@ public class CleanupRepository {
         sb.append(") SELECT ");
 
         // For each source column, map it to the destination column
-        sb.append("'").append(UUID.randomUUID()).append("', "); // backup_id
+        sb.append("gen_random_uuid(), "); // backup_id, one per backed up row
         sb.append("'").append(taskId).append("', "); // task_id
         sb.append("e.id, "); // entity_id
         sb.append("CURRENT_TIMESTAMP, "); // backup_time
@@ -280,26 +600,17 @@ public class CleanupRepository {
         // Generate JSON backup data containing all columns
         sb.append("to_jsonb(e) "); // backup_data (PostgreSQL syntax)
 
-        sb.append("FROM ").append(entityConfig.getTable()).append(" e ");
-
-        // Add the same WHERE clause as the find query
-        String findQuery = buildFindCandidatesQuery(entityConfig);
-        int whereIndex = findQuery.indexOf("WHERE");
-        if (whereIndex > 0) {
-            sb.append(findQuery.substring(whereIndex));
-        } else {
-            sb.append("WHERE 1=1");
-        }
+        sb.append("FROM ");
 
         return sb.toString();
     }
 
-    private String buildDirectDeleteQuery(EntityConfig entityConfig) {
+    private String buildDirectDeleteQuery(EntityConfig entityConfig, CandidateScope scope) {
         StringBuilder sb = new StringBuilder();
         sb.append("DELETE FROM ").append(entityConfig.getTable()).append(" e ");
 
         // Add the same WHERE clause as the find query
-        String findQuery = buildFindCandidatesQuery(entityConfig);
+        String findQuery = buildFindCandidatesQuery(entityConfig, scope);
         int whereIndex = findQuery.indexOf("WHERE");
         if (whereIndex > 0) {
             sb.append(findQuery.substring(whereIndex));
@@ -310,71 +621,162 @@ public class CleanupRepository {
         return sb.toString();
     }
 
-    private String buildRelatedDeleteQuery(EntityConfig parentConfig, RelatedEntityConfig relatedConfig) {
-        EntityConfig relatedEntityConfig = entityConfigMap.get(relatedConfig.getEntity());
-        if (relatedEntityConfig == null) {
-            return "";
-        }
+    public String getForeignKeyField(RelatedEntityConfig relatedConfig) {
+        return cascadeDeleteRepository.getForeignKeyField(relatedConfig);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("DELETE FROM ").append(relatedConfig.getTable()).append(" WHERE ");
+    /**
+     * Reads an entity's keys typed after its id column in the catalog
+     */
+    private ResultSetExtractor<KeyList> keys(EntityConfig entityConfig) {
+        String columnType = schemaMetadataRepository.findColumnType(entityConfig.getTable(), "id");
+        return rs -> KeyList.read(rs, columnType);
+    }
 
-        // If a foreign key is specified, use that, otherwise use the join field
-        String foreignKeyField = relatedConfig.getForeignKey();
-        if (foreignKeyField == null || foreignKeyField.isEmpty()) {
-            foreignKeyField = relatedConfig.getJoin();
-        }
+    /**
+     * Query selecting the keys of a related table's rows that reference the parent keys selected
+     * by a query, as "SELECT k.id ...", to nest the level below
+     */
+    private String buildRelatedKeyQuery(RelatedEntityConfig relatedConfig, String parentKeyQuery) {
+        return "SELECT k." + relatedConfig.getKeyColumn() + " AS id FROM " + relatedConfig.getTable() + " k" +
+                " WHERE k." + getForeignKeyField(relatedConfig) + " IN (" + parentKeyQuery + ")";
+    }
 
-        sb.append(foreignKeyField).append(" IN (");
+    /**
+     * INSERT..SELECT of backed up rows into a table, up to the WHERE clause on the backup
+     * table "b". Rows are rebuilt from their JSON document against the table's row type, so
+     * columns missing in older backups become NULL and columns no longer in the table are
+     * ignored.
+     */
+    private String buildReinstateQuery(String table, String backupTable) {
+        List<String> columns = schemaMetadataRepository.getTable(table).getInsertableColumns().stream()
+                .map(ColumnMetadata::getQuotedName)
+                .collect(Collectors.toList());
+
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") OVERRIDING SYSTEM VALUE " +
+                "SELECT " + columns.stream().map(column -> "r." + column).collect(Collectors.joining(", ")) +
+                " FROM " + backupTable + " b " +
+                "CROSS JOIN LATERAL jsonb_populate_record(NULL::" + table + ", b.backup_data) AS r";
+    }
 
-        // Sub-select to get parent ids
-        sb.append("SELECT e.id FROM ").append(parentConfig.getTable()).append(" e");
+    private String buildMarkReinstatedQuery(String backupTable) {
+        String sb = "UPDATE " + backupTable + " b" +
+                " SET reinstated = TRUE, " +
+                "reinstated_time = CURRENT_TIMESTAMP, " +
+                "reinstated_by = :reinstatedBy " +
+                "WHERE b.reinstated = FALSE";
 
-        // Add the same WHERE clause as the parent find query
-        String findQuery = buildFindCandidatesQuery(parentConfig);
-        int whereIndex = findQuery.indexOf("WHERE");
-        if (whereIndex > 0) {
-            sb.append(" ").append(findQuery.substring(whereIndex));
-        } else {
-            sb.append(" WHERE 1=1");
+        return sb;
+    }
+
+    /**
+     * Reinstate the backed up rows of related tables whose foreign key references a backed up
+     * parent row selected by a (task_id, entity_id) query, level by level top down, so that the
+     * references resolve
+     */
+    private void reinstateRelatedChunk(List<RelatedEntityConfig> related, String backupTable,
+                                       String parentRowQuery, MapSqlParameterSource params) {
+        if (related == null) {
+            return;
         }
 
-        sb.append(")");
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (!relatedConfig.isCascadeDelete()) {
+                continue;
+            }
 
-        return sb.toString();
+            String referencesParent = " AND b.original_table = '" + relatedConfig.getTable() + "'" +
+                    " AND (b.task_id, b.backup_data->>'" + getForeignKeyField(relatedConfig) + "') IN (" +
+                    parentRowQuery + ")";
+
+            int count = namedParameterJdbcTemplate.update(
+                    buildReinstateQuery(relatedConfig.getTable(), backupTable) +
+                            " WHERE b.reinstated = FALSE" + referencesParent,
+                    params);
+            namedParameterJdbcTemplate.update(buildMarkReinstatedQuery(backupTable) + referencesParent, params);
+            LOGGER.debug("Reinstated {} related records of {}", count, relatedConfig.getEntity());
+
+            reinstateRelatedChunk(relatedConfig.getRelated(), backupTable,
+                    "SELECT b.task_id, b.entity_id FROM " + backupTable + " b WHERE TRUE" + referencesParent,
+                    params);
+        }
     }
 
-    private String buildReinstateQuery(EntityConfig entityConfig) {
-        String backupTable = entityConfig.getBackup().getTable();
-        String schema = entityConfig.getBackup().getSchema();
-        String fullBackupTable = schema != null && !schema.isEmpty() ?
-                schema + "." + backupTable : backupTable;
+    /**
+     * Back up the cascading related rows at every level that reference the parent ids selected
+     * by a query, into the parent's backup table with their own table as original_table and
+     * their key column as entity_id
+     */
+    private void backupRelatedRows(EntityConfig entityConfig, String taskId, String parentIdQuery,
+                                   Object[] parentIdArguments) {
+        if (!CascadeDeleteRepository.hasCascade(entityConfig.getRelated())) {
+            return;
+        }
+        backupRelatedRows(getFullBackupTable(entityConfig), entityConfig.getRelated(), taskId, parentIdQuery,
+                parentIdArguments);
+    }
 
-        String sb = "INSERT INTO " + entityConfig.getTable() + " (" +
+    private void backupRelatedRows(String backupTable, List<RelatedEntityConfig> related, String taskId,
+                                   String parentIdQuery, Object[] parentIdArguments) {
+        if (related == null) {
+            return;
+        }
 
-                // TODO - Build column list dynamically based on entity
-                "id /* Add all columns from original table */" +
-                ") SELECT " +
-                "entity_id /* Extract columns from backup_data JSON */ " +
-                "FROM " + fullBackupTable +
-                " WHERE backup_id IN (:backupIds) AND reinstated = FALSE";
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (!relatedConfig.isCascadeDelete()) {
+                continue;
+            }
 
-        return sb;
+            int count = jdbcTemplate.update("INSERT INTO " + backupTable +
+                    " (backup_id, task_id, entity_id, backup_time, reinstated, original_table, backup_data) " +
+                    "SELECT gen_random_uuid(), ?, r." + relatedConfig.getKeyColumn() +
+                    ", CURRENT_TIMESTAMP, FALSE, ?, to_jsonb(r) " +
+                    "FROM " + relatedConfig.getTable() + " r " +
+                    "WHERE r." + getForeignKeyField(relatedConfig) + " IN (" + parentIdQuery + ")",
+                    concat(new Object[] {taskId, relatedConfig.getTable()}, parentIdArguments));
+            LOGGER.info("Backed up {} related records from {}", count, relatedConfig.getEntity());
+
+            backupRelatedRows(backupTable, relatedConfig.getRelated(), taskId,
+                    buildRelatedKeyQuery(relatedConfig, parentIdQuery), parentIdArguments);
+        }
     }
 
-    private String buildMarkReinstatedQuery(EntityConfig entityConfig) {
-        String backupTable = entityConfig.getBackup().getTable();
-        String schema = entityConfig.getBackup().getSchema();
-        String fullBackupTable = schema != null && !schema.isEmpty() ?
-                schema + "." + backupTable : backupTable;
+    /**
+     * The arguments of a statement built around a scope, whose condition it contains once: the
+     * keys of a key scope as one array, followed by those of the rest of the statement
+     */
+    private static Object[] arguments(CandidateScope scope, Object... trailing) {
+        return scope.getKeys() == null ? trailing :
+                concat(new Object[] {CascadeDeleteRepository.toSqlArray(scope.getKeys())}, trailing);
+    }
 
-        String sb = "UPDATE " + fullBackupTable +
-                " SET reinstated = TRUE, " +
-                "reinstated_time = CURRENT_TIMESTAMP, " +
-                "reinstated_by = :username " +
-                "WHERE backup_id IN (:backupIds)";
+    private static Object[] concat(Object[] first, Object[] second) {
+        Object[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
 
-        return sb;
+    /**
+     * Binary backup blocks hold the rows of the entity's own table only, so cascading related
+     * records deleted with the candidates would not be backed up. Checked on startup and again
+     * before every binary backup, as discovered relationships are added at runtime.
+     */
+    private static void rejectBinaryCascade(EntityConfig entityConfig) {
+        if (entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled()
+                && entityConfig.getBackup().getFormat() == BackupFormat.BINARY
+                && CascadeDeleteRepository.hasCascade(entityConfig.getRelated())) {
+            throw new CleanupException("Entity " + entityConfig.getName() + " has cascading related records, " +
+                    "which the BINARY backup format cannot hold, use the JSONB format instead");
+        }
+    }
+
+    private String getFullBackupTable(EntityConfig entityConfig) {
+        String backupTable = entityConfig.getBackup().getTable();
+        String schema = entityConfig.getBackup().getSchema();
+        if (backupTable == null || backupTable.isEmpty()) {
+            throw new CleanupException("No backup table specified for entity " + entityConfig.getName());
+        }
+        return schema != null && !schema.isEmpty() ? schema + "." + backupTable : backupTable;
     }
 
     private RelatedEntityConfig findRelationshipBetween(String entity1, String entity2) {
@@ -0,0 +1,62 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.model.RelationSize;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Relation sizes and row width samples the cost estimates of a cleanup are based on
+ */
+@Repository
+public class CostEstimateRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public CostEstimateRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Row estimate, heap pages and on-disk sizes of a table and its indexes; all 0 for a table
+     * that does not exist or was never analyzed
+     */
+    public RelationSize findRelationSize(String table) {
+        List<RelationSize> sizes = jdbcTemplate.query(
+                "SELECT GREATEST(c.reltuples, 0)::bigint AS estimated_rows, c.relpages, " +
+                        "pg_relation_size(c.oid) AS heap_bytes, pg_indexes_size(c.oid) AS index_bytes " +
+                        "FROM pg_class c WHERE c.oid = to_regclass(?)",
+                (rs, rowNum) -> {
+                    RelationSize size = new RelationSize();
+                    size.setTable(table);
+                    size.setRows(rs.getLong("estimated_rows"));
+                    size.setPages(rs.getLong("relpages"));
+                    size.setHeapBytes(rs.getLong("heap_bytes"));
+                    size.setIndexBytes(rs.getLong("index_bytes"));
+                    return size;
+                },
+                table);
+
+        if (!sizes.isEmpty()) {
+            return sizes.get(0);
+        }
+        RelationSize size = new RelationSize();
+        size.setTable(table);
+        return size;
+    }
+
+    /**
+     * Average width of up to sampleRows rows selected by an id query, as stored in the table
+     * and as a JSON document
+     *
+     * @return the average row bytes and the average JSON bytes
+     */
+    public double[] sampleRowBytes(String table, String idQuery, int sampleRows) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(AVG(pg_column_size(e.*)), 0), COALESCE(AVG(octet_length(to_jsonb(e)::text)), 0) " +
+                        "FROM " + table + " e WHERE e.id IN (SELECT s.id FROM (" + idQuery + ") s LIMIT ?)",
+                (rs, rowNum) -> new double[] {rs.getDouble(1), rs.getDouble(2)},
+                sampleRows);
+    }
+}
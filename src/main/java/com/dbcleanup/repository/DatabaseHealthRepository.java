@@ -0,0 +1,59 @@
+package com.dbcleanup.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Load signals of the database used to hold back background cleanup while the database is
+ * busy serving the application
+ */
+@Repository
+public class DatabaseHealthRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatabaseHealthRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Largest replay lag of any streaming replica in seconds, 0 without replicas
+     */
+    public double findReplicationLagSeconds() {
+        Double lag = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(EXTRACT(EPOCH FROM replay_lag)), 0) FROM pg_stat_replication",
+                Double.class);
+        return lag != null ? lag : 0;
+    }
+
+    /**
+     * Sessions of other backends currently executing a statement
+     */
+    public int countActiveSessions() {
+        Integer active = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity " +
+                        "WHERE state = 'active' AND backend_type = 'client backend' AND pid <> pg_backend_pid()",
+                Integer.class);
+        return active != null ? active : 0;
+    }
+
+    /**
+     * Sessions waiting for a lock
+     */
+    public int countLockWaits() {
+        Integer waiting = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'",
+                Integer.class);
+        return waiting != null ? waiting : 0;
+    }
+
+    /**
+     * Current WAL insert position as a byte offset. Unlike pg_current_wal_lsn() it also covers
+     * WAL of open transactions not yet written out of the WAL buffers.
+     */
+    public long findWalInsertPosition() {
+        Long position = jdbcTemplate.queryForObject(
+                "SELECT (pg_current_wal_insert_lsn() - '0/0'::pg_lsn)::bigint", Long.class);
+        return position != null ? position : 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.exception.CleanupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Plans, table statistics and index definitions used to check the cleanup queries
+ */
+@Repository
+public class IndexAdvisorRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexAdvisorRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IndexAdvisorRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The estimated plan of a statement as JSON, planned for the given arguments. The statement
+     * is not executed.
+     */
+    public String explain(String query, Object... args) {
+        try {
+            return jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + query, String.class, args);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error explaining query: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Row estimate of a table from the statistics, 0 if it was never analyzed
+     */
+    public long findTableRows(String table) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(c.reltuples, 0)::bigint FROM pg_class c WHERE c.oid = to_regclass(?)",
+                Long.class, table);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Whether any valid index of the table has the column as its first key
+     */
+    public boolean hasIndexLeadingWith(String table, String column) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_index i " +
+                        "JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0] " +
+                        "WHERE i.indrelid = to_regclass(?) AND i.indisvalid AND a.attname = ?)",
+                Boolean.class, table, column);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Run a CREATE INDEX CONCURRENTLY statement; must not be called within a transaction
+     */
+    public void createIndex(String statement) {
+        try {
+            jdbcTemplate.execute(statement);
+            LOGGER.info("Created index: {}", statement);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error creating index: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+}
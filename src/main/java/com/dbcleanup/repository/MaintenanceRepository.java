@@ -0,0 +1,39 @@
+package com.dbcleanup.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Tuple statistics and maintenance commands. VACUUM cannot run inside a transaction, so these
+ * methods must be called without one.
+ */
+@Repository
+public class MaintenanceRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public MaintenanceRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Live and dead tuples of a table from pg_stat_user_tables, zeros if it has no statistics
+     */
+    public long[] findTupleCounts(String table) {
+        List<long[]> counts = jdbcTemplate.query(
+                "SELECT n_live_tup, n_dead_tup FROM pg_stat_user_tables WHERE relid = to_regclass(?)",
+                (rs, rowNum) -> new long[] {rs.getLong("n_live_tup"), rs.getLong("n_dead_tup")},
+                table);
+        return counts.isEmpty() ? new long[] {0, 0} : counts.get(0);
+    }
+
+    public void vacuumAnalyze(String table) {
+        jdbcTemplate.execute("VACUUM (ANALYZE) " + table);
+    }
+
+    public void analyze(String table) {
+        jdbcTemplate.execute("ANALYZE " + table);
+    }
+}
@@ -0,0 +1,148 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.TablePartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Catalog queries and DDL for PostgreSQL declaratively partitioned tables
+ */
+@Repository
+public class PartitionRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PartitionRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isPartitioned(String table) {
+        List<Boolean> result = jdbcTemplate.queryForList(
+                "SELECT c.relkind = 'p' FROM pg_class c WHERE c.oid = to_regclass(?)",
+                Boolean.class, table);
+        return !result.isEmpty() && Boolean.TRUE.equals(result.get(0));
+    }
+
+    /**
+     * Partition key column of a single-column RANGE partitioned table, or null otherwise
+     */
+    public String findRangePartitionColumn(String table) {
+        String keyDef = jdbcTemplate.queryForObject(
+                "SELECT pg_get_partkeydef(to_regclass(?))", String.class, table);
+
+        if (keyDef == null || !keyDef.toUpperCase().startsWith("RANGE (") || keyDef.contains(",")) {
+            return null;
+        }
+        return keyDef.substring("RANGE (".length(), keyDef.length() - 1).trim();
+    }
+
+    public String findColumnType(String table, String column) {
+        return jdbcTemplate.queryForObject(
+                "SELECT format_type(a.atttypid, a.atttypmod) FROM pg_attribute a " +
+                        "WHERE a.attrelid = to_regclass(?) AND a.attname = ? AND NOT a.attisdropped",
+                String.class, table, column);
+    }
+
+    public List<TablePartition> findPartitions(String table) {
+        return jdbcTemplate.query(
+                "SELECT n.nspname AS schema_name, c.relname AS partition_name, " +
+                        "pg_get_expr(c.relpartbound, c.oid) AS partition_bound " +
+                        "FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE i.inhparent = to_regclass(?) " +
+                        "ORDER BY c.relname",
+                (rs, rowNum) -> new TablePartition(
+                        rs.getString("schema_name"),
+                        rs.getString("partition_name"),
+                        rs.getString("partition_bound")),
+                table);
+    }
+
+    /**
+     * Whether an exclusive partition upper bound lies at or before the given cutoff expression,
+     * i.e. every value in the partition is below the cutoff
+     */
+    public boolean isBoundAtOrBefore(String boundLiteral, String keyType, String cutoffExpression) {
+        Boolean covered = jdbcTemplate.queryForObject(
+                "SELECT CAST(" + boundLiteral + " AS " + keyType + ") <= (" + cutoffExpression + ")",
+                Boolean.class);
+        return Boolean.TRUE.equals(covered);
+    }
+
+    /**
+     * Whether the partition holds any row for which the condition is not true
+     */
+    public boolean hasRowsNotMatching(String partitionTable, String condition) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partitionTable + " e WHERE (" + condition + ") IS NOT TRUE)",
+                Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public int countRows(String table) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Planner estimate of the rows of a table, which unlike COUNT(*) does not scan it
+     */
+    public long estimateRows(String table) {
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = to_regclass(?)", Long.class, table);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Delete the rows matching a condition in chunks of at most chunkSize rows, each chunk a
+     * statement of its own, so no single statement holds locks or produces WAL for long
+     */
+    public int deleteInChunks(String table, String condition, int chunkSize) {
+        String sql = "DELETE FROM " + table + " WHERE ctid = ANY (ARRAY(" +
+                "SELECT ctid FROM " + table + " WHERE " + condition + " LIMIT ?))";
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, chunkSize);
+            total += deleted;
+        } while (deleted >= chunkSize);
+        return total;
+    }
+
+    public void createPartition(String parentTable, TablePartition partition) {
+        executeDdl("CREATE TABLE IF NOT EXISTS " + partition.getQualifiedName() +
+                " PARTITION OF " + parentTable + " " + partition.getBound());
+    }
+
+    public void detachPartition(String parentTable, String partitionTable) {
+        executeDdl("ALTER TABLE " + parentTable + " DETACH PARTITION " + partitionTable);
+    }
+
+    public void dropTable(String table) {
+        executeDdl("DROP TABLE " + table);
+    }
+
+    public void moveToSchema(String table, String schema) {
+        executeDdl("CREATE SCHEMA IF NOT EXISTS " + schema);
+        executeDdl("ALTER TABLE " + table + " SET SCHEMA " + schema);
+    }
+
+    private void executeDdl(String ddl) {
+        try {
+            jdbcTemplate.execute(ddl);
+            LOGGER.info("Executed: {}", ddl);
+        } catch (Exception e) {
+            String errorMsg = "Error executing partition DDL '" + ddl + "': " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.model.TaskHistoryQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The most recent tasks and every running task, so that polling the task history rarely reaches
+ * the database. The task log writer puts every task once its write has committed, which keeps
+ * the tasks of this instance current; the cache is reloaded once it is older than
+ * maxAgeMillis, which picks up tasks written by other instances.
+ */
+public class RecentTaskCache {
+    private final int capacity;
+    private final long maxAgeNanos;
+
+    // Newest first; every task newer than the last one is in the list
+    private List<CleanupTask> recent = new ArrayList<>();
+    private Map<String, CleanupTask> running = new LinkedHashMap<>();
+
+    // The recent tasks are all the tasks there are
+    private boolean complete;
+    private boolean loaded;
+    private long loadedAtNanos;
+
+    public RecentTaskCache(int capacity, long maxAgeMillis) {
+        super();
+        this.capacity = Math.max(0, capacity);
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized boolean isFresh() {
+        return loaded && System.nanoTime() - loadedAtNanos < maxAgeNanos;
+    }
+
+    /**
+     * Replace the content with the newest tasks, at most capacity of them, and the running tasks
+     */
+    public synchronized void load(List<CleanupTask> recentTasks, List<CleanupTask> runningTasks) {
+        recent = new ArrayList<>(recentTasks);
+        recent.sort(TaskHistoryQuery.NEWEST_FIRST);
+        complete = recent.size() < capacity;
+        if (recent.size() > capacity) {
+            recent = new ArrayList<>(recent.subList(0, capacity));
+        }
+
+        running = new LinkedHashMap<>();
+        runningTasks.forEach(task -> running.put(task.getTaskId(), task));
+        loaded = true;
+        loadedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Write through a task as just committed to the task log
+     */
+    public synchronized void put(CleanupTask task) {
+        if (!loaded) {
+            return;
+        }
+
+        if (task.getStatus() == CleanupTask.Status.STARTED) {
+            running.put(task.getTaskId(), task);
+        } else {
+            running.remove(task.getTaskId());
+        }
+
+        recent.removeIf(cached -> cached.getTaskId().equals(task.getTaskId()));
+        int index = 0;
+        while (index < recent.size() && TaskHistoryQuery.NEWEST_FIRST.compare(recent.get(index), task) < 0) {
+            index++;
+        }
+        // Older than the window and the window is not all there is: the gap below it is unknown
+        if (index < recent.size() || complete) {
+            recent.add(index, task);
+        }
+        if (recent.size() > capacity) {
+            recent.remove(recent.size() - 1);
+            complete = false;
+        }
+    }
+
+    /**
+     * The tasks of a query's page plus one, as the database would return them, or null if the
+     * cache cannot tell them all
+     */
+    public synchronized List<CleanupTask> find(TaskHistoryQuery query, int rows) {
+        List<CleanupTask> page = new ArrayList<>();
+        if (query.getStatus() == CleanupTask.Status.STARTED) {
+            // Every running task is cached
+            running.values().stream().filter(query::matches).forEach(page::add);
+            page.sort(TaskHistoryQuery.NEWEST_FIRST);
+            return page.size() > rows ? new ArrayList<>(page.subList(0, rows)) : page;
+        }
+
+        for (CleanupTask task : recent) {
+            if (query.matches(task)) {
+                page.add(task);
+                if (page.size() == rows) {
+                    return page;
+                }
+            }
+        }
+
+        boolean coversRange = !recent.isEmpty() && query.getStartedFrom() != null &&
+                recent.get(recent.size() - 1).getStartedAt().isBefore(query.getStartedFrom());
+        return complete || coversRange ? page : null;
+    }
+
+    /**
+     * A cached task, or null if it is not cached
+     */
+    public synchronized CleanupTask get(String taskId) {
+        CleanupTask task = running.get(taskId);
+        if (task != null) {
+            return task;
+        }
+        return recent.stream().filter(cached -> cached.getTaskId().equals(taskId)).findFirst().orElse(null);
+    }
+}
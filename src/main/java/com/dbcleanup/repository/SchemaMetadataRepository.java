@@ -0,0 +1,250 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.ColumnMetadata;
+import com.dbcleanup.model.ForeignKeyMetadata;
+import com.dbcleanup.model.SchemaCacheStats;
+import com.dbcleanup.model.TableMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of table metadata read from pg_catalog, keyed by table name. A table is loaded on
+ * first use and stays cached until it is invalidated, either explicitly or because
+ * {@link #detectChanges()} finds that its fingerprint changed after a DDL statement.
+ */
+@Repository
+public class SchemaMetadataRepository implements MeterBinder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMetadataRepository.class);
+
+    /**
+     * Digest of the columns, constraints and indexes of the relation with oid "c.oid"
+     */
+    private static final String FINGERPRINT =
+            "md5(COALESCE((SELECT string_agg(a.attname || ':' || a.atttypid || ':' || a.atttypmod || ':' || " +
+                    "a.attnotnull || ':' || a.attgenerated, ',' ORDER BY a.attnum) FROM pg_attribute a " +
+                    "WHERE a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped), '') || '|' || " +
+                    "COALESCE((SELECT string_agg(con.conname || ':' || con.contype || ':' || con.oid, ',' " +
+                    "ORDER BY con.conname) FROM pg_constraint con WHERE con.conrelid = c.oid OR con.confrelid = c.oid), " +
+                    "'') || '|' || COALESCE((SELECT string_agg(i.indexrelid::text, ',' ORDER BY i.indexrelid) " +
+                    "FROM pg_index i WHERE i.indrelid = c.oid), ''))";
+
+    private static final String FOREIGN_KEY_SELECT =
+            "SELECT con.conname, con.conrelid::regclass::text AS table_name, " +
+                    "con.confrelid::regclass::text AS referenced_table, " +
+                    "ARRAY(SELECT a.attname::text FROM unnest(con.conkey) WITH ORDINALITY AS k(attnum, ord) " +
+                    "JOIN pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = k.attnum ORDER BY k.ord) AS columns, " +
+                    "ARRAY(SELECT a.attname::text FROM unnest(con.confkey) WITH ORDINALITY AS k(attnum, ord) " +
+                    "JOIN pg_attribute a ON a.attrelid = con.confrelid AND a.attnum = k.attnum ORDER BY k.ord) " +
+                    "AS referenced_columns, " +
+                    "CASE con.confdeltype WHEN 'c' THEN 'CASCADE' WHEN 'r' THEN 'RESTRICT' WHEN 'n' THEN 'SET NULL' " +
+                    "WHEN 'd' THEN 'SET DEFAULT' ELSE 'NO ACTION' END AS delete_action, " +
+                    "EXISTS (SELECT 1 FROM pg_index i WHERE i.indrelid = con.conrelid AND i.indpred IS NULL " +
+                    "AND (string_to_array(i.indkey::text, ' ')::int2[])[1:cardinality(con.conkey)] @> con.conkey) " +
+                    "AS indexed " +
+                    "FROM pg_constraint con WHERE con.contype = 'f' ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Map<String, TableMetadata> tables = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SchemaMetadataRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cleanup.schema.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Schema metadata lookups served from the cache")
+                .register(registry);
+        FunctionCounter.builder("cleanup.schema.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Schema metadata lookups that loaded the table from pg_catalog")
+                .register(registry);
+        FunctionCounter.builder("cleanup.schema.cache.invalidations", invalidations, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("cleanup.schema.cache.size", tables, Map::size)
+                .register(registry);
+    }
+
+    /**
+     * Metadata of a table, loaded from pg_catalog on first use
+     */
+    public TableMetadata getTable(String table) {
+        TableMetadata metadata = tables.get(table);
+        if (metadata != null) {
+            hits.incrementAndGet();
+            return metadata;
+        }
+
+        misses.incrementAndGet();
+        return tables.computeIfAbsent(table, this::loadTable);
+    }
+
+    /**
+     * Type of a column as shown by format_type, e.g. "timestamp without time zone"
+     */
+    public String findColumnType(String table, String column) {
+        ColumnMetadata metadata = getTable(table).getColumn(column);
+        if (metadata == null) {
+            throw new CleanupException("Column " + column + " not found in table " + table);
+        }
+        return metadata.getType();
+    }
+
+    public void invalidate(String table) {
+        if (tables.remove(table) != null) {
+            invalidations.incrementAndGet();
+            LOGGER.info("Invalidated schema metadata of {}", table);
+        }
+    }
+
+    public void invalidateAll() {
+        int size = tables.size();
+        tables.clear();
+        invalidations.addAndGet(size);
+        LOGGER.info("Invalidated schema metadata of {} tables", size);
+    }
+
+    /**
+     * Invalidate every cached table whose columns or constraints changed, or that was dropped or
+     * recreated, since it was loaded
+     *
+     * @return the tables invalidated
+     */
+    public List<String> detectChanges() {
+        if (tables.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("tables", new ArrayList<>(tables.keySet()));
+        List<Map<String, Object>> current = namedParameterJdbcTemplate.queryForList(
+                "SELECT t.name, c.oid::bigint AS oid, " + FINGERPRINT + " AS fingerprint " +
+                        "FROM unnest(ARRAY[:tables]::text[]) AS t(name) " +
+                        "LEFT JOIN pg_class c ON c.oid = to_regclass(t.name)",
+                params);
+
+        List<String> changed = new ArrayList<>();
+        for (Map<String, Object> row : current) {
+            String table = (String) row.get("name");
+            TableMetadata cached = tables.get(table);
+            Number oid = (Number) row.get("oid");
+            if (cached != null && (oid == null || oid.longValue() != cached.getOid() ||
+                    !Objects.equals(row.get("fingerprint"), cached.getFingerprint()))) {
+                changed.add(table);
+            }
+        }
+
+        changed.forEach(this::invalidate);
+        if (!changed.isEmpty()) {
+            LOGGER.info("Schema changes detected in {}", changed);
+        }
+        return changed;
+    }
+
+    public SchemaCacheStats getStats() {
+        SchemaCacheStats stats = new SchemaCacheStats();
+        stats.setHits(hits.get());
+        stats.setMisses(misses.get());
+        stats.setInvalidations(invalidations.get());
+        stats.setCachedTables(new ArrayList<>(tables.keySet()));
+        return stats;
+    }
+
+    private TableMetadata loadTable(String table) {
+        try {
+            List<TableMetadata> found = jdbcTemplate.query(
+                    "SELECT c.oid::bigint AS oid, " + FINGERPRINT + " AS fingerprint, " +
+                            "GREATEST(c.reltuples, 0)::bigint AS estimated_rows, c.relpages::bigint AS pages " +
+                            "FROM pg_class c WHERE c.oid = to_regclass(?)",
+                    (rs, rowNum) -> {
+                        TableMetadata metadata = new TableMetadata();
+                        metadata.setOid(rs.getLong("oid"));
+                        metadata.setFingerprint(rs.getString("fingerprint"));
+                        metadata.setEstimatedRows(rs.getLong("estimated_rows"));
+                        metadata.setPages(rs.getLong("pages"));
+                        return metadata;
+                    },
+                    table);
+            if (found.isEmpty()) {
+                throw new CleanupException("Table " + table + " not found");
+            }
+
+            TableMetadata metadata = found.get(0);
+            metadata.setTable(table);
+            metadata.setColumns(jdbcTemplate.query(
+                    "SELECT a.attname, format_type(a.atttypid, a.atttypmod) AS type, a.attnotnull, " +
+                            "a.attgenerated <> '' AS generated " +
+                            "FROM pg_attribute a " +
+                            "WHERE a.attrelid = ?::oid AND a.attnum > 0 AND NOT a.attisdropped " +
+                            "ORDER BY a.attnum",
+                    (rs, rowNum) -> {
+                        ColumnMetadata column = new ColumnMetadata();
+                        column.setName(rs.getString("attname"));
+                        column.setType(rs.getString("type"));
+                        column.setNullable(!rs.getBoolean("attnotnull"));
+                        column.setGenerated(rs.getBoolean("generated"));
+                        return column;
+                    },
+                    metadata.getOid()));
+            metadata.setPrimaryKey(jdbcTemplate.queryForList(
+                    "SELECT a.attname::text FROM pg_index i " +
+                            "CROSS JOIN LATERAL unnest(i.indkey) WITH ORDINALITY AS k(attnum, ord) " +
+                            "JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = k.attnum " +
+                            "WHERE i.indrelid = ?::oid AND i.indisprimary " +
+                            "ORDER BY k.ord",
+                    String.class, metadata.getOid()));
+            metadata.setForeignKeys(jdbcTemplate.query(FOREIGN_KEY_SELECT + "AND con.conrelid = ?::oid",
+                    (rs, rowNum) -> mapForeignKey(rs), metadata.getOid()));
+            metadata.setReferencingKeys(jdbcTemplate.query(FOREIGN_KEY_SELECT + "AND con.confrelid = ?::oid",
+                    (rs, rowNum) -> mapForeignKey(rs), metadata.getOid()));
+            metadata.setLoadedAt(LocalDateTime.now());
+
+            LOGGER.debug("Loaded schema metadata of {}: {} columns", table, metadata.getColumns().size());
+            return metadata;
+        } catch (CleanupException e) {
+            throw e;
+        } catch (Exception e) {
+            String errorMsg = "Error loading schema metadata of " + table + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    private ForeignKeyMetadata mapForeignKey(ResultSet rs) throws SQLException {
+        ForeignKeyMetadata foreignKey = new ForeignKeyMetadata();
+        foreignKey.setName(rs.getString("conname"));
+        foreignKey.setTable(rs.getString("table_name"));
+        foreignKey.setReferencedTable(rs.getString("referenced_table"));
+        foreignKey.setColumns(Arrays.asList((String[]) rs.getArray("columns").getArray()));
+        foreignKey.setReferencedColumns(Arrays.asList((String[]) rs.getArray("referenced_columns").getArray()));
+        foreignKey.setDeleteAction(rs.getString("delete_action"));
+        foreignKey.setIndexed(rs.getBoolean("indexed"));
+        return foreignKey;
+    }
+}
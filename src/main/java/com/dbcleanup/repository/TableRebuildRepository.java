@@ -0,0 +1,380 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.exception.CleanupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Catalog queries and DDL used to rebuild a table by copying its surviving rows into a shadow
+ * table and swapping the names. Table names are taken as configured, all names derived from
+ * the catalog are quoted.
+ */
+@Repository
+public class TableRebuildRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableRebuildRepository.class);
+
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TableRebuildRepository(JdbcTemplate jdbcTemplate) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Planner estimate of the row count, falling back to an exact count for tables that were
+     * never analyzed
+     */
+    public long estimateRowCount(String table) {
+        Long estimate = jdbcTemplate.queryForObject(
+                "SELECT c.reltuples::bigint FROM pg_class c WHERE c.oid = to_regclass(?)", Long.class, table);
+        if (estimate != null && estimate > 0) {
+            return estimate;
+        }
+
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Reason why the table cannot be swapped by renaming, or null. Views, rules, policies,
+     * inheritance and publications are bound to the table's oid and would stay with the old table.
+     */
+    public String findRebuildBlocker(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT CASE " +
+                        "WHEN c.relkind <> 'r' THEN 'not a plain table' " +
+                        "WHEN c.relrowsecurity THEN 'row level security is enabled' " +
+                        "WHEN EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid OR i.inhparent = c.oid) " +
+                        "THEN 'table takes part in inheritance' " +
+                        "WHEN EXISTS (SELECT 1 FROM pg_depend d JOIN pg_rewrite r ON r.oid = d.objid " +
+                        "WHERE d.classid = 'pg_rewrite'::regclass AND d.refobjid = c.oid AND r.ev_class <> c.oid) " +
+                        "THEN 'views or rules depend on the table' " +
+                        "WHEN EXISTS (SELECT 1 FROM pg_publication_rel p WHERE p.prrelid = c.oid) " +
+                        "THEN 'table is published for logical replication' " +
+                        "END " +
+                        "FROM pg_class c WHERE c.oid = to_regclass(?)",
+                String.class, table);
+    }
+
+    /**
+     * Unquoted schema and table name as stored in the catalog
+     */
+    public String[] findCatalogName(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT n.nspname, c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE c.oid = to_regclass(?)",
+                (rs, rowNum) -> new String[] {rs.getString("nspname"), rs.getString("relname")},
+                table);
+    }
+
+    /**
+     * First table whose foreign key references a candidate row and would be left dangling by the
+     * rebuild, or null. Composite foreign keys referencing the table are reported as well, since
+     * they cannot be checked here.
+     *
+     * @param cascadedReferences {table, foreign key column} of the related records the rebuild
+     *                           deletes itself, which are not reported
+     */
+    public String findTableReferencingCandidates(String table, String candidateQuery,
+                                                 List<String[]> cascadedReferences) {
+        Set<String> cascaded = new HashSet<>();
+        for (String[] cascadedReference : cascadedReferences) {
+            String resolved = jdbcTemplate.queryForObject("SELECT to_regclass(?)::text || '.' || quote_ident(?)",
+                    String.class, cascadedReference[0], cascadedReference[1]);
+            if (resolved != null) {
+                cascaded.add(resolved);
+            }
+        }
+
+        List<String[]> references = jdbcTemplate.query(
+                "SELECT con.conrelid::regclass::text AS child_table, quote_ident(ca.attname) AS child_column, " +
+                        "quote_ident(pa.attname) AS parent_column, con.conrelid = con.confrelid AS self_reference, " +
+                        "cardinality(con.conkey) > 1 AS composite " +
+                        "FROM pg_constraint con " +
+                        "JOIN pg_attribute ca ON ca.attrelid = con.conrelid AND ca.attnum = con.conkey[1] " +
+                        "JOIN pg_attribute pa ON pa.attrelid = con.confrelid AND pa.attnum = con.confkey[1] " +
+                        "WHERE con.confrelid = to_regclass(?) AND con.contype = 'f'",
+                (rs, rowNum) -> new String[] {
+                        rs.getString("child_table"), rs.getString("child_column"), rs.getString("parent_column"),
+                        String.valueOf(rs.getBoolean("self_reference")), String.valueOf(rs.getBoolean("composite"))},
+                table);
+
+        for (String[] reference : references) {
+            if (Boolean.parseBoolean(reference[4])) {
+                return reference[0];
+            }
+            if (cascaded.contains(reference[0] + "." + reference[1])) {
+                continue;
+            }
+
+            // Candidates referencing each other go away together
+            String excludeCandidates = Boolean.parseBoolean(reference[3]) ?
+                    " AND ch.id NOT IN (" + candidateQuery + ")" : "";
+            Boolean referenced = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + reference[0] + " ch WHERE ch." + reference[1] +
+                            " IN (SELECT p." + reference[2] + " FROM " + table + " p WHERE p.id IN (" +
+                            candidateQuery + "))" + excludeCandidates + ")",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(referenced)) {
+                return reference[0];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Quoted names of all columns that can be inserted into, i.e. excluding generated columns
+     */
+    public List<String> findInsertableColumns(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT quote_ident(a.attname) FROM pg_attribute a " +
+                        "WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 AND NOT a.attisdropped " +
+                        "AND a.attgenerated = '' ORDER BY a.attnum",
+                String.class, table);
+    }
+
+    /**
+     * Shadow table with the same columns, defaults, identity and check constraints but without
+     * indexes, so that the bulk copy does not maintain them row by row
+     */
+    public void createShadowTable(String table, String shadowTable) {
+        executeDdl("CREATE TABLE " + shadowTable + " (LIKE " + table + " INCLUDING ALL EXCLUDING INDEXES)");
+    }
+
+    /**
+     * Log table and trigger recording the id of every row inserted, updated or deleted from now
+     * on, so that changes made while the survivors are copied can be replayed
+     */
+    public void createChangeLog(String table, String logTable, String function, String trigger) {
+        executeDdl("CREATE UNLOGGED TABLE " + logTable + " AS SELECT e.id AS row_id FROM " +
+                table + " e WITH NO DATA");
+        executeDdl("CREATE FUNCTION " + function + "() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN " +
+                "IF TG_OP <> 'INSERT' THEN INSERT INTO " + logTable + " (row_id) VALUES (OLD.id); END IF; " +
+                "IF TG_OP <> 'DELETE' THEN INSERT INTO " + logTable + " (row_id) VALUES (NEW.id); END IF; " +
+                "RETURN NULL; END $$");
+        executeDdl("CREATE TRIGGER " + trigger + " AFTER INSERT OR UPDATE OR DELETE ON " + table +
+                " FOR EACH ROW EXECUTE FUNCTION " + function + "()");
+    }
+
+    public void dropChangeLog(String table, String logTable, String function, String trigger) {
+        executeDdl("DROP TRIGGER IF EXISTS " + trigger + " ON " + table);
+        executeDdl("DROP FUNCTION IF EXISTS " + function + "()");
+        executeDdl("DROP TABLE IF EXISTS " + logTable);
+    }
+
+    public void dropTrigger(String table, String trigger) {
+        executeDdl("DROP TRIGGER IF EXISTS " + trigger + " ON " + table);
+    }
+
+    /**
+     * Copy every row that is not a candidate into the shadow table
+     */
+    public int copySurvivors(String table, String shadowTable, List<String> columns, String candidateQuery) {
+        String sql = buildSurvivorInsert(table, shadowTable, columns, candidateQuery);
+
+        try {
+            int copied = jdbcTemplate.update(sql);
+            LOGGER.info("Copied {} surviving rows of {} into {}", copied, table, shadowTable);
+            return copied;
+        } catch (Exception e) {
+            String errorMsg = "Error copying surviving rows of " + table + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Re-copy the rows logged as changed since the last replay. Must run inside a transaction.
+     *
+     * @return number of distinct changed ids that were replayed
+     */
+    public int replayChanges(String table, String shadowTable, String logTable, List<String> columns,
+                             String candidateQuery) {
+        jdbcTemplate.execute("CREATE TEMP TABLE cleanup_rebuild_replay ON COMMIT DROP AS " +
+                "SELECT row_id FROM " + logTable + " WITH NO DATA");
+        int changed = jdbcTemplate.update("WITH logged AS (DELETE FROM " + logTable + " RETURNING row_id) " +
+                "INSERT INTO cleanup_rebuild_replay SELECT DISTINCT row_id FROM logged");
+        if (changed == 0) {
+            return 0;
+        }
+
+        jdbcTemplate.update("DELETE FROM " + shadowTable +
+                " WHERE id IN (SELECT row_id FROM cleanup_rebuild_replay)");
+        jdbcTemplate.update(buildSurvivorInsert(table, shadowTable, columns, candidateQuery) +
+                " AND e.id IN (SELECT row_id FROM cleanup_rebuild_replay)");
+        return changed;
+    }
+
+    /**
+     * Create the indexes and index backed constraints of the table on the shadow table under
+     * temporary names.
+     *
+     * @return original index name to temporary index name, both unquoted
+     */
+    public Map<String, String> copyIndexes(String table, String shadowTable, String suffix) {
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(
+                "SELECT ic.relname AS index_name, i.indisunique AS is_unique, " +
+                        "pg_get_indexdef(i.indexrelid) AS index_def, " +
+                        "pg_get_constraintdef(con.oid) AS constraint_def " +
+                        "FROM pg_index i " +
+                        "JOIN pg_class ic ON ic.oid = i.indexrelid " +
+                        "LEFT JOIN pg_constraint con ON con.conindid = i.indexrelid " +
+                        "AND con.conrelid = i.indrelid AND con.contype IN ('p', 'u', 'x') " +
+                        "WHERE i.indrelid = to_regclass(?) " +
+                        "ORDER BY con.oid IS NULL, ic.relname",
+                table);
+
+        Map<String, String> renames = new LinkedHashMap<>();
+        for (Map<String, Object> index : indexes) {
+            String indexName = (String) index.get("index_name");
+            String temporaryName = identifier(indexName, suffix);
+            String constraintDef = (String) index.get("constraint_def");
+
+            if (constraintDef != null) {
+                // Primary keys, unique and exclusion constraints create their own index
+                executeDdl("ALTER TABLE " + shadowTable + " ADD CONSTRAINT " + quote(temporaryName) +
+                        " " + constraintDef);
+            } else {
+                String indexDef = (String) index.get("index_def");
+                executeDdl("CREATE " + (Boolean.TRUE.equals(index.get("is_unique")) ? "UNIQUE " : "") +
+                        "INDEX " + quote(temporaryName) + " ON " + shadowTable +
+                        indexDef.substring(indexDef.indexOf(" USING ")));
+            }
+            renames.put(indexName, temporaryName);
+        }
+        return renames;
+    }
+
+    /**
+     * Foreign keys declared on the table that reference other tables, as constraint name to
+     * definition
+     */
+    public Map<String, String> findOutgoingForeignKeys(String table) {
+        Map<String, String> foreignKeys = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT con.conname, pg_get_constraintdef(con.oid) AS definition FROM pg_constraint con " +
+                        "WHERE con.conrelid = to_regclass(?) AND con.confrelid <> con.conrelid " +
+                        "AND con.contype = 'f' ORDER BY con.conname",
+                rs -> {
+                    foreignKeys.put(rs.getString("conname"), rs.getString("definition"));
+                },
+                table);
+        return foreignKeys;
+    }
+
+    /**
+     * Foreign keys referencing the table, including self references. Each entry holds the
+     * referencing table, the constraint name and its definition.
+     */
+    public List<String[]> findIncomingForeignKeys(String table) {
+        return jdbcTemplate.query(
+                "SELECT con.conrelid::regclass::text AS child_table, con.conname, " +
+                        "pg_get_constraintdef(con.oid) AS definition FROM pg_constraint con " +
+                        "WHERE con.confrelid = to_regclass(?) AND con.contype = 'f' ORDER BY con.conname",
+                (rs, rowNum) -> new String[] {
+                        rs.getString("child_table"), rs.getString("conname"), rs.getString("definition")},
+                table);
+    }
+
+    /**
+     * Sequences feeding columns of the table. Each entry holds the unquoted column, the sequence
+     * and whether it is an identity column.
+     */
+    public List<String[]> findSequenceColumns(String table) {
+        return jdbcTemplate.query(
+                "SELECT a.attname AS column_name, " +
+                        "pg_get_serial_sequence(?, a.attname) AS sequence_name, " +
+                        "a.attidentity <> '' AS is_identity " +
+                        "FROM pg_attribute a WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 " +
+                        "AND NOT a.attisdropped AND pg_get_serial_sequence(?, a.attname) IS NOT NULL",
+                (rs, rowNum) -> new String[] {
+                        rs.getString("column_name"), rs.getString("sequence_name"),
+                        String.valueOf(rs.getBoolean("is_identity"))},
+                table, table, table);
+    }
+
+    /**
+     * CREATE TRIGGER statements of the user defined triggers on the table
+     */
+    public List<String> findTriggerDefinitions(String table, String excludedTrigger) {
+        return jdbcTemplate.queryForList(
+                "SELECT pg_get_triggerdef(t.oid) FROM pg_trigger t " +
+                        "WHERE t.tgrelid = to_regclass(?) AND NOT t.tgisinternal AND t.tgname <> ?",
+                String.class, table, excludedTrigger);
+    }
+
+    /**
+     * Privileges granted on the table to roles other than its owner, as grantee and privilege
+     */
+    public List<String[]> findGrants(String schema, String table) {
+        return jdbcTemplate.query(
+                "SELECT g.grantee, g.privilege_type FROM information_schema.role_table_grants g " +
+                        "JOIN pg_class c ON c.oid = to_regclass(?) " +
+                        "WHERE g.table_schema = ? AND g.table_name = c.relname " +
+                        "AND g.grantee <> pg_get_userbyid(c.relowner)",
+                (rs, rowNum) -> new String[] {rs.getString("grantee"), rs.getString("privilege_type")},
+                table, schema);
+    }
+
+    /**
+     * Take an ACCESS EXCLUSIVE lock, waiting at most the given time. Must run inside a
+     * transaction; a lock timeout surfaces as a PessimisticLockingFailureException.
+     */
+    public void lockExclusive(String table, long timeoutMillis) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + timeoutMillis + "ms'");
+        jdbcTemplate.execute("LOCK TABLE " + table + " IN ACCESS EXCLUSIVE MODE");
+    }
+
+    public void restartIdentity(String table, String column, String oldSequence) {
+        jdbcTemplate.queryForObject(
+                "SELECT setval(pg_get_serial_sequence(?, ?), nextval(?::regclass), false)",
+                Long.class, table, column, oldSequence);
+    }
+
+    public void executeDdl(String ddl) {
+        try {
+            jdbcTemplate.execute(ddl);
+            LOGGER.debug("Executed: {}", ddl);
+        } catch (Exception e) {
+            String errorMsg = "Error executing rebuild DDL '" + ddl + "': " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Identifier made of a base name and a suffix, shortening the base to stay within the
+     * PostgreSQL identifier length
+     */
+    public static String identifier(String base, String suffix) {
+        int maxBase = MAX_IDENTIFIER_LENGTH - suffix.length();
+        return (base.length() > maxBase ? base.substring(0, maxBase) : base) + suffix;
+    }
+
+    public static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private String buildSurvivorInsert(String table, String shadowTable, List<String> columns,
+                                       String candidateQuery) {
+        List<String> selectColumns = new ArrayList<>();
+        for (String column : columns) {
+            selectColumns.add("e." + column);
+        }
+
+        return "INSERT INTO " + shadowTable + " (" + String.join(", ", columns) + ") OVERRIDING SYSTEM VALUE " +
+                "SELECT " + String.join(", ", selectColumns) + " FROM " + table + " e " +
+                "WHERE NOT EXISTS (SELECT 1 FROM (" + candidateQuery + ") c WHERE c.id = e.id)";
+    }
+}
@@ -3,32 +3,65 @@ package com.dbcleanup.repository;
 import com.dbcleanup.config.CleanupProperties;
 import com.dbcleanup.exception.CleanupException;
 import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.model.EntityRunStats;
+import com.dbcleanup.model.TaskHistoryQuery;
+import com.dbcleanup.model.TaskPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.support.SqlArrayValue;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.lang.management.ManagementFactory;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * The task log. Every write commits in a transaction of its own, so that a running task, its
+ * owner and its heartbeats are visible to other instances while the task's own work is still
+ * uncommitted, and outlive it when that work is rolled back.
+ */
 @Repository
 public class TaskLogRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskLogRepository.class);
 
+    // WAL written by the database during a task is the difference of this position at its start and end
+    private static final String WAL_POSITION = "(pg_current_wal_insert_lsn() - '0/0'::pg_lsn)::bigint";
+
+    // Order of the task history; task ids compare bytewise, as in Java, and match the page indexes
+    private static final String NEWEST_FIRST = " ORDER BY started_at DESC, task_id COLLATE \"C\" DESC";
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate logTransaction;
     private final CleanupProperties.TaskLoggingConfig config;
     private final RowMapper<CleanupTask> taskRowMapper;
+    private final RecentTaskCache cache;
+    // Owner recorded on the tasks started here; unique per JVM, so a restarted instance does not
+    // mistake the tasks of its previous life for its own
+    private final String nodeId;
 
-    public TaskLogRepository(JdbcTemplate jdbcTemplate, CleanupProperties.TaskLoggingConfig config) {
+    public TaskLogRepository(JdbcTemplate jdbcTemplate, CleanupProperties.TaskLoggingConfig config,
+                             PlatformTransactionManager transactionManager) {
         super();
         this.jdbcTemplate = jdbcTemplate;
+        this.logTransaction = new TransactionTemplate(transactionManager);
+        this.logTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
         this.config = config;
         this.taskRowMapper = new CleanupTaskRowMapper();
+        this.cache = new RecentTaskCache(config.getCacheSize(), config.getCacheMaxAgeMillis());
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName();
         ensureTaskLogTableExists();
     }
 
@@ -41,7 +74,7 @@ public class TaskLogRepository {
         String sql = buildInsertTaskLogQuery();
 
         try {
-            jdbcTemplate.update(sql,
+            writeCommitted(sql,
                     taskId,
                     taskType,
                     initiator,
@@ -51,7 +84,8 @@ public class TaskLogRepository {
                     dryRun,
                     null, // candidatesCount
                     null, // deletedCount
-                    null  // errorMessage
+                    null, // errorMessage
+                    nodeId
             );
 
             LOGGER.info("Logged task start: taskId={}, type={}, initiator={}",
@@ -72,11 +106,11 @@ public class TaskLogRepository {
 
         String sql = "UPDATE " + getTaskLogTableName() +
                 " SET status = ?, completed_at = ?, " +
-                "candidates_count = ?, deleted_count = ? " +
-                "WHERE task_id = ?";
+                "candidates_count = ?, deleted_count = ?, wal_bytes = " + WAL_POSITION + " - wal_start_position " +
+                "WHERE task_id = ? RETURNING *";
 
         try {
-            jdbcTemplate.update(sql,
+            writeCommitted(sql,
                     "COMPLETED",
                     LocalDateTime.now(),
                     candidatesCount,
@@ -98,11 +132,12 @@ public class TaskLogRepository {
         }
 
         String sql = "UPDATE " + getTaskLogTableName() +
-                " SET status = ?, completed_at = ?, error_message = ? " +
-                "WHERE task_id = ?";
+                " SET status = ?, completed_at = ?, error_message = ?, " +
+                "wal_bytes = " + WAL_POSITION + " - wal_start_position " +
+                "WHERE task_id = ? RETURNING *";
 
         try {
-            jdbcTemplate.update(sql,
+            writeCommitted(sql,
                     "FAILED",
                     LocalDateTime.now(),
                     errorMessage,
@@ -117,19 +152,45 @@ public class TaskLogRepository {
     }
 
     public List<CleanupTask> getRecentTasks(int limit) {
-        String sql = "SELECT * FROM " + getTaskLogTableName() +
-                " ORDER BY started_at DESC LIMIT ?";
+        TaskHistoryQuery query = new TaskHistoryQuery();
+        query.setLimit(limit);
+        return findTasks(query).getTasks();
+    }
+
+    /**
+     * A page of the task history, from the cache of recent and running tasks when it holds the
+     * whole page and from the database otherwise
+     */
+    public TaskPage findTasks(TaskHistoryQuery query) {
+        int limit = Math.max(1, Math.min(query.getLimit(), config.getMaxPageSize()));
 
         try {
-            return jdbcTemplate.query(sql, taskRowMapper, limit);
+            List<CleanupTask> tasks = null;
+            if (cache.isEnabled()) {
+                if (!cache.isFresh()) {
+                    reloadCache();
+                }
+                tasks = cache.find(query, limit + 1);
+            }
+            if (tasks == null) {
+                tasks = queryTasks(query, limit + 1);
+            }
+            return TaskPage.of(tasks, limit);
         } catch (DataAccessException e) {
-            String errorMsg = "Error retrieving recent tasks: " + e.getMessage();
+            String errorMsg = "Error retrieving task history: " + e.getMessage();
             LOGGER.error(errorMsg, e);
             throw new CleanupException(errorMsg, e);
         }
     }
 
     public CleanupTask getTask(String taskId) {
+        if (cache.isEnabled() && cache.isFresh()) {
+            CleanupTask cached = cache.get(taskId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         String sql = "SELECT * FROM " + getTaskLogTableName() +
                 " WHERE task_id = ?";
 
@@ -142,11 +203,243 @@ public class TaskLogRepository {
         }
     }
 
+    /**
+     * Tasks of the given initiator that were started but never completed or failed, by another
+     * instance whose last heartbeat for them is older than the given time. Tasks logged before
+     * owners were recorded are not taken over.
+     */
+    public List<CleanupTask> findAbandonedTasks(String initiator, LocalDateTime heartbeatBefore) {
+        if (!config.isEnabled()) {
+            return List.of();
+        }
+
+        String sql = "SELECT * FROM " + getTaskLogTableName() +
+                " WHERE initiator = ? AND status = 'STARTED' AND owner_node IS NOT NULL AND owner_node <> ? " +
+                "AND heartbeat_at < ? ORDER BY started_at";
+
+        try {
+            return jdbcTemplate.query(sql, taskRowMapper, initiator, nodeId, heartbeatBefore);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error retrieving abandoned tasks: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Mark the running tasks of this instance as alive
+     */
+    public void heartbeat() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        try {
+            logTransaction.executeWithoutResult(status -> jdbcTemplate.update("UPDATE " + getTaskLogTableName() +
+                    " SET heartbeat_at = CURRENT_TIMESTAMP WHERE owner_node = ? AND status = 'STARTED'", nodeId));
+        } catch (DataAccessException e) {
+            LOGGER.error("Error updating task heartbeat: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Make this instance the owner of an abandoned task, unless another instance took it over
+     * or its owner sent a heartbeat in the meantime
+     *
+     * @return whether this instance now owns the task
+     */
+    public boolean takeOverTask(String taskId, LocalDateTime heartbeatBefore) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+
+        String sql = "UPDATE " + getTaskLogTableName() + " SET owner_node = ?, heartbeat_at = CURRENT_TIMESTAMP " +
+                "WHERE task_id = ? AND status = 'STARTED' AND owner_node <> ? AND heartbeat_at < ? RETURNING *";
+
+        try {
+            return !writeCommitted(sql, nodeId, taskId, nodeId, heartbeatBefore).isEmpty();
+        } catch (DataAccessException e) {
+            String errorMsg = "Error taking over task " + taskId + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Whether the initiator started any task at or after the given time
+     */
+    public boolean hasTaskStartedSince(String initiator, LocalDateTime since) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+
+        String sql = "SELECT EXISTS (SELECT 1 FROM " + getTaskLogTableName() +
+                " WHERE initiator = ? AND started_at >= ?)";
+
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, initiator, since));
+        } catch (DataAccessException e) {
+            String errorMsg = "Error checking recent tasks: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Records deleted per second by the last runs of an entity that deleted records, over the
+     * time the entity itself took; null if there are none
+     */
+    public Double findDeleteThroughput(String entityName, int runCount) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+
+        // Index seek on (entity_name, started_at) of the real runs
+        String sql = "SELECT SUM(r.deleted_count) * 1000.0 / NULLIF(SUM(r.duration_millis), 0) " +
+                "FROM (SELECT deleted_count, duration_millis FROM " + getEntityRunTableName() +
+                " WHERE entity_name = ? AND NOT dry_run AND deleted_count > 0 " +
+                "ORDER BY started_at DESC LIMIT ?) r";
+
+        try {
+            return jdbcTemplate.queryForObject(sql, Double.class, entityName, runCount);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error reading cleanup throughput: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Record how long an entity took within a task and how many records it found and deleted
+     */
+    public void logEntityRun(String taskId, String entityName, boolean dryRun, long durationMillis,
+                             int candidatesCount, int deletedCount) {
+        if (!config.isEnabled() || taskId == null) {
+            return;
+        }
+
+        String sql = "INSERT INTO " + getEntityRunTableName() +
+                " (task_id, entity_name, dry_run, started_at, duration_millis, candidates_count, deleted_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        try {
+            logTransaction.executeWithoutResult(status -> jdbcTemplate.update(sql, taskId, entityName, dryRun,
+                    LocalDateTime.now().minus(Duration.ofMillis(durationMillis)), durationMillis,
+                    candidatesCount, deletedCount));
+        } catch (DataAccessException e) {
+            LOGGER.error("Error logging run of entity {}: {}", entityName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Averages over the last runs of each entity that deleted for real; entities without such
+     * runs are left out, and so is every entity when the statistics cannot be read
+     */
+    public Map<String, EntityRunStats> findEntityRunStats(List<String> entityNames, int runs) {
+        Map<String, EntityRunStats> stats = new HashMap<>();
+        if (!config.isEnabled() || entityNames.isEmpty()) {
+            return stats;
+        }
+
+        // One index seek per entity for its last runs
+        String sql = "SELECT e.name, COUNT(*) AS runs, AVG(r.duration_millis)::bigint AS avg_millis, " +
+                "COALESCE(AVG(r.candidates_count), 0)::bigint AS avg_candidates, " +
+                "COALESCE(AVG(r.deleted_count), 0)::bigint AS avg_deleted " +
+                "FROM unnest(CAST(? AS text[])) AS e(name) " +
+                "CROSS JOIN LATERAL (SELECT duration_millis, candidates_count, deleted_count FROM " +
+                getEntityRunTableName() + " WHERE entity_name = e.name AND NOT dry_run " +
+                "ORDER BY started_at DESC LIMIT ?) r GROUP BY e.name";
+
+        try {
+            jdbcTemplate.query(sql,
+                    rs -> {
+                        String entityName = rs.getString("name");
+                        stats.put(entityName, new EntityRunStats(entityName, rs.getInt("runs"),
+                                rs.getLong("avg_millis"), rs.getLong("avg_candidates"), rs.getLong("avg_deleted")));
+                    },
+                    new SqlArrayValue("text", entityNames.toArray()), Math.max(1, runs));
+        } catch (DataAccessException e) {
+            LOGGER.error("Error reading entity run statistics: {}", e.getMessage(), e);
+            stats.clear();
+        }
+        return stats;
+    }
+
+    /**
+     * Keyset page query: each filter and the cursor are conditions an index on
+     * (filter column, started_at, task_id) can seek to, whatever the depth of the page
+     */
+    private List<CleanupTask> queryTasks(TaskHistoryQuery query, int rows) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(getTaskLogTableName()).append(" WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+
+        if (query.getStatus() != null) {
+            sql.append(" AND status = ?");
+            args.add(query.getStatus().getValue());
+        }
+        if (query.getTaskType() != null) {
+            sql.append(" AND task_type = ?");
+            args.add(query.getTaskType());
+        }
+        if (query.getInitiator() != null) {
+            sql.append(" AND initiator = ?");
+            args.add(query.getInitiator());
+        }
+        if (query.getEntity() != null) {
+            sql.append(" AND string_to_array(entities, ',') @> ARRAY[CAST(? AS text)]");
+            args.add(query.getEntity());
+        }
+        if (query.getStartedFrom() != null) {
+            sql.append(" AND started_at >= ?");
+            args.add(query.getStartedFrom());
+        }
+        if (query.getStartedBefore() != null) {
+            sql.append(" AND started_at < ?");
+            args.add(query.getStartedBefore());
+        }
+        if (query.hasCursor()) {
+            sql.append(" AND (started_at, task_id COLLATE \"C\") < (?, ?)");
+            args.add(query.getAfterStartedAt());
+            args.add(query.getAfterTaskId());
+        }
+
+        sql.append(NEWEST_FIRST).append(" LIMIT ?");
+        args.add(rows);
+        return jdbcTemplate.query(sql.toString(), taskRowMapper, args.toArray());
+    }
+
+    private void reloadCache() {
+        String table = getTaskLogTableName();
+        cache.load(
+                jdbcTemplate.query("SELECT * FROM " + table + NEWEST_FIRST + " LIMIT ?", taskRowMapper,
+                        cache.getCapacity()),
+                jdbcTemplate.query("SELECT * FROM " + table + " WHERE status = 'STARTED'", taskRowMapper));
+    }
+
+    /**
+     * Run a task log statement returning the tasks it wrote in a transaction of its own, and
+     * write those tasks through to the cache once it has committed. A task that is cached is
+     * one other readers of the task log see as well, and a rolled back write never reaches
+     * the cache.
+     */
+    private List<CleanupTask> writeCommitted(String sql, Object... args) {
+        List<CleanupTask> written = logTransaction.execute(status -> jdbcTemplate.query(sql, taskRowMapper, args));
+        written.forEach(cache::put);
+        return written;
+    }
+
     private void ensureTaskLogTableExists() {
         // This would be better handled by schema.sql or Flyway/Liquibase in a real app
         LOGGER.info("Task log table should be created by schema.sql or database migration");
     }
 
+    private String getEntityRunTableName() {
+        if (config.getSchema() != null && !config.getSchema().isEmpty()) {
+            return config.getSchema() + "." + config.getEntityRunTable();
+        }
+        return config.getEntityRunTable();
+    }
+
     private String getTaskLogTableName() {
         if (config.getSchema() != null && !config.getSchema().isEmpty()) {
             return config.getSchema() + "." + config.getTable();
@@ -157,8 +450,9 @@ public class TaskLogRepository {
     private String buildInsertTaskLogQuery() {
         return "INSERT INTO " + getTaskLogTableName() +
                 " (task_id, task_type, initiator, entities, started_at, status, " +
-                "dry_run, candidates_count, deleted_count, error_message) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                "dry_run, candidates_count, deleted_count, error_message, owner_node, heartbeat_at, " +
+                "wal_start_position) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, " + WAL_POSITION + ") RETURNING *";
     }
 
     private static class CleanupTaskRowMapper implements RowMapper<CleanupTask> {
@@ -168,13 +462,22 @@ public class TaskLogRepository {
 
         @Override
         public CleanupTask mapRow(ResultSet rs, int rowNum) throws SQLException {
-            return new CleanupTask(
-                String.valueOf(rs.getLong("id")),
-                rs.getTimestamp("start_time").toLocalDateTime(),
-                rs.getTimestamp("end_time") != null ? rs.getTimestamp("end_time").toLocalDateTime() : null,
+            CleanupTask task = new CleanupTask(
+                rs.getString("task_id"),
+                rs.getTimestamp("started_at").toLocalDateTime(),
+                rs.getTimestamp("completed_at") != null ? rs.getTimestamp("completed_at").toLocalDateTime() : null,
                 CleanupTask.Status.valueOf(rs.getString("status")),
-                rs.getString("details")
+                rs.getString("error_message")
             );
+            task.setTaskType(rs.getString("task_type"));
+            task.setInitiator(rs.getString("initiator"));
+            String entities = rs.getString("entities");
+            task.setEntities(entities != null && !entities.isEmpty() ? entities.split(",") : new String[0]);
+            task.setDryRun(rs.getBoolean("dry_run"));
+            task.setCandidatesCount(rs.getObject("candidates_count", Integer.class));
+            task.setDeletedCount(rs.getObject("deleted_count", Integer.class));
+            task.setWalBytes(rs.getObject("wal_bytes", Long.class));
+            return task;
         }
     }
 }
@@ -0,0 +1,92 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.exception.CleanupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Per-entity high-watermarks of incremental candidate discovery
+ */
+@Repository
+public class WatermarkRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatermarkRepository.class);
+
+    private static final String WATERMARK_TABLE = "cleanup_watermark";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CleanupProperties properties;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+
+    public WatermarkRepository(JdbcTemplate jdbcTemplate, CleanupProperties properties,
+                               SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+    }
+
+    /**
+     * The stored watermark of an entity as text, or null before its first run
+     */
+    public String findWatermark(String entityName) {
+        List<String> watermark = jdbcTemplate.queryForList(
+                "SELECT watermark FROM " + getWatermarkTableName() + " WHERE entity_name = ?",
+                String.class, entityName);
+        return watermark.isEmpty() ? null : watermark.get(0);
+    }
+
+    /**
+     * Time of the entity's last full sweep, or null if there was none
+     */
+    public LocalDateTime findLastFullSweep(String entityName) {
+        List<Timestamp> sweep = jdbcTemplate.queryForList(
+                "SELECT last_full_sweep_at FROM " + getWatermarkTableName() + " WHERE entity_name = ?",
+                Timestamp.class, entityName);
+        return sweep.isEmpty() || sweep.get(0) == null ? null : sweep.get(0).toLocalDateTime();
+    }
+
+    /**
+     * Evaluate the cutoff expression now and return it cast to the field's type, as text
+     */
+    public String evaluateCutoff(String cutoffExpression, String type) {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT CAST((" + cutoffExpression + ") AS " + type + ")::text", String.class);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error evaluating cutoff " + cutoffExpression + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    public String findColumnType(String table, String column) {
+        return schemaMetadataRepository.findColumnType(table, column);
+    }
+
+    /**
+     * Store the new watermark; a full sweep also records its time
+     */
+    public void saveWatermark(String entityName, String watermark, boolean fullSweep) {
+        jdbcTemplate.update("INSERT INTO " + getWatermarkTableName() +
+                        " AS w (entity_name, watermark, last_full_sweep_at, updated_at) " +
+                        "VALUES (?, ?, CASE WHEN ? THEN CURRENT_TIMESTAMP END, CURRENT_TIMESTAMP) " +
+                        "ON CONFLICT (entity_name) DO UPDATE SET watermark = EXCLUDED.watermark, " +
+                        "last_full_sweep_at = COALESCE(EXCLUDED.last_full_sweep_at, w.last_full_sweep_at), " +
+                        "updated_at = EXCLUDED.updated_at",
+                entityName, watermark, fullSweep);
+        LOGGER.info("Advanced watermark of entity {} to {}", entityName, watermark);
+    }
+
+    private String getWatermarkTableName() {
+        String schema = properties.getTaskLogging() != null ? properties.getTaskLogging().getSchema() : null;
+        return schema != null && !schema.isEmpty() ? schema + "." + WATERMARK_TABLE : WATERMARK_TABLE;
+    }
+}
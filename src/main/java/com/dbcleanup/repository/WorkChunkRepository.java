@@ -0,0 +1,238 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.WorkChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Work table shared by all nodes of a cluster. Chunks are claimed with
+ * SELECT ... FOR UPDATE SKIP LOCKED, so concurrent nodes never wait for each other, and
+ * carry a lease after which a chunk of a crashed node can be claimed again.
+ */
+@Repository
+public class WorkChunkRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkChunkRepository.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CleanupProperties properties;
+    private final RowMapper<WorkChunk> chunkRowMapper;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+
+    public WorkChunkRepository(JdbcTemplate jdbcTemplate, CleanupProperties properties,
+                               SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+        this.chunkRowMapper = new WorkChunkRowMapper();
+    }
+
+    public String findKeyType(String table) {
+        return schemaMetadataRepository.findColumnType(table, "id");
+    }
+
+    /**
+     * Every chunkSize-th candidate id in key order, as text. These become the inclusive lower
+     * bounds of the chunks.
+     */
+    public List<String> planBoundaries(String candidateQuery, int chunkSize) {
+        try {
+            return jdbcTemplate.queryForList(
+                    "SELECT b.id::text FROM (SELECT c.id, row_number() OVER (ORDER BY c.id) AS rn " +
+                            "FROM (" + candidateQuery + ") c) b WHERE b.rn % ? = 1 ORDER BY b.id",
+                    String.class, chunkSize);
+        } catch (DataAccessException e) {
+            String errorMsg = "Error planning chunks: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Write the chunk plan of an entity. The first and last chunks are open ended so that rows
+     * becoming candidates after planning are covered as well.
+     */
+    public int insertChunks(String taskId, String entityName, List<String> boundaries, boolean dryRun) {
+        List<Object[]> rows = new ArrayList<>();
+        if (boundaries.isEmpty()) {
+            rows.add(new Object[] {taskId, entityName, 0, null, null, dryRun});
+        }
+        for (int i = 0; i < boundaries.size(); i++) {
+            String lower = i == 0 ? null : boundaries.get(i);
+            String upper = i + 1 < boundaries.size() ? boundaries.get(i + 1) : null;
+            rows.add(new Object[] {taskId, entityName, i, lower, upper, dryRun});
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO " + getWorkTableName() +
+                " (task_id, entity_name, chunk_no, lower_bound, upper_bound, dry_run, status) " +
+                "VALUES (?, ?, ?, ?, ?, ?, 'PENDING')", rows);
+        LOGGER.info("Planned {} chunks for entity {} in task {}", rows.size(), entityName, taskId);
+        return rows.size();
+    }
+
+    /**
+     * Claim the oldest pending chunk, or a chunk whose lease expired, for the given node
+     *
+     * @param taskId restrict to one task, or null for any task
+     * @return the claimed chunk, or null when nothing is claimable
+     */
+    public WorkChunk claimNext(String nodeId, int leaseSeconds, int maxAttempts, String taskId) {
+        String table = getWorkTableName();
+        String sql = "UPDATE " + table + " w SET status = 'CLAIMED', owner_node = ?, attempts = w.attempts + 1, " +
+                "lease_expires_at = CURRENT_TIMESTAMP + make_interval(secs => ?) " +
+                "WHERE w.chunk_id = (SELECT c.chunk_id FROM " + table + " c " +
+                "WHERE (c.status = 'PENDING' OR (c.status = 'CLAIMED' AND c.lease_expires_at < CURRENT_TIMESTAMP)) " +
+                "AND c.attempts < ? " +
+                (taskId != null ? "AND c.task_id = ? " : "") +
+                "ORDER BY c.created_at, c.chunk_id LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+                "RETURNING w.*";
+
+        List<WorkChunk> claimed = taskId != null ?
+                jdbcTemplate.query(sql, chunkRowMapper, nodeId, leaseSeconds, maxAttempts, taskId) :
+                jdbcTemplate.query(sql, chunkRowMapper, nodeId, leaseSeconds, maxAttempts);
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    /**
+     * Lock a chunk for the rest of the transaction if the node still owns it. While locked,
+     * the chunk cannot be reclaimed even if its lease runs out.
+     */
+    public boolean lockOwnedChunk(long chunkId, String nodeId) {
+        List<Long> locked = jdbcTemplate.queryForList(
+                "SELECT chunk_id FROM " + getWorkTableName() +
+                        " WHERE chunk_id = ? AND owner_node = ? AND status = 'CLAIMED' FOR UPDATE",
+                Long.class, chunkId, nodeId);
+        return !locked.isEmpty();
+    }
+
+    public void markDone(long chunkId, int candidates, int deleted, int backedUp) {
+        jdbcTemplate.update("UPDATE " + getWorkTableName() +
+                        " SET status = 'DONE', lease_expires_at = NULL, completed_at = CURRENT_TIMESTAMP, " +
+                        "candidates_count = ?, deleted_count = ?, backed_up_count = ?, error_message = NULL " +
+                        "WHERE chunk_id = ?",
+                candidates, deleted, backedUp, chunkId);
+    }
+
+    /**
+     * Record the WAL a chunk wrote, once it committed
+     */
+    public void recordWalBytes(long chunkId, long walBytes) {
+        jdbcTemplate.update("UPDATE " + getWorkTableName() + " SET wal_bytes = ? WHERE chunk_id = ?",
+                walBytes, chunkId);
+    }
+
+    /**
+     * Release a chunk after an error, so it is retried until maxAttempts is reached
+     */
+    public void markFailed(long chunkId, String nodeId, String errorMessage, int maxAttempts) {
+        String message = errorMessage != null && errorMessage.length() > 1000 ?
+                errorMessage.substring(0, 1000) : errorMessage;
+        jdbcTemplate.update("UPDATE " + getWorkTableName() +
+                        " SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'PENDING' END, " +
+                        "owner_node = NULL, lease_expires_at = NULL, error_message = ? " +
+                        "WHERE chunk_id = ? AND owner_node = ?",
+                maxAttempts, message, chunkId, nodeId);
+    }
+
+    /**
+     * Fail chunks whose lease expired on their last allowed attempt; they would otherwise stay
+     * claimed forever
+     */
+    public int failExhaustedChunks(String taskId, int maxAttempts) {
+        String table = getWorkTableName();
+        // Chunks still locked by a slow but live node are skipped
+        return jdbcTemplate.update("UPDATE " + table +
+                        " SET status = 'FAILED', owner_node = NULL, lease_expires_at = NULL, " +
+                        "error_message = COALESCE(error_message, 'Lease expired after ' || attempts || ' attempts') " +
+                        "WHERE chunk_id IN (SELECT c.chunk_id FROM " + table + " c " +
+                        "WHERE c.task_id = ? AND c.status = 'CLAIMED' AND c.lease_expires_at < CURRENT_TIMESTAMP " +
+                        "AND c.attempts >= ? FOR UPDATE SKIP LOCKED)",
+                taskId, maxAttempts);
+    }
+
+    public int countOpenChunks(String taskId) {
+        Integer open = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + getWorkTableName() +
+                        " WHERE task_id = ? AND status IN ('PENDING', 'CLAIMED')",
+                Integer.class, taskId);
+        return open != null ? open : 0;
+    }
+
+    public int countChunks(String taskId) {
+        Integer chunks = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + getWorkTableName() + " WHERE task_id = ?",
+                Integer.class, taskId);
+        return chunks != null ? chunks : 0;
+    }
+
+    /**
+     * Counts per entity over all chunks of a task, with the error of the failed chunks
+     */
+    public CleanupResult summarize(String taskId) {
+        CleanupResult result = new CleanupResult();
+        result.setTaskId(taskId);
+
+        jdbcTemplate.query(
+                "SELECT entity_name, COALESCE(SUM(candidates_count), 0) AS candidates, " +
+                        "COALESCE(SUM(deleted_count), 0) AS deleted, " +
+                        "COALESCE(SUM(backed_up_count), 0) AS backed_up, " +
+                        "COALESCE(SUM(wal_bytes), 0) AS wal_bytes, " +
+                        "string_agg(error_message, '; ') FILTER (WHERE status = 'FAILED') AS errors " +
+                        "FROM " + getWorkTableName() + " WHERE task_id = ? GROUP BY entity_name",
+                rs -> {
+                    String entityName = rs.getString("entity_name");
+                    result.setCandidateCount(entityName, rs.getInt("candidates"));
+                    result.setDeletedCount(entityName, rs.getInt("deleted"));
+                    result.setBackedUpCount(entityName, rs.getInt("backed_up"));
+                    result.setWalBytes(entityName, rs.getLong("wal_bytes"));
+                    if (rs.getString("errors") != null) {
+                        result.setError(entityName, rs.getString("errors"));
+                    }
+                },
+                taskId);
+        return result;
+    }
+
+    private String getWorkTableName() {
+        String schema = properties.getTaskLogging() != null ? properties.getTaskLogging().getSchema() : null;
+        String table = properties.getCluster().getWorkTable();
+        return schema != null && !schema.isEmpty() ? schema + "." + table : table;
+    }
+
+    private static class WorkChunkRowMapper implements RowMapper<WorkChunk> {
+        WorkChunkRowMapper() {
+            super();
+        }
+
+        @Override
+        public WorkChunk mapRow(ResultSet rs, int rowNum) throws SQLException {
+            WorkChunk chunk = new WorkChunk();
+            chunk.setChunkId(rs.getLong("chunk_id"));
+            chunk.setTaskId(rs.getString("task_id"));
+            chunk.setEntityName(rs.getString("entity_name"));
+            chunk.setChunkNo(rs.getInt("chunk_no"));
+            chunk.setLowerBound(rs.getString("lower_bound"));
+            chunk.setUpperBound(rs.getString("upper_bound"));
+            chunk.setDryRun(rs.getBoolean("dry_run"));
+            chunk.setStatus(WorkChunk.Status.valueOf(rs.getString("status")));
+            chunk.setOwnerNode(rs.getString("owner_node"));
+            Timestamp leaseExpiresAt = rs.getTimestamp("lease_expires_at");
+            chunk.setLeaseExpiresAt(leaseExpiresAt != null ? leaseExpiresAt.toLocalDateTime() : null);
+            chunk.setAttempts(rs.getInt("attempts"));
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.service.BackupRetentionService;
+import com.dbcleanup.service.LeaderElectionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates backup partitions ahead of time and purges expired backups. When scheduled runs are
+ * coordinated by leader election, only the leader runs it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cleanup.backupRetention", name = "enabled", havingValue = "true")
+public class BackupRetentionJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupRetentionJob.class);
+
+    private final BackupRetentionService backupRetentionService;
+    private final ObjectProvider<LeaderElectionService> leaderElectionService;
+
+    public BackupRetentionJob(
+            BackupRetentionService backupRetentionService,
+            ObjectProvider<LeaderElectionService> leaderElectionService) {
+        super();
+        this.backupRetentionService = backupRetentionService;
+        this.leaderElectionService = leaderElectionService;
+    }
+
+    /**
+     * Partitions are created on startup too, so backups written before the first scheduled
+     * run have a partition to go to
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        runRetention();
+    }
+
+    @Scheduled(cron = "${cleanup.backupRetention.cron:0 30 1 * * *}")
+    public void runRetention() {
+        LeaderElectionService election = leaderElectionService.getIfAvailable();
+        if (election != null && !election.isLeader()) {
+            LOGGER.debug("Skipping backup retention, another instance is the leader");
+            return;
+        }
+
+        LOGGER.info("Running backup retention");
+        backupRetentionService.runRetention();
+    }
+}
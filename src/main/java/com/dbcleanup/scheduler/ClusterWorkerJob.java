@@ -0,0 +1,37 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.service.ClusterCleanupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Polls the shared work table and processes any claimable chunk, so that every instance
+ * takes part in cluster tasks started on other nodes
+ */
+@Component
+@ConditionalOnProperty(prefix = "cleanup.cluster", name = "enabled", havingValue = "true")
+public class ClusterWorkerJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterWorkerJob.class);
+
+    private final ClusterCleanupService clusterCleanupService;
+
+    public ClusterWorkerJob(ClusterCleanupService clusterCleanupService) {
+        super();
+        this.clusterCleanupService = clusterCleanupService;
+    }
+
+    @Scheduled(fixedDelayString = "${cleanup.cluster.pollIntervalMillis:2000}")
+    public void processAvailableChunks() {
+        int processed = 0;
+        while (clusterCleanupService.processNextChunk(null)) {
+            processed++;
+        }
+
+        if (processed > 0) {
+            LOGGER.info("Node {} processed {} chunks", clusterCleanupService.getNodeId(), processed);
+        }
+    }
+}
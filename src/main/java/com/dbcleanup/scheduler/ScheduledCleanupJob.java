@@ -1,32 +1,99 @@
 package com.dbcleanup.scheduler;
 
 import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.repository.TaskLogRepository;
 import com.dbcleanup.service.CleanupService;
+import com.dbcleanup.service.LeaderElectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Starts scheduled cleanups. With several instances, only the elected leader starts a run;
+ * in cluster mode the other instances join it as workers.
+ */
 @Component
 @ConditionalOnProperty(prefix = "cleanup.scheduler", name = "enabled", havingValue = "true")
 public class ScheduledCleanupJob {
     private static final Logger LOGGER = LoggerFactory.getLogger(ScheduledCleanupJob.class);
 
+    private static final String INITIATOR = "scheduler";
+
     private final CleanupService cleanupService;
     private final CleanupProperties properties;
+    private final LeaderElectionService leaderElectionService;
+    private final TaskLogRepository taskLogRepository;
+
+    private boolean leader;
 
-    public ScheduledCleanupJob(CleanupService cleanupService, CleanupProperties properties) {
+    public ScheduledCleanupJob(
+            CleanupService cleanupService,
+            CleanupProperties properties,
+            LeaderElectionService leaderElectionService,
+            TaskLogRepository taskLogRepository) {
         super();
         this.cleanupService = cleanupService;
         this.properties = properties;
+        this.leaderElectionService = leaderElectionService;
+        this.taskLogRepository = taskLogRepository;
     }
 
     @Scheduled(cron = "${cleanup.scheduler.cron}")
     public void executeScheduledCleanup() {
+        if (!leaderElectionService.isLeader()) {
+            LOGGER.info("Skipping scheduled cleanup job, another instance is the leader");
+            return;
+        }
+
+        // Guards against a second start when leadership moves around the scheduled time
+        LocalDateTime since = LocalDateTime.now().minusSeconds(properties.getScheduler().getDedupWindowSeconds());
+        if (taskLogRepository.hasTaskStartedSince(INITIATOR, since)) {
+            LOGGER.info("Skipping scheduled cleanup job, a scheduled task was started since {}", since);
+            return;
+        }
+
         LOGGER.info("Running scheduled cleanup job");
 
         boolean dryRun = properties.getScheduler().isDryRun();
-        cleanupService.executeCleanup("scheduler", dryRun);
+        cleanupService.executeCleanup(INITIATOR, dryRun);
+    }
+
+    /**
+     * Keeps the scheduled tasks running on this instance from being taken over
+     */
+    @Scheduled(fixedDelayString = "${cleanup.scheduler.heartbeatMillis:10000}")
+    public void heartbeat() {
+        taskLogRepository.heartbeat();
+    }
+
+    /**
+     * Checks leadership; an instance that just became leader finishes the scheduled tasks whose
+     * instance stopped sending heartbeats
+     */
+    @Scheduled(fixedDelayString = "${cleanup.scheduler.leaderCheckMillis:15000}")
+    public void checkLeadership() {
+        boolean wasLeader = leader;
+        leader = leaderElectionService.isLeader();
+        if (!leader || wasLeader) {
+            return;
+        }
+
+        LocalDateTime heartbeatBefore = LocalDateTime.now()
+                .minus(Duration.ofMillis(properties.getScheduler().getTakeOverAfterMillis()));
+        for (CleanupTask task : taskLogRepository.findAbandonedTasks(INITIATOR, heartbeatBefore)) {
+            try {
+                if (taskLogRepository.takeOverTask(task.getTaskId(), heartbeatBefore)) {
+                    cleanupService.resumeTask(task);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error taking over task {}", task.getTaskId(), e);
+            }
+        }
     }
 }
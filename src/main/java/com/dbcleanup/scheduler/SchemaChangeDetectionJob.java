@@ -0,0 +1,40 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.service.ForeignKeyGraphService;
+import com.dbcleanup.service.SchemaMetadataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the schema metadata cache, and the cascades discovered from it, in line with DDL run
+ * while the application is up
+ */
+@Component
+@ConditionalOnProperty(prefix = "cleanup.schemaCache", name = "detectChanges", havingValue = "true", matchIfMissing = true)
+public class SchemaChangeDetectionJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaChangeDetectionJob.class);
+
+    private final SchemaMetadataService schemaMetadataService;
+    private final ForeignKeyGraphService foreignKeyGraphService;
+
+    public SchemaChangeDetectionJob(SchemaMetadataService schemaMetadataService,
+                                    ForeignKeyGraphService foreignKeyGraphService) {
+        super();
+        this.schemaMetadataService = schemaMetadataService;
+        this.foreignKeyGraphService = foreignKeyGraphService;
+    }
+
+    @Scheduled(fixedDelayString = "${cleanup.schemaCache.checkIntervalMillis:60000}")
+    public void detectSchemaChanges() {
+        try {
+            if (!schemaMetadataService.detectChanges().isEmpty()) {
+                foreignKeyGraphService.refresh(false);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Schema change detection failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.ResultConfig;
+import com.dbcleanup.model.CandidateIdFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Deletes candidate id files once their retention has passed, including those left behind by
+ * earlier runs of the application
+ */
+@Component
+@ConditionalOnProperty(prefix = "cleanup.results", name = "keepAllIds", havingValue = "true")
+public class SpillFileRetentionJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillFileRetentionJob.class);
+
+    private final CleanupProperties properties;
+
+    public SpillFileRetentionJob(CleanupProperties properties) {
+        super();
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${cleanup.results.spillCleanupMillis:3600000}")
+    public void deleteExpiredFiles() {
+        ResultConfig config = properties.getResults();
+        Instant cutoff = Instant.now().minus(Duration.ofHours(config.getSpillRetentionHours()));
+        try {
+            int deleted = CandidateIdFile.deleteExpired(Path.of(config.getSpillDirectory()), cutoff);
+            if (deleted > 0) {
+                LOGGER.info("Deleted {} expired candidate id files from {}", deleted, config.getSpillDirectory());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not delete expired candidate id files: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.service.TrickleCleanupService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drives continuous trickle cleanup as an alternative to the nightly scheduled run
+ */
+@Component
+@ConditionalOnProperty(prefix = "cleanup.trickle", name = "enabled", havingValue = "true")
+public class TrickleCleanupJob {
+    private final TrickleCleanupService trickleCleanupService;
+
+    public TrickleCleanupJob(TrickleCleanupService trickleCleanupService) {
+        super();
+        this.trickleCleanupService = trickleCleanupService;
+    }
+
+    @Scheduled(fixedDelayString = "${cleanup.trickle.intervalMillis:5000}")
+    public void runTrickleCleanup() {
+        trickleCleanupService.runTick();
+    }
+}
@@ -0,0 +1,78 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.PartitionInterval;
+import com.dbcleanup.model.TablePartition;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lays out the backup_time range partitions of a backup table. Partitions are aligned to whole
+ * days, ISO weeks or calendar months and named after the first day they cover, so the same
+ * partition is planned on every run and by every instance.
+ */
+public class BackupPartitionPlanner {
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+    private static final DateTimeFormatter NAME_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    public BackupPartitionPlanner() {
+        super();
+    }
+
+    /**
+     * The partition holding today and the ahead partitions following it
+     *
+     * @param backupTable the partitioned backup table, optionally schema qualified
+     */
+    public List<TablePartition> plan(String backupTable, PartitionInterval interval, LocalDate today, int ahead) {
+        List<TablePartition> partitions = new ArrayList<>();
+        LocalDate start = intervalStart(today, interval);
+        for (int i = 0; i <= Math.max(0, ahead); i++) {
+            LocalDate end = next(start, interval);
+            partitions.add(partition(backupTable, start, end));
+            start = end;
+        }
+        return partitions;
+    }
+
+    public LocalDate intervalStart(LocalDate date, PartitionInterval interval) {
+        switch (interval) {
+            case DAY:
+                return date;
+            case WEEK:
+                return date.minusDays(date.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                throw new IllegalArgumentException("Unsupported partition interval " + interval);
+        }
+    }
+
+    private LocalDate next(LocalDate start, PartitionInterval interval) {
+        switch (interval) {
+            case DAY:
+                return start.plusDays(1);
+            case WEEK:
+                return start.plusWeeks(1);
+            case MONTH:
+                return start.plusMonths(1);
+            default:
+                throw new IllegalArgumentException("Unsupported partition interval " + interval);
+        }
+    }
+
+    private TablePartition partition(String backupTable, LocalDate start, LocalDate end) {
+        int dot = backupTable.lastIndexOf('.');
+        String schema = dot > 0 ? backupTable.substring(0, dot) : null;
+        String table = dot > 0 ? backupTable.substring(dot + 1) : backupTable;
+
+        String suffix = "_p" + start.format(NAME_SUFFIX);
+        String name = table.length() + suffix.length() > MAX_IDENTIFIER_LENGTH ?
+                table.substring(0, MAX_IDENTIFIER_LENGTH - suffix.length()) + suffix : table + suffix;
+
+        return new TablePartition(schema, name, "FOR VALUES FROM ('" + start + "') TO ('" + end + "')");
+    }
+}
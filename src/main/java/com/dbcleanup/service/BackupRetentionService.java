@@ -0,0 +1,155 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.BackupConfig;
+import com.dbcleanup.config.CleanupProperties.BackupFormat;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.TablePartition;
+import com.dbcleanup.repository.BackupBlockRepository;
+import com.dbcleanup.repository.PartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Retention of backup tables. Backup tables range partitioned on backup_time get their
+ * partitions created ahead of time; expired partitions are detached and dropped as a whole,
+ * which costs no more than a catalog change, and only the partition holding the retention
+ * cutoff is purged with chunked deletes. Tables that are not partitioned are purged with
+ * chunked deletes throughout.
+ */
+@Service
+public class BackupRetentionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupRetentionService.class);
+
+    private static final String BACKUP_TIME_TYPE = "timestamp";
+
+    private final CleanupProperties properties;
+    private final PartitionRepository partitionRepository;
+    private final BackupBlockRepository backupBlockRepository;
+    private final BackupPartitionPlanner partitionPlanner;
+
+    public BackupRetentionService(
+            CleanupProperties properties,
+            PartitionRepository partitionRepository,
+            BackupBlockRepository backupBlockRepository) {
+        super();
+        this.properties = properties;
+        this.partitionRepository = partitionRepository;
+        this.backupBlockRepository = backupBlockRepository;
+        this.partitionPlanner = new BackupPartitionPlanner();
+    }
+
+    /**
+     * Create the missing partitions of every partitioned backup table, up to partitionsAhead
+     * intervals ahead, then purge the backups of entities with a retention period
+     */
+    public void runRetention() {
+        for (EntityConfig entityConfig : properties.getEntities()) {
+            BackupConfig backup = entityConfig.getBackup();
+            if (backup == null || !backup.isEnabled()) {
+                continue;
+            }
+
+            try {
+                if (backup.isPartitioned() && backup.getFormat() == BackupFormat.JSONB) {
+                    ensurePartitions(entityConfig);
+                }
+                if (backup.getRetentionDays() > 0) {
+                    purge(entityConfig.getName(), backup.getRetentionDays());
+                }
+            } catch (Exception e) {
+                LOGGER.error("Backup retention failed for entity {}: {}", entityConfig.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Create the partitions for the current and the next partitionsAhead intervals
+     */
+    public List<TablePartition> ensurePartitions(EntityConfig entityConfig) {
+        String backupTable = getBackupTable(entityConfig);
+        if (!partitionRepository.isPartitioned(backupTable)) {
+            LOGGER.warn("Backup table {} of entity {} is not partitioned, create it with " +
+                    "PARTITION BY RANGE (backup_time)", backupTable, entityConfig.getName());
+            return List.of();
+        }
+
+        List<TablePartition> partitions = partitionPlanner.plan(backupTable,
+                entityConfig.getBackup().getPartitionInterval(), LocalDate.now(),
+                properties.getBackupRetention().getPartitionsAhead());
+        for (TablePartition partition : partitions) {
+            partitionRepository.createPartition(backupTable, partition);
+        }
+        return partitions;
+    }
+
+    /**
+     * Purge backups older than retentionDays
+     *
+     * @return the number of rows purged, estimated for dropped partitions
+     */
+    public int purge(String entityName, int retentionDays) {
+        EntityConfig entityConfig = properties.getEntities().stream()
+                .filter(config -> config.getName().equals(entityName))
+                .findFirst()
+                .orElse(null);
+
+        if (entityConfig != null && entityConfig.getBackup().getFormat() == BackupFormat.BINARY) {
+            return backupBlockRepository.purgeBlocks(entityName, retentionDays);
+        }
+
+        String backupTable = entityConfig != null && entityConfig.getBackup().getTable() != null ?
+                getBackupTable(entityConfig) : entityName.toLowerCase() + "_backup";
+        return purgeTable(backupTable, retentionDays);
+    }
+
+    private int purgeTable(String backupTable, int retentionDays) {
+        String cutoff = "CURRENT_DATE - make_interval(days => " + retentionDays + ")";
+        String expired = "backup_time < " + cutoff;
+        int chunkSize = Math.max(1, properties.getBackupRetention().getPurgeChunkSize());
+
+        try {
+            if (!partitionRepository.isPartitioned(backupTable)) {
+                int purged = partitionRepository.deleteInChunks(backupTable, expired, chunkSize);
+                LOGGER.info("Purged {} old backup records from {}", purged, backupTable);
+                return purged;
+            }
+
+            long purged = 0;
+            int droppedPartitions = 0;
+            for (TablePartition partition : partitionRepository.findPartitions(backupTable)) {
+                String upper = partition.getUpperBound();
+                String lower = partition.getLowerBound();
+
+                if (upper != null && partitionRepository.isBoundAtOrBefore(upper, BACKUP_TIME_TYPE, cutoff)) {
+                    purged += partitionRepository.estimateRows(partition.getQualifiedName());
+                    partitionRepository.detachPartition(backupTable, partition.getQualifiedName());
+                    partitionRepository.dropTable(partition.getQualifiedName());
+                    droppedPartitions++;
+                } else if (lower == null || partitionRepository.isBoundAtOrBefore(lower, BACKUP_TIME_TYPE, cutoff)) {
+                    // The partition holding the cutoff, the default partition or one without a lower bound
+                    purged += partitionRepository.deleteInChunks(partition.getQualifiedName(), expired, chunkSize);
+                }
+            }
+
+            LOGGER.info("Purged about {} old backup records from {}, {} partitions dropped",
+                    purged, backupTable, droppedPartitions);
+            return (int) Math.min(Integer.MAX_VALUE, purged);
+        } catch (Exception e) {
+            String errorMsg = "Error purging old backups from " + backupTable + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    private String getBackupTable(EntityConfig entityConfig) {
+        String backupTable = entityConfig.getBackup().getTable();
+        String schema = entityConfig.getBackup().getSchema();
+        return schema != null && !schema.isEmpty() ? schema + "." + backupTable : backupTable;
+    }
+}
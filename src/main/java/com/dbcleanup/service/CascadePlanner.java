@@ -0,0 +1,52 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.CascadeEdge;
+
+/**
+ * Chooses how the rows of a child table are deleted along with a chunk of parent rows. With
+ * ON DELETE CASCADE the database deletes them from a trigger fired once per parent row, each
+ * firing looking up the children of one parent: an index probe when the foreign key is indexed,
+ * a scan of the whole child table when it is not. Explicit deletes cost a few statements per
+ * chunk but look up the children of the whole chunk at once. Costs are in page reads.
+ */
+public class CascadePlanner {
+    static final String CASCADE = "CASCADE";
+
+    // Planning and round trip of one statement
+    private static final double STATEMENT_COST = 50;
+
+    // Firing the referential integrity trigger for one parent row
+    private static final double TRIGGER_COST = 0.05;
+
+    private final int chunkSize;
+
+    public CascadePlanner(int chunkSize) {
+        super();
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Estimate both ways of deleting the rows of an edge and choose the cheaper one. Edges
+     * without ON DELETE CASCADE are always deleted explicitly.
+     *
+     * @param parentRows estimated rows of the parent table
+     * @param childRows  estimated rows of the child table
+     * @param childPages pages of the child table
+     */
+    public CascadeEdge.Strategy plan(CascadeEdge edge, long parentRows, long childRows, long childPages) {
+        double fanout = (double) childRows / Math.max(1, parentRows);
+        double removal = chunkSize * fanout;
+        double probe = Math.log(childRows + 2.0) / Math.log(2);
+        double scan = Math.max(1, childPages);
+
+        // Staging the keys and deleting are one statement each
+        edge.setDatabaseCost(chunkSize * (TRIGGER_COST + (edge.isIndexed() ? probe : scan)) + removal);
+        edge.setExplicitCost(2 * STATEMENT_COST + (edge.isIndexed() ? chunkSize * probe : scan) + removal);
+
+        CascadeEdge.Strategy strategy = CASCADE.equals(edge.getDeleteAction()) &&
+                edge.getDatabaseCost() <= edge.getExplicitCost() ?
+                CascadeEdge.Strategy.DATABASE : CascadeEdge.Strategy.EXPLICIT;
+        edge.setStrategy(strategy);
+        return strategy;
+    }
+}
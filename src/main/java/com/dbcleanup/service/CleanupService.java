@@ -2,17 +2,23 @@ package com.dbcleanup.service;
 
 import com.dbcleanup.config.CleanupProperties;
 import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.ResultConfig;
 import com.dbcleanup.exception.CleanupException;
 import com.dbcleanup.model.CleanupResult;
 import com.dbcleanup.model.CleanupTask;
-import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.model.RunPlan;
+import com.dbcleanup.model.TaskHistoryQuery;
+import com.dbcleanup.model.TaskPage;
 import com.dbcleanup.repository.TaskLogRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,24 +26,34 @@ public class CleanupService {
     private static final Logger LOGGER = LoggerFactory.getLogger(CleanupService.class);
 
     private final CleanupProperties properties;
-    private final CleanupRepository cleanupRepository;
+    private final CostEstimateService costEstimateService;
     private final TaskLogRepository taskLogRepository;
     private final DistributedCleanupService distributedCleanupService;
+    private final EntityCleanupExecutor entityCleanupExecutor;
+    private final ClusterCleanupService clusterCleanupService;
+    private final MaintenanceService maintenanceService;
 
     public CleanupService(
             CleanupProperties properties,
-            CleanupRepository cleanupRepository,
+            CostEstimateService costEstimateService,
             TaskLogRepository taskLogRepository,
-            DistributedCleanupService distributedCleanupService) {
+            DistributedCleanupService distributedCleanupService,
+            EntityCleanupExecutor entityCleanupExecutor,
+            ClusterCleanupService clusterCleanupService,
+            MaintenanceService maintenanceService) {
         super();
         this.properties = properties;
-        this.cleanupRepository = cleanupRepository;
+        this.costEstimateService = costEstimateService;
         this.taskLogRepository = taskLogRepository;
         this.distributedCleanupService = distributedCleanupService;
+        this.entityCleanupExecutor = entityCleanupExecutor;
+        this.clusterCleanupService = clusterCleanupService;
+        this.maintenanceService = maintenanceService;
     }
 
     /**
-     * Perform analysis only (dry run) without actual deletions
+     * Perform analysis only (dry run) without actual deletions, with the predicted cost of
+     * cleaning up each entity
      */
     @Transactional(readOnly = true)
     public CleanupResult analyzeCleanupCandidates(String initiator) {
@@ -49,16 +65,15 @@ public class CleanupService {
 
         String taskId = taskLogRepository.logTaskStart("ANALYSIS", initiator, entityNames, true);
 
-        CleanupResult result = new CleanupResult();
+        CleanupResult result = newAnalysisResult();
         result.setTaskId(taskId);
 
         try {
             for (EntityConfig entityConfig : properties.getEntities()) {
-                List<String> candidateIds = cleanupRepository.findCandidateIds(entityConfig);
-                result.addCandidates(entityConfig.getName(), candidateIds);
+                costEstimateService.analyze(entityConfig, result);
 
                 LOGGER.info("Found {} cleanup candidates for entity {}",
-                        candidateIds.size(), entityConfig.getName());
+                        result.getCandidateCount(entityConfig.getName()), entityConfig.getName());
             }
 
             result.complete();
@@ -70,6 +85,7 @@ public class CleanupService {
         } catch (Exception e) {
             String errorMsg = "Error during cleanup analysis: " + e.getMessage();
             LOGGER.error(errorMsg, e);
+            result.discard();
             taskLogRepository.logTaskError(taskId, errorMsg);
             throw new CleanupException(errorMsg, e);
         }
@@ -80,9 +96,18 @@ public class CleanupService {
      */
     @Transactional
     public CleanupResult executeCleanup(String initiator, boolean dryRun) {
+        return executeCleanup(initiator, dryRun, null);
+    }
+
+    /**
+     * Execute actual cleanup with backup, restricted to the given entities (all entities when null)
+     */
+    @Transactional
+    public CleanupResult executeCleanup(String initiator, boolean dryRun, List<String> selectedEntities) {
         LOGGER.info("Starting cleanup execution. Initiator: {}, Dry run: {}", initiator, dryRun);
-        
-        List<String> entityNames = properties.getEntities().stream()
+
+        List<EntityConfig> entities = selectEntities(selectedEntities);
+        List<String> entityNames = entities.stream()
                 .map(EntityConfig::getName)
                 .collect(Collectors.toList());
         
@@ -92,12 +117,20 @@ public class CleanupService {
         result.setTaskId(taskId);
         
         try {
-            if (properties.getDistribution() != null 
+            CleanupResult executionResult;
+            if (clusterCleanupService.isEnabled()) {
+                executionResult = clusterCleanupService.executeClusterCleanup(taskId, dryRun, entities);
+            } else if (properties.getDistribution() != null 
                     && properties.getDistribution().getWorkerCount() > 1) {
-                return distributedCleanupService.executeDistributedCleanup(initiator, dryRun);
+                executionResult = distributedCleanupService.executeDistributedCleanup(taskId, dryRun, entities);
+            } else {
+                executionResult = executeLocalCleanup(taskId, initiator, dryRun, entities);
             }
-            
-            return executeLocalCleanup(taskId, initiator, dryRun);
+
+            if (!dryRun) {
+                maintenanceService.maintainAfterCommit(entities, executionResult);
+            }
+            return executionResult;
         } catch (Exception e) {
             LOGGER.error("Error during cleanup execution", e);
             taskLogRepository.logTaskError(taskId, e.getMessage());
@@ -105,36 +138,51 @@ public class CleanupService {
         }
     }
 
+    /**
+     * Finish a task left unfinished by an instance that died. Cluster tasks continue from their
+     * remaining chunks; other tasks are marked failed and run again for the same entities.
+     */
+    @Transactional
+    public CleanupResult resumeTask(CleanupTask task) {
+        LOGGER.info("Taking over unfinished task {} started by {}", task.getTaskId(), task.getInitiator());
+
+        List<String> entityNames = task.getEntities() != null ? List.of(task.getEntities()) : List.of();
+        List<EntityConfig> entities = selectEntities(entityNames);
+
+        if (clusterCleanupService.isEnabled()) {
+            try {
+                return clusterCleanupService.resumeClusterCleanup(task.getTaskId(), task.isDryRun(), entities);
+            } catch (Exception e) {
+                LOGGER.error("Error resuming cluster task {}", task.getTaskId(), e);
+                taskLogRepository.logTaskError(task.getTaskId(), e.getMessage());
+                throw e;
+            }
+        }
+
+        taskLogRepository.logTaskError(task.getTaskId(),
+                "Interrupted; taken over by another instance and run again");
+        return executeCleanup(task.getInitiator(), task.isDryRun(), entityNames);
+    }
+
     /**
      * Execute cleanup locally (non-distributed)
      */
-    private CleanupResult executeLocalCleanup(String taskId, String initiator, boolean dryRun) {
+    private CleanupResult executeLocalCleanup(String taskId, String initiator, boolean dryRun,
+                                              List<EntityConfig> entities) {
         LOGGER.info("Executing local cleanup. Initiator: {}, Dry run: {}", initiator, dryRun);
         
         CleanupResult result = new CleanupResult();
         result.setTaskId(taskId);
         
         try {
-            for (EntityConfig entityConfig : properties.getEntities()) {
-                List<String> candidateIds = cleanupRepository.findCandidateIds(entityConfig);
-                result.addCandidates(entityConfig.getName(), candidateIds);
-                
-                if (dryRun) {
-                    LOGGER.info("Found {} cleanup candidates for entity {}",
-                            candidateIds.size(), entityConfig.getName());
-                } else {
-                    // First backup if enabled
-                    if (entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled()) {
-                        int backedUp = cleanupRepository.backupCandidatesDirect(entityConfig, taskId);
-                        result.setBackedUpCount(entityConfig.getName(), backedUp);
-                    }
-                    
-                    // Then delete
-                    int deleted = cleanupRepository.deleteCandidatesDirect(entityConfig);
-                    result.setDeletedCount(entityConfig.getName(), deleted);
-                    LOGGER.info("Deleted {} records for entity {}",
-                            deleted, entityConfig.getName());
-                }
+            for (EntityConfig entityConfig : entities) {
+                long start = System.nanoTime();
+                PartialCleanupResult entityResult = entityCleanupExecutor.execute(entityConfig, taskId, dryRun);
+                taskLogRepository.logEntityRun(taskId, entityConfig.getName(), dryRun,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        entityResult.getCandidateCount(entityConfig.getName()),
+                        entityResult.getDeletedCount(entityConfig.getName()));
+                result.merge(entityResult);
             }
             
             result.complete();
@@ -144,38 +192,48 @@ public class CleanupService {
         } catch (Exception e) {
             String errorMsg = "Error during local cleanup execution: " + e.getMessage();
             LOGGER.error(errorMsg, e);
+            result.discard();
             taskLogRepository.logTaskError(taskId, errorMsg);
             throw new CleanupException(errorMsg, e);
         }
     }
 
     /**
-     * Reinstate previously backed up records
+     * An empty result keeping results.sampleSize candidate ids per entity, and every id in a
+     * spill file with results.keepAllIds
      */
-    @Transactional
-    public int reinstateBackups(String entityName, List<String> backupIds, String initiator) {
-        LOGGER.info("Reinstating {} backup records for entity {}", backupIds.size(), entityName);
-
-        if (backupIds == null || backupIds.isEmpty()) {
-            return 0;
+    private CleanupResult newAnalysisResult() {
+        ResultConfig config = properties.getResults();
+        if (config == null) {
+            return new CleanupResult();
         }
+        return new CleanupResult(config.getSampleSize(),
+                config.isKeepAllIds() ? Path.of(config.getSpillDirectory()) : null);
+    }
 
-        String taskId = taskLogRepository.logTaskStart(
-                "REINSTATE", initiator, List.of(entityName), false);
-
-        try {
-            int reinstated = cleanupRepository.reinstateBackups(entityName, backupIds);
-
-            taskLogRepository.logTaskCompletion(taskId, backupIds.size(), reinstated);
+    /**
+     * Resolve the configured entities to run, keeping configuration order
+     */
+    private List<EntityConfig> selectEntities(List<String> selectedEntities) {
+        if (selectedEntities == null || selectedEntities.isEmpty()) {
+            return properties.getEntities();
+        }
 
-            return reinstated;
+        List<EntityConfig> entities = properties.getEntities().stream()
+                .filter(entityConfig -> selectedEntities.contains(entityConfig.getName()))
+                .collect(Collectors.toList());
 
-        } catch (Exception e) {
-            String errorMsg = "Error reinstating backups: " + e.getMessage();
-            LOGGER.error(errorMsg, e);
-            taskLogRepository.logTaskError(taskId, errorMsg);
-            throw new CleanupException(errorMsg, e);
+        if (entities.size() != selectedEntities.size()) {
+            throw new CleanupException("Unknown entities requested: " + selectedEntities);
         }
+        return entities;
+    }
+
+    /**
+     * Expected start order and duration of a parallel run of all entities, from their past runs
+     */
+    public RunPlan getRunPlan() {
+        return distributedCleanupService.planRun(properties.getEntities());
     }
 
     /**
@@ -185,6 +243,13 @@ public class CleanupService {
         return taskLogRepository.getRecentTasks(limit);
     }
 
+    /**
+     * Get a page of the task history
+     */
+    public TaskPage findTasks(TaskHistoryQuery query) {
+        return taskLogRepository.findTasks(query);
+    }
+
     /**
      * Get a specific task by ID
      */
@@ -0,0 +1,227 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.ClusterConfig;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RunPlanConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.model.RunPlan;
+import com.dbcleanup.model.WorkChunk;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.TaskLogRepository;
+import com.dbcleanup.repository.WorkChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cooperative execution across all instances of the service. The node starting a task
+ * writes its chunk plan (key ranges per entity) into the shared work table; every node with
+ * cluster mode enabled claims chunks from it, so throughput scales with the number of
+ * instances without an external coordinator.
+ */
+@Service
+public class ClusterCleanupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterCleanupService.class);
+
+    private final CleanupProperties properties;
+    private final WorkChunkRepository workChunkRepository;
+    private final CleanupRepository cleanupRepository;
+    private final TaskLogRepository taskLogRepository;
+    private final EntityCleanupExecutor entityCleanupExecutor;
+    private final WalBudgetService walBudgetService;
+    private final TransactionTemplate chunkTransaction;
+    private final String nodeId;
+
+    public ClusterCleanupService(
+            CleanupProperties properties,
+            WorkChunkRepository workChunkRepository,
+            CleanupRepository cleanupRepository,
+            TaskLogRepository taskLogRepository,
+            EntityCleanupExecutor entityCleanupExecutor,
+            WalBudgetService walBudgetService,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.workChunkRepository = workChunkRepository;
+        this.cleanupRepository = cleanupRepository;
+        this.taskLogRepository = taskLogRepository;
+        this.entityCleanupExecutor = entityCleanupExecutor;
+        this.walBudgetService = walBudgetService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        ClusterConfig config = properties.getCluster();
+        this.nodeId = config != null && config.getNodeId() != null && !config.getNodeId().isEmpty() ?
+                config.getNodeId() : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    public boolean isEnabled() {
+        return properties.getCluster() != null && properties.getCluster().isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Plan the task, work on its chunks together with the other nodes and wait until every
+     * chunk is done. Candidate ids stay on the nodes that processed them; the result holds counts.
+     */
+    public CleanupResult executeClusterCleanup(String taskId, boolean dryRun, List<EntityConfig> entities) {
+        LOGGER.info("Executing cluster cleanup task {} from node {}", taskId, nodeId);
+
+        planTask(taskId, dryRun, entities);
+        return completeTask(taskId);
+    }
+
+    /**
+     * Take over a task whose starting node died. Chunks already done are kept; the plan is
+     * only written again when the node died before committing it.
+     */
+    public CleanupResult resumeClusterCleanup(String taskId, boolean dryRun, List<EntityConfig> entities) {
+        LOGGER.info("Resuming cluster cleanup task {} on node {}", taskId, nodeId);
+
+        if (workChunkRepository.countChunks(taskId) == 0) {
+            planTask(taskId, dryRun, entities);
+        }
+        return completeTask(taskId);
+    }
+
+    /**
+     * Claim and process one chunk
+     *
+     * @param taskId restrict to one task, or null for any task
+     * @return true when a chunk was claimed
+     */
+    public boolean processNextChunk(String taskId) {
+        ClusterConfig config = properties.getCluster();
+        WorkChunk chunk = chunkTransaction.execute(status -> workChunkRepository.claimNext(
+                nodeId, config.getLeaseSeconds(), config.getMaxAttempts(), taskId));
+        if (chunk == null) {
+            return false;
+        }
+
+        processChunk(chunk);
+        return true;
+    }
+
+    private void planTask(String taskId, boolean dryRun, List<EntityConfig> entities) {
+        int chunkSize = Math.max(1, properties.getCluster().getChunkSize());
+
+        // Chunks are claimed in the order they are written, those of the longest entities first
+        List<EntityConfig> ordered = startOrder(entities);
+
+        // Committed before any node can claim, independent of the caller's transaction
+        chunkTransaction.executeWithoutResult(status -> {
+            for (EntityConfig entityConfig : ordered) {
+                List<String> boundaries = workChunkRepository.planBoundaries(
+                        cleanupRepository.buildFindCandidatesQuery(entityConfig), chunkSize);
+                workChunkRepository.insertChunks(taskId, entityConfig.getName(), boundaries, dryRun);
+            }
+        });
+    }
+
+    private List<EntityConfig> startOrder(List<EntityConfig> entities) {
+        RunPlanConfig config = properties.getRunPlan();
+        if (!config.isEnabled() || entities.size() < 2) {
+            return entities;
+        }
+
+        List<String> entityNames = entities.stream()
+                .map(EntityConfig::getName)
+                .collect(Collectors.toList());
+        RunPlan plan = new RunPlanner(config.getDefaultEntityMillis()).plan(entityNames,
+                taskLogRepository.findEntityRunStats(entityNames, config.getHistoryRuns()), 1);
+        return RunPlanner.inOrder(entities, plan);
+    }
+
+    private CleanupResult completeTask(String taskId) {
+        awaitTask(taskId);
+
+        CleanupResult result = workChunkRepository.summarize(taskId);
+        result.complete();
+        taskLogRepository.logTaskCompletion(taskId, result.getTotalCandidateCount(), result.getTotalDeletedCount());
+        return result;
+    }
+
+    private void awaitTask(String taskId) {
+        ClusterConfig config = properties.getCluster();
+
+        while (workChunkRepository.countOpenChunks(taskId) > 0) {
+            if (processNextChunk(taskId)) {
+                continue;
+            }
+
+            // Remaining chunks are held by other nodes; reclaim them once their lease expires
+            workChunkRepository.failExhaustedChunks(taskId, config.getMaxAttempts());
+            try {
+                Thread.sleep(config.getPollIntervalMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CleanupException("Interrupted while waiting for cluster task " + taskId, e);
+            }
+        }
+    }
+
+    private void processChunk(WorkChunk chunk) {
+        String entityName = chunk.getEntityName();
+        int maxAttempts = properties.getCluster().getMaxAttempts();
+
+        try {
+            EntityConfig entityConfig = findEntity(entityName);
+            CandidateScope scope = CandidateScope.keyRange(chunk.getLowerBound(), chunk.getUpperBound(),
+                    workChunkRepository.findKeyType(entityConfig.getTable()));
+
+            // Holding the chunk row lock keeps the chunk from being reclaimed while it is processed.
+            // Its WAL is only known once it committed and is recorded on its own.
+            AtomicLong remainingWal = new AtomicLong();
+            Long chunkWal = walBudgetService.meter(entityName, () -> chunkTransaction.execute(status -> {
+                if (!workChunkRepository.lockOwnedChunk(chunk.getChunkId(), nodeId)) {
+                    LOGGER.warn("Chunk {} of entity {} was reclaimed by another node", chunk.getChunkNo(), entityName);
+                    return null;
+                }
+
+                PartialCleanupResult partialResult = entityCleanupExecutor.executeScoped(
+                        entityConfig, chunk.getTaskId(), chunk.isDryRun(), scope);
+                workChunkRepository.markDone(chunk.getChunkId(),
+                        partialResult.getCandidateCount(entityName),
+                        partialResult.getDeletedCount(entityName),
+                        partialResult.getBackedUpCount(entityName));
+                LOGGER.debug("Node {} processed chunk {} of entity {}: {} deleted",
+                        nodeId, chunk.getChunkNo(), entityName, partialResult.getDeletedCount(entityName));
+                // WAL of lock-aware chunks within, which the outer measurement does not count again
+                return partialResult.getWalBytes(entityName);
+            }), remainingWal::set);
+
+            if (chunkWal != null) {
+                chunkTransaction.executeWithoutResult(status -> workChunkRepository.recordWalBytes(
+                        chunk.getChunkId(), chunkWal + remainingWal.get()));
+            }
+        } catch (Exception e) {
+            String errorMsg = "Error processing chunk " + chunk.getChunkNo() + " of entity " + entityName +
+                    " on node " + nodeId + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            chunkTransaction.executeWithoutResult(status -> workChunkRepository.markFailed(
+                    chunk.getChunkId(), nodeId, errorMsg, maxAttempts));
+        }
+    }
+
+    private EntityConfig findEntity(String entityName) {
+        return properties.getEntities().stream()
+                .filter(entityConfig -> entityConfig.getName().equals(entityName))
+                .findFirst()
+                .orElseThrow(() -> new CleanupException("Entity " + entityName + " is not configured on node " + nodeId));
+    }
+}
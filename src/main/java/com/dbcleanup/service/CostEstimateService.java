@@ -0,0 +1,166 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.BackupConfig;
+import com.dbcleanup.config.CleanupProperties.BackupFormat;
+import com.dbcleanup.config.CleanupProperties.CostEstimateConfig;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.CostEstimate;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.model.RelationSize;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.CostEstimateRepository;
+import com.dbcleanup.repository.IndexAdvisorRepository;
+import com.dbcleanup.repository.TaskLogRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Dry-run analysis of an entity: finds its candidates and predicts what deleting them costs.
+ * The prediction combines the planner's estimate of the candidate query, the sizes of the
+ * entity table and its cascading related tables, a sample of the candidates' row widths and
+ * the throughput of past cleanups in the task log.
+ */
+@Service
+public class CostEstimateService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CostEstimateService.class);
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final CostEstimateRepository costEstimateRepository;
+    private final IndexAdvisorRepository indexAdvisorRepository;
+    private final TaskLogRepository taskLogRepository;
+    private final ObjectMapper objectMapper;
+
+    public CostEstimateService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            CostEstimateRepository costEstimateRepository,
+            IndexAdvisorRepository indexAdvisorRepository,
+            TaskLogRepository taskLogRepository,
+            ObjectMapper objectMapper) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.costEstimateRepository = costEstimateRepository;
+        this.indexAdvisorRepository = indexAdvisorRepository;
+        this.taskLogRepository = taskLogRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Add the candidates of an entity to an analysis result, with their cost estimate when
+     * costEstimate.enabled is set. A failed estimate is logged and leaves the candidates.
+     */
+    public void analyze(EntityConfig entityConfig, CleanupResult result) {
+        KeyList candidateKeys = cleanupRepository.findCandidateKeys(entityConfig);
+        result.addCandidates(entityConfig.getName(), candidateKeys);
+
+        CostEstimateConfig config = properties.getCostEstimate();
+        if (config == null || !config.isEnabled()) {
+            return;
+        }
+        try {
+            result.addCostEstimate(estimate(entityConfig, candidateKeys.size()));
+        } catch (Exception e) {
+            LOGGER.warn("Could not estimate the cleanup cost of entity {}: {}", entityConfig.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Predict the cost of cleaning up a number of candidates of an entity
+     */
+    public CostEstimate estimate(EntityConfig entityConfig, long candidateCount) {
+        CostEstimateConfig config = properties.getCostEstimate();
+        CostEstimator estimator = new CostEstimator(config.getDefaultRowsPerSecond());
+        String idQuery = cleanupRepository.buildFindCandidatesQuery(entityConfig);
+
+        CostEstimate estimate = new CostEstimate();
+        estimate.setEntityName(entityConfig.getName());
+        estimate.setCandidateCount(candidateCount);
+
+        JsonNode plan = parsePlan(indexAdvisorRepository.explain(idQuery));
+        estimate.setPlanCost(plan.path("Total Cost").asDouble());
+        estimate.setSequentialScan(hasSequentialScan(plan, relationName(entityConfig.getTable())));
+
+        BackupConfig backup = entityConfig.getBackup();
+        boolean backupEnabled = backup != null && backup.isEnabled();
+        double backupRowBytes = 0;
+        if (backupEnabled && candidateCount > 0) {
+            double[] rowBytes = costEstimateRepository.sampleRowBytes(entityConfig.getTable(), idQuery,
+                    Math.max(1, config.getSampleRows()));
+            backupRowBytes = backup.getFormat() == BackupFormat.BINARY ? rowBytes[0] : rowBytes[1];
+        }
+
+        RelationSize size = costEstimateRepository.findRelationSize(entityConfig.getTable());
+        estimator.addTable(estimate, size, candidateCount, estimate.isSequentialScan(), backupRowBytes);
+        addRelated(estimator, estimate, entityConfig.getRelated(), size, candidateCount, backupEnabled);
+
+        estimator.addDuration(estimate, taskLogRepository.findDeleteThroughput(entityConfig.getName(),
+                Math.max(1, config.getHistoryTasks())));
+
+        LOGGER.info("Cleaning up {} candidates of {} is estimated to read {} pages, write {} bytes of WAL " +
+                        "and take {} seconds", candidateCount, entityConfig.getName(), estimate.getPagesRead(),
+                estimate.getWalBytes(), Math.round(estimate.getEstimatedSeconds()));
+        return estimate;
+    }
+
+    /**
+     * Add the cascading related records of every level, assuming each parent has the average
+     * number of children of its table
+     */
+    private void addRelated(CostEstimator estimator, CostEstimate estimate, List<RelatedEntityConfig> related,
+                            RelationSize parentSize, long parentRows, boolean backupEnabled) {
+        if (related == null || parentRows <= 0) {
+            return;
+        }
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (!relatedConfig.isCascadeDelete() || relatedConfig.getTable() == null) {
+                continue;
+            }
+
+            RelationSize size = costEstimateRepository.findRelationSize(relatedConfig.getTable());
+            long rows = parentSize.getRows() > 0 ?
+                    Math.round((double) parentRows * size.getRows() / parentSize.getRows()) : 0;
+            double backupRowBytes = backupEnabled && size.getRows() > 0 ?
+                    (double) size.getHeapBytes() / size.getRows() : 0;
+
+            estimate.setRelatedCount(estimate.getRelatedCount() + rows);
+            estimator.addTable(estimate, size, rows, false, backupRowBytes);
+            addRelated(estimator, estimate, relatedConfig.getRelated(), size, rows, backupEnabled);
+        }
+    }
+
+    private JsonNode parsePlan(String planJson) {
+        try {
+            return objectMapper.readTree(planJson).path(0).path("Plan");
+        } catch (JsonProcessingException e) {
+            throw new CleanupException("Error parsing query plan: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean hasSequentialScan(JsonNode node, String relation) {
+        if (relation.equals(node.path("Relation Name").asText()) && node.path("Node Type").asText().contains("Seq Scan")) {
+            return true;
+        }
+        for (JsonNode child : node.path("Plans")) {
+            if (hasSequentialScan(child, relation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String relationName(String table) {
+        return table.substring(table.lastIndexOf('.') + 1);
+    }
+}
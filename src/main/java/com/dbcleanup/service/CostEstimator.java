@@ -0,0 +1,84 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.CostEstimate;
+import com.dbcleanup.model.RelationSize;
+
+/**
+ * Predicts the I/O, WAL and duration of a cleanup from relation sizes. Rows are assumed to be
+ * spread evenly over the pages of their table, so the pages touched by n rows follow
+ * Cardenas' formula pages * (1 - (1 - 1 / pages)^n). Every touched heap page is counted with
+ * a full-page image in the WAL, the worst case right after a checkpoint.
+ */
+public class CostEstimator {
+    static final int PAGE_BYTES = 8192;
+
+    // Record header, heap delete record and block reference of one deleted row
+    static final int DELETE_WAL_BYTES = 54;
+
+    // Record header and heap insert record of one backup row, on top of its data
+    static final int INSERT_WAL_BYTES = 50;
+
+    private final double defaultRowsPerSecond;
+
+    public CostEstimator(double defaultRowsPerSecond) {
+        super();
+        this.defaultRowsPerSecond = defaultRowsPerSecond;
+    }
+
+    /**
+     * Add the cost of deleting rows of a table to an estimate
+     *
+     * @param sequentialScan the rows are found by reading the whole table instead of an index
+     * @param backupRowBytes bytes written to the backup per row, 0 without a backup
+     */
+    public void addTable(CostEstimate estimate, RelationSize size, long rows, boolean sequentialScan,
+                         double backupRowBytes) {
+        if (rows <= 0) {
+            return;
+        }
+        long heapTouched = touchedPages(size.getPages(), rows);
+        long indexTouched = touchedPages(size.getIndexBytes() / PAGE_BYTES, rows);
+        long backupBytes = Math.round(rows * backupRowBytes);
+
+        estimate.setPagesRead(estimate.getPagesRead() +
+                (sequentialScan ? Math.max(size.getPages(), heapTouched) : heapTouched + indexTouched));
+        estimate.setHeapBytes(estimate.getHeapBytes() + heapTouched * PAGE_BYTES);
+        estimate.setIndexBytes(estimate.getIndexBytes() + indexTouched * PAGE_BYTES);
+        estimate.setBackupBytes(estimate.getBackupBytes() + backupBytes);
+
+        long walBytes = rows * DELETE_WAL_BYTES + heapTouched * PAGE_BYTES;
+        if (backupBytes > 0) {
+            walBytes += backupBytes + rows * INSERT_WAL_BYTES;
+        }
+        estimate.setWalBytes(estimate.getWalBytes() + walBytes);
+    }
+
+    /**
+     * Set the duration from the throughput of past cleanups, or the default throughput if
+     * there is no history
+     *
+     * @param historicalRowsPerSecond candidates deleted per second by past cleanups, or null
+     */
+    public void addDuration(CostEstimate estimate, Double historicalRowsPerSecond) {
+        boolean history = historicalRowsPerSecond != null && historicalRowsPerSecond > 0;
+        double rowsPerSecond = history ? historicalRowsPerSecond : defaultRowsPerSecond;
+
+        estimate.setRowsPerSecond(rowsPerSecond);
+        estimate.setThroughputSource(history ? "history" : "default");
+        estimate.setEstimatedSeconds(rowsPerSecond > 0 ? estimate.getCandidateCount() / rowsPerSecond : 0);
+    }
+
+    /**
+     * Expected number of distinct pages holding n rows of a table with the given number of pages
+     */
+    public static long touchedPages(long pages, long rows) {
+        if (pages <= 0 || rows <= 0) {
+            return 0;
+        }
+        if (pages == 1) {
+            return 1;
+        }
+        double untouched = Math.exp(rows * Math.log1p(-1.0 / pages));
+        return Math.min(pages, Math.max(1, Math.round(pages * (1 - untouched))));
+    }
+}
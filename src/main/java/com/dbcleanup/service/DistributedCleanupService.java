@@ -2,54 +2,87 @@ package com.dbcleanup.service;
 
 import com.dbcleanup.config.CleanupProperties;
 import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RunPlanConfig;
+import com.dbcleanup.exception.CleanupException;
 import com.dbcleanup.model.CleanupResult;
 import com.dbcleanup.model.PartialCleanupResult;
-import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.model.RunPlan;
 import com.dbcleanup.repository.TaskLogRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Runs entities in parallel on the cleanup task executor, each in its own transaction. Entities
+ * are queued longest first by the durations of their past runs, so the largest table does not
+ * start last and hold up the whole run.
+ */
 @Service
 public class DistributedCleanupService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DistributedCleanupService.class);
 
     private final CleanupProperties properties;
-    private final CleanupRepository cleanupRepository;
     private final TaskLogRepository taskLogRepository;
+    private final EntityCleanupExecutor entityCleanupExecutor;
+    private final Executor cleanupTaskExecutor;
+    private final TransactionTemplate entityTransaction;
 
     public DistributedCleanupService(
             CleanupProperties properties,
-            CleanupRepository cleanupRepository,
-            TaskLogRepository taskLogRepository) {
+            TaskLogRepository taskLogRepository,
+            EntityCleanupExecutor entityCleanupExecutor,
+            @Qualifier("cleanupTaskExecutor") Executor cleanupTaskExecutor,
+            PlatformTransactionManager transactionManager) {
         super();
         this.properties = properties;
-        this.cleanupRepository = cleanupRepository;
         this.taskLogRepository = taskLogRepository;
+        this.entityCleanupExecutor = entityCleanupExecutor;
+        this.cleanupTaskExecutor = cleanupTaskExecutor;
+        this.entityTransaction = new TransactionTemplate(transactionManager);
+        this.entityTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     public CleanupResult executeDistributedCleanup(String initiator, boolean dryRun) {
-        LOGGER.info("Starting distributed cleanup, dryRun={}", dryRun);
-
         List<String> entityNames = properties.getEntities().stream()
                 .map(EntityConfig::getName)
                 .collect(Collectors.toList());
 
         String taskId = taskLogRepository.logTaskStart(
                 "DISTRIBUTED_CLEANUP", initiator, entityNames, dryRun);
+        try {
+            return executeDistributedCleanup(taskId, dryRun, properties.getEntities());
+        } catch (Exception e) {
+            taskLogRepository.logTaskError(taskId, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Run the entities of a task already logged by the caller and complete it; on error the
+     * caller fails the task
+     */
+    public CleanupResult executeDistributedCleanup(String taskId, boolean dryRun, List<EntityConfig> entities) {
+        LOGGER.info("Starting distributed cleanup of task {}, dryRun={}", taskId, dryRun);
 
         CleanupResult result = new CleanupResult();
         result.setTaskId(taskId);
 
-        List<CompletableFuture<PartialCleanupResult>> futures = properties.getEntities().stream()
-                .map(entityConfig -> processEntityAsync(entityConfig, taskId, dryRun))
+        // The executor's workers take entities off its queue in submission order
+        List<CompletableFuture<PartialCleanupResult>> futures = startOrder(entities).stream()
+                .map(entityConfig -> CompletableFuture.supplyAsync(
+                        () -> processEntity(entityConfig, taskId, dryRun), cleanupTaskExecutor))
                 .collect(Collectors.toList());
 
         // Wait for all tasks to complete
@@ -70,50 +103,62 @@ public class DistributedCleanupService {
         } catch (Exception e) {
             String errorMsg = "Error during distributed cleanup: " + e.getMessage();
             LOGGER.error(errorMsg, e);
-            taskLogRepository.logTaskError(taskId, errorMsg);
-            throw new RuntimeException(errorMsg, e);
+            result.discard();
+            throw new CleanupException(errorMsg, e);
         }
     }
 
-    @Async("cleanupTaskExecutor")
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public CompletableFuture<PartialCleanupResult> processEntityAsync(
-            EntityConfig entityConfig, String taskId, boolean dryRun) {
-
-        LOGGER.info("Processing entity {} asynchronously", entityConfig.getName());
-
-        PartialCleanupResult partialResult = new PartialCleanupResult();
+    /**
+     * Plan a run of the entities on the executor's workers: start order, expected worker and
+     * start of each entity, and the expected end of the run
+     */
+    public RunPlan planRun(List<EntityConfig> entities) {
+        RunPlanConfig config = properties.getRunPlan();
+        List<String> entityNames = entities.stream()
+                .map(EntityConfig::getName)
+                .collect(Collectors.toList());
 
-        try {
-            // Find candidate IDs
-            List<String> candidateIds = cleanupRepository.findCandidateIds(entityConfig);
-            partialResult.addCandidates(entityConfig.getName(), candidateIds);
+        RunPlan plan = new RunPlanner(config.getDefaultEntityMillis()).plan(entityNames,
+                taskLogRepository.findEntityRunStats(entityNames, config.getHistoryRuns()), getWorkerCount());
+        plan.setEstimatedCompletion(LocalDateTime.now().plus(Duration.ofMillis(plan.getExpectedMillis())));
+        return plan;
+    }
 
-            if (candidateIds.isEmpty()) {
-                LOGGER.info("No cleanup candidates for entity {}", entityConfig.getName());
-                return CompletableFuture.completedFuture(partialResult);
-            }
+    private List<EntityConfig> startOrder(List<EntityConfig> entities) {
+        if (!properties.getRunPlan().isEnabled() || entities.size() < 2) {
+            return entities;
+        }
 
-            // Backup if configured and not dry run
-            if (entityConfig.getBackup() != null &&
-                    entityConfig.getBackup().isEnabled() && !dryRun) {
-                int backedUp = cleanupRepository.backupCandidatesDirect(entityConfig, taskId);
-                partialResult.setBackedUpCount(entityConfig.getName(), backedUp);
-            }
+        RunPlan plan = planRun(entities);
+        LOGGER.info("Starting entities {} on {} workers, expected to take {}s, until {}", plan.getEntityOrder(),
+                plan.getWorkerCount(), TimeUnit.MILLISECONDS.toSeconds(plan.getExpectedMillis()),
+                plan.getEstimatedCompletion());
+        return RunPlanner.inOrder(entities, plan);
+    }
 
-            // Delete if not dry run
-            if (!dryRun) {
-                int deleted = cleanupRepository.deleteCandidatesDirect(entityConfig);
-                partialResult.setDeletedCount(entityConfig.getName(), deleted);
-            }
+    private PartialCleanupResult processEntity(EntityConfig entityConfig, String taskId, boolean dryRun) {
+        LOGGER.info("Processing entity {} asynchronously", entityConfig.getName());
 
-            return CompletableFuture.completedFuture(partialResult);
+        long start = System.nanoTime();
+        try {
+            PartialCleanupResult partialResult = entityTransaction.execute(
+                    status -> entityCleanupExecutor.execute(entityConfig, taskId, dryRun));
+            taskLogRepository.logEntityRun(taskId, entityConfig.getName(), dryRun,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    partialResult.getCandidateCount(entityConfig.getName()),
+                    partialResult.getDeletedCount(entityConfig.getName()));
+            return partialResult;
 
         } catch (Exception e) {
             String errorMsg = "Error processing entity " + entityConfig.getName() + ": " + e.getMessage();
             LOGGER.error(errorMsg, e);
+            PartialCleanupResult partialResult = new PartialCleanupResult();
             partialResult.setError(entityConfig.getName(), errorMsg);
-            return CompletableFuture.completedFuture(partialResult);
+            return partialResult;
         }
     }
+
+    private int getWorkerCount() {
+        return properties.getDistribution() != null ? properties.getDistribution().getWorkerCount() : 4;
+    }
 }
@@ -0,0 +1,154 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.ResultConfig;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.IncrementalWindow;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+
+/**
+ * Runs discovery, backup and deletion for a single entity. Shared by the local and the
+ * distributed execution paths so that both pick the same strategy for a table: partition
+ * removal, table rebuild or row deletion.
+ */
+@Service
+public class EntityCleanupExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityCleanupExecutor.class);
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final PartitionCleanupService partitionCleanupService;
+    private final TableRebuildService tableRebuildService;
+    private final IncrementalDiscoveryService incrementalDiscoveryService;
+    private final RowDeletionService rowDeletionService;
+    private final TransactionTemplate nonTransactionalTemplate;
+
+    public EntityCleanupExecutor(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            PartitionCleanupService partitionCleanupService,
+            TableRebuildService tableRebuildService,
+            IncrementalDiscoveryService incrementalDiscoveryService,
+            RowDeletionService rowDeletionService,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.partitionCleanupService = partitionCleanupService;
+        this.tableRebuildService = tableRebuildService;
+        this.incrementalDiscoveryService = incrementalDiscoveryService;
+        this.rowDeletionService = rowDeletionService;
+        this.nonTransactionalTemplate = new TransactionTemplate(transactionManager);
+        this.nonTransactionalTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+    }
+
+    public PartialCleanupResult execute(EntityConfig entityConfig, String taskId, boolean dryRun) {
+        // Rebuild swaps, partition removals, lock-aware and pipeline chunks commit on their own and
+        // must not wait for the caller's locks, so the caller's transaction is suspended
+        if (!dryRun && (tableRebuildService.isEnabled(entityConfig) || partitionCleanupService.isEnabled(entityConfig)
+                || rowDeletionService.isChunked())) {
+            return nonTransactionalTemplate.execute(status -> executeStrategy(entityConfig, taskId, dryRun));
+        }
+        return executeStrategy(entityConfig, taskId, dryRun);
+    }
+
+    private PartialCleanupResult executeStrategy(EntityConfig entityConfig, String taskId, boolean dryRun) {
+        IncrementalWindow window = incrementalDiscoveryService.openWindow(entityConfig);
+        PartialCleanupResult result = executeWindow(entityConfig, taskId, dryRun, window.getScope());
+
+        // Candidates left behind by an abandoned chunk must be found again by the next window
+        if (!dryRun && result.getError(entityConfig.getName()) == null) {
+            incrementalDiscoveryService.closeWindow(window);
+        }
+        return result;
+    }
+
+    private PartialCleanupResult executeWindow(EntityConfig entityConfig, String taskId, boolean dryRun,
+                                               CandidateScope scope) {
+        PartialCleanupResult result = newResult(true);
+        if (!dryRun && isPipelined(entityConfig)) {
+            // Candidates are discovered chunk by chunk while earlier chunks are backed up and deleted
+            partitionCleanupService.removeExpiredPartitions(entityConfig, taskId, result);
+            rowDeletionService.runPipeline(entityConfig, taskId, scope, result);
+            return result;
+        }
+
+        KeyList candidateKeys = cleanupRepository.findCandidateKeys(entityConfig, scope);
+        result.addCandidates(entityConfig.getName(), candidateKeys);
+
+        if (dryRun || candidateKeys.isEmpty()) {
+            LOGGER.info("Found {} cleanup candidates for entity {}",
+                    candidateKeys.size(), entityConfig.getName());
+            return result;
+        }
+
+        // Whole partitions first, whatever remains is deleted row by row
+        partitionCleanupService.removeExpiredPartitions(entityConfig, taskId, result);
+        boolean partitioned = partitionCleanupService.isPartitioned(entityConfig);
+
+        // Mostly expired tables are cheaper to copy than to delete from
+        if (!partitioned && tableRebuildService.shouldRebuild(entityConfig, candidateKeys.size())) {
+            tableRebuildService.rebuild(entityConfig, taskId, candidateKeys.size(), result);
+            return result;
+        }
+
+        rowDeletionService.deleteRows(entityConfig, taskId, scope, partitioned, result);
+
+        LOGGER.info("Deleted {} records for entity {}",
+                result.getDeletedCount(entityConfig.getName()), entityConfig.getName());
+        return result;
+    }
+
+    /**
+     * Clean up the candidates within a key range by row deletion. Partition removal and table
+     * rebuilds act on the whole table and are not applied to a range.
+     */
+    public PartialCleanupResult executeScoped(EntityConfig entityConfig, String taskId, boolean dryRun,
+                                              CandidateScope scope) {
+        // Ids of a range stay with the chunk, only its counts are kept
+        PartialCleanupResult result = newResult(false);
+
+        KeyList candidateKeys = cleanupRepository.findCandidateKeys(entityConfig, scope);
+        result.addCandidates(entityConfig.getName(), candidateKeys);
+
+        if (dryRun || candidateKeys.isEmpty()) {
+            return result;
+        }
+
+        rowDeletionService.deleteRows(entityConfig, taskId, scope, partitionCleanupService.isPartitioned(entityConfig),
+                result);
+        return result;
+    }
+
+    /**
+     * Lock-aware deletion and table rebuilds take precedence, they need the locks or the
+     * candidate count up front
+     */
+    private boolean isPipelined(EntityConfig entityConfig) {
+        return rowDeletionService.isPipelined() && !tableRebuildService.isEnabled(entityConfig);
+    }
+
+    /**
+     * An empty result keeping results.sampleSize candidate ids per entity, and every id in a
+     * spill file with results.keepAllIds
+     */
+    private PartialCleanupResult newResult(boolean keepAllIds) {
+        ResultConfig config = properties.getResults();
+        if (config == null) {
+            return new PartialCleanupResult();
+        }
+        return new PartialCleanupResult(config.getSampleSize(),
+                keepAllIds && config.isKeepAllIds() ? Path.of(config.getSpillDirectory()) : null);
+    }
+}
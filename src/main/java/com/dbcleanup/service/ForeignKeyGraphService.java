@@ -0,0 +1,204 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.model.CascadeEdge;
+import com.dbcleanup.model.ForeignKeyMetadata;
+import com.dbcleanup.model.TableMetadata;
+import com.dbcleanup.repository.SchemaMetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the cascade of entities with discoverRelated from the foreign keys in pg_catalog
+ * instead of hand-maintained related entries. Every table referencing the entity's key, and
+ * every table referencing those in turn, becomes a cascading related entity; for foreign keys
+ * with ON DELETE CASCADE the {@link CascadePlanner} decides whether the database or explicit
+ * chunked deletes remove the rows. Declared related entries are kept and take precedence.
+ */
+@Service
+public class ForeignKeyGraphService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForeignKeyGraphService.class);
+
+    private static final String ROOT_KEY = "id";
+
+    private final CleanupProperties properties;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+    private final CascadePlanner cascadePlanner;
+    private final Map<String, List<RelatedEntityConfig>> declaredRelated = new LinkedHashMap<>();
+    private final Map<String, List<CascadeEdge>> plans = new LinkedHashMap<>();
+
+    public ForeignKeyGraphService(
+            CleanupProperties properties,
+            SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.properties = properties;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+        this.cascadePlanner = new CascadePlanner(properties.getCascade().getChunkSize());
+    }
+
+    // Ahead of the other startup listeners, so that e.g. the index advisor sees the discovered cascade
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void discoverOnStartup() {
+        try {
+            refresh(false);
+        } catch (Exception e) {
+            LOGGER.error("Error discovering foreign key graphs", e);
+        }
+    }
+
+    /**
+     * Discover the cascade of every entity with discoverRelated again
+     *
+     * @param reload reload the metadata and statistics of the tables involved from pg_catalog
+     */
+    public synchronized Map<String, List<CascadeEdge>> refresh(boolean reload) {
+        for (EntityConfig entityConfig : properties.getEntities()) {
+            if (!entityConfig.isDiscoverRelated()) {
+                continue;
+            }
+
+            if (reload) {
+                schemaMetadataRepository.invalidate(entityConfig.getTable());
+                plans.getOrDefault(entityConfig.getName(), List.of())
+                        .forEach(edge -> schemaMetadataRepository.invalidate(edge.getTable()));
+            }
+            try {
+                discover(entityConfig);
+            } catch (Exception e) {
+                LOGGER.error("Error discovering the foreign key graph of entity {}: {}",
+                        entityConfig.getName(), e.getMessage(), e);
+            }
+        }
+        return getPlans();
+    }
+
+    public synchronized Map<String, List<CascadeEdge>> getPlans() {
+        return new LinkedHashMap<>(plans);
+    }
+
+    /**
+     * Discover the foreign key graph below an entity's table and install it as the entity's
+     * related entities, next to the declared ones
+     *
+     * @return the edges of the graph in depth-first order
+     */
+    public synchronized List<CascadeEdge> discover(EntityConfig entityConfig) {
+        List<RelatedEntityConfig> declared = declaredRelated.computeIfAbsent(entityConfig.getName(),
+                name -> entityConfig.getRelated() != null ? new ArrayList<>(entityConfig.getRelated()) : List.of());
+        Set<String> declaredTables = declared.stream()
+                .map(RelatedEntityConfig::getTable)
+                .collect(Collectors.toSet());
+
+        List<CascadeEdge> edges = new ArrayList<>();
+        Set<String> path = new HashSet<>();
+        path.add(entityConfig.getTable());
+        List<RelatedEntityConfig> related = new ArrayList<>(declared);
+        for (RelatedEntityConfig discovered : discoverLevel(entityConfig.getName(), entityConfig.getTable(),
+                ROOT_KEY, 1, path, edges)) {
+            if (!declaredTables.contains(discovered.getTable())) {
+                related.add(discovered);
+            }
+        }
+
+        entityConfig.setRelated(related);
+        plans.put(entityConfig.getName(), edges);
+        LOGGER.info("Discovered {} foreign keys below {} for entity {}, {} cascaded by the database",
+                edges.size(), entityConfig.getTable(), entityConfig.getName(),
+                edges.stream().filter(edge -> edge.getStrategy() == CascadeEdge.Strategy.DATABASE).count());
+        return edges;
+    }
+
+    private List<RelatedEntityConfig> discoverLevel(String entityName, String table, String keyColumn, int depth,
+                                                    Set<String> path, List<CascadeEdge> edges) {
+        List<RelatedEntityConfig> related = new ArrayList<>();
+        TableMetadata parent = schemaMetadataRepository.getTable(table);
+
+        for (ForeignKeyMetadata reference : parent.getReferencingKeys()) {
+            String child = reference.getTable();
+            if (reference.getColumns().size() != 1 || !reference.getReferencedColumns().equals(List.of(keyColumn))) {
+                LOGGER.warn("Foreign key {} of {} does not reference {}.{} alone and is not cascaded",
+                        reference.getName(), child, table, keyColumn);
+                continue;
+            }
+            if (reference.getDeleteAction().startsWith("SET ")) {
+                // The database keeps these rows and only clears their reference
+                continue;
+            }
+            if (path.contains(child) || depth > properties.getCascade().getMaxDepth()) {
+                LOGGER.warn("Foreign key {} of {} closes a cycle or exceeds cascade.maxDepth and is not cascaded",
+                        reference.getName(), child);
+                continue;
+            }
+
+            TableMetadata childMetadata = schemaMetadataRepository.getTable(child);
+            CascadeEdge edge = buildEdge(entityName, parent, childMetadata, reference, depth);
+            edges.add(edge);
+
+            List<String> primaryKey = childMetadata.getPrimaryKey();
+            String childKey = primaryKey.size() == 1 ? primaryKey.get(0) : null;
+            List<RelatedEntityConfig> nested = List.of();
+            if (childKey != null) {
+                path.add(child);
+                nested = discoverLevel(entityName, child, childKey, depth + 1, path, edges);
+                path.remove(child);
+            }
+
+            RelatedEntityConfig relatedConfig = new RelatedEntityConfig();
+            relatedConfig.setEntity(child);
+            relatedConfig.setTable(child);
+            relatedConfig.setJoin(edge.getForeignKey());
+            relatedConfig.setForeignKey(edge.getForeignKey());
+            relatedConfig.setCascadeDelete(true);
+            relatedConfig.setDatabaseCascade(edge.getStrategy() == CascadeEdge.Strategy.DATABASE);
+            relatedConfig.setKeyColumn(childKey != null ? childKey : ROOT_KEY);
+            relatedConfig.setRelated(nested.isEmpty() ? null : nested);
+            related.add(relatedConfig);
+        }
+        return related;
+    }
+
+    private CascadeEdge buildEdge(String entityName, TableMetadata parent, TableMetadata child,
+                                  ForeignKeyMetadata reference, int depth) {
+        // The child's own copy of the constraint reflects indexes created on it since
+        boolean indexed = child.getForeignKeys().stream()
+                .filter(foreignKey -> foreignKey.getName().equals(reference.getName()))
+                .findFirst()
+                .map(ForeignKeyMetadata::isIndexed)
+                .orElse(reference.isIndexed());
+
+        CascadeEdge edge = new CascadeEdge();
+        edge.setEntityName(entityName);
+        edge.setParentTable(parent.getTable());
+        edge.setTable(child.getTable());
+        edge.setForeignKey(reference.getColumns().get(0));
+        edge.setReferencedColumn(reference.getReferencedColumns().get(0));
+        edge.setDepth(depth);
+        edge.setDeleteAction(reference.getDeleteAction());
+        edge.setIndexed(indexed);
+        cascadePlanner.plan(edge, parent.getEstimatedRows(), child.getEstimatedRows(), child.getPages());
+
+        if (!indexed) {
+            LOGGER.warn("Foreign key column {}.{} has no index, deleting from {} scans {} for every chunk, " +
+                            "consider: CREATE INDEX CONCURRENTLY ON {} ({})",
+                    child.getTable(), edge.getForeignKey(), parent.getTable(), child.getTable(),
+                    child.getTable(), edge.getForeignKey());
+        }
+        return edge;
+    }
+}
@@ -0,0 +1,72 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.IncrementalConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.IncrementalWindow;
+import com.dbcleanup.repository.WatermarkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Limits candidate discovery of entities with a monotonic cutoff to the slice that expired
+ * since the previous run. Rows below the watermark that became eligible later, e.g. through a
+ * status update, are picked up by the periodic full sweep.
+ */
+@Service
+public class IncrementalDiscoveryService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalDiscoveryService.class);
+
+    private final WatermarkRepository watermarkRepository;
+
+    public IncrementalDiscoveryService(WatermarkRepository watermarkRepository) {
+        super();
+        this.watermarkRepository = watermarkRepository;
+    }
+
+    /**
+     * The window the entity's next run scans: from the stored watermark to the current cutoff,
+     * or everything below the cutoff when a full sweep is due
+     */
+    public IncrementalWindow openWindow(EntityConfig entityConfig) {
+        IncrementalConfig config = entityConfig.getIncremental();
+        if (config == null || !config.isEnabled()) {
+            return IncrementalWindow.whole(entityConfig.getName());
+        }
+        if (config.getField() == null || config.getField().isEmpty()
+                || config.getCutoff() == null || config.getCutoff().isEmpty()) {
+            throw new CleanupException("Incremental discovery of entity " + entityConfig.getName() +
+                    " requires field and cutoff");
+        }
+
+        String type = watermarkRepository.findColumnType(entityConfig.getTable(), config.getField());
+        String cutoff = watermarkRepository.evaluateCutoff(config.getCutoff(), type);
+        String watermark = watermarkRepository.findWatermark(entityConfig.getName());
+        LocalDateTime lastFullSweep = watermarkRepository.findLastFullSweep(entityConfig.getName());
+
+        boolean fullSweep = watermark == null || lastFullSweep == null ||
+                lastFullSweep.plusHours(config.getFullSweepIntervalHours()).isBefore(LocalDateTime.now());
+        CandidateScope scope = CandidateScope.valueRange(config.getField(), fullSweep ? null : watermark, cutoff, type);
+
+        if (fullSweep) {
+            LOGGER.info("Full sweep of entity {} up to {}", entityConfig.getName(), cutoff);
+        } else {
+            LOGGER.info("Incremental discovery of entity {} from {} to {}", entityConfig.getName(), watermark, cutoff);
+        }
+        return new IncrementalWindow(entityConfig.getName(), scope, cutoff, fullSweep);
+    }
+
+    /**
+     * Advance the watermark after the window was cleaned up successfully
+     */
+    public void closeWindow(IncrementalWindow window) {
+        if (window.getCutoff() == null) {
+            return;
+        }
+        watermarkRepository.saveWatermark(window.getEntityName(), window.getCutoff(), window.isFullSweep());
+    }
+}
@@ -0,0 +1,204 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.IndexAdvisorConfig;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.IndexAdvice;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.repository.CascadeDeleteRepository;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.IndexAdvisorRepository;
+import com.dbcleanup.repository.SchemaMetadataRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the plans of the compiled cleanup queries. Sequential scans of large tables are
+ * flagged together with the index that would avoid them, which can optionally be created.
+ */
+@Service
+public class IndexAdvisorService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexAdvisorService.class);
+
+    // Above this share of matching rows a sequential scan is the better plan anyway
+    private static final double SEQUENTIAL_SCAN_FRACTION = 0.2;
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final CascadeDeleteRepository cascadeDeleteRepository;
+    private final SchemaMetadataRepository schemaMetadataRepository;
+    private final IndexAdvisorRepository indexAdvisorRepository;
+    private final ObjectMapper objectMapper;
+    private final IndexRecommender indexRecommender = new IndexRecommender();
+
+    public IndexAdvisorService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            CascadeDeleteRepository cascadeDeleteRepository,
+            SchemaMetadataRepository schemaMetadataRepository,
+            IndexAdvisorRepository indexAdvisorRepository,
+            ObjectMapper objectMapper) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.cascadeDeleteRepository = cascadeDeleteRepository;
+        this.schemaMetadataRepository = schemaMetadataRepository;
+        this.indexAdvisorRepository = indexAdvisorRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void validateOnStartup() {
+        IndexAdvisorConfig config = properties.getIndexAdvisor();
+        if (!config.isValidateOnStartup()) {
+            return;
+        }
+
+        try {
+            for (IndexAdvice advice : advise(config.isCreateIndexes())) {
+                if (advice.getRecommendedIndex() != null && !advice.isIndexCreated()) {
+                    LOGGER.warn("{} query of entity {} scans {} sequentially, consider: {}",
+                            advice.getPurpose(), advice.getEntityName(), advice.getTable(), advice.getRecommendedIndex());
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error validating cleanup query plans", e);
+        }
+    }
+
+    /**
+     * Explain the candidate query of every entity and the deletes of its cascading related
+     * records at every level, discovered ones included
+     *
+     * @param createIndexes create the recommended indexes concurrently
+     */
+    public List<IndexAdvice> advise(boolean createIndexes) {
+        List<IndexAdvice> adviceList = new ArrayList<>();
+
+        for (EntityConfig entityConfig : properties.getEntities()) {
+            adviceList.add(check(entityConfig, "Candidate", entityConfig.getTable(),
+                    parsePlan(indexAdvisorRepository.explain(cleanupRepository.buildFindCandidatesQuery(entityConfig))),
+                    indexRecommender.leadingColumn(entityConfig),
+                    indexRecommender.recommendCriteriaIndex(entityConfig), createIndexes));
+
+            adviseRelated(entityConfig, entityConfig.getTable(), "id", entityConfig.getRelated(), 1,
+                    createIndexes, adviceList);
+        }
+        return adviceList;
+    }
+
+    /**
+     * Explain the statement deleting each level's rows by a batch of parent keys, as the
+     * cascade runs it. An empty batch is bound, so the plan shows how a batch would find its
+     * rows. Levels the database cascades run the same lookup on the foreign key.
+     */
+    private void adviseRelated(EntityConfig entityConfig, String parentTable, String parentKeyColumn,
+                               List<RelatedEntityConfig> related, int depth, boolean createIndexes,
+                               List<IndexAdvice> adviceList) {
+        if (related == null || depth > properties.getCascade().getMaxDepth()) {
+            return;
+        }
+
+        KeyList parentKeys = KeyList.of(schemaMetadataRepository.findColumnType(parentTable, parentKeyColumn));
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (!relatedConfig.isCascadeDelete() || relatedConfig.getTable() == null) {
+                continue;
+            }
+
+            String foreignKey = cascadeDeleteRepository.getForeignKeyField(relatedConfig);
+            String query = cascadeDeleteRepository.buildDeleteByKeysQuery(relatedConfig.getTable(), foreignKey,
+                    parentKeys);
+            adviceList.add(check(entityConfig, "Related delete", relatedConfig.getTable(),
+                    parsePlan(indexAdvisorRepository.explain(query, CascadeDeleteRepository.toSqlArray(parentKeys))),
+                    foreignKey, indexRecommender.recommendForeignKeyIndex(relatedConfig.getTable(), foreignKey),
+                    createIndexes));
+
+            adviseRelated(entityConfig, relatedConfig.getTable(), relatedConfig.getKeyColumn(),
+                    relatedConfig.getRelated(), depth + 1, createIndexes, adviceList);
+        }
+    }
+
+    private IndexAdvice check(EntityConfig entityConfig, String purpose, String table, JsonNode plan,
+                              String leadingColumn, String recommendation, boolean createIndexes) {
+        IndexAdvice advice = new IndexAdvice();
+        advice.setEntityName(entityConfig.getName());
+        advice.setPurpose(purpose);
+        advice.setTable(table);
+        advice.setTableRows(indexAdvisorRepository.findTableRows(table));
+
+        JsonNode scan = findScan(plan, relationName(table));
+        if (scan == null) {
+            advice.setMessage("No scan of " + table + " in the plan");
+            return advice;
+        }
+        advice.setScanType(scan.path("Node Type").asText());
+        advice.setEstimatedRows(scan.path("Plan Rows").asLong());
+        advice.setSequentialScan(advice.getScanType().contains("Seq Scan"));
+
+        if (!advice.isSequentialScan() || advice.getTableRows() < properties.getIndexAdvisor().getLargeTableRows()) {
+            advice.setMessage("OK");
+            return advice;
+        }
+        if (advice.getEstimatedRows() > advice.getTableRows() * SEQUENTIAL_SCAN_FRACTION) {
+            advice.setMessage("Most rows match, a sequential scan is the cheapest plan");
+            return advice;
+        }
+        if (recommendation == null) {
+            advice.setMessage("Sequential scan, but no criteria on the table's own columns to index");
+            return advice;
+        }
+        if (leadingColumn != null && indexAdvisorRepository.hasIndexLeadingWith(table, leadingColumn)) {
+            advice.setMessage("Sequential scan although an index on " + leadingColumn +
+                    " exists; check its statistics and selectivity");
+        } else {
+            advice.setMessage("Sequential scan of a large table");
+        }
+        advice.setRecommendedIndex(recommendation);
+
+        if (createIndexes) {
+            indexAdvisorRepository.createIndex(recommendation);
+            advice.setIndexCreated(true);
+        }
+        return advice;
+    }
+
+    private JsonNode parsePlan(String planJson) {
+        try {
+            return objectMapper.readTree(planJson).path(0).path("Plan");
+        } catch (JsonProcessingException e) {
+            throw new CleanupException("Error parsing query plan: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The first node reading the relation, depth first; modifying nodes are not scans
+     */
+    private JsonNode findScan(JsonNode node, String relation) {
+        if (relation.equals(node.path("Relation Name").asText())
+                && !"ModifyTable".equals(node.path("Node Type").asText())) {
+            return node;
+        }
+        for (JsonNode child : node.path("Plans")) {
+            JsonNode scan = findScan(child, relation);
+            if (scan != null) {
+                return scan;
+            }
+        }
+        return null;
+    }
+
+    private String relationName(String table) {
+        return table.substring(table.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,124 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.CriteriaConfig;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Derives the index that serves an entity's candidate query from its criteria. Conditions
+ * comparing a column with constants become the predicate of a partial index; all other
+ * criteria columns become index keys, followed by id so the candidate ids can be read from
+ * the index alone.
+ */
+public class IndexRecommender {
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private static final String CONSTANT = "(?:'[^']*'|-?\\d+(?:\\.\\d+)?|TRUE|FALSE)";
+    private static final Pattern CONSTANT_CONDITION = Pattern.compile(
+            "^(?:IN\\s*\\(\\s*" + CONSTANT + "(?:\\s*,\\s*" + CONSTANT + ")*\\s*\\)" +
+                    "|(?:=|<>|!=)\\s*" + CONSTANT +
+                    "|IS\\s+(?:NOT\\s+)?(?:NULL|TRUE|FALSE))$",
+            Pattern.CASE_INSENSITIVE);
+
+    public IndexRecommender() {
+        super();
+    }
+
+    /**
+     * CREATE INDEX statement for the candidate query, or null when no criterion is on the
+     * entity's own columns
+     */
+    public String recommendCriteriaIndex(EntityConfig entityConfig) {
+        List<String> keyColumns = new ArrayList<>();
+        List<String> predicates = new ArrayList<>();
+        if (!classifyCriteria(entityConfig, keyColumns, predicates)) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder("CREATE INDEX CONCURRENTLY IF NOT EXISTS ")
+                .append(indexName(entityConfig.getTable(), keyColumns))
+                .append(" ON ").append(entityConfig.getTable())
+                .append(" (").append(String.join(", ", keyColumns)).append(")");
+        if (!predicates.isEmpty()) {
+            sb.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The first key column of the recommended index, or null without a recommendation
+     */
+    public String leadingColumn(EntityConfig entityConfig) {
+        List<String> keyColumns = new ArrayList<>();
+        if (!classifyCriteria(entityConfig, keyColumns, new ArrayList<>())) {
+            return null;
+        }
+        return keyColumns.get(0);
+    }
+
+    /**
+     * CREATE INDEX statement for the foreign key column of a related table
+     */
+    public String recommendForeignKeyIndex(String table, String column) {
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName(table, List.of(column)) +
+                " ON " + table + " (" + column + ")";
+    }
+
+    public boolean isConstantCondition(String condition) {
+        return CONSTANT_CONDITION.matcher(condition.trim()).matches();
+    }
+
+    /**
+     * Split the entity's own criteria into index keys and partial index predicates
+     *
+     * @return false when no criterion is on the entity's own columns
+     */
+    private boolean classifyCriteria(EntityConfig entityConfig, List<String> keyColumns, List<String> predicates) {
+        List<CriteriaConfig> criteria = findOwnCriteria(entityConfig);
+        if (criteria.isEmpty()) {
+            return false;
+        }
+
+        // A partial index predicate must hold for every candidate, which OR breaks
+        boolean conjunctive = criteria.stream().skip(1)
+                .allMatch(criteriaConfig -> "AND".equalsIgnoreCase(criteriaConfig.getOperator()));
+
+        for (CriteriaConfig criteriaConfig : criteria) {
+            String condition = criteriaConfig.getCondition() != null ? criteriaConfig.getCondition().trim() : "";
+            if (conjunctive && isConstantCondition(condition)) {
+                predicates.add(criteriaConfig.getField() + " " + condition);
+            } else if (!keyColumns.contains(criteriaConfig.getField())) {
+                keyColumns.add(criteriaConfig.getField());
+            }
+        }
+        if (!keyColumns.contains("id")) {
+            keyColumns.add("id");
+        }
+        return true;
+    }
+
+    private List<CriteriaConfig> findOwnCriteria(EntityConfig entityConfig) {
+        List<CriteriaConfig> criteria = new ArrayList<>();
+        if (entityConfig.getCriteria() == null) {
+            return criteria;
+        }
+        for (CriteriaConfig criteriaConfig : entityConfig.getCriteria()) {
+            boolean referenced = criteriaConfig.getReferencedEntity() != null
+                    && !criteriaConfig.getReferencedEntity().isEmpty();
+            if (!referenced && criteriaConfig.getField() != null) {
+                criteria.add(criteriaConfig);
+            }
+        }
+        return criteria;
+    }
+
+    private String indexName(String table, List<String> columns) {
+        // Indexes live in the schema of their table and cannot be qualified
+        String relation = table.substring(table.lastIndexOf('.') + 1);
+        String name = "idx_" + relation + "_cleanup_" + String.join("_", columns);
+        return name.length() > MAX_IDENTIFIER_LENGTH ? name.substring(0, MAX_IDENTIFIER_LENGTH) : name;
+    }
+}
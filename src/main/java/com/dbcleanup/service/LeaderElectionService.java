@@ -0,0 +1,102 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Elects the single instance that starts scheduled tasks. The leader holds a session level
+ * advisory lock on a dedicated connection outside the pool; when the instance dies, its
+ * session ends, the lock is released and the next instance checking acquires it.
+ */
+@Service
+@ConditionalOnProperty(prefix = "cleanup.scheduler", name = "enabled", havingValue = "true")
+public class LeaderElectionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaderElectionService.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final CleanupProperties properties;
+    private final DataSourceProperties dataSourceProperties;
+
+    private Connection lockConnection;
+    private boolean leader;
+
+    public LeaderElectionService(CleanupProperties properties, DataSourceProperties dataSourceProperties) {
+        super();
+        this.properties = properties;
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    /**
+     * Whether this instance is the leader, trying to become leader when nobody holds the lock
+     */
+    public synchronized boolean isLeader() {
+        boolean wasLeader = leader;
+
+        try {
+            if (leader && lockConnection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return true;
+            }
+
+            closeConnection();
+            lockConnection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+            leader = tryLock(lockConnection);
+            if (!leader) {
+                closeConnection();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Leader election failed: {}", e.getMessage());
+            closeConnection();
+            leader = false;
+        }
+
+        if (leader != wasLeader) {
+            LOGGER.info(leader ? "This instance is now the scheduler leader" : "This instance lost scheduler leadership");
+        }
+        return leader;
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        if (leader) {
+            LOGGER.info("Releasing scheduler leadership");
+        }
+        // Ending the session releases the advisory lock
+        closeConnection();
+        leader = false;
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, properties.getScheduler().getLeaderLockKey());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void closeConnection() {
+        if (lockConnection == null) {
+            return;
+        }
+
+        try {
+            lockConnection.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Error closing leader lock connection: {}", e.getMessage());
+        }
+        lockConnection = null;
+    }
+}
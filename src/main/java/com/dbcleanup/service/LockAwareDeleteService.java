@@ -0,0 +1,244 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.LockingConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.ContentionStats;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Row deletion that gives way to the application. Every chunk is backed up and deleted in a
+ * short transaction of its own with bounded lock and statement waits, locking its rows in key
+ * order. Rows locked by the application are skipped first and revisited at the end; chunks
+ * running into a timeout or deadlock are retried with jittered exponential backoff and passed
+ * over when they keep failing. Chunks are paced to the WAL budget.
+ */
+@Service
+public class LockAwareDeleteService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LockAwareDeleteService.class);
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final String QUERY_CANCELED = "57014";
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final WalBudgetService walBudgetService;
+    private final TransactionTemplate chunkTransaction;
+    private final Map<String, ContentionStats> contentionStats = new LinkedHashMap<>();
+
+    public LockAwareDeleteService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            WalBudgetService walBudgetService,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.walBudgetService = walBudgetService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return properties.getLocking() != null && properties.getLocking().isEnabled();
+    }
+
+    public synchronized Map<String, ContentionStats> getContentionStats() {
+        Map<String, ContentionStats> copy = new LinkedHashMap<>();
+        contentionStats.forEach((entityName, stats) -> copy.put(entityName, new ContentionStats(stats)));
+        return copy;
+    }
+
+    /**
+     * Back up and delete the candidates within a scope chunk by chunk, adding the counts to
+     * the result. Candidates whose chunk still fails after the last retry are left for the
+     * next run and reported as an error of the entity.
+     */
+    public void deleteCandidates(EntityConfig entityConfig, String taskId, CandidateScope scope,
+                                 PartialCleanupResult result) {
+        if (properties.getLocking().isSkipLocked()) {
+            deletePass(entityConfig, taskId, scope, true, result);
+        }
+        // Rows skipped or abandoned above, now waiting for their locks up to the lock timeout
+        int revisited = deletePass(entityConfig, taskId, scope, false, result);
+        if (properties.getLocking().isSkipLocked() && revisited > 0) {
+            record(entityConfig, stats -> stats.addRevisitedRows(revisited));
+            LOGGER.info("Deleted {} previously locked records of entity {}", revisited, entityConfig.getName());
+        }
+    }
+
+    /**
+     * Walk the candidates in key order one chunk after the other, so that an abandoned chunk
+     * is passed over instead of ending the pass
+     */
+    private int deletePass(EntityConfig entityConfig, String taskId, CandidateScope scope,
+                           boolean skipLocked, PartialCleanupResult result) {
+        int chunkSize = properties.getLocking().getChunkSize();
+        int passDeleted = 0;
+        int abandonedChunks = 0;
+        int abandonedKeys = 0;
+        KeyList previous = null;
+
+        while (true) {
+            KeyList keys = cleanupRepository.findCandidateKeyChunk(entityConfig, scope, previous, chunkSize);
+            if (keys.isEmpty()) {
+                break;
+            }
+            previous = keys;
+
+            ChunkOutcome outcome = walBudgetService.meter(entityConfig.getName(),
+                    () -> deleteChunkWithRetry(entityConfig, taskId, keys, skipLocked),
+                    walBytes -> result.addWalBytes(entityConfig.getName(), walBytes));
+            if (outcome.abandoned) {
+                abandonedChunks++;
+                abandonedKeys += keys.size();
+                continue;
+            }
+
+            result.addBackedUpCount(entityConfig.getName(), outcome.backedUp);
+            result.addDeletedCount(entityConfig.getName(), outcome.deleted);
+            passDeleted += outcome.deleted;
+        }
+
+        // The last pass waits for every lock, whatever it had to give up on is left behind
+        if (!skipLocked && abandonedChunks > 0) {
+            result.setError(entityConfig.getName(), "Abandoned " + abandonedChunks + " chunks of up to " +
+                    abandonedKeys + " candidates after lock contention, they are left for the next run");
+        }
+        return passDeleted;
+    }
+
+    /**
+     * @return the outcome of the chunk, abandoned when it still met contention after the last retry
+     */
+    private ChunkOutcome deleteChunkWithRetry(EntityConfig entityConfig, String taskId, KeyList keys,
+                                              boolean skipLocked) {
+        LockingConfig config = properties.getLocking();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                ChunkOutcome outcome = chunkTransaction.execute(
+                        status -> deleteChunk(entityConfig, taskId, keys, skipLocked));
+                record(entityConfig, ContentionStats::addChunk);
+                return outcome;
+            } catch (RuntimeException e) {
+                if (!recordContention(entityConfig, e)) {
+                    throw e;
+                }
+                if (attempt >= config.getMaxRetries()) {
+                    record(entityConfig, ContentionStats::addAbandonedChunk);
+                    LOGGER.warn("Giving up on a chunk of {} candidates of entity {} after {} retries, they are " +
+                            "left for the next run", keys.size(), entityConfig.getName(), attempt);
+                    return ChunkOutcome.ABANDONED;
+                }
+
+                record(entityConfig, ContentionStats::addRetry);
+                long delay = backoffMillis(attempt, config);
+                LOGGER.debug("Chunk of entity {} met contention, retrying in {} ms", entityConfig.getName(), delay);
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Back up and delete those of the chunk's keys that are still candidates
+     */
+    private ChunkOutcome deleteChunk(EntityConfig entityConfig, String taskId, KeyList chunkKeys,
+                                     boolean skipLocked) {
+        LockingConfig config = properties.getLocking();
+        cleanupRepository.setLocalTimeouts(config.getLockTimeoutMillis(), config.getStatementTimeoutMillis());
+
+        KeyList keys = cleanupRepository.lockCandidates(entityConfig, CandidateScope.keyIn(chunkKeys),
+                chunkKeys.size(), skipLocked);
+        if (keys.isEmpty()) {
+            return new ChunkOutcome(0, 0, false);
+        }
+
+        CandidateScope chunkScope = CandidateScope.keyIn(keys);
+        cleanupRepository.lockRelatedRecords(entityConfig, chunkScope);
+
+        int backedUp = entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled() ?
+                cleanupRepository.backupCandidatesDirect(entityConfig, taskId, chunkScope) : 0;
+        int deleted = cleanupRepository.deleteCandidatesDirect(entityConfig, chunkScope);
+        return new ChunkOutcome(backedUp, deleted, false);
+    }
+
+    /**
+     * Count the failure if it was caused by lock contention
+     *
+     * @return false for any other failure
+     */
+    private boolean recordContention(EntityConfig entityConfig, Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (!(cause instanceof SQLException)) {
+                continue;
+            }
+
+            String sqlState = ((SQLException) cause).getSQLState();
+            if (LOCK_NOT_AVAILABLE.equals(sqlState)) {
+                record(entityConfig, ContentionStats::addLockTimeout);
+                return true;
+            }
+            if (QUERY_CANCELED.equals(sqlState)) {
+                record(entityConfig, ContentionStats::addStatementTimeout);
+                return true;
+            }
+            if (DEADLOCK_DETECTED.equals(sqlState)) {
+                record(entityConfig, ContentionStats::addDeadlock);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long backoffMillis(int attempt, LockingConfig config) {
+        long delay = Math.min(config.getMaxBackoffMillis(), config.getBackoffMillis() << Math.min(attempt, 20));
+        // Random jitter over the upper half keeps parallel workers from retrying in lockstep
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CleanupException("Interrupted while backing off from lock contention", e);
+        }
+    }
+
+    private synchronized void record(EntityConfig entityConfig, Consumer<ContentionStats> update) {
+        update.accept(contentionStats.computeIfAbsent(entityConfig.getName(), entityName -> new ContentionStats()));
+    }
+
+    private static class ChunkOutcome {
+        private static final ChunkOutcome ABANDONED = new ChunkOutcome(0, 0, true);
+
+        private final int backedUp;
+        private final int deleted;
+        private final boolean abandoned;
+
+        ChunkOutcome(int backedUp, int deleted, boolean abandoned) {
+            super();
+            this.backedUp = backedUp;
+            this.deleted = deleted;
+            this.abandoned = abandoned;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.MaintenanceConfig;
+import com.dbcleanup.model.MaintenanceAction;
+
+/**
+ * Chooses the maintenance of a table after a cleanup. A large share of dead tuples calls for
+ * VACUUM (ANALYZE) so the space is reused and the visibility map is current; a smaller change
+ * only refreshes the planner statistics.
+ */
+public class MaintenancePlanner {
+    private final MaintenanceConfig config;
+
+    public MaintenancePlanner(MaintenanceConfig config) {
+        super();
+        this.config = config;
+    }
+
+    /**
+     * @param liveTuples  live tuples reported by the statistics
+     * @param deadTuples  dead tuples reported by the statistics
+     * @param deletedRows rows the cleanup deleted, which the statistics may not reflect yet
+     */
+    public MaintenanceAction.Type decide(long liveTuples, long deadTuples, long deletedRows) {
+        long dead = Math.max(deadTuples, deletedRows);
+        long total = liveTuples + dead;
+        if (total == 0 || dead < config.getMinDeadTuples()) {
+            return MaintenanceAction.Type.NONE;
+        }
+
+        double deadFraction = (double) dead / total;
+        if (deadFraction >= config.getVacuumDeadFraction()) {
+            return MaintenanceAction.Type.VACUUM_ANALYZE;
+        }
+        if (deadFraction >= config.getAnalyzeChangeFraction()) {
+            return MaintenanceAction.Type.ANALYZE;
+        }
+        return MaintenanceAction.Type.NONE;
+    }
+}
@@ -0,0 +1,154 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.MaintenanceAction;
+import com.dbcleanup.repository.MaintenanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Maintenance stage after a cleanup: VACUUM (ANALYZE) or ANALYZE on the main and related
+ * tables of every entity with deletions, chosen from their dead tuples and the rows deleted
+ */
+@Service
+public class MaintenanceService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaintenanceService.class);
+
+    private final CleanupProperties properties;
+    private final MaintenanceRepository maintenanceRepository;
+    private final Executor maintenanceExecutor;
+    private final MaintenancePlanner maintenancePlanner;
+
+    public MaintenanceService(
+            CleanupProperties properties,
+            MaintenanceRepository maintenanceRepository,
+            @Qualifier("maintenanceExecutor") Executor maintenanceExecutor) {
+        super();
+        this.properties = properties;
+        this.maintenanceRepository = maintenanceRepository;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.maintenancePlanner = new MaintenancePlanner(properties.getMaintenance());
+    }
+
+    public boolean isEnabled() {
+        return properties.getMaintenance() != null && properties.getMaintenance().isEnabled();
+    }
+
+    /**
+     * Maintain the cleaned tables once the surrounding transaction has committed, or right
+     * away without one; vacuuming before the commit would find no dead tuples to remove. The
+     * actions are added to the result before the caller receives it.
+     */
+    public void maintainAfterCommit(List<EntityConfig> entities, CleanupResult result) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    maintain(entities, result);
+                }
+            });
+        } else {
+            maintain(entities, result);
+        }
+    }
+
+    private void maintain(List<EntityConfig> entities, CleanupResult result) {
+        List<CompletableFuture<MaintenanceAction>> steps = new ArrayList<>();
+        for (MaintenanceAction action : collectTables(entities, result).values()) {
+            steps.add(CompletableFuture.supplyAsync(() -> maintainTable(action), maintenanceExecutor));
+        }
+
+        List<MaintenanceAction> actions = steps.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        result.addMaintenance(actions);
+    }
+
+    /**
+     * The main and cascading related tables of every entity with deletions, each table once
+     */
+    private Map<String, MaintenanceAction> collectTables(List<EntityConfig> entities, CleanupResult result) {
+        Map<String, MaintenanceAction> tables = new LinkedHashMap<>();
+
+        for (EntityConfig entityConfig : entities) {
+            int deleted = result.getDeletedCount(entityConfig.getName());
+            if (deleted == 0) {
+                continue;
+            }
+
+            addTable(tables, entityConfig, entityConfig.getTable(), deleted);
+            addRelatedTables(tables, entityConfig, entityConfig.getRelated());
+        }
+        return tables;
+    }
+
+    private void addRelatedTables(Map<String, MaintenanceAction> tables, EntityConfig entityConfig,
+                                  List<RelatedEntityConfig> related) {
+        if (related == null) {
+            return;
+        }
+        for (RelatedEntityConfig relatedConfig : related) {
+            if (relatedConfig.isCascadeDelete() && relatedConfig.getTable() != null) {
+                // Related deletions are not counted, their statistics decide
+                addTable(tables, entityConfig, relatedConfig.getTable(), 0);
+                addRelatedTables(tables, entityConfig, relatedConfig.getRelated());
+            }
+        }
+    }
+
+    private void addTable(Map<String, MaintenanceAction> tables, EntityConfig entityConfig, String table, long deleted) {
+        MaintenanceAction action = tables.computeIfAbsent(table, key -> {
+            MaintenanceAction newAction = new MaintenanceAction();
+            newAction.setEntityName(entityConfig.getName());
+            newAction.setTable(table);
+            return newAction;
+        });
+        action.setDeletedRows(action.getDeletedRows() + deleted);
+    }
+
+    private MaintenanceAction maintainTable(MaintenanceAction action) {
+        long start = System.currentTimeMillis();
+
+        try {
+            long[] tuples = maintenanceRepository.findTupleCounts(action.getTable());
+            action.setLiveTuples(tuples[0]);
+            action.setDeadTuples(tuples[1]);
+            action.setType(maintenancePlanner.decide(tuples[0], tuples[1], action.getDeletedRows()));
+
+            if (action.getType() == MaintenanceAction.Type.VACUUM_ANALYZE) {
+                maintenanceRepository.vacuumAnalyze(action.getTable());
+            } else if (action.getType() == MaintenanceAction.Type.ANALYZE) {
+                maintenanceRepository.analyze(action.getTable());
+            }
+        } catch (Exception e) {
+            // The cleanup itself succeeded; autovacuum will still get to the table
+            LOGGER.error("Error maintaining table {}: {}", action.getTable(), e.getMessage(), e);
+            action.setError(e.getMessage());
+        }
+
+        action.setDurationMillis(System.currentTimeMillis() - start);
+        LOGGER.info("Maintenance of {}: {} ({} live, {} dead, {} deleted) in {} ms", action.getTable(),
+                action.getType(), action.getLiveTuples(), action.getDeadTuples(), action.getDeletedRows(),
+                action.getDurationMillis());
+        return action;
+    }
+}
@@ -0,0 +1,189 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.BackupFormat;
+import com.dbcleanup.config.CleanupProperties.CriteriaConfig;
+import com.dbcleanup.config.CleanupProperties.DetachedTableAction;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.PartitioningConfig;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.model.TablePartition;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.PartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast path for range partitioned tables: partitions whose bounds are entirely covered by a
+ * date cutoff criterion are detached and dropped or archived as a whole instead of deleting
+ * their rows one by one. Rows in partially matching boundary partitions are left to the
+ * regular chunked row deletion. Each partition is removed in a short transaction of its own, so
+ * that the exclusive lock the detach takes on the partitioned table is released right away.
+ */
+@Service
+public class PartitionCleanupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionCleanupService.class);
+
+    private final PartitionRepository partitionRepository;
+    private final CleanupRepository cleanupRepository;
+    private final TransactionTemplate partitionTransaction;
+
+    public PartitionCleanupService(PartitionRepository partitionRepository, CleanupRepository cleanupRepository,
+                                   PlatformTransactionManager transactionManager) {
+        super();
+        this.partitionRepository = partitionRepository;
+        this.cleanupRepository = cleanupRepository;
+        this.partitionTransaction = new TransactionTemplate(transactionManager);
+        this.partitionTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Whether partition removal is configured for the entity, whether or not its table is partitioned
+     */
+    public boolean isEnabled(EntityConfig entityConfig) {
+        PartitioningConfig config = entityConfig.getPartitioning();
+        return config != null && config.isEnabled();
+    }
+
+    public boolean isPartitioned(EntityConfig entityConfig) {
+        return isEnabled(entityConfig) && partitionRepository.isPartitioned(entityConfig.getTable());
+    }
+
+    /**
+     * Back up every partition that only holds candidate rows with a bulk copy, detach it and
+     * drop or archive it. Deleted and backed up counts are added to the partial result.
+     *
+     * @return true when at least one partition was removed
+     */
+    public boolean removeExpiredPartitions(EntityConfig entityConfig, String taskId, PartialCleanupResult result) {
+        if (!isPartitioned(entityConfig)) {
+            return false;
+        }
+
+        String table = entityConfig.getTable();
+        String keyColumn = partitionRepository.findRangePartitionColumn(table);
+        if (keyColumn == null) {
+            LOGGER.info("Table {} is not partitioned by a single range column, using row deletion", table);
+            return false;
+        }
+
+        CriteriaConfig cutoffCriteria = findCutoffCriteria(entityConfig, keyColumn);
+        if (cutoffCriteria == null) {
+            LOGGER.info("No upper cutoff on partition key {} for entity {}, using row deletion",
+                    keyColumn, entityConfig.getName());
+            return false;
+        }
+
+        String cutoffExpression = getCutoffExpression(cutoffCriteria.getCondition());
+        String keyType = partitionRepository.findColumnType(table, keyColumn);
+        String remainingCondition = buildRemainingCondition(entityConfig, cutoffCriteria);
+
+        boolean removedAny = false;
+        for (TablePartition partition : partitionRepository.findPartitions(table)) {
+            String upperBound = partition.getUpperBound();
+            if (upperBound == null
+                    || !partitionRepository.isBoundAtOrBefore(upperBound, keyType, cutoffExpression)) {
+                continue;
+            }
+
+            // Other criteria (e.g. status) must hold for every row before the partition can go
+            if (remainingCondition != null
+                    && partitionRepository.hasRowsNotMatching(partition.getQualifiedName(), remainingCondition)) {
+                LOGGER.info("Partition {} is expired but holds rows failing the remaining criteria, " +
+                        "using row deletion", partition.getQualifiedName());
+                continue;
+            }
+
+            partitionTransaction.executeWithoutResult(
+                    status -> removePartition(entityConfig, partition, taskId, result));
+            removedAny = true;
+        }
+
+        return removedAny;
+    }
+
+    private void removePartition(EntityConfig entityConfig, TablePartition partition, String taskId,
+                                 PartialCleanupResult result) {
+        String partitionTable = partition.getQualifiedName();
+        int rows = partitionRepository.countRows(partitionTable);
+
+        // The partition and its cascading related rows are backed up while the related rows still exist
+        if (entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled()
+                && (entityConfig.getBackup().getTable() != null
+                || entityConfig.getBackup().getFormat() == BackupFormat.BINARY)) {
+            int backedUp = cleanupRepository.backupTableDirect(entityConfig, partitionTable, taskId);
+            result.addBackedUpCount(entityConfig.getName(), backedUp);
+        }
+
+        // Children referencing the partition would block the detach
+        cleanupRepository.deleteRelatedOfTable(entityConfig, partitionTable);
+        partitionRepository.detachPartition(entityConfig.getTable(), partitionTable);
+
+        PartitioningConfig config = entityConfig.getPartitioning();
+        if (config.getDetachedAction() == DetachedTableAction.ARCHIVE) {
+            partitionRepository.moveToSchema(partitionTable, config.getArchiveSchema());
+        } else {
+            partitionRepository.dropTable(partitionTable);
+        }
+
+        result.addDeletedCount(entityConfig.getName(), rows);
+        LOGGER.info("Removed partition {} ({} rows) of entity {} using {}",
+                partitionTable, rows, entityConfig.getName(), config.getDetachedAction());
+    }
+
+    /**
+     * The criteria must be a plain conjunction on the main entity with an upper cutoff
+     * ("<" or "<=") on the partition key
+     */
+    private CriteriaConfig findCutoffCriteria(EntityConfig entityConfig, String keyColumn) {
+        if (entityConfig.getCriteria() == null) {
+            return null;
+        }
+
+        CriteriaConfig cutoffCriteria = null;
+        for (int i = 0; i < entityConfig.getCriteria().size(); i++) {
+            CriteriaConfig criteria = entityConfig.getCriteria().get(i);
+            if (criteria.getReferencedEntity() != null && !criteria.getReferencedEntity().isEmpty()) {
+                return null;
+            }
+            if (i > 0 && !"AND".equalsIgnoreCase(criteria.getOperator())) {
+                return null;
+            }
+            if (keyColumn.equals(criteria.getField()) && getCutoffExpression(criteria.getCondition()) != null) {
+                cutoffCriteria = criteria;
+            }
+        }
+        return cutoffCriteria;
+    }
+
+    private String getCutoffExpression(String condition) {
+        if (condition == null) {
+            return null;
+        }
+
+        String trimmed = condition.trim();
+        if (trimmed.startsWith("<=")) {
+            return trimmed.substring(2).trim();
+        }
+        if (trimmed.startsWith("<") && !trimmed.startsWith("<>")) {
+            return trimmed.substring(1).trim();
+        }
+        return null;
+    }
+
+    private String buildRemainingCondition(EntityConfig entityConfig, CriteriaConfig cutoffCriteria) {
+        List<String> conditions = new ArrayList<>();
+        for (CriteriaConfig criteria : entityConfig.getCriteria()) {
+            if (criteria != cutoffCriteria) {
+                conditions.add("e." + criteria.getField() + " " + criteria.getCondition());
+            }
+        }
+        return conditions.isEmpty() ? null : String.join(" AND ", conditions);
+    }
+}
@@ -0,0 +1,244 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.PipelineConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.CandidateSet;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Row deletion as a pipeline of discovery, backup and delete stages connected by bounded
+ * queues of candidate key chunks, so that the next chunk is discovered while earlier ones are
+ * backed up and deleted. Discovery walks the candidates in key order on one thread; backup and
+ * delete run with pipeline.backupConcurrency and pipeline.deleteConcurrency workers, each chunk
+ * in a transaction of its own. A full queue blocks the stage feeding it, which bounds memory to
+ * pipeline.queueCapacity chunks per queue. Backup and delete chunks are paced to the WAL budget.
+ * The first failure in any stage cancels the others; chunks committed before stay done.
+ */
+@Service
+public class PipelinedCleanupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedCleanupService.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    // Marks the end of a queue; compared by identity
+    private static final KeyList END = KeyList.of("text");
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final WalBudgetService walBudgetService;
+    private final TransactionTemplate chunkTransaction;
+
+    public PipelinedCleanupService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            WalBudgetService walBudgetService,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.walBudgetService = walBudgetService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return properties.getPipeline() != null && properties.getPipeline().isEnabled();
+    }
+
+    /**
+     * Discover, back up and delete the candidates within a scope with the stages overlapping,
+     * adding the candidates and counts to the result
+     */
+    public void run(EntityConfig entityConfig, String taskId, CandidateScope scope, PartialCleanupResult result) {
+        PipelineConfig config = properties.getPipeline();
+        boolean backup = entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled();
+        int backupWorkers = backup ? Math.max(1, config.getBackupConcurrency()) : 0;
+        int deleteWorkers = Math.max(1, config.getDeleteConcurrency());
+        int queueCapacity = Math.max(1, config.getQueueCapacity());
+
+        Pipeline pipeline = new Pipeline();
+        BlockingQueue<KeyList> toDelete = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<KeyList> toBackup = backup ? new ArrayBlockingQueue<>(queueCapacity) : toDelete;
+        CandidateSet candidates = result.getCandidateSet(entityConfig.getName());
+        AtomicInteger backedUp = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicLong walBytes = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(1 + backupWorkers + deleteWorkers,
+                new CustomizableThreadFactory("cleanup-pipeline-"));
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            workers.add(executor.submit(() -> pipeline.runWorker(() ->
+                    discover(entityConfig, scope, config.getChunkSize(), toBackup, candidates, pipeline))));
+
+            if (backup) {
+                startStage(executor, workers, pipeline, backupWorkers, toBackup, toDelete, chunk -> {
+                    Integer count = walBudgetService.meter(entityConfig.getName(),
+                            () -> chunkTransaction.execute(status -> cleanupRepository.backupCandidatesDirect(
+                                    entityConfig, taskId, CandidateScope.keyIn(chunk))),
+                            walBytes::addAndGet);
+                    backedUp.addAndGet(count != null ? count : 0);
+                });
+            }
+
+            startStage(executor, workers, pipeline, deleteWorkers, toDelete, null, chunk -> {
+                Integer count = walBudgetService.meter(entityConfig.getName(),
+                        () -> chunkTransaction.execute(status -> cleanupRepository.deleteCandidatesDirect(
+                                entityConfig, CandidateScope.keyIn(chunk))),
+                        walBytes::addAndGet);
+                deleted.addAndGet(count != null ? count : 0);
+            });
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pipeline.fail(e);
+        } catch (ExecutionException e) {
+            pipeline.fail(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            result.addBackedUpCount(entityConfig.getName(), backedUp.get());
+            result.addDeletedCount(entityConfig.getName(), deleted.get());
+            result.addWalBytes(entityConfig.getName(), walBytes.get());
+        }
+
+        Throwable failure = pipeline.failure.get();
+        if (failure != null) {
+            String errorMsg = "Pipeline for " + entityConfig.getName() + " cancelled after backing up " +
+                    backedUp.get() + " and deleting " + deleted.get() + " records: " + failure.getMessage();
+            LOGGER.error(errorMsg, failure);
+            throw new CleanupException(errorMsg, failure);
+        }
+        LOGGER.info("Pipeline for {} backed up {} and deleted {} of {} candidates, writing {} bytes of WAL",
+                entityConfig.getName(), backedUp.get(), deleted.get(), candidates.getCount(), walBytes.get());
+    }
+
+    private void discover(EntityConfig entityConfig, CandidateScope scope, int chunkSize,
+                          BlockingQueue<KeyList> out, CandidateSet candidates, Pipeline pipeline)
+            throws InterruptedException {
+        int limit = Math.max(1, chunkSize);
+        KeyList previous = null;
+
+        while (true) {
+            KeyList chunk = cleanupRepository.findCandidateKeyChunk(entityConfig, scope, previous, limit);
+            if (chunk.isEmpty()) {
+                pipeline.put(out, END);
+                return;
+            }
+
+            candidates.addAll(chunk);
+            pipeline.put(out, chunk);
+            previous = chunk;
+        }
+    }
+
+    /**
+     * Start the workers of a stage. Each worker handing on the end marker passes it to its
+     * siblings; the last one to finish passes it to the next stage.
+     */
+    private void startStage(ExecutorService executor, List<Future<?>> workers, Pipeline pipeline, int workerCount,
+                            BlockingQueue<KeyList> in, BlockingQueue<KeyList> out,
+                            Consumer<KeyList> action) {
+        AtomicInteger running = new AtomicInteger(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(executor.submit(() -> pipeline.runWorker(() -> {
+                while (true) {
+                    KeyList chunk = pipeline.take(in);
+                    if (chunk == END) {
+                        pipeline.put(in, END);
+                        if (running.decrementAndGet() == 0 && out != null) {
+                            pipeline.put(out, END);
+                        }
+                        return;
+                    }
+
+                    action.accept(chunk);
+                    if (out != null) {
+                        pipeline.put(out, chunk);
+                    }
+                }
+            })));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Shared cancellation state of one pipeline run; queue operations give up once any worker
+     * has failed
+     */
+    private static final class Pipeline {
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        void fail(Throwable cause) {
+            failure.compareAndSet(null, cause);
+        }
+
+        void runWorker(Work work) {
+            try {
+                work.run();
+            } catch (CancellationException e) {
+                // Another worker failed first
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+
+        void put(BlockingQueue<KeyList> queue, KeyList chunk) throws InterruptedException {
+            do {
+                checkCancelled();
+            } while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        KeyList take(BlockingQueue<KeyList> queue) throws InterruptedException {
+            while (true) {
+                checkCancelled();
+                KeyList chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+        }
+
+        private void checkCancelled() {
+            if (failure.get() != null) {
+                throw new CancellationException();
+            }
+        }
+    }
+}
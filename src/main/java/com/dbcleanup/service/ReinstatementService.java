@@ -0,0 +1,157 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.BackupFormat;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.repository.BackupBlockRepository;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.TaskLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Puts backed up rows back into their tables. Backups are reinstated in chunks of
+ * reinstatement.chunkSize rows in key order, each chunk with a single set-based statement per
+ * table and in a transaction of its own, so large reinstatements neither hold one huge
+ * transaction nor lose the chunks already done when a later chunk fails.
+ */
+@Service
+public class ReinstatementService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReinstatementService.class);
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final BackupBlockRepository backupBlockRepository;
+    private final TaskLogRepository taskLogRepository;
+    private final TransactionTemplate chunkTransaction;
+
+    public ReinstatementService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            BackupBlockRepository backupBlockRepository,
+            TaskLogRepository taskLogRepository,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.backupBlockRepository = backupBlockRepository;
+        this.taskLogRepository = taskLogRepository;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Reinstate specific backup records
+     */
+    public int reinstateBackups(String entityName, List<String> backupIds, String initiator) {
+        if (backupIds == null || backupIds.isEmpty()) {
+            return 0;
+        }
+
+        EntityConfig entityConfig = findEntityConfig(entityName);
+        LOGGER.info("Reinstating {} backup records for entity {}", backupIds.size(), entityName);
+        String taskId = taskLogRepository.logTaskStart("REINSTATE", initiator, List.of(entityName), false);
+
+        try {
+            List<String> sortedIds = backupIds.stream().distinct().sorted().collect(Collectors.toList());
+            int reinstated = reinstateInChunks(entityConfig, sortedIds, initiator);
+            taskLogRepository.logTaskCompletion(taskId, sortedIds.size(), reinstated);
+            return reinstated;
+        } catch (Exception e) {
+            String errorMsg = "Error reinstating backups: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            taskLogRepository.logTaskError(taskId, errorMsg);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Reinstate every backup of a cleanup task that has not been reinstated yet
+     */
+    public int reinstateTask(String entityName, String cleanupTaskId, String initiator) {
+        EntityConfig entityConfig = findEntityConfig(entityName);
+        LOGGER.info("Reinstating backups of task {} for entity {}", cleanupTaskId, entityName);
+        String taskId = taskLogRepository.logTaskStart("REINSTATE", initiator, List.of(entityName), false);
+        int chunkSize = Math.max(1, properties.getReinstatement().getChunkSize());
+
+        try {
+            int reinstated = 0;
+            int requested = 0;
+
+            if (entityConfig.getBackup().getFormat() == BackupFormat.BINARY) {
+                List<String> backupIds = backupBlockRepository
+                        .findBackupMetadata(entityName, cleanupTaskId, Integer.MAX_VALUE).stream()
+                        .filter(row -> !Boolean.TRUE.equals(row.get("reinstated")))
+                        .map(row -> (String) row.get("backup_id"))
+                        .collect(Collectors.toList());
+                requested = backupIds.size();
+                reinstated = reinstateInChunks(entityConfig, backupIds, initiator);
+            } else {
+                // Keyset walk, so that rows failing to reinstate are not picked up again
+                String afterBackupId = "";
+                List<String> chunk = cleanupRepository.findBackupIdChunk(entityConfig, cleanupTaskId, afterBackupId, chunkSize);
+                while (!chunk.isEmpty()) {
+                    requested += chunk.size();
+                    reinstated += reinstateChunk(entityConfig, chunk, initiator);
+                    afterBackupId = chunk.get(chunk.size() - 1);
+                    chunk = cleanupRepository.findBackupIdChunk(entityConfig, cleanupTaskId, afterBackupId, chunkSize);
+                }
+            }
+
+            taskLogRepository.logTaskCompletion(taskId, requested, reinstated);
+            LOGGER.info("Reinstated {} records of task {} for entity {}", reinstated, cleanupTaskId, entityName);
+            return reinstated;
+        } catch (Exception e) {
+            String errorMsg = "Error reinstating backups of task " + cleanupTaskId + ": " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            taskLogRepository.logTaskError(taskId, errorMsg);
+            throw new CleanupException(errorMsg, e);
+        }
+    }
+
+    private int reinstateInChunks(EntityConfig entityConfig, List<String> backupIds, String initiator) {
+        int chunkSize = Math.max(1, properties.getReinstatement().getChunkSize());
+        int reinstated = 0;
+
+        for (int i = 0; i < backupIds.size(); i += chunkSize) {
+            List<String> chunk = backupIds.subList(i, Math.min(i + chunkSize, backupIds.size()));
+            try {
+                reinstated += reinstateChunk(entityConfig, chunk, initiator);
+            } catch (Exception e) {
+                throw new CleanupException("Reinstated " + reinstated + " records before a chunk failed: " +
+                        e.getMessage(), e);
+            }
+        }
+
+        LOGGER.info("Reinstated {} records for entity {}", reinstated, entityConfig.getName());
+        return reinstated;
+    }
+
+    private int reinstateChunk(EntityConfig entityConfig, List<String> backupIds, String initiator) {
+        boolean includeRelated = properties.getReinstatement().isIncludeRelated();
+        Integer reinstated = chunkTransaction.execute(status ->
+                entityConfig.getBackup().getFormat() == BackupFormat.BINARY ?
+                        backupBlockRepository.reinstate(entityConfig, backupIds, initiator) :
+                        cleanupRepository.reinstateBackupChunk(entityConfig, backupIds, includeRelated, initiator));
+        return reinstated != null ? reinstated : 0;
+    }
+
+    private EntityConfig findEntityConfig(String entityName) {
+        EntityConfig entityConfig = properties.getEntities().stream()
+                .filter(config -> config.getName().equals(entityName))
+                .findFirst()
+                .orElseThrow(() -> new CleanupException("Entity config not found for " + entityName));
+        if (entityConfig.getBackup() == null || !entityConfig.getBackup().isEnabled()) {
+            throw new CleanupException("Backup not enabled for entity " + entityName);
+        }
+        return entityConfig;
+    }
+}
@@ -0,0 +1,81 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Row deletion of the candidates within a scope: in lock-aware chunks, as overlapping
+ * pipeline stages, or with plain statements within the caller's transaction
+ */
+@Service
+public class RowDeletionService {
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final LockAwareDeleteService lockAwareDeleteService;
+    private final PipelinedCleanupService pipelinedCleanupService;
+
+    public RowDeletionService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            LockAwareDeleteService lockAwareDeleteService,
+            PipelinedCleanupService pipelinedCleanupService) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.lockAwareDeleteService = lockAwareDeleteService;
+        this.pipelinedCleanupService = pipelinedCleanupService;
+    }
+
+    /**
+     * Whether rows are deleted in chunks that commit on their own
+     */
+    public boolean isChunked() {
+        return lockAwareDeleteService.isEnabled() || pipelinedCleanupService.isEnabled();
+    }
+
+    /**
+     * Whether the pipeline discovers the candidates chunk by chunk; lock-aware deletion takes
+     * precedence, it needs the locks up front
+     */
+    public boolean isPipelined() {
+        return pipelinedCleanupService.isEnabled() && !lockAwareDeleteService.isEnabled();
+    }
+
+    /**
+     * Discover, back up and delete the candidates within a scope as overlapping pipeline stages
+     */
+    public void runPipeline(EntityConfig entityConfig, String taskId, CandidateScope scope,
+                            PartialCleanupResult result) {
+        pipelinedCleanupService.run(entityConfig, taskId, scope, result);
+    }
+
+    /**
+     * Back up and delete the candidates within a scope, adding the counts to the result. Rows
+     * of a partitioned table are deleted in chunks of distribution.batchSize.
+     */
+    public void deleteRows(EntityConfig entityConfig, String taskId, CandidateScope scope, boolean partitioned,
+                           PartialCleanupResult result) {
+        if (lockAwareDeleteService.isEnabled()) {
+            lockAwareDeleteService.deleteCandidates(entityConfig, taskId, scope, result);
+            return;
+        }
+
+        if (entityConfig.getBackup() != null && entityConfig.getBackup().isEnabled()) {
+            int backedUp = cleanupRepository.backupCandidatesDirect(entityConfig, taskId, scope);
+            result.addBackedUpCount(entityConfig.getName(), backedUp);
+        }
+
+        int deleted = partitioned ?
+                cleanupRepository.deleteCandidatesInChunks(entityConfig, getChunkSize(), scope) :
+                cleanupRepository.deleteCandidatesDirect(entityConfig, scope);
+        result.addDeletedCount(entityConfig.getName(), deleted);
+    }
+
+    private int getChunkSize() {
+        return properties.getDistribution() != null ? properties.getDistribution().getBatchSize() : 1000;
+    }
+}
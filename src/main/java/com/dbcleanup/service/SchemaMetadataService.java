@@ -0,0 +1,47 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.SchemaCacheStats;
+import com.dbcleanup.model.TableMetadata;
+import com.dbcleanup.repository.SchemaMetadataRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Inspection and invalidation of the schema metadata cache shared by the generated SQL
+ */
+@Service
+public class SchemaMetadataService {
+    private final SchemaMetadataRepository schemaMetadataRepository;
+
+    public SchemaMetadataService(SchemaMetadataRepository schemaMetadataRepository) {
+        super();
+        this.schemaMetadataRepository = schemaMetadataRepository;
+    }
+
+    public TableMetadata getTable(String table) {
+        return schemaMetadataRepository.getTable(table);
+    }
+
+    public SchemaCacheStats getStats() {
+        return schemaMetadataRepository.getStats();
+    }
+
+    /**
+     * Drop one table from the cache, or all tables when table is null
+     */
+    public void invalidate(String table) {
+        if (table == null) {
+            schemaMetadataRepository.invalidateAll();
+        } else {
+            schemaMetadataRepository.invalidate(table);
+        }
+    }
+
+    /**
+     * Drop the cached tables changed by DDL since they were loaded
+     */
+    public List<String> detectChanges() {
+        return schemaMetadataRepository.detectChanges();
+    }
+}
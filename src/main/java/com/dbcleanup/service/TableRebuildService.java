@@ -0,0 +1,318 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.RebuildConfig;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.config.CleanupProperties.RetainedTableAction;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.TableRebuildRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.dbcleanup.repository.TableRebuildRepository.identifier;
+import static com.dbcleanup.repository.TableRebuildRepository.quote;
+
+/**
+ * Copy-and-swap strategy for tables where most rows are candidates. The surviving rows are
+ * copied into a shadow table while a trigger records concurrent changes, indexes and
+ * constraints are recreated on the copy and the names are swapped inside a short ACCESS
+ * EXCLUSIVE lock window. The old table keeps all rows and is retained as the backup.
+ */
+@Service
+public class TableRebuildService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableRebuildService.class);
+
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int MAX_REPLAY_ROUNDS = 10;
+    private static final int REPLAY_CAUGHT_UP = 1000;
+
+    private final TableRebuildRepository rebuildRepository;
+    private final CleanupRepository cleanupRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TableRebuildService(
+            TableRebuildRepository rebuildRepository,
+            CleanupRepository cleanupRepository,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.rebuildRepository = rebuildRepository;
+        this.cleanupRepository = cleanupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled(EntityConfig entityConfig) {
+        return entityConfig.getRebuild() != null && entityConfig.getRebuild().isEnabled();
+    }
+
+    /**
+     * Whether rebuilding is enabled for the entity, the estimated candidate fraction reaches the
+     * threshold and the table can safely be swapped
+     */
+    public boolean shouldRebuild(EntityConfig entityConfig, int candidateCount) {
+        RebuildConfig config = entityConfig.getRebuild();
+        if (!isEnabled(entityConfig) || candidateCount == 0) {
+            return false;
+        }
+
+        String table = entityConfig.getTable();
+        long rows = Math.max(candidateCount, rebuildRepository.estimateRowCount(table));
+        double fraction = (double) candidateCount / rows;
+        if (fraction < config.getThresholdFraction()) {
+            LOGGER.info("Candidates are {}% of {}, below the rebuild threshold, deleting rows",
+                    String.format("%.1f", fraction * 100), table);
+            return false;
+        }
+
+        String blocker = rebuildRepository.findRebuildBlocker(table);
+        if (blocker == null) {
+            blocker = findDanglingReference(entityConfig);
+        }
+        if (blocker != null) {
+            LOGGER.warn("Table {} cannot be rebuilt ({}), deleting rows instead", table, blocker);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild the table without its candidates. Deleted and backed up counts are added to the
+     * partial result; the retained old table serves as the backup.
+     */
+    public void rebuild(EntityConfig entityConfig, String taskId, int candidateCount, PartialCleanupResult result) {
+        RebuildConfig config = entityConfig.getRebuild();
+        RebuildNames names = new RebuildNames(rebuildRepository.findCatalogName(entityConfig.getTable()));
+        String candidateQuery = cleanupRepository.buildFindCandidatesQuery(entityConfig);
+
+        LOGGER.info("Rebuilding {} without {} candidates for task {}", names.table, candidateCount, taskId);
+        rebuildRepository.createChangeLog(names.table, names.logTable, names.function, names.trigger);
+
+        boolean swapped = false;
+        try {
+            rebuildRepository.createShadowTable(names.table, names.shadowTable);
+            List<String> columns = rebuildRepository.findInsertableColumns(names.table);
+            rebuildRepository.copySurvivors(names.table, names.shadowTable, columns, candidateQuery);
+
+            Map<String, String> indexNames = rebuildRepository.copyIndexes(names.table, names.shadowTable, "_rb");
+            for (Map.Entry<String, String> foreignKey :
+                    rebuildRepository.findOutgoingForeignKeys(names.table).entrySet()) {
+                rebuildRepository.executeDdl("ALTER TABLE " + names.shadowTable + " ADD CONSTRAINT " +
+                        quote(foreignKey.getKey()) + " " + foreignKey.getValue() + " NOT VALID");
+                rebuildRepository.executeDdl("ALTER TABLE " + names.shadowTable + " VALIDATE CONSTRAINT " +
+                        quote(foreignKey.getKey()));
+            }
+
+            catchUp(names, columns, candidateQuery);
+            List<String[]> incomingForeignKeys = swap(entityConfig, taskId, names, columns, candidateQuery,
+                    indexNames);
+            swapped = true;
+
+            validateIncomingForeignKeys(incomingForeignKeys);
+        } finally {
+            if (!swapped) {
+                abandon(names);
+            }
+        }
+
+        rebuildRepository.dropChangeLog(names.retainedTable, names.logTable, names.function, names.trigger);
+        rebuildRepository.executeDdl("ANALYZE " + names.table);
+
+        if (config.getRetainedAction() == RetainedTableAction.ARCHIVE) {
+            rebuildRepository.executeDdl("CREATE SCHEMA IF NOT EXISTS " + config.getArchiveSchema());
+            rebuildRepository.executeDdl("ALTER TABLE " + names.retainedTable + " SET SCHEMA " +
+                    config.getArchiveSchema());
+        }
+
+        result.addDeletedCount(entityConfig.getName(), candidateCount);
+        result.addBackedUpCount(entityConfig.getName(), candidateCount);
+        LOGGER.info("Rebuilt {}: {} candidates removed, previous table retained as {} ({})",
+                names.table, candidateCount, names.retainedName, config.getRetainedAction());
+    }
+
+    /**
+     * A table referencing candidates that the rebuild would leave dangling. The cascading related
+     * records are backed up and deleted by the rebuild itself and do not count.
+     */
+    private String findDanglingReference(EntityConfig entityConfig) {
+        List<String[]> cascadedReferences = new ArrayList<>();
+        if (entityConfig.getRelated() != null) {
+            for (RelatedEntityConfig relatedConfig : entityConfig.getRelated()) {
+                if (relatedConfig.isCascadeDelete()) {
+                    cascadedReferences.add(new String[] {
+                            relatedConfig.getTable(), cleanupRepository.getForeignKeyField(relatedConfig)});
+                }
+            }
+        }
+
+        String referencing = rebuildRepository.findTableReferencingCandidates(entityConfig.getTable(),
+                cleanupRepository.buildFindCandidatesQuery(entityConfig), cascadedReferences);
+        return referencing != null ? "rows of " + referencing + " reference candidates" : null;
+    }
+
+    /**
+     * Replay concurrent changes outside the lock until the backlog is small enough for the
+     * lock window
+     */
+    private void catchUp(RebuildNames names, List<String> columns, String candidateQuery) {
+        for (int round = 0; round < MAX_REPLAY_ROUNDS; round++) {
+            Integer replayed = transactionTemplate.execute(status -> rebuildRepository.replayChanges(
+                    names.table, names.shadowTable, names.logTable, columns, candidateQuery));
+            LOGGER.debug("Replayed {} changed rows of {}", replayed, names.table);
+            if (replayed == null || replayed < REPLAY_CAUGHT_UP) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swap the tables inside the lock window, retrying when the lock cannot be taken in time.
+     * The cascading related records of the candidates are backed up and deleted in the same
+     * transaction, so they stay in place when the rebuild is abandoned.
+     *
+     * @return the foreign keys referencing the table, re-added as NOT VALID
+     */
+    private List<String[]> swap(EntityConfig entityConfig, String taskId, RebuildNames names, List<String> columns,
+                                String candidateQuery, Map<String, String> indexNames) {
+        RebuildConfig config = entityConfig.getRebuild();
+        for (int attempt = 1; attempt <= config.getLockAttempts(); attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    rebuildRepository.lockExclusive(names.table, config.getLockTimeoutMillis());
+                    rebuildRepository.replayChanges(
+                            names.table, names.shadowTable, names.logTable, columns, candidateQuery);
+                    cleanupRepository.backupRelatedCandidates(entityConfig, taskId);
+                    cleanupRepository.deleteRelatedCandidates(entityConfig);
+                    return swapLocked(names, indexNames);
+                });
+            } catch (PessimisticLockingFailureException e) {
+                LOGGER.warn("Could not lock {} within {} ms (attempt {} of {})",
+                        names.table, config.getLockTimeoutMillis(), attempt, config.getLockAttempts());
+                catchUp(names, columns, candidateQuery);
+            }
+        }
+
+        throw new CleanupException("Could not acquire the lock to swap " + names.table + " after " +
+                config.getLockAttempts() + " attempts");
+    }
+
+    private List<String[]> swapLocked(RebuildNames names, Map<String, String> indexNames) {
+        rebuildRepository.dropTrigger(names.table, names.trigger);
+
+        // Catalog state is stable while the lock is held
+        List<String[]> incomingForeignKeys = rebuildRepository.findIncomingForeignKeys(names.table);
+        List<String[]> sequenceColumns = rebuildRepository.findSequenceColumns(names.table);
+        List<String> triggers = rebuildRepository.findTriggerDefinitions(names.table, names.triggerName);
+        List<String[]> grants = rebuildRepository.findGrants(names.schema, names.table);
+
+        for (String[] foreignKey : incomingForeignKeys) {
+            rebuildRepository.executeDdl("ALTER TABLE " + foreignKey[0] + " DROP CONSTRAINT " + quote(foreignKey[1]));
+        }
+        // The retained table must not block deletes in the tables it referenced
+        for (String foreignKey : rebuildRepository.findOutgoingForeignKeys(names.table).keySet()) {
+            rebuildRepository.executeDdl("ALTER TABLE " + names.table + " DROP CONSTRAINT " + quote(foreignKey));
+        }
+
+        rebuildRepository.executeDdl("ALTER TABLE " + names.table + " RENAME TO " + quote(names.retainedName));
+        for (Map.Entry<String, String> index : indexNames.entrySet()) {
+            rebuildRepository.executeDdl("ALTER INDEX " + names.qualify(index.getKey()) + " RENAME TO " +
+                    quote(identifier(index.getKey(), names.suffix)));
+            rebuildRepository.executeDdl("ALTER INDEX " + names.qualify(index.getValue()) + " RENAME TO " +
+                    quote(index.getKey()));
+        }
+        rebuildRepository.executeDdl("ALTER TABLE " + names.shadowTable + " RENAME TO " + quote(names.tableName));
+
+        for (String[] sequenceColumn : sequenceColumns) {
+            if (Boolean.parseBoolean(sequenceColumn[2])) {
+                rebuildRepository.restartIdentity(names.table, sequenceColumn[0], sequenceColumn[1]);
+            } else {
+                // Serial sequences would otherwise be dropped together with the retained table
+                rebuildRepository.executeDdl("ALTER SEQUENCE " + sequenceColumn[1] + " OWNED BY " +
+                        names.table + "." + quote(sequenceColumn[0]));
+            }
+        }
+
+        // Names now resolve to the new table
+        for (String[] foreignKey : incomingForeignKeys) {
+            rebuildRepository.executeDdl("ALTER TABLE " + foreignKey[0] + " ADD CONSTRAINT " + quote(foreignKey[1]) +
+                    " " + foreignKey[2] + " NOT VALID");
+        }
+        for (String trigger : triggers) {
+            rebuildRepository.executeDdl(trigger);
+        }
+        for (String[] grant : grants) {
+            String grantee = "PUBLIC".equals(grant[0]) ? grant[0] : quote(grant[0]);
+            rebuildRepository.executeDdl("GRANT " + grant[1] + " ON " + names.table + " TO " + grantee);
+        }
+
+        return incomingForeignKeys;
+    }
+
+    private void validateIncomingForeignKeys(List<String[]> incomingForeignKeys) {
+        for (String[] foreignKey : incomingForeignKeys) {
+            try {
+                rebuildRepository.executeDdl("ALTER TABLE " + foreignKey[0] + " VALIDATE CONSTRAINT " +
+                        quote(foreignKey[1]));
+            } catch (CleanupException e) {
+                LOGGER.error("Foreign key {} on {} left NOT VALID after rebuild: {}",
+                        foreignKey[1], foreignKey[0], e.getMessage());
+            }
+        }
+    }
+
+    private void abandon(RebuildNames names) {
+        try {
+            rebuildRepository.dropChangeLog(names.table, names.logTable, names.function, names.trigger);
+            rebuildRepository.executeDdl("DROP TABLE IF EXISTS " + names.shadowTable);
+        } catch (CleanupException e) {
+            LOGGER.error("Could not clean up after failed rebuild of {}: {}", names.table, e.getMessage());
+        }
+    }
+
+    /**
+     * Quoted names of the objects taking part in one rebuild
+     */
+    private static final class RebuildNames {
+        private final String schema;
+        private final String tableName;
+        private final String suffix;
+        private final String table;
+        private final String shadowTable;
+        private final String logTable;
+        private final String function;
+        private final String triggerName;
+        private final String trigger;
+        private final String retainedName;
+        private final String retainedTable;
+
+        private RebuildNames(String[] catalogName) {
+            this.schema = catalogName[0];
+            this.tableName = catalogName[1];
+            this.suffix = "_" + LocalDateTime.now().format(SUFFIX_FORMAT);
+            this.table = qualify(tableName);
+            this.shadowTable = qualify(identifier(tableName, "_rebuild"));
+            this.logTable = qualify(identifier(tableName, "_rebuild_log"));
+            this.function = qualify(identifier(tableName, "_rebuild_capture"));
+            this.triggerName = identifier(tableName, "_rebuild_capture");
+            this.trigger = quote(triggerName);
+            this.retainedName = identifier(tableName, suffix);
+            this.retainedTable = qualify(retainedName);
+        }
+
+        private String qualify(String name) {
+            return quote(schema) + "." + quote(name);
+        }
+    }
+}
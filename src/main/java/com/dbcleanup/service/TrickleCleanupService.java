@@ -0,0 +1,249 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.config.CleanupProperties.TrickleConfig;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.model.TrickleStatus;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.DatabaseHealthRepository;
+import com.dbcleanup.repository.TaskLogRepository;
+import com.dbcleanup.repository.WorkChunkRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Continuous background cleanup. Every tick deletes a small batch per entity, sized to work
+ * off the current backlog within drainMinutes and capped by a rows-per-second budget, so that
+ * the load is spread over the day instead of concentrated in one nightly run. Ticks are
+ * skipped while the database reports replication lag, lock waits or too many active sessions.
+ * The batches of one taskPeriodMinutes period are logged as a single task, started with the
+ * period's first batch and completed with its totals when the period ends.
+ */
+@Service
+public class TrickleCleanupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrickleCleanupService.class);
+
+    private static final String INITIATOR = "trickle";
+
+    private final CleanupProperties properties;
+    private final CleanupRepository cleanupRepository;
+    private final WorkChunkRepository workChunkRepository;
+    private final DatabaseHealthRepository databaseHealthRepository;
+    private final TaskLogRepository taskLogRepository;
+    private final EntityCleanupExecutor entityCleanupExecutor;
+    private final TransactionTemplate batchTransaction;
+    private final TrickleStatus status = new TrickleStatus();
+
+    private String periodTaskId;
+    private LocalDateTime periodStartedAt;
+    private int periodCandidates;
+    private int periodDeleted;
+
+    public TrickleCleanupService(
+            CleanupProperties properties,
+            CleanupRepository cleanupRepository,
+            WorkChunkRepository workChunkRepository,
+            DatabaseHealthRepository databaseHealthRepository,
+            TaskLogRepository taskLogRepository,
+            EntityCleanupExecutor entityCleanupExecutor,
+            PlatformTransactionManager transactionManager) {
+        super();
+        this.properties = properties;
+        this.cleanupRepository = cleanupRepository;
+        this.workChunkRepository = workChunkRepository;
+        this.databaseHealthRepository = databaseHealthRepository;
+        this.taskLogRepository = taskLogRepository;
+        this.entityCleanupExecutor = entityCleanupExecutor;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized TrickleStatus getStatus() {
+        status.setEnabled(properties.getTrickle().isEnabled());
+        return new TrickleStatus(status);
+    }
+
+    /**
+     * Run one tick: check the health signals, refresh the backlog when it is stale and delete
+     * one batch per entity with a backlog while the tick's row budget lasts
+     */
+    public synchronized void runTick() {
+        TrickleConfig config = properties.getTrickle();
+        status.setLastRunAt(LocalDateTime.now());
+        if (periodTaskId != null &&
+                !periodStartedAt.plusMinutes(config.getTaskPeriodMinutes()).isAfter(LocalDateTime.now())) {
+            completePeriod();
+        }
+
+        String pauseReason = checkHealth(config);
+        if (pauseReason != null) {
+            if (!status.isPaused()) {
+                LOGGER.info("Pausing trickle cleanup: {}", pauseReason);
+            }
+            status.setPaused(true);
+            status.setPauseReason(pauseReason);
+            return;
+        }
+        if (status.isPaused()) {
+            LOGGER.info("Resuming trickle cleanup");
+            status.setPaused(false);
+            status.setPauseReason(null);
+        }
+
+        if (isBacklogStale(config)) {
+            refreshBacklog();
+        }
+        if (status.getTotalBacklog() == 0) {
+            status.setRateLimited(false);
+            return;
+        }
+
+        deleteBatches(config);
+    }
+
+    /**
+     * Complete the task of the current period with its totals, when the application stops too
+     */
+    @PreDestroy
+    public synchronized void completePeriod() {
+        if (periodTaskId == null) {
+            return;
+        }
+        try {
+            taskLogRepository.logTaskCompletion(periodTaskId, periodCandidates, periodDeleted);
+        } catch (Exception e) {
+            LOGGER.warn("Could not complete trickle task {}: {}", periodTaskId, e.getMessage());
+        }
+        periodTaskId = null;
+    }
+
+    private void deleteBatches(TrickleConfig config) {
+        List<EntityConfig> entities = properties.getEntities().stream()
+                .filter(entityConfig -> status.getBacklog().getOrDefault(entityConfig.getName(), 0) > 0)
+                .collect(Collectors.toList());
+        if (periodTaskId == null) {
+            List<String> entityNames = properties.getEntities().stream()
+                    .map(EntityConfig::getName)
+                    .collect(Collectors.toList());
+            periodTaskId = taskLogRepository.logTaskStart("TRICKLE", INITIATOR, entityNames, false);
+            periodStartedAt = LocalDateTime.now();
+            periodCandidates = 0;
+            periodDeleted = 0;
+        }
+        String taskId = periodTaskId;
+
+        long budget = Math.max(1, config.getMaxRowsPerSecond() * config.getIntervalMillis() / 1000);
+        long ticksToDrain = Math.max(1, config.getDrainMinutes() * 60_000L / Math.max(1, config.getIntervalMillis()));
+        int candidates = 0;
+        int deleted = 0;
+
+        try {
+            for (EntityConfig entityConfig : entities) {
+                if (budget <= 0) {
+                    break;
+                }
+
+                int backlog = status.getBacklog().get(entityConfig.getName());
+                int batchSize = batchSize(backlog, ticksToDrain, budget, config);
+                PartialCleanupResult result = deleteBatch(entityConfig, taskId, batchSize);
+                if (result == null) {
+                    continue;
+                }
+
+                int batchDeleted = result.getDeletedCount(entityConfig.getName());
+                candidates += result.getCandidateCount(entityConfig.getName());
+                deleted += batchDeleted;
+                budget -= batchSize;
+                status.getBacklog().put(entityConfig.getName(),
+                        batchDeleted < batchSize ? 0 : Math.max(0, backlog - batchDeleted));
+            }
+
+            status.setRateLimited(budget <= 0 && status.getTotalBacklog() > 0);
+            status.setDeletedTotal(status.getDeletedTotal() + deleted);
+            periodCandidates += candidates;
+            periodDeleted += deleted;
+            LOGGER.debug("Trickle cleanup deleted {} records, backlog {}", deleted, status.getTotalBacklog());
+        } catch (Exception e) {
+            String errorMsg = "Error during trickle cleanup after deleting " + (periodDeleted + deleted) +
+                    " records in this period: " + e.getMessage();
+            LOGGER.error(errorMsg, e);
+            status.setDeletedTotal(status.getDeletedTotal() + deleted);
+            taskLogRepository.logTaskError(taskId, errorMsg);
+            periodTaskId = null;
+        }
+    }
+
+    /**
+     * Delete the first batchSize candidates in key order in a transaction of its own
+     *
+     * @return null when another instance is working on the entity
+     */
+    private PartialCleanupResult deleteBatch(EntityConfig entityConfig, String taskId, int batchSize) {
+        return batchTransaction.execute(transactionStatus -> {
+            if (!cleanupRepository.tryLockEntity(entityConfig, INITIATOR)) {
+                return null;
+            }
+
+            String boundary = cleanupRepository.findCandidateBoundary(entityConfig, batchSize);
+            CandidateScope scope = CandidateScope.keyRange(null, boundary,
+                    workChunkRepository.findKeyType(entityConfig.getTable()));
+            return entityCleanupExecutor.executeScoped(entityConfig, taskId, false, scope);
+        });
+    }
+
+    private int batchSize(int backlog, long ticksToDrain, long budget, TrickleConfig config) {
+        long size = (backlog + ticksToDrain - 1) / ticksToDrain;
+        size = Math.max(config.getMinBatchSize(), Math.min(config.getMaxBatchSize(), size));
+        return (int) Math.max(1, Math.min(size, budget));
+    }
+
+    private void refreshBacklog() {
+        for (EntityConfig entityConfig : properties.getEntities()) {
+            status.getBacklog().put(entityConfig.getName(), cleanupRepository.countCandidates(entityConfig));
+        }
+        status.setBacklogRefreshedAt(LocalDateTime.now());
+        LOGGER.info("Trickle cleanup backlog: {}", status.getBacklog());
+    }
+
+    private boolean isBacklogStale(TrickleConfig config) {
+        LocalDateTime refreshedAt = status.getBacklogRefreshedAt();
+        return refreshedAt == null ||
+                refreshedAt.plusSeconds(config.getBacklogRefreshSeconds()).isBefore(LocalDateTime.now());
+    }
+
+    /**
+     * The reason to hold back deletion, or null when the database is healthy
+     */
+    private String checkHealth(TrickleConfig config) {
+        if (config.getMaxReplicationLagSeconds() > 0) {
+            double lag = databaseHealthRepository.findReplicationLagSeconds();
+            if (lag > config.getMaxReplicationLagSeconds()) {
+                return "replication lag of " + Math.round(lag) + "s";
+            }
+        }
+        if (config.getMaxLockWaits() > 0) {
+            int lockWaits = databaseHealthRepository.countLockWaits();
+            if (lockWaits > config.getMaxLockWaits()) {
+                return lockWaits + " sessions waiting for locks";
+            }
+        }
+        if (config.getMaxActiveSessions() > 0) {
+            int activeSessions = databaseHealthRepository.countActiveSessions();
+            if (activeSessions > config.getMaxActiveSessions()) {
+                return activeSessions + " active sessions";
+            }
+        }
+        return null;
+    }
+}
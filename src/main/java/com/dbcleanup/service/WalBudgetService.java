@@ -0,0 +1,101 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.WalConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.repository.DatabaseHealthRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Measures the WAL written while a chunk runs from the WAL insert position before and after
+ * it, and paces chunks so that the WAL they write stays below wal.maxBytesPerSecond. The budget
+ * is shared by every chunk of this instance. WAL ranges already counted for another chunk are
+ * not counted again, so concurrent and nested chunks add up to the WAL actually written; WAL
+ * of other sessions written meanwhile is included, as it loads the replicas all the same.
+ */
+@Service
+public class WalBudgetService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WalBudgetService.class);
+
+    private final CleanupProperties properties;
+    private final DatabaseHealthRepository databaseHealthRepository;
+
+    // Highest WAL position counted so far
+    private long countedPosition;
+
+    // Time from which the next chunk is within the budget
+    private long nextChunkNanos;
+
+    public WalBudgetService(
+            CleanupProperties properties,
+            DatabaseHealthRepository databaseHealthRepository) {
+        super();
+        this.properties = properties;
+        this.databaseHealthRepository = databaseHealthRepository;
+        this.nextChunkNanos = System.nanoTime();
+    }
+
+    public boolean isEnabled() {
+        return properties.getWal() != null && properties.getWal().isMeasure();
+    }
+
+    /**
+     * Run a chunk, report the WAL it wrote and wait until the WAL written so far fits the budget
+     *
+     * @param walBytes receives the WAL bytes of the chunk
+     */
+    public <T> T meter(String entityName, Supplier<T> chunk, LongConsumer walBytes) {
+        if (!isEnabled()) {
+            return chunk.get();
+        }
+
+        long startNanos = System.nanoTime();
+        long start = databaseHealthRepository.findWalInsertPosition();
+        T outcome = chunk.get();
+        long written = count(start, databaseHealthRepository.findWalInsertPosition());
+
+        walBytes.accept(written);
+        LOGGER.debug("Chunk of entity {} wrote {} bytes of WAL", entityName, written);
+        pace(startNanos, written);
+        return outcome;
+    }
+
+    private synchronized long count(long start, long end) {
+        long written = Math.max(0, end - Math.max(start, countedPosition));
+        countedPosition = Math.max(countedPosition, end);
+        return written;
+    }
+
+    private void pace(long startNanos, long written) {
+        WalConfig config = properties.getWal();
+        if (config.getMaxBytesPerSecond() <= 0 || written == 0) {
+            return;
+        }
+
+        long delayNanos;
+        synchronized (this) {
+            // Time the chunk took counts towards its share; idle time before it does not
+            long budgetNanos = (long) (written * 1e9 / config.getMaxBytesPerSecond());
+            nextChunkNanos = Math.max(nextChunkNanos, startNanos) + budgetNanos;
+            delayNanos = nextChunkNanos - System.nanoTime();
+        }
+        if (delayNanos <= 0) {
+            return;
+        }
+
+        long delayMillis = Math.min(TimeUnit.NANOSECONDS.toMillis(delayNanos), config.getMaxPauseMillis());
+        LOGGER.debug("WAL budget exceeded, pausing {} ms", delayMillis);
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CleanupException("Interrupted while pacing WAL", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.dbcleanup.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    public LatencyHistogramTest() {
+        super();
+    }
+
+    @Test
+    public void shouldReportExactPercentilesForSmallValues() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        // Act & Assert
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.percentile(0.50));
+        assertEquals(99, histogram.percentile(0.99));
+        assertEquals(100, histogram.percentile(0.999));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    public void shouldKeepRelativeErrorSmallForLargeValues() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+
+        // Act
+        long p50 = histogram.percentile(0.50);
+        long p99 = histogram.percentile(0.99);
+
+        // Assert
+        assertTrue(Math.abs(p50 - 50_000) <= 50_000 * 0.02, "p50 was " + p50);
+        assertTrue(Math.abs(p99 - 99_000) <= 99_000 * 0.02, "p99 was " + p99);
+        assertEquals(100_000, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void shouldMapEveryValueIntoABucketThatContainsIt() {
+        for (long value = 0; value < 1_000_000; value += 37) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value, "upper bound below " + value);
+            assertTrue(index == 0 || LatencyHistogram.bucketUpperBound(index - 1) < value,
+                    "previous bucket already covers " + value);
+        }
+    }
+
+    @Test
+    public void shouldReturnZeroWhenEmpty() {
+        assertEquals(0, new LatencyHistogram().percentile(0.99));
+    }
+}
@@ -0,0 +1,87 @@
+package com.dbcleanup.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CandidateScopeTest {
+
+    public CandidateScopeTest() {
+        super();
+    }
+
+    @Test
+    public void shouldBuildClosedKeyRange() {
+        // Act
+        CandidateScope scope = CandidateScope.keyRange("100", "200", "bigint");
+
+        // Assert
+        assertEquals("e.id >= CAST('100' AS bigint) AND e.id < CAST('200' AS bigint)", scope.getCondition());
+    }
+
+    @Test
+    public void shouldLeaveOpenEndsUnbounded() {
+        // Act
+        CandidateScope first = CandidateScope.keyRange(null, "200", "bigint");
+        CandidateScope last = CandidateScope.keyRange("100", null, "bigint");
+        CandidateScope whole = CandidateScope.keyRange(null, null, "bigint");
+
+        // Assert
+        assertEquals("e.id < CAST('200' AS bigint)", first.getCondition());
+        assertEquals("e.id >= CAST('100' AS bigint)", last.getCondition());
+        assertTrue(whole.isAll());
+    }
+
+    @Test
+    public void shouldEscapeQuotesInBounds() {
+        // Act
+        CandidateScope scope = CandidateScope.keyRange("o'brien", null, "character varying(36)");
+
+        // Assert
+        assertEquals("e.id >= CAST('o''brien' AS character varying(36))", scope.getCondition());
+    }
+
+    @Test
+    public void shouldBuildValueRangeOnColumn() {
+        // Act
+        CandidateScope scope = CandidateScope.valueRange("created_at", "2024-01-01 00:00:00", "2024-01-02 00:00:00",
+                "timestamp without time zone");
+
+        // Assert
+        assertEquals("e.created_at >= CAST('2024-01-01 00:00:00' AS timestamp without time zone) " +
+                "AND e.created_at < CAST('2024-01-02 00:00:00' AS timestamp without time zone)", scope.getCondition());
+    }
+
+    @Test
+    public void shouldBuildKeyList() {
+        // Arrange
+        KeyList keys = KeyList.of("bigint");
+        keys.add(1L);
+        keys.add("2");
+
+        // Act
+        CandidateScope scope = CandidateScope.keyIn(keys);
+
+        // Assert
+        assertEquals("e.id = ANY (CAST(? AS bigint[]))", scope.getCondition());
+        assertSame(keys, scope.getKeys());
+    }
+
+    @Test
+    public void shouldBindTextKeysInsteadOfInliningThem() {
+        // Arrange
+        KeyList keys = KeyList.of("varchar");
+        keys.add("o'brien");
+        keys.add("say \"hi\"");
+
+        // Act
+        CandidateScope scope = CandidateScope.keyIn(keys);
+
+        // Assert
+        assertEquals("e.id = ANY (CAST(? AS varchar[]))", scope.getCondition());
+        assertArrayEquals(new String[] {"o'brien", "say \"hi\""}, scope.getKeys().toArray());
+    }
+}
@@ -0,0 +1,109 @@
+package com.dbcleanup.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CandidateSetTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    public CandidateSetTest() {
+        super();
+    }
+
+    @Test
+    public void shouldKeepOnlyASampleOfTheIds() {
+        // Arrange
+        CandidateSet candidates = new CandidateSet(10, null);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            candidates.add(Integer.toString(i));
+        }
+
+        // Assert
+        assertEquals(1000, candidates.getCount());
+        assertEquals(10, candidates.getSample().size());
+        assertFalse(candidates.isComplete());
+        assertThrows(IllegalStateException.class, () -> candidates.forEachId(id -> { }));
+    }
+
+    @Test
+    public void shouldMergeCountsAndSamples() {
+        // Arrange
+        CandidateSet first = new CandidateSet(10, null);
+        CandidateSet second = new CandidateSet(10, null);
+        for (int i = 0; i < 500; i++) {
+            first.add("a" + i);
+            second.add("b" + i);
+        }
+
+        // Act
+        first.merge(second);
+
+        // Assert
+        assertEquals(1000, first.getCount());
+        assertEquals(10, first.getSample().size());
+    }
+
+    @Test
+    public void shouldReadBackEveryIdFromTheSpillFile() throws Exception {
+        // Arrange
+        List<String> ids = List.of("42", "-7", "0", "007", "3f2504e0-4f89-11d3-9a0c-0305e82c3301",
+                "3F2504E0-4F89-11D3-9A0C-0305E82C3301", "order-1", "\u00fcn\u00efcode", "9223372036854775807");
+        CandidateSet first = new CandidateSet(2, CandidateIdFile.create(spillDirectory));
+        CandidateSet second = new CandidateSet(2, CandidateIdFile.create(spillDirectory));
+        first.addAll(ids.subList(0, 4));
+        second.addAll(ids.subList(4, ids.size()));
+
+        // Act
+        first.merge(second);
+        first.getIdFile().close();
+        List<String> readBack = new ArrayList<>();
+        first.forEachId(readBack::add);
+
+        // Assert
+        assertEquals(ids, readBack);
+        assertTrue(first.isComplete());
+        assertTrue(Files.size(first.getIdFile().getPath()) < String.join("", ids).length() + ids.size());
+    }
+
+    @Test
+    public void shouldDeleteOnlyExpiredClosedSpillFiles() throws Exception {
+        // Arrange
+        Instant now = Instant.now();
+        CandidateIdFile expired = CandidateIdFile.create(spillDirectory);
+        CandidateIdFile recent = CandidateIdFile.create(spillDirectory);
+        CandidateIdFile open = CandidateIdFile.create(spillDirectory);
+        expired.append("1");
+        expired.close();
+        recent.append("2");
+        recent.close();
+        Files.setLastModifiedTime(expired.getPath(), FileTime.from(now.minus(Duration.ofDays(2))));
+        Files.setLastModifiedTime(open.getPath(), FileTime.from(now.minus(Duration.ofDays(2))));
+
+        // Act
+        int deleted = CandidateIdFile.deleteExpired(spillDirectory, now.minus(Duration.ofDays(1)));
+
+        // Assert
+        assertEquals(1, deleted);
+        assertFalse(Files.exists(expired.getPath()));
+        assertTrue(Files.exists(recent.getPath()));
+        assertTrue(Files.exists(open.getPath()));
+        open.delete();
+    }
+}
@@ -0,0 +1,71 @@
+package com.dbcleanup.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KeyListTest {
+
+    public KeyListTest() {
+        super();
+    }
+
+    @Test
+    public void shouldDetectKeyTypeFromColumnType() {
+        // Act & Assert
+        assertEquals(KeyList.KeyType.BIGINT, KeyList.KeyType.of("bigint"));
+        assertEquals(KeyList.KeyType.BIGINT, KeyList.KeyType.of("int4"));
+        assertEquals(KeyList.KeyType.UUID, KeyList.KeyType.of("uuid"));
+        assertEquals(KeyList.KeyType.TEXT, KeyList.KeyType.of("character varying(36)"));
+    }
+
+    @Test
+    public void shouldTreatSerialColumnsAsTheirIntegerType() {
+        // Act
+        KeyList serial = KeyList.of("serial");
+        KeyList bigserial = KeyList.of("bigserial");
+
+        // Assert
+        assertEquals(KeyList.KeyType.BIGINT, serial.getKeyType());
+        assertEquals("CAST(? AS integer[])", serial.castArrayParameter("?"));
+        assertEquals(KeyList.KeyType.BIGINT, bigserial.getKeyType());
+        assertEquals("CAST(? AS bigint[])", bigserial.castArrayParameter("?"));
+    }
+
+    @Test
+    public void shouldKeepIntegerKeysAsLongs() {
+        // Arrange
+        KeyList keys = KeyList.of("int8");
+
+        // Act
+        for (long i = 0; i < 100; i++) {
+            keys.add(i * 1_000_000_007L);
+        }
+        KeyList tail = keys.subList(98, 100);
+
+        // Assert
+        assertEquals(100, keys.size());
+        assertEquals(99 * 1_000_000_007L, keys.last());
+        assertArrayEquals(new Long[] {98 * 1_000_000_007L, 99 * 1_000_000_007L}, tail.toArray());
+        assertEquals("CAST(? AS int8[])", tail.castArrayParameter("?"));
+    }
+
+    @Test
+    public void shouldPackUuidKeys() {
+        // Arrange
+        UUID first = UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+        UUID second = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        KeyList keys = KeyList.of("uuid");
+
+        // Act
+        keys.add(first);
+        keys.add(second.toString());
+
+        // Assert
+        assertArrayEquals(new UUID[] {first, second}, keys.toArray());
+        assertEquals("CAST(? AS uuid[])", keys.castArrayParameter("?"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.RelatedEntityConfig;
+import com.dbcleanup.model.KeyList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.support.SqlArrayValue;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class CascadeDeleteRepositoryTest {
+
+    private static final String DELETE_ITEMS = "DELETE FROM order_items WHERE order_id = ANY (CAST(? AS bigint[]))";
+    private static final String DELETE_NOTES = "DELETE FROM item_notes WHERE item_id = ANY (CAST(? AS bigint[]))";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private SchemaMetadataRepository schemaMetadataRepository;
+
+    private CascadeDeleteRepository cascadeDeleteRepository;
+
+    public CascadeDeleteRepositoryTest() {
+        super();
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(schemaMetadataRepository.findColumnType(anyString(), anyString())).thenReturn("bigint");
+        cascadeDeleteRepository = new CascadeDeleteRepository(jdbcTemplate, new CleanupProperties(),
+                schemaMetadataRepository);
+    }
+
+    @Test
+    public void shouldDeleteExplicitLevelsBottomUp() {
+        // Arrange
+        RelatedEntityConfig notes = related("ItemNote", "item_notes", "item_id", false, null);
+        RelatedEntityConfig items = related("OrderItem", "order_items", "order_id", false, List.of(notes));
+        when(jdbcTemplate.query(startsWith("SELECT DISTINCT id FROM order_items"), any(ResultSetExtractor.class),
+                any(SqlArrayValue.class))).thenReturn(keys(10, 11));
+        when(jdbcTemplate.update(eq(DELETE_NOTES), any(SqlArrayValue.class))).thenReturn(3);
+        when(jdbcTemplate.update(eq(DELETE_ITEMS), any(SqlArrayValue.class))).thenReturn(2);
+
+        // Act
+        int deleted = cascadeDeleteRepository.deleteRelatedOfKeys(List.of(items), keys(1, 2));
+
+        // Assert
+        assertEquals(5, deleted);
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update(eq(DELETE_NOTES), any(SqlArrayValue.class));
+        order.verify(jdbcTemplate).update(eq(DELETE_ITEMS), any(SqlArrayValue.class));
+    }
+
+    @Test
+    public void shouldLeaveDatabaseCascadeToTheDatabaseWhenParentsAreDeleted() {
+        // Arrange
+        RelatedEntityConfig notes = related("ItemNote", "item_notes", "item_id", true, null);
+        RelatedEntityConfig items = related("OrderItem", "order_items", "order_id", true, List.of(notes));
+
+        // Act
+        int deleted = cascadeDeleteRepository.deleteRelatedOfKeys(List.of(items), keys(1, 2));
+
+        // Assert
+        assertEquals(0, deleted);
+        assertFalse(CascadeDeleteRepository.needsExplicitDelete(List.of(items)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void shouldDeleteBelowADatabaseCascadeThatCascadesNoFurther() {
+        // Arrange
+        RelatedEntityConfig notes = related("ItemNote", "item_notes", "item_id", false, null);
+        RelatedEntityConfig items = related("OrderItem", "order_items", "order_id", true, List.of(notes));
+        when(jdbcTemplate.query(startsWith("SELECT DISTINCT id FROM order_items"), any(ResultSetExtractor.class),
+                any(SqlArrayValue.class))).thenReturn(keys(10, 11));
+        when(jdbcTemplate.update(eq(DELETE_NOTES), any(SqlArrayValue.class))).thenReturn(3);
+
+        // Act
+        int deleted = cascadeDeleteRepository.deleteRelatedOfKeys(List.of(items), keys(1, 2));
+
+        // Assert
+        assertEquals(3, deleted);
+        assertTrue(CascadeDeleteRepository.needsExplicitDelete(List.of(items)));
+        verify(jdbcTemplate, never()).update(eq(DELETE_ITEMS), any(SqlArrayValue.class));
+    }
+
+    @Test
+    public void shouldDeleteTheFirstLevelExplicitlyWhenTheRootsStay() {
+        // Arrange
+        RelatedEntityConfig items = related("OrderItem", "order_items", "order_id", true, null);
+        when(jdbcTemplate.query(startsWith("SELECT k.id FROM (SELECT e.id FROM orders e"),
+                any(ResultSetExtractor.class))).thenReturn(keys(1, 2));
+        when(jdbcTemplate.update(eq(DELETE_ITEMS), any(SqlArrayValue.class))).thenReturn(4);
+
+        // Act
+        int deleted = cascadeDeleteRepository.deleteRelated("orders", "SELECT e.id FROM orders e", List.of(items));
+
+        // Assert
+        assertEquals(4, deleted);
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM orders "), any(SqlArrayValue.class));
+    }
+
+    private RelatedEntityConfig related(String entity, String table, String foreignKey, boolean databaseCascade,
+                                        List<RelatedEntityConfig> nested) {
+        RelatedEntityConfig relatedConfig = new RelatedEntityConfig();
+        relatedConfig.setEntity(entity);
+        relatedConfig.setTable(table);
+        relatedConfig.setForeignKey(foreignKey);
+        relatedConfig.setCascadeDelete(true);
+        relatedConfig.setDatabaseCascade(databaseCascade);
+        relatedConfig.setRelated(nested);
+        return relatedConfig;
+    }
+
+    private KeyList keys(long... ids) {
+        KeyList keys = KeyList.of("bigint");
+        for (long id : ids) {
+            keys.add(id);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,96 @@
+package com.dbcleanup.repository;
+
+import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.model.TaskHistoryQuery;
+import com.dbcleanup.model.TaskPage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RecentTaskCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    public RecentTaskCacheTest() {
+        super();
+    }
+
+    @Test
+    public void shouldPageThroughCachedTasks() {
+        // Arrange
+        RecentTaskCache cache = new RecentTaskCache(10, 60_000);
+        cache.load(tasks(5), List.of());
+        TaskHistoryQuery query = new TaskHistoryQuery();
+        query.setLimit(2);
+
+        // Act
+        TaskPage first = TaskPage.of(cache.find(query, 3), 2);
+        query.setCursor(first.getNextCursor());
+        TaskPage second = TaskPage.of(cache.find(query, 3), 2);
+        query.setCursor(second.getNextCursor());
+        TaskPage last = TaskPage.of(cache.find(query, 3), 2);
+
+        // Assert
+        assertEquals("task-4", first.getTasks().get(0).getTaskId());
+        assertEquals("task-2", second.getTasks().get(0).getTaskId());
+        assertEquals(1, last.getTasks().size());
+        assertEquals("task-0", last.getTasks().get(0).getTaskId());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    public void shouldMissWhenWindowMayNotHoldThePage() {
+        // Arrange
+        RecentTaskCache cache = new RecentTaskCache(3, 60_000);
+        cache.load(tasks(5), List.of());
+        TaskHistoryQuery query = new TaskHistoryQuery();
+        query.setInitiator("nobody");
+
+        // Act
+        List<CleanupTask> page = cache.find(query, 21);
+
+        // Assert
+        assertNull(page);
+    }
+
+    @Test
+    public void shouldWriteThroughCompletedTask() {
+        // Arrange
+        RecentTaskCache cache = new RecentTaskCache(10, 60_000);
+        List<CleanupTask> tasks = tasks(2);
+        CleanupTask running = tasks.get(1);
+        running.setStatus(CleanupTask.Status.STARTED);
+        cache.load(tasks, List.of(running));
+        TaskHistoryQuery query = new TaskHistoryQuery();
+        query.setStatus(CleanupTask.Status.STARTED);
+
+        // Act
+        CleanupTask completed = task(1);
+        cache.put(completed);
+
+        // Assert
+        assertEquals(0, cache.find(query, 21).size());
+        assertNotNull(cache.get("task-1"));
+        assertEquals(CleanupTask.Status.COMPLETED, cache.get("task-1").getStatus());
+    }
+
+    private static List<CleanupTask> tasks(int count) {
+        List<CleanupTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(task(i));
+        }
+        return tasks;
+    }
+
+    private static CleanupTask task(int index) {
+        CleanupTask task = new CleanupTask("task-" + index, START.plusMinutes(index), START.plusMinutes(index + 1),
+                CleanupTask.Status.COMPLETED, null);
+        task.setInitiator("scheduler");
+        return task;
+    }
+}
@@ -0,0 +1,149 @@
+package com.dbcleanup.scheduler;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.repository.TaskLogRepository;
+import com.dbcleanup.service.CleanupService;
+import com.dbcleanup.service.LeaderElectionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ScheduledCleanupJobTest {
+
+    @Mock
+    private CleanupService cleanupService;
+
+    @Mock
+    private LeaderElectionService leaderElectionService;
+
+    @Mock
+    private TaskLogRepository taskLogRepository;
+
+    private CleanupProperties properties;
+    private ScheduledCleanupJob job;
+
+    public ScheduledCleanupJobTest() {
+        super();
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new CleanupProperties();
+        properties.getScheduler().setTakeOverAfterMillis(60_000);
+        job = new ScheduledCleanupJob(cleanupService, properties, leaderElectionService, taskLogRepository);
+    }
+
+    @Test
+    public void shouldTakeOverTasksWithoutRecentHeartbeatWhenBecomingLeader() {
+        // Arrange
+        CleanupTask task = task("task-1");
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(taskLogRepository.findAbandonedTasks(eq("scheduler"), any(LocalDateTime.class)))
+                .thenReturn(List.of(task));
+        when(taskLogRepository.takeOverTask(eq("task-1"), any(LocalDateTime.class))).thenReturn(true);
+
+        // Act
+        LocalDateTime before = LocalDateTime.now();
+        job.checkLeadership();
+
+        // Assert
+        ArgumentCaptor<LocalDateTime> heartbeatBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(taskLogRepository).findAbandonedTasks(eq("scheduler"), heartbeatBefore.capture());
+        assertFalse(heartbeatBefore.getValue().isBefore(before.minusSeconds(60)));
+        assertTrue(heartbeatBefore.getValue().isBefore(before.minusSeconds(59)));
+        verify(taskLogRepository).takeOverTask("task-1", heartbeatBefore.getValue());
+        verify(cleanupService).resumeTask(task);
+    }
+
+    @Test
+    public void shouldLeaveATaskToTheInstanceThatTookItOverFirst() {
+        // Arrange
+        CleanupTask lost = task("task-1");
+        CleanupTask won = task("task-2");
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(taskLogRepository.findAbandonedTasks(eq("scheduler"), any(LocalDateTime.class)))
+                .thenReturn(List.of(lost, won));
+        when(taskLogRepository.takeOverTask(eq("task-1"), any(LocalDateTime.class))).thenReturn(false);
+        when(taskLogRepository.takeOverTask(eq("task-2"), any(LocalDateTime.class))).thenReturn(true);
+
+        // Act
+        job.checkLeadership();
+
+        // Assert
+        verify(cleanupService, never()).resumeTask(lost);
+        verify(cleanupService).resumeTask(won);
+    }
+
+    @Test
+    public void shouldGoOnWithTheNextTaskWhenResumingOneFails() {
+        // Arrange
+        CleanupTask failing = task("task-1");
+        CleanupTask next = task("task-2");
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(taskLogRepository.findAbandonedTasks(eq("scheduler"), any(LocalDateTime.class)))
+                .thenReturn(List.of(failing, next));
+        when(taskLogRepository.takeOverTask(anyString(), any(LocalDateTime.class))).thenReturn(true);
+        when(cleanupService.resumeTask(failing)).thenThrow(new IllegalStateException("connection lost"));
+
+        // Act
+        job.checkLeadership();
+
+        // Assert
+        verify(cleanupService).resumeTask(next);
+    }
+
+    @Test
+    public void shouldLookForAbandonedTasksOnlyWhenLeadershipIsGained() {
+        // Arrange
+        when(leaderElectionService.isLeader()).thenReturn(false, true, true, false, true);
+        when(taskLogRepository.findAbandonedTasks(eq("scheduler"), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            job.checkLeadership();
+        }
+
+        // Assert
+        verify(taskLogRepository, times(2)).findAbandonedTasks(eq("scheduler"), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void shouldNotStartAScheduledRunWithinTheDedupWindowOfAnother() {
+        // Arrange
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        when(taskLogRepository.hasTaskStartedSince(eq("scheduler"), any(LocalDateTime.class))).thenReturn(true);
+
+        // Act
+        job.executeScheduledCleanup();
+
+        // Assert
+        verify(cleanupService, never()).executeCleanup(anyString(), anyBoolean());
+    }
+
+    private CleanupTask task(String taskId) {
+        CleanupTask task = new CleanupTask();
+        task.setTaskId(taskId);
+        task.setInitiator("scheduler");
+        task.setEntities(new String[] {"Order"});
+        return task;
+    }
+}
@@ -0,0 +1,60 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.PartitionInterval;
+import com.dbcleanup.model.TablePartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BackupPartitionPlannerTest {
+
+    private final BackupPartitionPlanner planner = new BackupPartitionPlanner();
+
+    public BackupPartitionPlannerTest() {
+        super();
+    }
+
+    @Test
+    public void shouldPlanCurrentAndAheadMonths() {
+        // Act
+        List<TablePartition> partitions = planner.plan("orders_backup", PartitionInterval.MONTH,
+                LocalDate.of(2026, 12, 17), 2);
+
+        // Assert
+        assertEquals(3, partitions.size());
+        assertEquals("orders_backup_p20261201", partitions.get(0).getName());
+        assertEquals("'2026-12-01'", partitions.get(0).getLowerBound());
+        assertEquals("'2027-01-01'", partitions.get(0).getUpperBound());
+        assertEquals("'2027-03-01'", partitions.get(2).getUpperBound());
+        assertNull(partitions.get(0).getSchemaName());
+    }
+
+    @Test
+    public void shouldAlignWeeksToMonday() {
+        // Act
+        List<TablePartition> partitions = planner.plan("archive.orders_backup", PartitionInterval.WEEK,
+                LocalDate.of(2026, 10, 18), 0);
+
+        // Assert
+        assertEquals(1, partitions.size());
+        assertEquals("archive.orders_backup_p20261012", partitions.get(0).getQualifiedName());
+        assertEquals("FOR VALUES FROM ('2026-10-12') TO ('2026-10-19')", partitions.get(0).getBound());
+    }
+
+    @Test
+    public void shouldKeepPartitionNamesWithinIdentifierLimit() {
+        // Arrange
+        String longTable = "a_backup_table_with_a_rather_long_name_that_goes_on_and_on_and_on";
+
+        // Act
+        TablePartition partition = planner.plan(longTable, PartitionInterval.DAY, LocalDate.of(2026, 1, 2), 0).get(0);
+
+        // Assert
+        assertEquals(63, partition.getName().length());
+        assertEquals("_p20260102", partition.getName().substring(53));
+    }
+}
@@ -0,0 +1,63 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.CascadeEdge;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CascadePlannerTest {
+
+    private final CascadePlanner cascadePlanner = new CascadePlanner(1000);
+
+    public CascadePlannerTest() {
+        super();
+    }
+
+    @Test
+    public void shouldLetTheDatabaseCascadeIndexedForeignKeys() {
+        // Arrange
+        CascadeEdge edge = edge("CASCADE", true);
+
+        // Act
+        CascadeEdge.Strategy strategy = cascadePlanner.plan(edge, 1_000_000, 5_000_000, 60_000);
+
+        // Assert
+        assertEquals(CascadeEdge.Strategy.DATABASE, strategy);
+        assertTrue(edge.getDatabaseCost() <= edge.getExplicitCost());
+    }
+
+    @Test
+    public void shouldDeleteExplicitlyWhenTheForeignKeyIsNotIndexed() {
+        // Arrange
+        CascadeEdge edge = edge("CASCADE", false);
+
+        // Act
+        CascadeEdge.Strategy strategy = cascadePlanner.plan(edge, 1_000_000, 5_000_000, 60_000);
+
+        // Assert
+        assertEquals(CascadeEdge.Strategy.EXPLICIT, strategy);
+        assertTrue(edge.getExplicitCost() < edge.getDatabaseCost());
+    }
+
+    @Test
+    public void shouldDeleteExplicitlyWithoutOnDeleteCascade() {
+        // Arrange
+        CascadeEdge edge = edge("NO ACTION", true);
+
+        // Act
+        CascadeEdge.Strategy strategy = cascadePlanner.plan(edge, 1_000_000, 5_000_000, 60_000);
+
+        // Assert
+        assertEquals(CascadeEdge.Strategy.EXPLICIT, strategy);
+    }
+
+    private CascadeEdge edge(String deleteAction, boolean indexed) {
+        CascadeEdge edge = new CascadeEdge();
+        edge.setTable("order_items");
+        edge.setParentTable("orders");
+        edge.setDeleteAction(deleteAction);
+        edge.setIndexed(indexed);
+        return edge;
+    }
+}
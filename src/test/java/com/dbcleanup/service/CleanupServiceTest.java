@@ -3,13 +3,21 @@ package com.dbcleanup.service;
 
 import com.dbcleanup.config.CleanupProperties;
 import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.model.CandidateScope;
 import com.dbcleanup.model.CleanupResult;
+import com.dbcleanup.model.CleanupTask;
+import com.dbcleanup.model.KeyList;
 import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.CostEstimateRepository;
+import com.dbcleanup.repository.IndexAdvisorRepository;
 import com.dbcleanup.repository.TaskLogRepository;
+import com.dbcleanup.repository.WatermarkRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.never;
@@ -18,6 +26,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.contains;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -25,6 +34,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class CleanupServiceTest {
 
@@ -40,6 +50,36 @@ public class CleanupServiceTest {
     @Mock
     private DistributedCleanupService distributedCleanupService;
 
+    @Mock
+    private PartitionCleanupService partitionCleanupService;
+
+    @Mock
+    private TableRebuildService tableRebuildService;
+
+    @Mock
+    private ClusterCleanupService clusterCleanupService;
+
+    @Mock
+    private WatermarkRepository watermarkRepository;
+
+    @Mock
+    private LockAwareDeleteService lockAwareDeleteService;
+
+    @Mock
+    private MaintenanceService maintenanceService;
+
+    @Mock
+    private PipelinedCleanupService pipelinedCleanupService;
+
+    @Mock
+    private CostEstimateRepository costEstimateRepository;
+
+    @Mock
+    private IndexAdvisorRepository indexAdvisorRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private CleanupService cleanupService;
 
     public CleanupServiceTest() {
@@ -49,8 +89,17 @@ public class CleanupServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        RowDeletionService rowDeletionService = new RowDeletionService(
+                properties, cleanupRepository, lockAwareDeleteService, pipelinedCleanupService);
+        EntityCleanupExecutor entityCleanupExecutor = new EntityCleanupExecutor(
+                properties, cleanupRepository, partitionCleanupService, tableRebuildService,
+                new IncrementalDiscoveryService(watermarkRepository), rowDeletionService, transactionManager);
+        CostEstimateService costEstimateService = new CostEstimateService(
+                properties, cleanupRepository, costEstimateRepository, indexAdvisorRepository, taskLogRepository,
+                new ObjectMapper());
         cleanupService = new CleanupService(
-                properties, cleanupRepository, taskLogRepository, distributedCleanupService);
+                properties, costEstimateService, taskLogRepository, distributedCleanupService, entityCleanupExecutor,
+                clusterCleanupService, maintenanceService);
     }
 
     @Test
@@ -68,10 +117,10 @@ public class CleanupServiceTest {
         when(taskLogRepository.logTaskStart(anyString(), anyString(), anyList(), anyBoolean()))
                 .thenReturn("task-id-123");
 
-        when(cleanupRepository.findCandidateIds(entity1))
-                .thenReturn(Arrays.asList("order-1", "order-2"));
-        when(cleanupRepository.findCandidateIds(entity2))
-                .thenReturn(Collections.singletonList("customer-1"));
+        when(cleanupRepository.findCandidateKeys(entity1))
+                .thenReturn(keys("order-1", "order-2"));
+        when(cleanupRepository.findCandidateKeys(entity2))
+                .thenReturn(keys("customer-1"));
 
         // Act
         CleanupResult result = cleanupService.analyzeCleanupCandidates("testUser");
@@ -104,8 +153,8 @@ public class CleanupServiceTest {
         when(taskLogRepository.logTaskStart(anyString(), anyString(), anyList(), anyBoolean()))
                 .thenReturn("task-id-123");
 
-        List<String> candidateIds = Arrays.asList("order-1", "order-2");
-        when(cleanupRepository.findCandidateIds(entity)).thenReturn(candidateIds);
+        KeyList candidateKeys = keys("order-1", "order-2");
+        when(cleanupRepository.findCandidateKeys(eq(entity), any(CandidateScope.class))).thenReturn(candidateKeys);
 
         // Act
         CleanupResult result = cleanupService.executeCleanup("testUser", true);
@@ -115,8 +164,9 @@ public class CleanupServiceTest {
         assertEquals("task-id-123", result.getTaskId());
         assertEquals(2, result.getCandidateIds("Order").size());
 
-        verify(cleanupRepository, never()).backupCandidatesDirect(any(), anyString());
-        verify(cleanupRepository, never()).deleteCandidatesDirect(any());
+        verify(cleanupRepository, never()).backupCandidatesDirect(any(), anyString(), any(CandidateScope.class));
+        verify(cleanupRepository, never()).deleteCandidatesDirect(any(), any(CandidateScope.class));
+        verify(watermarkRepository, never()).saveWatermark(anyString(), anyString(), anyBoolean());
         verify(taskLogRepository).logTaskCompletion(eq("task-id-123"), eq(2), eq(0));
     }
 
@@ -137,10 +187,11 @@ public class CleanupServiceTest {
         when(taskLogRepository.logTaskStart(anyString(), anyString(), anyList(), anyBoolean()))
                 .thenReturn("task-id-123");
 
-        List<String> candidateIds = Arrays.asList("order-1", "order-2");
-        when(cleanupRepository.findCandidateIds(entity)).thenReturn(candidateIds);
-        when(cleanupRepository.backupCandidatesDirect(entity, "task-id-123")).thenReturn(2);
-        when(cleanupRepository.deleteCandidatesDirect(entity)).thenReturn(2);
+        KeyList candidateKeys = keys("order-1", "order-2");
+        when(cleanupRepository.findCandidateKeys(eq(entity), any(CandidateScope.class))).thenReturn(candidateKeys);
+        when(cleanupRepository.backupCandidatesDirect(eq(entity), eq("task-id-123"), any(CandidateScope.class)))
+                .thenReturn(2);
+        when(cleanupRepository.deleteCandidatesDirect(eq(entity), any(CandidateScope.class))).thenReturn(2);
 
         // Act
         CleanupResult result = cleanupService.executeCleanup("testUser", false);
@@ -152,8 +203,67 @@ public class CleanupServiceTest {
         assertEquals(2, result.getBackedUpCount("Order"));
         assertEquals(2, result.getDeletedCount("Order"));
 
-        verify(cleanupRepository).backupCandidatesDirect(entity, "task-id-123");
-        verify(cleanupRepository).deleteCandidatesDirect(entity);
+        verify(cleanupRepository).backupCandidatesDirect(entity, "task-id-123", CandidateScope.all());
+        verify(cleanupRepository).deleteCandidatesDirect(entity, CandidateScope.all());
         verify(taskLogRepository).logTaskCompletion(eq("task-id-123"), eq(2), eq(2));
     }
+
+    @Test
+    public void shouldContinueATakenOverClusterTaskFromItsRemainingChunks() {
+        // Arrange
+        EntityConfig entity = new EntityConfig();
+        entity.setName("Order");
+        entity.setTable("orders");
+        when(properties.getEntities()).thenReturn(Collections.singletonList(entity));
+        when(clusterCleanupService.isEnabled()).thenReturn(true);
+        CleanupResult resumed = new CleanupResult();
+        when(clusterCleanupService.resumeClusterCleanup("task-id-123", false, List.of(entity))).thenReturn(resumed);
+
+        // Act
+        CleanupResult result = cleanupService.resumeTask(takenOverTask("task-id-123", false));
+
+        // Assert
+        assertSame(resumed, result);
+        verify(taskLogRepository, never()).logTaskError(anyString(), anyString());
+        verify(taskLogRepository, never()).logTaskStart(anyString(), anyString(), anyList(), anyBoolean());
+    }
+
+    @Test
+    public void shouldFailATakenOverLocalTaskAndRunItAgain() {
+        // Arrange
+        EntityConfig entity = new EntityConfig();
+        entity.setName("Order");
+        entity.setTable("orders");
+        when(properties.getEntities()).thenReturn(Collections.singletonList(entity));
+        when(properties.getDistribution()).thenReturn(null);
+        when(taskLogRepository.logTaskStart(anyString(), anyString(), anyList(), anyBoolean()))
+                .thenReturn("task-id-456");
+        when(cleanupRepository.findCandidateKeys(eq(entity), any(CandidateScope.class))).thenReturn(keys("order-1"));
+
+        // Act
+        CleanupResult result = cleanupService.resumeTask(takenOverTask("task-id-123", true));
+
+        // Assert
+        assertEquals("task-id-456", result.getTaskId());
+        verify(taskLogRepository).logTaskError(eq("task-id-123"), contains("taken over"));
+        verify(taskLogRepository).logTaskStart("CLEANUP", "scheduler", List.of("Order"), true);
+        verify(clusterCleanupService, never()).resumeClusterCleanup(anyString(), anyBoolean(), anyList());
+    }
+
+    private static CleanupTask takenOverTask(String taskId, boolean dryRun) {
+        CleanupTask task = new CleanupTask();
+        task.setTaskId(taskId);
+        task.setInitiator("scheduler");
+        task.setEntities(new String[] {"Order"});
+        task.setDryRun(dryRun);
+        return task;
+    }
+
+    private static KeyList keys(String... ids) {
+        KeyList keys = KeyList.of("text");
+        for (String id : ids) {
+            keys.add(id);
+        }
+        return keys;
+    }
 }
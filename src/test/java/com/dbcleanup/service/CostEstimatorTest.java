@@ -0,0 +1,94 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.CostEstimate;
+import com.dbcleanup.model.RelationSize;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CostEstimatorTest {
+
+    private final CostEstimator costEstimator = new CostEstimator(1000);
+
+    public CostEstimatorTest() {
+        super();
+    }
+
+    @Test
+    public void shouldTouchFewerPagesThanRowsWhenRowsShareAPage() {
+        // Arrange
+        long pages = 1000;
+
+        // Act
+        long fewRows = CostEstimator.touchedPages(pages, 10);
+        long manyRows = CostEstimator.touchedPages(pages, 100_000);
+
+        // Assert
+        assertEquals(10, fewRows);
+        assertEquals(pages, manyRows);
+    }
+
+    @Test
+    public void shouldReadTheWholeTableOnASequentialScan() {
+        // Arrange
+        RelationSize size = size(10_000, 1_000_000);
+        CostEstimate indexed = new CostEstimate();
+        CostEstimate scanned = new CostEstimate();
+
+        // Act
+        costEstimator.addTable(indexed, size, 100, false, 0);
+        costEstimator.addTable(scanned, size, 100, true, 0);
+
+        // Assert
+        assertTrue(indexed.getPagesRead() < 10_000);
+        assertEquals(10_000, scanned.getPagesRead());
+        assertEquals(indexed.getHeapBytes(), scanned.getHeapBytes());
+    }
+
+    @Test
+    public void shouldAddBackupBytesToTheWal() {
+        // Arrange
+        RelationSize size = size(10_000, 1_000_000);
+        CostEstimate withoutBackup = new CostEstimate();
+        CostEstimate withBackup = new CostEstimate();
+
+        // Act
+        costEstimator.addTable(withoutBackup, size, 100, false, 0);
+        costEstimator.addTable(withBackup, size, 100, false, 200);
+
+        // Assert
+        assertEquals(20_000, withBackup.getBackupBytes());
+        assertEquals(withoutBackup.getWalBytes() + 20_000 + 100 * CostEstimator.INSERT_WAL_BYTES,
+                withBackup.getWalBytes());
+    }
+
+    @Test
+    public void shouldPreferHistoricalThroughput() {
+        // Arrange
+        CostEstimate history = new CostEstimate();
+        history.setCandidateCount(10_000);
+        CostEstimate noHistory = new CostEstimate();
+        noHistory.setCandidateCount(10_000);
+
+        // Act
+        costEstimator.addDuration(history, 5000.0);
+        costEstimator.addDuration(noHistory, null);
+
+        // Assert
+        assertEquals(2.0, history.getEstimatedSeconds(), 0.001);
+        assertEquals("history", history.getThroughputSource());
+        assertEquals(10.0, noHistory.getEstimatedSeconds(), 0.001);
+        assertEquals("default", noHistory.getThroughputSource());
+    }
+
+    private RelationSize size(long pages, long rows) {
+        RelationSize size = new RelationSize();
+        size.setTable("orders");
+        size.setPages(pages);
+        size.setRows(rows);
+        size.setHeapBytes(pages * CostEstimator.PAGE_BYTES);
+        size.setIndexBytes(pages / 4 * CostEstimator.PAGE_BYTES);
+        return size;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.CriteriaConfig;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexRecommenderTest {
+
+    private final IndexRecommender indexRecommender = new IndexRecommender();
+
+    public IndexRecommenderTest() {
+        super();
+    }
+
+    @Test
+    public void shouldTurnConstantConditionsIntoPartialIndexPredicate() {
+        // Arrange
+        EntityConfig entity = entity(
+                criteria("created_at", "< CURRENT_DATE - INTERVAL '1 YEAR'", "AND"),
+                criteria("status", "IN ('COMPLETED', 'CANCELLED')", "AND"));
+
+        // Act
+        String recommendation = indexRecommender.recommendCriteriaIndex(entity);
+
+        // Assert
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_cleanup_created_at_id ON public.orders " +
+                "(created_at, id) WHERE status IN ('COMPLETED', 'CANCELLED')", recommendation);
+        assertEquals("created_at", indexRecommender.leadingColumn(entity));
+    }
+
+    @Test
+    public void shouldIndexAllColumnsWhenCriteriaAreCombinedWithOr() {
+        // Arrange
+        EntityConfig entity = entity(
+                criteria("created_at", "< CURRENT_DATE - INTERVAL '1 YEAR'", "AND"),
+                criteria("status", "= 'CANCELLED'", "OR"));
+
+        // Act
+        String recommendation = indexRecommender.recommendCriteriaIndex(entity);
+
+        // Assert
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_cleanup_created_at_status_id " +
+                "ON public.orders (created_at, status, id)", recommendation);
+    }
+
+    @Test
+    public void shouldRecognizeConstantConditions() {
+        // Assert
+        assertTrue(indexRecommender.isConstantCondition("IN ('A', 'B')"));
+        assertTrue(indexRecommender.isConstantCondition("= 42"));
+        assertTrue(indexRecommender.isConstantCondition("is not null"));
+        assertFalse(indexRecommender.isConstantCondition("< CURRENT_DATE"));
+        assertFalse(indexRecommender.isConstantCondition("IN (SELECT id FROM customers)"));
+    }
+
+    private EntityConfig entity(CriteriaConfig... criteria) {
+        EntityConfig entity = new EntityConfig();
+        entity.setName("Order");
+        entity.setTable("public.orders");
+        entity.setCriteria(Arrays.asList(criteria));
+        return entity;
+    }
+
+    private CriteriaConfig criteria(String field, String condition, String operator) {
+        CriteriaConfig criteria = new CriteriaConfig();
+        criteria.setField(field);
+        criteria.setCondition(condition);
+        criteria.setOperator(operator);
+        return criteria;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties.MaintenanceConfig;
+import com.dbcleanup.model.MaintenanceAction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MaintenancePlannerTest {
+
+    private final MaintenancePlanner maintenancePlanner = new MaintenancePlanner(new MaintenanceConfig());
+
+    public MaintenancePlannerTest() {
+        super();
+    }
+
+    @Test
+    public void shouldVacuumWhenManyTuplesAreDead() {
+        // Act
+        MaintenanceAction.Type type = maintenancePlanner.decide(500_000, 200_000, 200_000);
+
+        // Assert
+        assertEquals(MaintenanceAction.Type.VACUUM_ANALYZE, type);
+    }
+
+    @Test
+    public void shouldOnlyAnalyzeSmallerChanges() {
+        // Act
+        MaintenanceAction.Type type = maintenancePlanner.decide(1_000_000, 0, 50_000);
+
+        // Assert
+        assertEquals(MaintenanceAction.Type.ANALYZE, type);
+    }
+
+    @Test
+    public void shouldSkipTablesWithFewDeadTuples() {
+        // Act
+        MaintenanceAction.Type small = maintenancePlanner.decide(1_000, 900, 900);
+        MaintenanceAction.Type negligible = maintenancePlanner.decide(10_000_000, 20_000, 0);
+
+        // Assert
+        assertEquals(MaintenanceAction.Type.NONE, small);
+        assertEquals(MaintenanceAction.Type.NONE, negligible);
+    }
+}
@@ -0,0 +1,169 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.exception.CleanupException;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.KeyList;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.DatabaseHealthRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PipelinedCleanupServiceTest {
+
+    private static final int CHUNK_SIZE = 10;
+
+    @Mock
+    private CleanupRepository cleanupRepository;
+
+    @Mock
+    private DatabaseHealthRepository databaseHealthRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CleanupProperties properties;
+    private EntityConfig entity;
+    private PipelinedCleanupService pipelinedCleanupService;
+
+    public PipelinedCleanupServiceTest() {
+        super();
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new CleanupProperties();
+        properties.getWal().setMeasure(false);
+        properties.getPipeline().setEnabled(true);
+        properties.getPipeline().setChunkSize(CHUNK_SIZE);
+
+        entity = new EntityConfig();
+        entity.setName("Order");
+        entity.setTable("orders");
+
+        pipelinedCleanupService = new PipelinedCleanupService(properties, cleanupRepository,
+                new WalBudgetService(properties, databaseHealthRepository), transactionManager);
+    }
+
+    @Test
+    @Timeout(10)
+    public void shouldPassTheEndMarkerThroughEveryStage() {
+        // Arrange
+        properties.getPipeline().setBackupConcurrency(3);
+        properties.getPipeline().setDeleteConcurrency(2);
+        discoverChunks(5);
+        when(cleanupRepository.backupCandidatesDirect(eq(entity), eq("task-1"), any(CandidateScope.class)))
+                .thenAnswer(invocation -> chunkSize(invocation.getArgument(2)));
+        when(cleanupRepository.deleteCandidatesDirect(eq(entity), any(CandidateScope.class)))
+                .thenAnswer(invocation -> chunkSize(invocation.getArgument(1)));
+        PartialCleanupResult result = new PartialCleanupResult();
+
+        // Act
+        pipelinedCleanupService.run(entity, "task-1", CandidateScope.all(), result);
+
+        // Assert
+        assertEquals(5 * CHUNK_SIZE, result.getCandidateCount("Order"));
+        assertEquals(5 * CHUNK_SIZE, result.getBackedUpCount("Order"));
+        assertEquals(5 * CHUNK_SIZE, result.getDeletedCount("Order"));
+    }
+
+    @Test
+    @Timeout(10)
+    public void shouldCancelEveryStageOnTheFirstFailure() {
+        // Arrange
+        entity.getBackup().setEnabled(false);
+        // Discovery never runs out of candidates, so only the cancellation can end the run
+        discoverChunks(Integer.MAX_VALUE);
+        when(cleanupRepository.deleteCandidatesDirect(eq(entity), any(CandidateScope.class)))
+                .thenThrow(new IllegalStateException("deadlock detected"));
+        PartialCleanupResult result = new PartialCleanupResult();
+
+        // Act
+        CleanupException exception = assertThrows(CleanupException.class,
+                () -> pipelinedCleanupService.run(entity, "task-1", CandidateScope.all(), result));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("deadlock detected"));
+        assertEquals(0, result.getDeletedCount("Order"));
+        verify(cleanupRepository, never()).backupCandidatesDirect(any(), anyString(), any(CandidateScope.class));
+    }
+
+    @Test
+    @Timeout(10)
+    public void shouldStopDiscoveringWhileTheDeleteStageIsBehind() throws Exception {
+        // Arrange
+        entity.getBackup().setEnabled(false);
+        properties.getPipeline().setQueueCapacity(1);
+        properties.getPipeline().setDeleteConcurrency(1);
+        discoverChunks(20);
+        CountDownLatch deleting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cleanupRepository.deleteCandidatesDirect(eq(entity), any(CandidateScope.class)))
+                .thenAnswer(invocation -> {
+                    deleting.countDown();
+                    release.await();
+                    return chunkSize(invocation.getArgument(1));
+                });
+        PartialCleanupResult result = new PartialCleanupResult();
+
+        // Act
+        CompletableFuture<Void> run = CompletableFuture.runAsync(
+                () -> pipelinedCleanupService.run(entity, "task-1", CandidateScope.all(), result));
+        assertTrue(deleting.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+
+        // Assert
+        // One chunk with the blocked worker, one in the queue and one waiting to be put
+        verify(cleanupRepository, atMost(3)).findCandidateKeyChunk(eq(entity), any(), any(), anyInt());
+
+        release.countDown();
+        run.get(5, TimeUnit.SECONDS);
+        assertEquals(20 * CHUNK_SIZE, result.getDeletedCount("Order"));
+    }
+
+    /**
+     * Let discovery return a number of full chunks of consecutive keys, then an empty one
+     */
+    private void discoverChunks(int chunkCount) {
+        AtomicInteger discovered = new AtomicInteger();
+        when(cleanupRepository.findCandidateKeyChunk(eq(entity), any(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    KeyList chunk = KeyList.of("bigint");
+                    int index = discovered.getAndIncrement();
+                    if (index < chunkCount) {
+                        for (int i = 0; i < CHUNK_SIZE; i++) {
+                            chunk.add((long) index * CHUNK_SIZE + i);
+                        }
+                    }
+                    return chunk;
+                });
+    }
+
+    private int chunkSize(CandidateScope scope) {
+        return scope.getKeys().size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.model.EntityRunStats;
+import com.dbcleanup.model.RunPlan;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RunPlannerTest {
+
+    private final RunPlanner planner = new RunPlanner(60_000);
+
+    public RunPlannerTest() {
+        super();
+    }
+
+    @Test
+    public void shouldStartLongestEntitiesFirstOnFreeWorkers() {
+        // Arrange
+        Map<String, EntityRunStats> stats = Map.of(
+                "a", stats("a", 10_000),
+                "b", stats("b", 30_000),
+                "c", stats("c", 20_000),
+                "d", stats("d", 20_000));
+
+        // Act
+        RunPlan plan = planner.plan(List.of("a", "b", "c", "d"), stats, 2);
+
+        // Assert
+        assertEquals(List.of("b", "c", "d", "a"), plan.getEntityOrder());
+        assertEquals(40_000, plan.getExpectedMillis());
+        RunPlan.PlannedEntity last = plan.getEntities().get(3);
+        assertEquals(0, last.getWorker());
+        assertEquals(30_000, last.getExpectedStartMillis());
+    }
+
+    @Test
+    public void shouldExpectEntitiesWithoutHistoryToTakeAsLongAsTheLongestKnown() {
+        // Arrange
+        Map<String, EntityRunStats> stats = Map.of(
+                "a", stats("a", 10_000),
+                "b", stats("b", 50_000));
+
+        // Act
+        RunPlan plan = planner.plan(List.of("a", "new", "b"), stats, 4);
+
+        // Assert
+        assertEquals(List.of("new", "b", "a"), plan.getEntityOrder());
+        assertEquals(50_000, plan.getEntities().get(0).getExpectedMillis());
+        assertFalse(plan.getEntities().get(0).isFromHistory());
+        assertTrue(plan.getEntities().get(1).isFromHistory());
+        assertEquals(50_000, plan.getExpectedMillis());
+    }
+
+    @Test
+    public void shouldKeepConfigurationOrderWithoutHistory() {
+        // Act
+        RunPlan plan = planner.plan(List.of("x", "y", "z"), Map.of(), 1);
+
+        // Assert
+        assertEquals(List.of("x", "y", "z"), plan.getEntityOrder());
+        assertEquals(180_000, plan.getExpectedMillis());
+    }
+
+    private static EntityRunStats stats(String entityName, long averageMillis) {
+        return new EntityRunStats(entityName, 3, averageMillis, 1000, 1000);
+    }
+}
@@ -0,0 +1,175 @@
+package com.dbcleanup.service;
+
+import com.dbcleanup.config.CleanupProperties;
+import com.dbcleanup.config.CleanupProperties.EntityConfig;
+import com.dbcleanup.model.CandidateScope;
+import com.dbcleanup.model.PartialCleanupResult;
+import com.dbcleanup.model.TrickleStatus;
+import com.dbcleanup.repository.CleanupRepository;
+import com.dbcleanup.repository.DatabaseHealthRepository;
+import com.dbcleanup.repository.TaskLogRepository;
+import com.dbcleanup.repository.WorkChunkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TrickleCleanupServiceTest {
+
+    @Mock
+    private CleanupRepository cleanupRepository;
+
+    @Mock
+    private WorkChunkRepository workChunkRepository;
+
+    @Mock
+    private DatabaseHealthRepository databaseHealthRepository;
+
+    @Mock
+    private TaskLogRepository taskLogRepository;
+
+    @Mock
+    private EntityCleanupExecutor entityCleanupExecutor;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CleanupProperties properties;
+    private TrickleCleanupService trickleCleanupService;
+    // Batch size of the batch being deleted, and how many of its rows are still there to delete
+    private final AtomicInteger batchSize = new AtomicInteger();
+    private final AtomicInteger missingRows = new AtomicInteger();
+
+    public TrickleCleanupServiceTest() {
+        super();
+    }
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new CleanupProperties();
+        properties.setEntities(new ArrayList<>());
+        // 1000 rows per 5 second tick, a backlog is worked off in 720 ticks
+        properties.getTrickle().setIntervalMillis(5000);
+        properties.getTrickle().setMaxRowsPerSecond(200);
+        properties.getTrickle().setDrainMinutes(60);
+        properties.getTrickle().setMinBatchSize(100);
+        properties.getTrickle().setMaxBatchSize(5000);
+
+        when(taskLogRepository.logTaskStart(anyString(), anyString(), anyList(), anyBoolean())).thenReturn("task-1");
+        when(cleanupRepository.tryLockEntity(any(EntityConfig.class), anyString())).thenReturn(true);
+        when(cleanupRepository.findCandidateBoundary(any(EntityConfig.class), anyInt())).thenAnswer(invocation -> {
+            batchSize.set(invocation.getArgument(1));
+            return "boundary";
+        });
+        when(workChunkRepository.findKeyType(anyString())).thenReturn("bigint");
+        when(entityCleanupExecutor.executeScoped(any(EntityConfig.class), eq("task-1"), eq(false),
+                any(CandidateScope.class))).thenAnswer(invocation -> {
+                    EntityConfig entityConfig = invocation.getArgument(0);
+                    PartialCleanupResult result = new PartialCleanupResult();
+                    result.addDeletedCount(entityConfig.getName(), batchSize.get() - missingRows.get());
+                    return result;
+                });
+
+        trickleCleanupService = new TrickleCleanupService(properties, cleanupRepository, workChunkRepository,
+                databaseHealthRepository, taskLogRepository, entityCleanupExecutor, transactionManager);
+    }
+
+    @Test
+    public void shouldSizeTheBatchToWorkOffTheBacklogWithinDrainMinutes() {
+        // Arrange
+        EntityConfig order = entity("Order", 144_000);
+
+        // Act
+        trickleCleanupService.runTick();
+
+        // Assert
+        verify(cleanupRepository).findCandidateBoundary(order, 200);
+        TrickleStatus status = trickleCleanupService.getStatus();
+        assertEquals(143_800, status.getBacklog().get("Order"));
+        assertEquals(200, status.getDeletedTotal());
+        assertFalse(status.isRateLimited());
+    }
+
+    @Test
+    public void shouldDeleteAtLeastMinBatchSizeOfASmallBacklog() {
+        // Arrange
+        EntityConfig order = entity("Order", 1_000);
+
+        // Act
+        trickleCleanupService.runTick();
+
+        // Assert
+        verify(cleanupRepository).findCandidateBoundary(order, 100);
+    }
+
+    @Test
+    public void shouldDeleteAtMostMaxBatchSizeOfALargeBacklog() {
+        // Arrange
+        properties.getTrickle().setMaxRowsPerSecond(10_000);
+        EntityConfig order = entity("Order", 7_200_000);
+
+        // Act
+        trickleCleanupService.runTick();
+
+        // Assert
+        verify(cleanupRepository).findCandidateBoundary(order, 5000);
+    }
+
+    @Test
+    public void shouldShareTheRowsPerSecondBudgetOfATickBetweenEntities() {
+        // Arrange
+        EntityConfig order = entity("Order", 432_000);
+        EntityConfig customer = entity("Customer", 432_000);
+
+        // Act
+        trickleCleanupService.runTick();
+
+        // Assert
+        verify(cleanupRepository).findCandidateBoundary(order, 600);
+        verify(cleanupRepository).findCandidateBoundary(customer, 400);
+        TrickleStatus status = trickleCleanupService.getStatus();
+        assertEquals(1000, status.getDeletedTotal());
+        assertTrue(status.isRateLimited());
+    }
+
+    @Test
+    public void shouldClearTheBacklogWhenABatchComesUpShort() {
+        // Arrange
+        entity("Order", 144_000);
+        missingRows.set(50);
+
+        // Act
+        trickleCleanupService.runTick();
+
+        // Assert
+        TrickleStatus status = trickleCleanupService.getStatus();
+        assertEquals(0, status.getBacklog().get("Order"));
+        assertEquals(150, status.getDeletedTotal());
+    }
+
+    private EntityConfig entity(String name, int backlog) {
+        EntityConfig entityConfig = new EntityConfig();
+        entityConfig.setName(name);
+        entityConfig.setTable(name.toLowerCase() + "s");
+        properties.getEntities().add(entityConfig);
+        when(cleanupRepository.countCandidates(entityConfig)).thenReturn(backlog);
+        return entityConfig;
+    }
+}